@@ -0,0 +1,105 @@
+package com.banco.benchmark;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Registros durables por segundo en la bitácora con muchas solicitudes concurrentes, que es
+ * cuando la escritura agrupada reparte un force entre muchos registros. Además de la tasa
+ * imprime los percentiles de latencia de cada registro, de la solicitud a la confirmación.
+ * Los segmentos van a target/, que debería estar en el disco donde correría la bitácora.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitacoraBenchmark {
+    private static final int LOTE = 20_000;
+
+    @Param({"64", "512"})
+    int concurrencia;
+
+    private Path directorio;
+    private SimpleMeterRegistry registro;
+    private Bitacora bitacora;
+    private Transferencia transferencia;
+    private final Recorder latencias = new Recorder(3);
+    private Histogram medidas;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        Path target = Path.of("target");
+        Files.createDirectories(target);
+        directorio = Files.createTempDirectory(target, "bitacora-");
+        registro = new SimpleMeterRegistry();
+        bitacora = new Bitacora(registro, directorio, 256 * 1024 * 1024, 8192);
+        LocalDateTime ahora = LocalDateTime.now();
+        transferencia = new Transferencia("0R7ZJ5M2K4Q8A", "ACC0000123456789012345678", "ACC0000876543210987654321",
+                new BigDecimal("125.40"), "USD", "EXITOSA", "Pago de prueba", ahora, ahora, "TRF0R7ZJ5M2K4Q8A", null,
+                null, null, null);
+    }
+
+    @Setup(Level.Iteration)
+    public void reiniciarLatencias() {
+        latencias.reset();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public Long registrar() {
+        return Flux.range(0, LOTE)
+                .flatMap(i -> {
+                    long inicio = System.nanoTime();
+                    return bitacora.registrar(transferencia)
+                            .doOnNext(s -> latencias.recordValue((System.nanoTime() - inicio) / 1000));
+                }, concurrencia)
+                .count()
+                .block();
+    }
+
+    @TearDown(Level.Iteration)
+    public void acumularLatencias(IterationParams iteracion) {
+        Histogram intervalo = latencias.getIntervalHistogram();
+        if (iteracion.getType() != IterationType.MEASUREMENT) {
+            return;
+        }
+        if (medidas == null) {
+            medidas = intervalo;
+        } else {
+            medidas.add(intervalo);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        bitacora.cerrar();
+        System.out.printf(Locale.ROOT, "%nLatencia por registro (us), concurrencia %d: p50 %d, p99 %d, p99.9 %d, max %d%n",
+                concurrencia, medidas.getValueAtPercentile(50), medidas.getValueAtPercentile(99),
+                medidas.getValueAtPercentile(99.9), medidas.getMaxValue());
+        System.out.printf(Locale.ROOT, "Escritura agrupada: %.0f us de media, %.1f registros de media%n",
+                registro.get("banco.bitacora.forzado").timer().mean(TimeUnit.MICROSECONDS),
+                registro.get("banco.bitacora.registros.por.forzado").summary().mean());
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.banco.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compara dos resultados JSON de JMH (-rf json): para cada benchmark y combinación de
+ * parámetros presente en ambos muestra la puntuación y los bytes asignados por operación
+ * (gc.alloc.rate.norm) de cada corrida y la variación porcentual.
+ */
+public final class CompararResultados {
+    private static final String ASIGNACION = "gc.alloc.rate.norm";
+
+    private CompararResultados() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: CompararResultados <base.json> <nuevo.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> base = leer(new File(args[0]));
+        Map<String, JsonNode> nuevo = leer(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %8s %12s %12s %8s%n",
+                "Benchmark", "base", "nuevo", "var %", "B/op base", "B/op nuevo", "var %");
+        for (Map.Entry<String, JsonNode> entrada : base.entrySet()) {
+            JsonNode otro = nuevo.get(entrada.getKey());
+            if (otro == null) {
+                continue;
+            }
+            double puntuacionBase = entrada.getValue().path("primaryMetric").path("score").asDouble();
+            double puntuacionNueva = otro.path("primaryMetric").path("score").asDouble();
+            double asignacionBase = entrada.getValue().path("secondaryMetrics").path(ASIGNACION).path("score").asDouble(Double.NaN);
+            double asignacionNueva = otro.path("secondaryMetrics").path(ASIGNACION).path("score").asDouble(Double.NaN);
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f %12.1f %12.1f %+8.1f  %s%n",
+                    entrada.getKey(), puntuacionBase, puntuacionNueva, variacion(puntuacionBase, puntuacionNueva),
+                    asignacionBase, asignacionNueva, variacion(asignacionBase, asignacionNueva),
+                    otro.path("primaryMetric").path("scoreUnit").asText());
+        }
+    }
+
+    private static Map<String, JsonNode> leer(File archivo) throws IOException {
+        Map<String, JsonNode> resultados = new TreeMap<>();
+        for (JsonNode resultado : new ObjectMapper().readTree(archivo)) {
+            Map<String, String> parametros = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> campos = resultado.path("params").fields();
+            while (campos.hasNext()) {
+                Map.Entry<String, JsonNode> campo = campos.next();
+                parametros.put(campo.getKey(), campo.getValue().asText());
+            }
+            String nombre = resultado.path("benchmark").asText().replace("com.banco.benchmark.", "");
+            resultados.put(parametros.isEmpty() ? nombre : nombre + " " + parametros, resultado);
+        }
+        return resultados;
+    }
+
+    private static double variacion(double base, double nuevo) {
+        return base == 0 ? Double.NaN : (nuevo - base) * 100 / base;
+    }
+}
@@ -0,0 +1,72 @@
+package com.banco.benchmark;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ensambla componentes del banco sin levantar el contexto de Spring: rellena los campos
+ * {@code @Autowired} con las dependencias dadas (los que no tienen candidata quedan nulos),
+ * resuelve los {@code @Value} con las propiedades dadas, las del sistema o su valor por
+ * defecto, e invoca los métodos {@code @PostConstruct}.
+ */
+final class Componentes {
+    private Componentes() {
+    }
+
+    static <T> T crear(Class<T> tipo, Object... dependencias) {
+        return crear(tipo, Map.of(), dependencias);
+    }
+
+    static <T> T crear(Class<T> tipo, Map<String, Object> propiedades, Object... dependencias) {
+        StandardEnvironment entorno = new StandardEnvironment();
+        entorno.getPropertySources().addFirst(new MapPropertySource("benchmark", propiedades));
+        try {
+            T componente = tipo.getDeclaredConstructor().newInstance();
+            for (Field campo : tipo.getDeclaredFields()) {
+                Object valor = null;
+                if (campo.isAnnotationPresent(Autowired.class)) {
+                    valor = candidata(campo.getType(), dependencias);
+                } else if (campo.isAnnotationPresent(Value.class)) {
+                    String texto = entorno.resolveRequiredPlaceholders(campo.getAnnotation(Value.class).value());
+                    valor = DefaultConversionService.getSharedInstance().convert(texto, campo.getType());
+                }
+                if (valor != null) {
+                    campo.setAccessible(true);
+                    campo.set(componente, valor);
+                }
+            }
+            for (Method metodo : tipo.getDeclaredMethods()) {
+                if (metodo.isAnnotationPresent(PostConstruct.class)) {
+                    metodo.setAccessible(true);
+                    metodo.invoke(componente);
+                }
+            }
+            return componente;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo ensamblar " + tipo.getSimpleName(), e);
+        }
+    }
+
+    private static Object candidata(Class<?> tipo, Object[] dependencias) {
+        List<Object> candidatas = new ArrayList<>();
+        for (Object dependencia : dependencias) {
+            if (tipo.isInstance(dependencia)) {
+                candidatas.add(dependencia);
+            }
+        }
+        if (candidatas.size() > 1) {
+            throw new IllegalStateException("Varias dependencias posibles para " + tipo.getSimpleName());
+        }
+        return candidatas.isEmpty() ? null : candidatas.get(0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.banco.benchmark;
+
+import com.banco.metricas.MetricasEtapas;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de medir una etapa: la misma cadena corta de Mono sin medir, medida siempre y
+ * muestreada. Multiplicado por las etapas de una transferencia da el coste fijo de la
+ * instrumentación por petición, que ServiciosBenchmark compara contra la operación completa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtapasBenchmark {
+
+    @Param({"true", "false"})
+    boolean histogramas;
+
+    private MetricasEtapas.Etapa siempre;
+    private MetricasEtapas.Etapa muestreada;
+    private Integer valor;
+
+    @Setup
+    public void preparar() {
+        MetricasEtapas metricas = Componentes.crear(MetricasEtapas.class,
+                Map.of("banco.metricas.histogramas", histogramas),
+                new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        siempre = metricas.etapa("banco.benchmark.etapa", "etapa", "siempre");
+        muestreada = metricas.etapaMuestreada("banco.benchmark.etapa", "etapa", "muestreada");
+        valor = 42;
+    }
+
+    @Benchmark
+    public Integer sinMedir() {
+        return cadena(Mono.fromCallable(() -> valor)).block();
+    }
+
+    @Benchmark
+    public Integer medida() {
+        return cadena(siempre.medir(Mono.fromCallable(() -> valor))).block();
+    }
+
+    @Benchmark
+    public Integer muestreada() {
+        return cadena(muestreada.medir(Mono.fromCallable(() -> valor))).block();
+    }
+
+    private static Mono<Integer> cadena(Mono<Integer> mono) {
+        return mono.map(v -> v + 1).flatMap(v -> Mono.just(v * 2));
+    }
+}
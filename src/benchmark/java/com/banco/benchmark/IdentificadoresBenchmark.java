@@ -0,0 +1,56 @@
+package com.banco.benchmark;
+
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generación de identificadores con varios hilos a la vez: los formatos anteriores
+ * (UUID aleatorio, milisegundos con Math.random o String.format) frente a Snowflake.
+ * Con -prof gc se compara además la asignación por id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class IdentificadoresBenchmark {
+    private final Identificadores identificadores = new Identificadores(new Snowflake(1));
+    private final AtomicLong secuenciaReferencia = new AtomicLong();
+
+    @Benchmark
+    public String uuidAnterior() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String numeroCuentaAnterior() {
+        return "ACC" + System.currentTimeMillis() + (int) (Math.random() * 10000);
+    }
+
+    @Benchmark
+    public String codigoReferenciaAnterior() {
+        return "TRF" + System.currentTimeMillis() + String.format("%04d", secuenciaReferencia.getAndIncrement() % 10000);
+    }
+
+    @Benchmark
+    public String id() {
+        return identificadores.nuevoId();
+    }
+
+    @Benchmark
+    public String numeroCuenta() {
+        return identificadores.nuevoNumeroCuenta();
+    }
+
+    @Benchmark
+    public String codigoReferencia() {
+        return identificadores.nuevoCodigoReferencia();
+    }
+}
@@ -0,0 +1,75 @@
+package com.banco.benchmark;
+
+import com.banco.dto.ResultadoCuentaDTO;
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.service.CuentaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importación masiva de cuentas sobre el repositorio en memoria: lectura de las líneas (CSV o
+ * NDJSON), validación en paralelo, reserva de números por bloque e inserción por bloques. Cada
+ * operación importa {@code filas} cuentas nuevas, así que filas / tiempo por operación da las
+ * cuentas por segundo que el servicio puede entregar a Mongo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportacionBenchmark {
+    @Param({"50000"})
+    int filas;
+
+    @Param({"csv", "ndjson"})
+    String formato;
+
+    private RepositoriosEnMemoria repositorios;
+    private CuentaService cuentaService;
+    private List<String> lineas;
+
+    @Setup
+    public void preparar() {
+        repositorios = new RepositoriosEnMemoria();
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        MetricasEtapas metricasEtapas = Componentes.crear(MetricasEtapas.class, registro);
+        cuentaService = Componentes.crear(CuentaService.class, repositorios.cuentas(),
+                new Identificadores(new Snowflake(1)), metricasEtapas,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper());
+
+        lineas = new ArrayList<>(filas + 1);
+        if (formato.equals("csv")) {
+            lineas.add("nombreTitular,email,saldo,moneda");
+        }
+        for (int i = 0; i < filas; i++) {
+            // Una de cada cien sin email, para que también se midan los rechazos
+            String email = i % 100 == 0 ? "" : "titular" + i + "@banco.com";
+            lineas.add(formato.equals("csv")
+                    ? "Titular " + i + "," + email + ",1000.00,USD"
+                    : "{\"nombreTitular\":\"Titular " + i + "\",\"email\":\"" + email
+                            + "\",\"saldo\":1000.00,\"moneda\":\"USD\"}");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void vaciar() {
+        repositorios.vaciarCuentas();
+    }
+
+    @Benchmark
+    public ResultadoCuentaDTO importar() {
+        Flux<String> flujo = Flux.fromIterable(lineas);
+        return (formato.equals("csv") ? cuentaService.importarCsv(flujo) : cuentaService.importar(flujo))
+                .blockLast();
+    }
+}
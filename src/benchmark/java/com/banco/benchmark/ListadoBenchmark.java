@@ -0,0 +1,100 @@
+package com.banco.benchmark;
+
+import com.banco.dto.CuentaDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificación de GET /cuentas con 1M documentos: arreglo JSON frente a NDJSON y documento
+ * completo frente a proyección. primerByte mide el tiempo hasta el primer buffer emitido y
+ * completo el recorrido entero; con -prof gc se obtiene la asignación de memoria por corrida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+public class ListadoBenchmark {
+
+    @Param({"1000000"})
+    int documentos;
+
+    @Param({"application/json", "application/x-ndjson"})
+    String formato;
+
+    @Param({"", "numeroCuenta,saldo"})
+    String campos;
+
+    private Jackson2JsonEncoder encoder;
+    private MimeType mime;
+    private Set<String> proyeccion;
+    private ResolvableType tipo;
+
+    @Setup
+    public void preparar() {
+        encoder = new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build());
+        mime = MimeType.valueOf(formato);
+        proyeccion = campos.isEmpty() ? Set.of() : new LinkedHashSet<>(List.of(campos.split(",")));
+        tipo = ResolvableType.forClass(proyeccion.isEmpty() ? CuentaDTO.class : Map.class);
+    }
+
+    @Benchmark
+    public Long completo() {
+        return codificar().reduce(0L, Long::sum).block();
+    }
+
+    @Benchmark
+    public Long primerByte() {
+        return codificar().next().block();
+    }
+
+    private Flux<Long> codificar() {
+        Flux<?> fuente = Flux.range(0, documentos).map(this::cuenta);
+        return encoder.encode(fuente, DefaultDataBufferFactory.sharedInstance, tipo, mime, Collections.emptyMap())
+                .map(buffer -> {
+                    long bytes = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                });
+    }
+
+    // Con proyección el servicio entrega un mapa con solo los campos pedidos, en ese orden
+    private Object cuenta(int i) {
+        if (proyeccion.isEmpty()) {
+            return CuentaDTO.builder()
+                    .id("id-" + i)
+                    .numeroCuenta("ACC" + (1_000_000 + i))
+                    .nombreTitular("Titular " + i)
+                    .email("titular" + i + "@banco.com")
+                    .saldo(BigDecimal.valueOf(i, 2))
+                    .moneda("USD")
+                    .activa(Boolean.TRUE)
+                    .build();
+        }
+        Map<String, Object> cuenta = new LinkedHashMap<>();
+        for (String campo : proyeccion) {
+            cuenta.put(campo, switch (campo) {
+                case "numeroCuenta" -> "ACC" + (1_000_000 + i);
+                case "saldo" -> BigDecimal.valueOf(i, 2);
+                default -> null;
+            });
+        }
+        return cuenta;
+    }
+}
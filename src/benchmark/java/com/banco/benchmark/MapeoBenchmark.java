@@ -0,0 +1,90 @@
+package com.banco.benchmark;
+
+import com.banco.dto.CuentaDTO;
+import com.banco.dto.TransferenciaDTO;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.service.CuentaService;
+import com.banco.service.TransferenciaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de entidades a DTO (los convertirADTO privados de ambos servicios, invocados con
+ * MethodHandle) y serialización JSON de los DTO con el ObjectMapper que configura Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeoBenchmark {
+    private static final MethodHandle CUENTA_A_DTO = convertidor(CuentaService.class, Cuenta.class, CuentaDTO.class);
+    private static final MethodHandle TRANSFERENCIA_A_DTO =
+            convertidor(TransferenciaService.class, Transferencia.class, TransferenciaDTO.class);
+
+    private CuentaService cuentaService;
+    private TransferenciaService transferenciaService;
+    private Cuenta cuenta;
+    private Transferencia transferencia;
+    private CuentaDTO cuentaDTO;
+    private TransferenciaDTO transferenciaDTO;
+    private ObjectWriter escritorCuenta;
+    private ObjectWriter escritorTransferencia;
+
+    @Setup
+    public void preparar() throws Throwable {
+        cuentaService = new CuentaService();
+        transferenciaService = new TransferenciaService();
+        LocalDateTime ahora = LocalDateTime.now();
+        cuenta = new Cuenta("01JBXK4Q3W2ZT", "ACC01234567890123456789", "Titular de prueba", "titular@banco.com",
+                new BigDecimal("15234.57"), "USD", ahora, ahora, true, new BigDecimal("10000.00"));
+        transferencia = new Transferencia("01JBXK4Q3W2ZV", "ACC01234567890123456789", "ACC01234567890123456797",
+                new BigDecimal("250.00"), "USD", "EXITOSA", "Pago de alquiler", ahora, ahora,
+                "TRF01JBXK4Q3W2ZW", null, null, null, null);
+        cuentaDTO = cuentaADTO();
+        transferenciaDTO = transferenciaADTO();
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        escritorCuenta = mapper.writerFor(CuentaDTO.class);
+        escritorTransferencia = mapper.writerFor(TransferenciaDTO.class);
+    }
+
+    @Benchmark
+    public CuentaDTO cuentaADTO() throws Throwable {
+        return (CuentaDTO) CUENTA_A_DTO.invokeExact(cuentaService, cuenta);
+    }
+
+    @Benchmark
+    public TransferenciaDTO transferenciaADTO() throws Throwable {
+        return (TransferenciaDTO) TRANSFERENCIA_A_DTO.invokeExact(transferenciaService, transferencia);
+    }
+
+    @Benchmark
+    public byte[] serializarCuenta() throws Exception {
+        return escritorCuenta.writeValueAsBytes(cuentaDTO);
+    }
+
+    @Benchmark
+    public byte[] serializarTransferencia() throws Exception {
+        return escritorTransferencia.writeValueAsBytes(transferenciaDTO);
+    }
+
+    private static MethodHandle convertidor(Class<?> servicio, Class<?> entidad, Class<?> dto) {
+        try {
+            return MethodHandles.privateLookupIn(servicio, MethodHandles.lookup())
+                    .findVirtual(servicio, "convertirADTO", MethodType.methodType(dto, entidad));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.banco.benchmark;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.cache.CacheCuentas;
+import com.banco.cambio.TiposCambio;
+import com.banco.concurrencia.SecuenciadorCuentas;
+import com.banco.eventos.BusEventos;
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.motor.MotorSaldos;
+import com.banco.service.TransferenciaService;
+import com.banco.velocidad.ControlVelocidad;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Transferencias por segundo de TransferenciaService con muchas solicitudes en vuelo, con el
+ * motor de saldos (bitácora durable en target/) o con el camino de siempre sobre los
+ * repositorios en memoria. Ese camino no paga la red ni Mongo ni escribe nada durable, así
+ * que es una cota superior de lo que da hoy un nodo: con Mongo cada transferencia son además
+ * tres o cuatro viajes de ida y vuelta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MotorBenchmark {
+    private static final int LOTE = 20_000;
+    private static final BigDecimal MONTO = new BigDecimal("1.00");
+
+    @Param({"motor", "repositorios"})
+    String modo;
+
+    @Param({"10000"})
+    int cuentas;
+
+    @Param({"512"})
+    int concurrencia;
+
+    private Path directorio;
+    private Bitacora bitacora;
+    private MotorSaldos motor;
+    private RepositoriosEnMemoria repositorios;
+    private TransferenciaService transferenciaService;
+    private String[] numeros;
+    private Transferencia[] transferencias;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        repositorios = new RepositoriosEnMemoria();
+        Identificadores identificadores = new Identificadores(new Snowflake(1));
+        numeros = new String[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            numeros[i] = identificadores.nuevoNumeroCuenta();
+            repositorios.guardar(new Cuenta(identificadores.nuevoId(), numeros[i], "Titular " + i,
+                    "titular" + i + "@banco.com", new BigDecimal("1000000.00"), "USD",
+                    LocalDateTime.now(), LocalDateTime.now(), true, new BigDecimal("1000000.00")));
+        }
+
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        boolean conMotor = "motor".equals(modo);
+        if (conMotor) {
+            Path target = Path.of("target");
+            Files.createDirectories(target);
+            directorio = Files.createTempDirectory(target, "motor-");
+            bitacora = new Bitacora(registro, directorio, 256 * 1024 * 1024, 8192);
+        } else {
+            bitacora = Componentes.crear(Bitacora.class, registro);
+        }
+        TiposCambio tiposCambio = Componentes.crear(TiposCambio.class,
+                Map.of("banco.cambios.refresco-segundos", 0), registro);
+        motor = Componentes.crear(MotorSaldos.class, Map.of("banco.motor.habilitado", conMotor),
+                bitacora, repositorios.cuentas(), registro, tiposCambio);
+
+        Object[] dependencias = {repositorios.cuentas(), repositorios.transferencias(), repositorios.agregados(),
+                registro, identificadores, Validation.buildDefaultValidatorFactory().getValidator(), bitacora, motor, tiposCambio,
+                Componentes.crear(CacheCuentas.class, Map.of("banco.cache.cuentas.habilitada", false),
+                        repositorios.cuentas(), registro),
+                Componentes.crear(SecuenciadorCuentas.class, registro),
+                Componentes.crear(BusEventos.class, registro),
+                Componentes.crear(MetricasEtapas.class, registro),
+                Componentes.crear(ControlVelocidad.class, Map.of("banco.velocidad.habilitada", false), registro)};
+        transferenciaService = Componentes.crear(TransferenciaService.class, dependencias);
+
+        SplittableRandom random = new SplittableRandom(42);
+        transferencias = new Transferencia[LOTE];
+        for (int i = 0; i < LOTE; i++) {
+            int origen = random.nextInt(cuentas);
+            int destino = (origen + 1 + random.nextInt(cuentas - 1)) % cuentas;
+            transferencias[i] = new Transferencia(null, numeros[origen], numeros[destino], MONTO, "USD",
+                    null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void limpiar() {
+        repositorios.vaciarTransferencias();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public Long realizarTransferencias() {
+        return Flux.range(0, LOTE)
+                .flatMap(i -> transferenciaService.realizarTransferencia(copia(transferencias[i])), concurrencia)
+                .count()
+                .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        motor.cerrar();
+        bitacora.cerrar();
+        if (directorio != null) {
+            try (Stream<Path> rutas = Files.walk(directorio)) {
+                rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+            }
+        }
+    }
+
+    private static Transferencia copia(Transferencia t) {
+        return new Transferencia(null, t.getCuentaOrigen(), t.getCuentaDestino(), t.getMonto(), t.getMoneda(),
+                null, null, null, null, null, null, null, null, null);
+    }
+}
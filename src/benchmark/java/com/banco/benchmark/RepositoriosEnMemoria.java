@@ -0,0 +1,166 @@
+package com.banco.benchmark;
+
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.SaldoCuenta;
+import com.banco.model.Transferencia;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.CuentaRepository;
+import com.banco.repository.TransferenciaRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repositorios reactivos respaldados por mapas concurrentes, para medir los servicios sin
+ * la red ni Mongo. Implementan solo las operaciones que usan las transferencias individuales,
+ * las lecturas de cuentas, la importación de cuentas y el motor de saldos; el resto lanza UnsupportedOperationException. Como el driver,
+ * devuelven copias de los documentos y aplican los débitos de forma condicional y atómica.
+ */
+final class RepositoriosEnMemoria {
+    private final ConcurrentHashMap<String, Cuenta> cuentas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Transferencia> transferencias = new ConcurrentHashMap<>();
+    // Índice único de email de las cuentas insertadas con insertarNuevas
+    private final Set<String> emails = ConcurrentHashMap.newKeySet();
+    private final AtomicLong movimientosAgregados = new AtomicLong();
+
+    void guardar(Cuenta cuenta) {
+        cuentas.put(cuenta.getNumeroCuenta(), copia(cuenta));
+    }
+
+    BigDecimal saldoTotal() {
+        return cuentas.values().stream().map(Cuenta::getSaldo).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    int numeroTransferencias() {
+        return transferencias.size();
+    }
+
+    void vaciarTransferencias() {
+        transferencias.clear();
+    }
+
+    int numeroCuentas() {
+        return cuentas.size();
+    }
+
+    void vaciarCuentas() {
+        cuentas.clear();
+        emails.clear();
+    }
+
+    CuentaRepository cuentas() {
+        return proxy(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findByNumeroCuenta" -> Mono.justOrEmpty(cuentas.get((String) args[0])).map(this::copia);
+            case "findByEmail" -> Mono.justOrEmpty(cuentas.values().stream()
+                    .filter(c -> args[0].equals(c.getEmail())).findFirst()).map(this::copia);
+            case "buscarSaldo" -> Mono.justOrEmpty(cuentas.get((String) args[0])).map(Cuenta::getSaldo);
+            case "debitar" -> ajustar((String) args[0], ((BigDecimal) args[1]).negate(), true);
+            case "acreditar" -> ajustar((String) args[0], (BigDecimal) args[1], false);
+            case "compensar" -> Mono.justOrEmpty(cuentas.computeIfPresent((String) args[0],
+                    (k, c) -> conSaldo(c, c.getSaldo().add((BigDecimal) args[1])))).map(this::copia);
+            case "save" -> Mono.fromCallable(() -> {
+                guardar((Cuenta) args[0]);
+                return (Cuenta) args[0];
+            });
+            case "insertarNuevas" -> Mono.fromCallable(() -> insertarNuevas((List<?>) args[0]));
+            case "listarSaldos" -> Flux.fromIterable(cuentas.values())
+                    .map(c -> new SaldoCuenta(c.getNumeroCuenta(), c.getSaldo(), c.getMoneda(), c.getActiva(), null));
+            case "guardarSaldos" -> Mono.fromRunnable(() -> ((Map<?, ?>) args[0]).forEach((numero, saldo) ->
+                    cuentas.computeIfPresent((String) numero, (k, c) -> conSaldo(c, (BigDecimal) saldo))));
+            default -> objeto(p, metodo.getName(), args);
+        });
+    }
+
+    TransferenciaRepository transferencias() {
+        return proxy(TransferenciaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "insert" -> args[0] instanceof Transferencia t
+                    ? Mono.fromCallable(() -> insertar(t))
+                    : Flux.fromIterable((Iterable<?>) args[0]).map(t -> insertar((Transferencia) t));
+            case "findByCodigoReferencia" -> Mono.justOrEmpty(transferencias.get((String) args[0]));
+            default -> objeto(p, metodo.getName(), args);
+        });
+    }
+
+    AgregadoDiarioRepository agregados() {
+        return proxy(AgregadoDiarioRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "acumular" -> Mono.fromRunnable(() ->
+                    movimientosAgregados.addAndGet(2L * ((Collection<?>) args[0]).size()));
+            default -> objeto(p, metodo.getName(), args);
+        });
+    }
+
+    // Mismas condiciones que el findAndModify de CuentaRepositoryCustomImpl
+    private Mono<Cuenta> ajustar(String numeroCuenta, BigDecimal delta, boolean exigirSaldo) {
+        return Mono.fromCallable(() -> {
+            boolean[] aplicado = {false};
+            Cuenta resultado = cuentas.computeIfPresent(numeroCuenta, (k, c) -> {
+                if (!Boolean.TRUE.equals(c.getActiva())
+                        || exigirSaldo && c.getSaldo().compareTo(delta.negate()) < 0
+                        || !exigirSaldo && c.getSaldo().add(delta).compareTo(Dinero.SALDO_MAXIMO) > 0) {
+                    return c;
+                }
+                aplicado[0] = true;
+                return conSaldo(c, c.getSaldo().add(delta));
+            });
+            return aplicado[0] ? copia(resultado) : null;
+        });
+    }
+
+    // Como el insertMany sin orden: salta las que repiten un email y devuelve el resto
+    private List<Cuenta> insertarNuevas(List<?> nuevas) {
+        List<Cuenta> insertadas = new ArrayList<>(nuevas.size());
+        for (Object nueva : nuevas) {
+            Cuenta cuenta = (Cuenta) nueva;
+            if (emails.add(cuenta.getEmail())) {
+                guardar(cuenta);
+                insertadas.add(cuenta);
+            }
+        }
+        return insertadas;
+    }
+
+    private Transferencia insertar(Transferencia transferencia) {
+        if (transferencias.putIfAbsent(transferencia.getCodigoReferencia(), transferencia) != null) {
+            throw new IllegalStateException("Código de referencia duplicado: " + transferencia.getCodigoReferencia());
+        }
+        return transferencia;
+    }
+
+    private Cuenta conSaldo(Cuenta cuenta, BigDecimal saldo) {
+        Cuenta nueva = copia(cuenta);
+        nueva.setSaldo(saldo);
+        nueva.setUltimaActualizacion(LocalDateTime.now());
+        return nueva;
+    }
+
+    private Cuenta copia(Cuenta c) {
+        return new Cuenta(c.getId(), c.getNumeroCuenta(), c.getNombreTitular(), c.getEmail(), c.getSaldo(),
+                c.getMoneda(), c.getFechaCreacion(), c.getUltimaActualizacion(), c.getActiva(), c.getSaldoBase());
+    }
+
+    private static Object objeto(Object proxy, String metodo, Object[] args) {
+        return switch (metodo) {
+            case "toString" -> "repositorio en memoria";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(metodo);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> tipo, InvocationHandler manejador) {
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, manejador);
+    }
+}
@@ -0,0 +1,66 @@
+package com.banco.benchmark;
+
+import org.bson.types.Decimal128;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aritmética de saldos con BigDecimal tal como la hace el camino de una transferencia:
+ * comprobar fondos y restar, sumar, y convertir a Decimal128 para el filtro del débito.
+ * sumarSaldos reproduce la conciliación de muchas cuentas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaldoBenchmark {
+    private static final int SALDOS = 1024;
+
+    private BigDecimal[] saldos;
+    private BigDecimal[] montos;
+
+    @Setup
+    public void preparar() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        saldos = new BigDecimal[SALDOS];
+        montos = new BigDecimal[SALDOS];
+        for (int i = 0; i < SALDOS; i++) {
+            saldos[i] = BigDecimal.valueOf(random.nextLong(100_000_000L), 2);
+            montos[i] = BigDecimal.valueOf(random.nextLong(1, 500_000L), 2);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal debitar() {
+        int i = ThreadLocalRandom.current().nextInt(SALDOS);
+        BigDecimal saldo = saldos[i];
+        BigDecimal monto = montos[i];
+        return saldo.compareTo(monto) >= 0 ? saldo.subtract(monto) : saldo;
+    }
+
+    @Benchmark
+    public BigDecimal acreditar() {
+        int i = ThreadLocalRandom.current().nextInt(SALDOS);
+        return saldos[i].add(montos[i]);
+    }
+
+    @Benchmark
+    public Decimal128 aDecimal128() {
+        return new Decimal128(montos[ThreadLocalRandom.current().nextInt(SALDOS)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SALDOS)
+    public BigDecimal sumarSaldos() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal saldo : saldos) {
+            total = total.add(saldo);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,87 @@
+package com.banco.benchmark;
+
+import com.banco.concurrencia.SecuenciadorCuentas;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lote de transferencias con cuentas elegidas según Zipf. Cada operación lee y reescribe
+ * los dos saldos con CAS optimista, como haría una actualización condicional sobre un
+ * documento caliente: sin secuenciador los reintentos se disparan en las cuentas calientes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecuenciadorBenchmark {
+    private static final int LOTE = 10_000;
+    private static final BigDecimal MONTO = BigDecimal.ONE;
+
+    @Param({"1000"})
+    int cuentas;
+
+    @Param({"1.2"})
+    double exponente;
+
+    @Param({"0", "16", "64"})
+    int carriles;
+
+    private Zipf zipf;
+    private SecuenciadorCuentas secuenciador;
+    private AtomicReferenceArray<BigDecimal> saldos;
+    private String[] numeros;
+
+    @Setup
+    public void preparar() {
+        zipf = new Zipf(cuentas, exponente);
+        secuenciador = carriles == 0 ? null : new SecuenciadorCuentas(new SimpleMeterRegistry(), carriles);
+        saldos = new AtomicReferenceArray<>(cuentas);
+        numeros = new String[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            saldos.set(i, BigDecimal.valueOf(1_000_000));
+            numeros[i] = "ACC" + (100000 + i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public Long transferencias() {
+        return Flux.range(0, LOTE)
+                .flatMap(i -> {
+                    int origen = zipf.siguiente();
+                    int destino = zipf.distintoDe(origen);
+                    Mono<Integer> operacion = Mono.fromCallable(() -> mover(origen, destino))
+                            .subscribeOn(Schedulers.parallel());
+                    return secuenciador == null
+                            ? operacion
+                            : secuenciador.ejecutar(numeros[origen], numeros[destino], () -> operacion);
+                }, 256)
+                .count()
+                .block();
+    }
+
+    private int mover(int origen, int destino) {
+        int reintentos = 0;
+        while (!ajustar(origen, MONTO.negate())) {
+            reintentos++;
+        }
+        while (!ajustar(destino, MONTO)) {
+            reintentos++;
+        }
+        return reintentos;
+    }
+
+    private boolean ajustar(int cuenta, BigDecimal delta) {
+        BigDecimal actual = saldos.get(cuenta);
+        return saldos.compareAndSet(cuenta, actual, actual.add(delta));
+    }
+}
@@ -0,0 +1,129 @@
+package com.banco.benchmark;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.cache.CacheCuentas;
+import com.banco.cambio.TiposCambio;
+import com.banco.concurrencia.SecuenciadorCuentas;
+import com.banco.dto.CuentaDTO;
+import com.banco.dto.TransferenciaDTO;
+import com.banco.eventos.BusEventos;
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.motor.MotorSaldos;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.service.CuentaService;
+import com.banco.service.TransferenciaService;
+import com.banco.velocidad.ControlVelocidad;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino completo de los servicios sobre repositorios en memoria: una transferencia
+ * (validación, secuenciador, débito y crédito condicionales, inserción, agregados, eventos
+ * y mapeo) y la lectura de una cuenta por número, con la caché y las métricas por etapa
+ * encendidas o apagadas.
+ * Mide el coste propio de la aplicación, sin red ni base de datos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ServiciosBenchmark {
+    private static final BigDecimal MONTO = new BigDecimal("1.00");
+
+    @Param({"10000"})
+    int cuentas;
+
+    @Param({"true", "false"})
+    boolean cache;
+
+    // Temporizadores por etapa con histograma sobre un registro Prometheus, como en producción
+    @Param({"true", "false"})
+    boolean metricas;
+
+    private RepositoriosEnMemoria repositorios;
+    private TransferenciaService transferenciaService;
+    private CuentaService cuentaService;
+    private String[] numeros;
+
+    @Setup
+    public void preparar() {
+        repositorios = new RepositoriosEnMemoria();
+        Identificadores identificadores = new Identificadores(new Snowflake(1));
+        numeros = new String[cuentas];
+        for (int i = 0; i < cuentas; i++) {
+            numeros[i] = identificadores.nuevoNumeroCuenta();
+            repositorios.guardar(new Cuenta(identificadores.nuevoId(), numeros[i], "Titular " + i,
+                    "titular" + i + "@banco.com", new BigDecimal("1000000.00"), "USD",
+                    LocalDateTime.now(), LocalDateTime.now(), true, new BigDecimal("1000000.00")));
+        }
+
+        PrometheusMeterRegistry registro = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        Object[] dependencias = {repositorios.cuentas(), repositorios.transferencias(), repositorios.agregados(),
+                registro, identificadores, Validation.buildDefaultValidatorFactory().getValidator()};
+        CacheCuentas cacheCuentas = Componentes.crear(CacheCuentas.class,
+                Map.of("banco.cache.cuentas.habilitada", cache), dependencias);
+        SecuenciadorCuentas secuenciador = Componentes.crear(SecuenciadorCuentas.class, registro);
+        BusEventos busEventos = Componentes.crear(BusEventos.class, registro);
+        MetricasEtapas metricasEtapas = Componentes.crear(MetricasEtapas.class,
+                Map.of("banco.metricas.etapas.habilitadas", metricas), registro);
+        // Deshabilitada: las transferencias se insertan en el repositorio; BitacoraBenchmark mide la bitácora
+        Bitacora bitacora = Componentes.crear(Bitacora.class, registro);
+        // También deshabilitado; MotorBenchmark mide el motor de saldos
+        // Sin fichero de tipos de cambio: todas las cuentas del benchmark están en la misma moneda
+        TiposCambio tiposCambio = Componentes.crear(TiposCambio.class,
+                Map.of("banco.cambios.refresco-segundos", 0), registro);
+        MotorSaldos motor = Componentes.crear(MotorSaldos.class, bitacora, registro, tiposCambio);
+        // Deshabilitado: el benchmark repite cuentas sin parar; VelocidadBenchmark mide las reglas
+        ControlVelocidad controlVelocidad = Componentes.crear(ControlVelocidad.class,
+                Map.of("banco.velocidad.habilitada", false), registro);
+
+        transferenciaService = Componentes.crear(TransferenciaService.class, concatenar(dependencias,
+                cacheCuentas, secuenciador, busEventos, metricasEtapas, bitacora, motor, tiposCambio, controlVelocidad));
+        cuentaService = Componentes.crear(CuentaService.class,
+                concatenar(dependencias, cacheCuentas, busEventos, metricasEtapas, motor));
+    }
+
+    @TearDown(Level.Iteration)
+    public void limpiar() {
+        repositorios.vaciarTransferencias();
+    }
+
+    @Benchmark
+    public TransferenciaDTO realizarTransferencia() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int origen = random.nextInt(cuentas);
+        int destino = (origen + 1 + random.nextInt(cuentas - 1)) % cuentas;
+        Transferencia transferencia = new Transferencia();
+        transferencia.setCuentaOrigen(numeros[origen]);
+        transferencia.setCuentaDestino(numeros[destino]);
+        transferencia.setMonto(MONTO);
+        transferencia.setMoneda("USD");
+        return transferenciaService.realizarTransferencia(transferencia).block();
+    }
+
+    @Benchmark
+    public CuentaDTO obtenerPorNumeroCuenta() {
+        return cuentaService.obtenerPorNumeroCuenta(numeros[ThreadLocalRandom.current().nextInt(cuentas)]).block();
+    }
+
+    private static Object[] concatenar(Object[] comunes, Object... propias) {
+        Object[] todas = new Object[comunes.length + propias.length];
+        System.arraycopy(comunes, 0, todas, 0, comunes.length);
+        System.arraycopy(propias, 0, todas, comunes.length, propias.length);
+        return todas;
+    }
+}
@@ -0,0 +1,59 @@
+package com.banco.benchmark;
+
+import com.banco.model.Transferencia;
+import com.banco.velocidad.AnotacionVelocidad;
+import com.banco.velocidad.ControlVelocidad;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de evaluar las reglas de velocidad por transferencia con las reglas por defecto
+ * (cantidad, importe y destinos nuevos). Las cuentas se eligen con Zipf, así que hay cuentas
+ * calientes con contadores llenos y muchas frías que crean su entrada; los límites son altos
+ * para que ninguna se rechace y siempre se recorra todo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VelocidadBenchmark {
+    private static final int TRANSFERENCIAS = 1 << 16;
+
+    @Param({"100000"})
+    int cuentas;
+
+    private ControlVelocidad control;
+    private Transferencia[] transferencias;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        control = Componentes.crear(ControlVelocidad.class,
+                Map.of("banco.velocidad.habilitada", true,
+                        "banco.velocidad.reglas", "cantidad:10m:1000000000,importe:10m:1000000000000:USD,destinos:1h:1000000000"),
+                new SimpleMeterRegistry());
+        Zipf zipf = new Zipf(cuentas, 0.99);
+        SplittableRandom random = new SplittableRandom(42);
+        transferencias = new Transferencia[TRANSFERENCIAS];
+        for (int i = 0; i < TRANSFERENCIAS; i++) {
+            Transferencia t = new Transferencia();
+            t.setCuentaOrigen("ACC" + zipf.siguiente(random));
+            t.setCuentaDestino("ACC" + random.nextInt(cuentas));
+            t.setMonto(BigDecimal.valueOf(random.nextInt(1, 100_000), 2));
+            transferencias[i] = t;
+        }
+    }
+
+    @Benchmark
+    public AnotacionVelocidad registrar() {
+        Transferencia t = transferencias[siguiente++ & (TRANSFERENCIAS - 1)];
+        return control.registrar(t, "USD");
+    }
+}
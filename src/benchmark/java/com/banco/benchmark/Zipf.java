@@ -0,0 +1,49 @@
+package com.banco.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Distribución de Zipf sobre [0, n): pocos elementos concentran la mayoría de las muestras,
+ * como las cuentas de nómina y de comercios.
+ */
+public final class Zipf {
+    private final double[] acumulada;
+
+    public Zipf(int n, double exponente) {
+        acumulada = new double[n];
+        double suma = 0;
+        for (int i = 0; i < n; i++) {
+            suma += 1.0 / Math.pow(i + 1, exponente);
+            acumulada[i] = suma;
+        }
+        for (int i = 0; i < n; i++) {
+            acumulada[i] /= suma;
+        }
+    }
+
+    public int siguiente() {
+        return siguiente(ThreadLocalRandom.current());
+    }
+
+    // Con un generador con semilla la secuencia de cuentas es reproducible entre corridas
+    public int siguiente(RandomGenerator random) {
+        double u = random.nextDouble();
+        int i = Arrays.binarySearch(acumulada, u);
+        return i >= 0 ? i : Math.min(-i - 1, acumulada.length - 1);
+    }
+
+    // Segundo elemento distinto del primero para formar un par origen/destino
+    public int distintoDe(int otro) {
+        return distintoDe(otro, ThreadLocalRandom.current());
+    }
+
+    public int distintoDe(int otro, RandomGenerator random) {
+        int i;
+        do {
+            i = siguiente(random);
+        } while (i == otro);
+        return i;
+    }
+}
@@ -0,0 +1,119 @@
+package com.banco.benchmark.carga;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parámetros de la prueba de carga como pares clave=valor en la línea de comandos.
+ * Cualquier clave no indicada toma el valor por defecto de {@link #POR_DEFECTO}.
+ */
+final class ConfiguracionCarga {
+    static final Map<String, String> POR_DEFECTO = new LinkedHashMap<>();
+    private static final Map<String, String> MEZCLAS = Map.of(
+            "escritura", "transferencia:100",
+            "mixta", "transferencia:60,cuenta:25,historial:10,extracto:5",
+            "lectura", "cuenta:60,historial:30,extracto:10");
+
+    static {
+        POR_DEFECTO.put("mongo.uri", "");              // vacío: se arranca un mongod propio
+        POR_DEFECTO.put("mongod", "mongod");           // ejecutable para el mongod propio
+        POR_DEFECTO.put("tasa", "500");                // llegadas por segundo, fijas
+        POR_DEFECTO.put("duracion", "60");             // segundos medidos
+        POR_DEFECTO.put("calentamiento", "15");        // segundos previos que no se miden
+        POR_DEFECTO.put("cuentas", "1000");
+        POR_DEFECTO.put("saldo-inicial", "100000.00");
+        POR_DEFECTO.put("monto-maximo", "500");
+        POR_DEFECTO.put("sesgo", "zipf:1.1");          // uniforme | zipf:<exponente>
+        POR_DEFECTO.put("mezcla", "mixta");            // escritura | mixta | lectura | op:peso,...
+        POR_DEFECTO.put("conexiones", "256");
+        POR_DEFECTO.put("maximo-en-vuelo", "20000");   // por encima se descarta la llegada
+        POR_DEFECTO.put("timeout-ms", "10000");
+        POR_DEFECTO.put("semilla", "42");
+        // Con el control de admisión o las reglas de velocidad se mediría su 429/422, no el servicio
+        POR_DEFECTO.put("admision", "false");
+        POR_DEFECTO.put("velocidad", "false");
+        POR_DEFECTO.put("salida", "target/carga");
+    }
+
+    final Map<String, String> valores;
+    final String mongoUri;
+    final String mongod;
+    final int tasa;
+    final Duration duracion;
+    final Duration calentamiento;
+    final int cuentas;
+    final BigDecimal saldoInicial;
+    final int montoMaximo;
+    final double exponenteZipf;
+    final Map<Operacion, Integer> mezcla;
+    final int conexiones;
+    final int maximoEnVuelo;
+    final Duration timeout;
+    final long semilla;
+    final boolean admision;
+    final boolean velocidad;
+    final Path directorio;
+
+    private ConfiguracionCarga(Map<String, String> v) {
+        valores = v;
+        mongoUri = v.get("mongo.uri");
+        mongod = v.get("mongod");
+        tasa = Integer.parseInt(v.get("tasa"));
+        duracion = Duration.ofSeconds(Long.parseLong(v.get("duracion")));
+        calentamiento = Duration.ofSeconds(Long.parseLong(v.get("calentamiento")));
+        cuentas = Integer.parseInt(v.get("cuentas"));
+        saldoInicial = new BigDecimal(v.get("saldo-inicial"));
+        montoMaximo = Integer.parseInt(v.get("monto-maximo"));
+        exponenteZipf = exponente(v.get("sesgo"));
+        mezcla = mezcla(MEZCLAS.getOrDefault(v.get("mezcla"), v.get("mezcla")));
+        conexiones = Integer.parseInt(v.get("conexiones"));
+        maximoEnVuelo = Integer.parseInt(v.get("maximo-en-vuelo"));
+        timeout = Duration.ofMillis(Long.parseLong(v.get("timeout-ms")));
+        semilla = Long.parseLong(v.get("semilla"));
+        admision = Boolean.parseBoolean(v.get("admision"));
+        velocidad = Boolean.parseBoolean(v.get("velocidad"));
+        directorio = Path.of(v.get("salida"))
+                .resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        if (tasa < 1 || cuentas < 2) {
+            throw new IllegalArgumentException("tasa debe ser positiva y cuentas al menos 2");
+        }
+    }
+
+    static ConfiguracionCarga desde(String[] args) {
+        Map<String, String> valores = new LinkedHashMap<>(POR_DEFECTO);
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0 || !POR_DEFECTO.containsKey(arg.substring(0, igual))) {
+                throw new IllegalArgumentException("Parámetro desconocido: " + arg + "; claves válidas: " + POR_DEFECTO.keySet());
+            }
+            valores.put(arg.substring(0, igual), arg.substring(igual + 1));
+        }
+        return new ConfiguracionCarga(valores);
+    }
+
+    // zipf:0 equivale a uniforme
+    private static double exponente(String sesgo) {
+        if ("uniforme".equals(sesgo)) {
+            return 0;
+        }
+        if (sesgo.startsWith("zipf:")) {
+            return Double.parseDouble(sesgo.substring("zipf:".length()));
+        }
+        throw new IllegalArgumentException("sesgo debe ser uniforme o zipf:<exponente>: " + sesgo);
+    }
+
+    private static Map<Operacion, Integer> mezcla(String texto) {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] par = parte.split(":");
+            pesos.put(Operacion.desde(par[0]), Integer.parseInt(par[1].trim()));
+        }
+        return pesos;
+    }
+}
@@ -0,0 +1,178 @@
+package com.banco.benchmark.carga;
+
+import com.banco.benchmark.Zipf;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga de modelo abierto: la llegada i está prevista en inicio + i/tasa sin
+ * importar cuántas peticiones sigan en curso, y la latencia se mide desde ese instante
+ * previsto. Si el servidor o el propio generador se retrasan, la espera cuenta en la latencia
+ * en lugar de espaciar las llegadas (sin omisión coordinada). Por lo mismo, los errores, los
+ * timeouts y las llegadas descartadas también dejan su latencia en el histograma: si solo
+ * contaran las respuestas, fallar o descartar rápido mejoraría los percentiles.
+ * Las operaciones y las cuentas salen de un único generador con semilla, por lo que dos
+ * corridas con la misma configuración piden la misma secuencia.
+ */
+final class GeneradorAbierto {
+    private final WebClient cliente;
+    private final ConfiguracionCarga configuracion;
+    private final List<String> numeros;
+    private final SplittableRandom random;
+    private final Zipf zipf;
+    private final Operacion[] operaciones;
+    private final int[] pesosAcumulados;
+    private final AtomicInteger enVuelo = new AtomicInteger();
+
+    GeneradorAbierto(WebClient cliente, ConfiguracionCarga configuracion, List<String> numeros) {
+        this.cliente = cliente;
+        this.configuracion = configuracion;
+        this.numeros = numeros;
+        this.random = new SplittableRandom(configuracion.semilla);
+        this.zipf = new Zipf(numeros.size(), configuracion.exponenteZipf);
+        this.operaciones = configuracion.mezcla.keySet().toArray(new Operacion[0]);
+        this.pesosAcumulados = new int[operaciones.length];
+        int suma = 0;
+        for (int i = 0; i < operaciones.length; i++) {
+            suma += configuracion.mezcla.get(operaciones[i]);
+            pesosAcumulados[i] = suma;
+        }
+    }
+
+    /** Genera llegadas durante la duración dada y espera a que terminen las que quedan en curso. */
+    Map<Operacion, Medicion> ejecutar(Duration duracion) {
+        Map<Operacion, Medicion> mediciones = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : operaciones) {
+            mediciones.put(operacion, new Medicion());
+        }
+        long inicio = System.nanoTime();
+        long fin = inicio + duracion.toNanos();
+        for (long i = 0; ; i++) {
+            long previsto = inicio + i * 1_000_000_000L / configuracion.tasa;
+            if (previsto >= fin) {
+                break;
+            }
+            long espera;
+            while ((espera = previsto - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            Operacion operacion = elegirOperacion();
+            Medicion medicion = mediciones.get(operacion);
+            medicion.enviadas.increment();
+            if (enVuelo.get() >= configuracion.maximoEnVuelo) {
+                medicion.descartar(configuracion.timeout);
+                continue;
+            }
+            enVuelo.incrementAndGet();
+            peticion(operacion)
+                    .timeout(configuracion.timeout)
+                    .subscribe(estado -> medicion.registrar(estado, previsto),
+                            error -> {
+                                medicion.fallar(previsto);
+                                enVuelo.decrementAndGet();
+                            },
+                            enVuelo::decrementAndGet);
+        }
+        long limite = System.nanoTime() + configuracion.timeout.toNanos() * 2;
+        while (enVuelo.get() > 0 && System.nanoTime() < limite) {
+            LockSupport.parkNanos(10_000_000L);
+        }
+        for (Medicion medicion : mediciones.values()) {
+            medicion.cerrar(System.nanoTime() - inicio);
+        }
+        return mediciones;
+    }
+
+    private Operacion elegirOperacion() {
+        int r = random.nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (r < pesosAcumulados[i]) {
+                return operaciones[i];
+            }
+        }
+        return operaciones[operaciones.length - 1];
+    }
+
+    private Mono<Integer> peticion(Operacion operacion) {
+        int cuenta = zipf.siguiente(random);
+        String numero = numeros.get(cuenta);
+        WebClient.RequestHeadersSpec<?> spec = switch (operacion) {
+            case TRANSFERENCIA -> cliente.method(HttpMethod.POST).uri("/api/v1/transferencias")
+                    .bodyValue(Map.of(
+                            "cuentaOrigen", numero,
+                            "cuentaDestino", numeros.get(zipf.distintoDe(cuenta, random)),
+                            "monto", BigDecimal.valueOf(1 + random.nextInt(configuracion.montoMaximo * 100), 2),
+                            "moneda", "USD",
+                            "concepto", "carga"));
+            case CUENTA -> cliente.get().uri("/api/v1/cuentas/{n}", numero);
+            case HISTORIAL -> cliente.get().uri("/api/v1/transferencias/historial/{n}?limite=20", numero);
+            case EXTRACTO -> cliente.get().uri("/api/v1/cuentas/{n}/extracto", numero);
+        };
+        // La latencia incluye leer la respuesta completa
+        return spec.exchangeToMono(respuesta -> respuesta.releaseBody()
+                .thenReturn(respuesta.statusCode().value()));
+    }
+
+    /** Resultado de un tipo de operación: contadores y latencias de todas las llegadas, en µs. */
+    static final class Medicion {
+        final LongAdder enviadas = new LongAdder();
+        final LongAdder correctas = new LongAdder();
+        // 4xx: la aplicación respondió y rechazó la petición (saldo insuficiente, cuenta inexistente)
+        final LongAdder rechazadas = new LongAdder();
+        // 5xx, timeouts y fallos de conexión
+        final LongAdder errores = new LongAdder();
+        final LongAdder descartadas = new LongAdder();
+        private final Recorder latencias = new Recorder(3);
+        Histogram histograma;
+        long duracionNanos;
+
+        private void registrar(int estado, long previsto) {
+            latencia(previsto);
+            if (estado < 400) {
+                correctas.increment();
+            } else if (estado < 500) {
+                rechazadas.increment();
+            } else {
+                errores.increment();
+            }
+        }
+
+        // Timeout o fallo de conexión: cuenta lo que se esperó hasta el fallo
+        private void fallar(long previsto) {
+            latencia(previsto);
+            errores.increment();
+        }
+
+        // Nunca se envía; se anota con el timeout, lo mínimo que habría esperado un cliente real
+        private void descartar(Duration timeout) {
+            latencias.recordValue(timeout.toNanos() / 1000);
+            descartadas.increment();
+        }
+
+        private void latencia(long previsto) {
+            latencias.recordValue(Math.max(0, (System.nanoTime() - previsto) / 1000));
+        }
+
+        private void cerrar(long duracionNanos) {
+            this.duracionNanos = duracionNanos;
+            this.histograma = latencias.getIntervalHistogram();
+        }
+
+        double porSegundo(long cantidad) {
+            return cantidad * 1e9 / duracionNanos;
+        }
+    }
+}
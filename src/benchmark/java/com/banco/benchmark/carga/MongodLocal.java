@@ -0,0 +1,79 @@
+package com.banco.benchmark.carga;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * mongod efímero para la prueba de carga: datos en un directorio temporal y un puerto libre
+ * de 127.0.0.1, sin red externa. Al cerrarse detiene el proceso y borra los datos.
+ */
+final class MongodLocal implements AutoCloseable {
+    private final Process proceso;
+    private final Path datos;
+    private final int puerto;
+
+    private MongodLocal(Process proceso, Path datos, int puerto) {
+        this.proceso = proceso;
+        this.datos = datos;
+        this.puerto = puerto;
+    }
+
+    static MongodLocal arrancar(String ejecutable) throws IOException, InterruptedException {
+        Path datos = Files.createTempDirectory("carga-mongod");
+        int puerto;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puerto = socket.getLocalPort();
+        }
+        Process proceso = new ProcessBuilder(ejecutable, "--dbpath", datos.toString(),
+                "--port", String.valueOf(puerto), "--bind_ip", "127.0.0.1", "--quiet")
+                .redirectErrorStream(true)
+                .redirectOutput(datos.resolve("mongod.log").toFile())
+                .start();
+        MongodLocal mongod = new MongodLocal(proceso, datos, puerto);
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < limite) {
+            if (!proceso.isAlive()) {
+                String log = Files.readString(datos.resolve("mongod.log"));
+                mongod.close();
+                throw new IllegalStateException("mongod terminó al arrancar:\n" + log);
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", puerto), 200);
+                return mongod;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        mongod.close();
+        throw new IllegalStateException("mongod no aceptó conexiones en 30 s");
+    }
+
+    String uri() {
+        return "mongodb://127.0.0.1:" + puerto;
+    }
+
+    @Override
+    public void close() {
+        proceso.destroy();
+        try {
+            if (!proceso.waitFor(10, TimeUnit.SECONDS)) {
+                proceso.destroyForcibly().waitFor();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try (Stream<Path> archivos = Files.walk(datos)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.banco.benchmark.carga;
+
+import java.util.Locale;
+
+/**
+ * Peticiones que genera la prueba de carga contra BancoController.
+ */
+enum Operacion {
+    TRANSFERENCIA,  // POST /transferencias
+    CUENTA,         // GET /cuentas/{numeroCuenta}
+    HISTORIAL,      // GET /transferencias/historial/{numeroCuenta}
+    EXTRACTO;       // GET /cuentas/{numeroCuenta}/extracto
+
+    String clave() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Operacion desde(String clave) {
+        return valueOf(clave.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,190 @@
+package com.banco.benchmark.carga;
+
+import com.banco.App;
+import com.banco.bitacora.Bitacora;
+import com.banco.bitacora.ProyeccionTransferencias;
+import com.banco.dto.CuentaDTO;
+import com.banco.model.Transferencia;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prueba de carga de extremo a extremo sobre la API HTTP real: arranca la aplicación contra
+ * un MongoDB local (uno propio y efímero si no se indica mongo.uri), crea las cuentas, genera
+ * carga de modelo abierto con la mezcla y el sesgo configurados y al final comprueba que el
+ * saldo total se conserva. Todo corre en la misma máquina y sin red externa.
+ * <p>
+ * El informe (configuración, tasa lograda, p50/p90/p99/p99.9 y errores por operación) y las
+ * distribuciones completas en formato .hgrm quedan en salida/&lt;fecha&gt;/. Los percentiles
+ * incluyen errores, timeouts y descartadas. Termina con código 1 si el saldo no se conserva.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.banco.benchmark.carga.PruebaCarga \
+ *     -Djmh.opciones= -Djmh.args="tasa=800 duracion=120 sesgo=zipf:1.2 mezcla=mixta"
+ * </pre>
+ */
+public final class PruebaCarga {
+
+    private PruebaCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfiguracionCarga configuracion = ConfiguracionCarga.desde(args);
+        MongodLocal mongod = configuracion.mongoUri.isEmpty() ? MongodLocal.arrancar(configuracion.mongod) : null;
+        boolean conservado;
+        try {
+            conservado = ejecutar(configuracion, mongod == null ? configuracion.mongoUri : mongod.uri());
+        } finally {
+            if (mongod != null) {
+                mongod.close();
+            }
+        }
+        System.exit(conservado ? 0 : 1);
+    }
+
+    private static boolean ejecutar(ConfiguracionCarga configuracion, String uri) throws IOException {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Path bitacora = Files.createTempDirectory("carga-bitacora");
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(App.class).run(
+                "--spring.data.mongodb.uri=" + uri,
+                "--spring.data.mongodb.database=carga_" + System.currentTimeMillis(),
+                "--banco.bitacora.directorio=" + bitacora,
+                "--banco.admision.habilitada=" + configuracion.admision,
+                "--banco.velocidad.habilitada=" + configuracion.velocidad,
+                "--server.port=0",
+                // El registro por petición a INFO distorsiona las latencias
+                "--logging.level.com.banco=WARN");
+        ConnectionProvider conexiones = ConnectionProvider.builder("carga")
+                .maxConnections(configuracion.conexiones)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(configuracion.timeout)
+                .build();
+        try {
+            int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+            WebClient cliente = WebClient.builder()
+                    .baseUrl("http://127.0.0.1:" + puerto)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(conexiones)))
+                    .build();
+
+            List<String> numeros = crearCuentas(cliente, configuracion);
+            GeneradorAbierto generador = new GeneradorAbierto(cliente, configuracion, numeros);
+            Map<Operacion, GeneradorAbierto.Medicion> calentamiento = generador.ejecutar(configuracion.calentamiento);
+            Map<Operacion, GeneradorAbierto.Medicion> mediciones = generador.ejecutar(configuracion.duracion);
+
+            BigDecimal esperado = configuracion.saldoInicial.multiply(BigDecimal.valueOf(numeros.size()));
+            List<CuentaDTO> finales = cliente.get().uri("/api/v1/cuentas?fields=numeroCuenta,saldo")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(CuentaDTO.class)
+                    .collectList()
+                    .block();
+            BigDecimal total = finales.stream().map(CuentaDTO::getSaldo).reduce(BigDecimal.ZERO, BigDecimal::add);
+            long negativas = finales.stream().filter(c -> c.getSaldo().signum() < 0).count();
+            esperarProyeccion(contexto);
+            long registradas = contexto.getBean(ReactiveMongoTemplate.class)
+                    .count(new Query(), Transferencia.class).block();
+            long confirmadas = confirmadas(calentamiento) + confirmadas(mediciones);
+            boolean conservado = total.compareTo(esperado) == 0 && negativas == 0;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (PrintStream informe = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+                escribirInforme(informe, configuracion, mediciones);
+                informe.printf(Locale.ROOT, "%nSaldo total esperado %s, obtenido %s, cuentas negativas %d: %s%n",
+                        esperado.toPlainString(), total.toPlainString(), negativas, conservado ? "CONSERVADO" : "NO CONSERVADO");
+                informe.printf(Locale.ROOT, "Transferencias confirmadas con 201 %d, registradas en Mongo %d%n",
+                        confirmadas, registradas);
+            }
+            String texto = bytes.toString(StandardCharsets.UTF_8);
+            Files.createDirectories(configuracion.directorio);
+            Files.writeString(configuracion.directorio.resolve("informe.txt"), texto);
+            for (Map.Entry<Operacion, GeneradorAbierto.Medicion> entrada : mediciones.entrySet()) {
+                try (PrintStream hgrm = new PrintStream(
+                        configuracion.directorio.resolve(entrada.getKey().clave() + ".hgrm").toFile(), StandardCharsets.UTF_8)) {
+                    // Valores en microsegundos, escalados a milisegundos
+                    entrada.getValue().histograma.outputPercentileDistribution(hgrm, 1000.0);
+                }
+            }
+            System.out.print(texto);
+            System.out.println("Informe en " + configuracion.directorio.toAbsolutePath());
+            return conservado;
+        } finally {
+            conexiones.dispose();
+            contexto.close();
+        }
+    }
+
+    private static List<String> crearCuentas(WebClient cliente, ConfiguracionCarga configuracion) {
+        return Flux.range(0, configuracion.cuentas)
+                .flatMapSequential(i -> cliente.post().uri("/api/v1/cuentas")
+                        .bodyValue(Map.of(
+                                "nombreTitular", "Titular " + i,
+                                "email", "titular" + i + "@carga.banco.com",
+                                "saldo", configuracion.saldoInicial,
+                                "moneda", "USD"))
+                        .retrieve()
+                        .bodyToMono(CuentaDTO.class)
+                        .map(CuentaDTO::getNumeroCuenta), 64)
+                .collectList()
+                .block();
+    }
+
+    // Con la bitácora las transferencias llegan a Mongo poco después de confirmarse
+    private static void esperarProyeccion(ConfigurableApplicationContext contexto) {
+        Bitacora bitacora = contexto.getBean(Bitacora.class);
+        ProyeccionTransferencias proyeccion = contexto.getBean(ProyeccionTransferencias.class);
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (bitacora.habilitada() && proyeccion.proyectadaHasta() < bitacora.confirmadaHasta()
+                && System.nanoTime() < limite) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private static long confirmadas(Map<Operacion, GeneradorAbierto.Medicion> mediciones) {
+        GeneradorAbierto.Medicion medicion = mediciones.get(Operacion.TRANSFERENCIA);
+        return medicion == null ? 0 : medicion.correctas.sum();
+    }
+
+    private static void escribirInforme(PrintStream informe, ConfiguracionCarga configuracion,
+                                        Map<Operacion, GeneradorAbierto.Medicion> mediciones) {
+        informe.println("Prueba de carga transferencias-api");
+        informe.printf(Locale.ROOT, "Java %s, %d procesadores%n",
+                System.getProperty("java.version"), Runtime.getRuntime().availableProcessors());
+        configuracion.valores.forEach((clave, valor) -> informe.printf("  %s=%s%n", clave, valor));
+        informe.println();
+        informe.printf(Locale.ROOT, "%-14s %9s %9s %9s %8s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operacion", "enviadas", "correctas", "rechaz.", "errores", "descart.", "logradas/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operacion, GeneradorAbierto.Medicion> entrada : mediciones.entrySet()) {
+            GeneradorAbierto.Medicion m = entrada.getValue();
+            Histogram h = m.histograma;
+            informe.printf(Locale.ROOT, "%-14s %9d %9d %9d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entrada.getKey().clave(), m.enviadas.sum(), m.correctas.sum(), m.rechazadas.sum(),
+                    m.errores.sum(), m.descartadas.sum(), m.porSegundo(m.correctas.sum() + m.rechazadas.sum()),
+                    h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+                    h.getMaxValue() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.banco.admision;
+
+import com.banco.dto.ConfiguracionAdmisionDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Control de admisión de transferencias: un cubo de tokens por cliente, otro por cuenta origen
+ * y un límite global de transferencias en curso que se adapta a la latencia. Todo se decide en
+ * memoria y sin bloqueos, antes de leer el cuerpo o tocar Mongo, para que lo que se rechaza no
+ * consuma nada. Los límites se pueden cambiar en caliente.
+ */
+@Component
+public class ControlAdmision {
+    public static final String POR_CLIENTE = "cliente";
+    public static final String POR_CUENTA = "cuenta";
+    public static final String POR_CONCURRENCIA = "concurrencia";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.admision.habilitada:true}")
+    private volatile boolean habilitada;
+
+    // Clientes y cuentas con cubo propio a la vez como máximo, en cada conjunto
+    @Value("${banco.admision.maximo-claves:200000}")
+    private long maximoClaves;
+
+    @Value("${banco.admision.cliente.tasa:200}")
+    private double tasaCliente;
+
+    @Value("${banco.admision.cliente.rafaga:400}")
+    private int rafagaCliente;
+
+    @Value("${banco.admision.cuenta.tasa:20}")
+    private double tasaCuenta;
+
+    @Value("${banco.admision.cuenta.rafaga:40}")
+    private int rafagaCuenta;
+
+    @Value("${banco.admision.concurrencia.inicial:64}")
+    private int concurrenciaInicial;
+
+    @Value("${banco.admision.concurrencia.minima:8}")
+    private int concurrenciaMinima;
+
+    @Value("${banco.admision.concurrencia.maxima:1024}")
+    private int concurrenciaMaxima;
+
+    @Value("${banco.admision.concurrencia.latencia-objetivo-ms:250}")
+    private long latenciaObjetivoMs;
+
+    private CubosTokens clientes;
+    private CubosTokens cuentas;
+    private LimiteAdaptativo concurrencia;
+    private Counter rechazosCliente;
+    private Counter rechazosCuenta;
+    private Counter rechazosConcurrencia;
+
+    @PostConstruct
+    void iniciar() {
+        clientes = new CubosTokens(maximoClaves, tasaCliente, rafagaCliente);
+        cuentas = new CubosTokens(maximoClaves, tasaCuenta, rafagaCuenta);
+        concurrencia = new LimiteAdaptativo(concurrenciaInicial, concurrenciaMinima, concurrenciaMaxima,
+                TimeUnit.MILLISECONDS.toNanos(latenciaObjetivoMs));
+        rechazosCliente = rechazos(POR_CLIENTE);
+        rechazosCuenta = rechazos(POR_CUENTA);
+        rechazosConcurrencia = rechazos(POR_CONCURRENCIA);
+        Gauge.builder("banco.admision.concurrencia.limite", concurrencia, LimiteAdaptativo::limite)
+                .description("Transferencias en curso admitidas como máximo ahora mismo")
+                .register(meterRegistry);
+        Gauge.builder("banco.admision.concurrencia.ocupada", concurrencia, LimiteAdaptativo::enCurso)
+                .description("Transferencias admitidas que aún no han respondido")
+                .register(meterRegistry);
+    }
+
+    private Counter rechazos(String motivo) {
+        return Counter.builder("banco.admision.rechazos")
+                .description("Peticiones rechazadas con 429 por el control de admisión")
+                .tag("motivo", motivo)
+                .register(meterRegistry);
+    }
+
+    public boolean habilitada() {
+        return habilitada;
+    }
+
+    /** 0 si el cliente tiene token; si no, nanosegundos hasta que lo tendrá. */
+    public long admitirCliente(String cliente) {
+        if (!habilitada) {
+            return 0;
+        }
+        long espera = clientes.admitir(cliente);
+        if (espera > 0) {
+            rechazosCliente.increment();
+        }
+        return espera;
+    }
+
+    /** 0 si la cuenta origen tiene token; si no, nanosegundos hasta que lo tendrá. */
+    public long admitirCuenta(String cuentaOrigen) {
+        if (!habilitada) {
+            return 0;
+        }
+        long espera = cuentas.admitir(cuentaOrigen);
+        if (espera > 0) {
+            rechazosCuenta.increment();
+        }
+        return espera;
+    }
+
+    /** Ocupa un hueco del límite global; si devuelve true hay que llamar a salir. */
+    public boolean entrar() {
+        if (concurrencia.adquirir()) {
+            return true;
+        }
+        rechazosConcurrencia.increment();
+        return false;
+    }
+
+    public void salir(long latenciaNs, boolean fallo) {
+        concurrencia.liberar(latenciaNs, fallo);
+    }
+
+    /** Segundos enteros para Retry-After, al menos uno. */
+    public static long segundos(long esperaNs) {
+        return Math.max(1, (esperaNs + 999_999_999L) / 1_000_000_000L);
+    }
+
+    public ConfiguracionAdmisionDTO configuracion() {
+        return ConfiguracionAdmisionDTO.builder()
+                .habilitada(habilitada)
+                .tasaCliente(clientes.tasa())
+                .rafagaCliente(clientes.rafaga())
+                .tasaCuenta(cuentas.tasa())
+                .rafagaCuenta(cuentas.rafaga())
+                .concurrenciaMinima(concurrencia.minimo())
+                .concurrenciaMaxima(concurrencia.maximo())
+                .latenciaObjetivoMs(TimeUnit.NANOSECONDS.toMillis(concurrencia.objetivoNs()))
+                .limiteConcurrencia(concurrencia.limite())
+                .enCurso(concurrencia.enCurso())
+                .build();
+    }
+
+    /** Aplica los campos no nulos; si alguno es inválido no se cambia nada. */
+    public synchronized ConfiguracionAdmisionDTO configurar(ConfiguracionAdmisionDTO cambios) {
+        ConfiguracionAdmisionDTO actual = configuracion();
+        double nuevaTasaCliente = valor(cambios.getTasaCliente(), actual.getTasaCliente());
+        int nuevaRafagaCliente = valor(cambios.getRafagaCliente(), actual.getRafagaCliente());
+        double nuevaTasaCuenta = valor(cambios.getTasaCuenta(), actual.getTasaCuenta());
+        int nuevaRafagaCuenta = valor(cambios.getRafagaCuenta(), actual.getRafagaCuenta());
+        int minima = valor(cambios.getConcurrenciaMinima(), actual.getConcurrenciaMinima());
+        int maxima = valor(cambios.getConcurrenciaMaxima(), actual.getConcurrenciaMaxima());
+        long objetivoMs = valor(cambios.getLatenciaObjetivoMs(), actual.getLatenciaObjetivoMs());
+        if (!(nuevaTasaCliente > 0) || nuevaRafagaCliente < 1 || !(nuevaTasaCuenta > 0) || nuevaRafagaCuenta < 1) {
+            throw new IllegalArgumentException("La tasa y la ráfaga deben ser mayores que cero");
+        }
+        if (minima < 1 || maxima < minima || objetivoMs <= 0) {
+            throw new IllegalArgumentException("Se requiere 1 <= mínimo <= máximo y una latencia objetivo positiva");
+        }
+        clientes.configurar(nuevaTasaCliente, nuevaRafagaCliente);
+        cuentas.configurar(nuevaTasaCuenta, nuevaRafagaCuenta);
+        concurrencia.configurar(minima, maxima, TimeUnit.MILLISECONDS.toNanos(objetivoMs));
+        if (cambios.getHabilitada() != null) {
+            habilitada = cambios.getHabilitada();
+        }
+        return configuracion();
+    }
+
+    private static <T> T valor(T nuevo, T actual) {
+        return nuevo != null ? nuevo : actual;
+    }
+}
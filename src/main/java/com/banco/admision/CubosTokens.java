@@ -0,0 +1,85 @@
+package com.banco.admision;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Un cubo de tokens por clave, sin bloqueos: cada cubo es un único long con el instante teórico
+ * de la siguiente llegada (GCRA), que se avanza con un CAS. Los cubos viven en un mapa acotado
+ * y caducan tras el tiempo que tarda uno vacío en llenarse: pasado ese tiempo olvidarlo equivale
+ * a tenerlo lleno, así que caducar no deja pasar a nadie de más.
+ */
+final class CubosTokens {
+    private final Cache<String, AtomicLong> llegadas;
+    private final long origen = System.nanoTime();
+    private volatile Ritmo ritmo;
+
+    CubosTokens(long maximoClaves, double tasa, int rafaga) {
+        if (maximoClaves < 1) {
+            throw new IllegalArgumentException("El máximo de claves debe ser mayor que cero");
+        }
+        this.llegadas = Caffeine.newBuilder()
+                .maximumSize(maximoClaves)
+                .expireAfterAccess(Duration.ofSeconds(1))
+                .build();
+        configurar(tasa, rafaga);
+    }
+
+    /** Cambia tasa (por segundo) y ráfaga; los cubos conservan su estado. */
+    void configurar(double tasa, int rafaga) {
+        if (!(tasa > 0) || rafaga < 1) {
+            throw new IllegalArgumentException("La tasa y la ráfaga deben ser mayores que cero");
+        }
+        long intervalo = Math.max(1, (long) (1_000_000_000L / tasa));
+        Ritmo nuevo = new Ritmo(tasa, rafaga, intervalo, intervalo * (rafaga - 1));
+        Duration llenado = Duration.ofNanos(nuevo.tolerancia + nuevo.intervalo);
+        llegadas.policy().expireAfterAccess().ifPresent(caducidad -> caducidad.setExpiresAfter(llenado));
+        ritmo = nuevo;
+    }
+
+    double tasa() {
+        return ritmo.tasa;
+    }
+
+    int rafaga() {
+        return ritmo.rafaga;
+    }
+
+    /** 0 si se admite y consume un token; si no, nanosegundos hasta que habría uno. */
+    long admitir(String clave) {
+        return admitir(clave, System.nanoTime() - origen);
+    }
+
+    long admitir(String clave, long ahora) {
+        Ritmo r = ritmo;
+        AtomicLong cubo = llegadas.get(clave == null ? "" : clave, k -> new AtomicLong());
+        while (true) {
+            long llegada = cubo.get();
+            long base = Math.max(llegada, ahora);
+            long espera = base - ahora - r.tolerancia;
+            if (espera > 0) {
+                return espera;
+            }
+            if (cubo.compareAndSet(llegada, base + r.intervalo)) {
+                return 0;
+            }
+        }
+    }
+
+    private static final class Ritmo {
+        final double tasa;
+        final int rafaga;
+        final long intervalo;
+        final long tolerancia;
+
+        Ritmo(double tasa, int rafaga, long intervalo, long tolerancia) {
+            this.tasa = tasa;
+            this.rafaga = rafaga;
+            this.intervalo = intervalo;
+            this.tolerancia = tolerancia;
+        }
+    }
+}
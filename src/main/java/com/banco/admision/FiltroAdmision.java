@@ -0,0 +1,79 @@
+package com.banco.admision;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Aplica el control de admisión a los POST de transferencias antes de leer el cuerpo. El
+ * límite por cliente (su dirección IP) cubre también el lote NDJSON; el de concurrencia solo
+ * la transferencia individual, porque un lote dura lo que dure el flujo y falsearía la
+ * latencia. El límite por cuenta origen necesita el cuerpo y lo aplican el controlador y el lote.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FiltroAdmision implements WebFilter {
+    static final String TRANSFERENCIAS = "/api/v1/transferencias";
+    static final String LOTE = "/api/v1/transferencias/lote";
+
+    @Autowired
+    private ControlAdmision control;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!control.habilitada() || request.getMethod() != HttpMethod.POST) {
+            return chain.filter(exchange);
+        }
+        String ruta = request.getPath().pathWithinApplication().value();
+        boolean individual = TRANSFERENCIAS.equals(ruta);
+        if (!individual && !LOTE.equals(ruta)) {
+            return chain.filter(exchange);
+        }
+        long espera = control.admitirCliente(cliente(request));
+        if (espera > 0) {
+            return rechazar(exchange, espera);
+        }
+        if (!individual) {
+            return chain.filter(exchange);
+        }
+        if (!control.entrar()) {
+            return rechazar(exchange, 0);
+        }
+        long inicio = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(senal -> {
+                    HttpStatusCode estado = exchange.getResponse().getStatusCode();
+                    boolean fallo = senal == SignalType.ON_ERROR || (estado != null && estado.is5xxServerError());
+                    control.salir(System.nanoTime() - inicio, fallo);
+                });
+    }
+
+    // La dirección del cliente, no una cabecera que él elige y podría rotar para saltarse el
+    // límite. Detrás del router de la plataforma es la de X-Forwarded-For gracias a
+    // server.forward-headers-strategy=native; sin ella todos compartirían el cubo del router
+    private static String cliente(ServerHttpRequest request) {
+        InetSocketAddress remota = request.getRemoteAddress();
+        return remota == null ? null : remota.getHostString();
+    }
+
+    private static Mono<Void> rechazar(ServerWebExchange exchange, long esperaNs) {
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER,
+                Long.toString(ControlAdmision.segundos(esperaNs)));
+        return exchange.getResponse().setComplete();
+    }
+}
@@ -0,0 +1,96 @@
+package com.banco.admision;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Límite de peticiones en curso que se ajusta con la latencia observada (AIMD): sube de uno en
+ * uno mientras las respuestas llegan por debajo de la latencia objetivo y baja un 10% cuando una
+ * la supera o falla. Un mismo pico de respuestas lentas solo lo reduce una vez por cada latencia
+ * objetivo transcurrida.
+ */
+final class LimiteAdaptativo {
+    private static final double REDUCCION = 0.9;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger limite;
+    private final AtomicInteger exitos = new AtomicInteger();
+    private final AtomicLong ultimaReduccion = new AtomicLong(System.nanoTime());
+    private volatile int minimo;
+    private volatile int maximo;
+    private volatile long objetivoNs;
+
+    LimiteAdaptativo(int inicial, int minimo, int maximo, long objetivoNs) {
+        configurar(minimo, maximo, objetivoNs);
+        this.limite = new AtomicInteger(Math.max(minimo, Math.min(maximo, inicial)));
+    }
+
+    void configurar(int minimo, int maximo, long objetivoNs) {
+        if (minimo < 1 || maximo < minimo || objetivoNs <= 0) {
+            throw new IllegalArgumentException("Se requiere 1 <= mínimo <= máximo y una latencia objetivo positiva");
+        }
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.objetivoNs = objetivoNs;
+        if (limite != null) {
+            limite.updateAndGet(l -> Math.max(minimo, Math.min(maximo, l)));
+        }
+    }
+
+    /** Ocupa un hueco si hay; quien lo obtiene debe llamar a liberar. */
+    boolean adquirir() {
+        while (true) {
+            int n = enCurso.get();
+            if (n >= limite.get()) {
+                return false;
+            }
+            if (enCurso.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void liberar(long latenciaNs, boolean fallo) {
+        int ocupados = enCurso.getAndDecrement();
+        if (fallo || latenciaNs > objetivoNs) {
+            long ahora = System.nanoTime();
+            long ultima = ultimaReduccion.get();
+            if (ahora - ultima >= objetivoNs && ultimaReduccion.compareAndSet(ultima, ahora)) {
+                int piso = minimo;
+                limite.updateAndGet(l -> Math.max(piso, (int) (l * REDUCCION)));
+                exitos.set(0);
+            }
+            return;
+        }
+        // Solo crece si se está usando: con poca carga el límite no dice nada de la capacidad
+        int actual = limite.get();
+        if (ocupados * 2 < actual) {
+            return;
+        }
+        int e = exitos.incrementAndGet();
+        if (e >= actual && exitos.compareAndSet(e, 0)) {
+            int techo = maximo;
+            limite.updateAndGet(l -> Math.min(techo, l + 1));
+        }
+    }
+
+    int limite() {
+        return limite.get();
+    }
+
+    int enCurso() {
+        return enCurso.get();
+    }
+
+    int minimo() {
+        return minimo;
+    }
+
+    int maximo() {
+        return maximo;
+    }
+
+    long objetivoNs() {
+        return objetivoNs;
+    }
+}
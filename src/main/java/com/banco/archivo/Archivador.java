@@ -0,0 +1,243 @@
+package com.banco.archivo;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.bitacora.ProyeccionTransferencias;
+import com.banco.dto.EstadoArchivoDTO;
+import com.banco.model.Transferencia;
+import com.banco.motor.MotorSaldos;
+import com.banco.repository.SaldoArchivadoRepository;
+import com.banco.repository.TransferenciaRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mueve al archivo las transferencias más antiguas que la edad configurada, para que la
+ * colección solo tenga las recientes. Cada segmento sigue estos pasos:
+ * <ol>
+ *   <li>lee las filasPorSegmento más antiguas anteriores al corte;</li>
+ *   <li>escribe el segmento y lo hace visible a las consultas;</li>
+ *   <li>suma su efecto en saldos_archivados, para la conciliación;</li>
+ *   <li>las borra de la colección por lotes pequeños de _id.</li>
+ * </ol>
+ * Ninguna operación bloquea la colección más que el borrado de un lote. Si el proceso cae a
+ * medias, solo puede quedar incompleto el último segmento: al arrancar se repiten con él los
+ * pasos 3 y 4, que no tienen efecto si ya se hicieron. Una transferencia que ya estaba
+ * archivada no se vuelve a archivar, solo se borra. Al terminar sin errores se retiran los
+ * segmentos de la bitácora que ya solo contienen transferencias archivadas.
+ */
+@Component
+public class Archivador {
+    private static final Logger log = LoggerFactory.getLogger(Archivador.class);
+    private static final String EXITOSA = "EXITOSA";
+
+    @Autowired
+    private ArchivoTransferencias archivo;
+
+    @Autowired
+    private TransferenciaRepository transferenciaRepository;
+
+    @Autowired
+    private SaldoArchivadoRepository saldoArchivadoRepository;
+
+    @Autowired
+    private Bitacora bitacora;
+
+    @Autowired
+    private ProyeccionTransferencias proyeccion;
+
+    @Autowired
+    private MotorSaldos motor;
+
+    @Value("${banco.archivo.edad-dias:90}")
+    private long edadDias;
+
+    @Value("${banco.archivo.filas-por-segmento:50000}")
+    private int filasPorSegmento;
+
+    @Value("${banco.archivo.lote-borrado:1000}")
+    private int loteBorrado;
+
+    // 0 = solo bajo demanda desde la administración
+    @Value("${banco.archivo.intervalo-minutos:60}")
+    private long intervaloMinutos;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile boolean ultimoCompletado;
+    private volatile LocalDateTime ultimaEjecucion;
+    private volatile LocalDateTime ultimoCorte;
+    private volatile long ultimasArchivadas;
+    private Disposable periodico;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (!archivo.habilitado() || intervaloMinutos <= 0) {
+            return;
+        }
+        periodico = Flux.interval(Duration.ZERO, Duration.ofMinutes(intervaloMinutos))
+                .onBackpressureDrop()
+                .concatMap(n -> archivar()
+                        .onErrorResume(e -> {
+                            log.error("No se pudieron archivar las transferencias", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void detener() {
+        if (periodico != null) {
+            periodico.dispose();
+        }
+    }
+
+    /** Archiva todo lo anterior al corte, segmento a segmento. */
+    public Mono<EstadoArchivoDTO> archivar() {
+        if (!archivo.habilitado()) {
+            return Mono.error(new IllegalStateException("El archivo de transferencias no está habilitado"));
+        }
+        if (!enCurso.compareAndSet(false, true)) {
+            return Mono.error(new IllegalStateException("Ya hay un archivado en curso"));
+        }
+        LocalDateTime corte = LocalDateTime.now().minusDays(edadDias);
+        // Lo proyectado antes de empezar ya está en la colección cuando se leen las filas; el motor
+        // además necesita la bitácora posterior a su último volcado para reconstruir los saldos
+        long proyectadaHasta = motor.habilitado()
+                ? Math.min(proyeccion.proyectadaHasta(), motor.volcadaHasta())
+                : proyeccion.proyectadaHasta();
+        AtomicLong archivadas = new AtomicLong();
+        return completarUltimo()
+                .then(segmento(corte)
+                        .expand(leidas -> leidas < filasPorSegmento ? Mono.empty() : segmento(corte))
+                        .doOnNext(archivadas::addAndGet)
+                        .then())
+                .then(retirarBitacora(proyectadaHasta, corte))
+                .then(Mono.fromSupplier(() -> {
+                    ultimaEjecucion = LocalDateTime.now();
+                    ultimoCorte = corte;
+                    ultimasArchivadas = archivadas.get();
+                    log.info("Archivadas {} transferencias anteriores a {}", archivadas.get(), corte);
+                    return estado();
+                }))
+                .doFinally(s -> enCurso.set(false));
+    }
+
+    public EstadoArchivoDTO estado() {
+        return EstadoArchivoDTO.builder()
+                .segmentos(archivo.segmentos())
+                .filas(archivo.filas())
+                .bytes(archivo.bytes())
+                .fechaMaxima(archivo.fechaMaxima())
+                .ultimaEjecucion(ultimaEjecucion)
+                .ultimoCorte(ultimoCorte)
+                .ultimasArchivadas(ultimasArchivadas)
+                .build();
+    }
+
+    // Todo lo anterior al corte que ya estaba proyectado está ahora en el archivo: la bitácora
+    // no necesita esos registros para reconstruir. Un fallo aquí no afecta al archivado
+    private Mono<Void> retirarBitacora(long proyectadaHasta, LocalDateTime corte) {
+        if (!bitacora.habilitada()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> bitacora.retirar(proyectadaHasta, corte))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("No se pudieron retirar segmentos de la bitácora anteriores a {}", corte, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    // Repite los pasos 3 y 4 con el último segmento, una vez por arranque
+    private Mono<Void> completarUltimo() {
+        if (ultimoCompletado) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(archivo::ultimo)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(s -> {
+                    List<Transferencia> filas = s.transferencias();
+                    return saldoArchivadoRepository.acumular(netos(filas), s.numero()).then(borrar(filas));
+                })
+                .doOnSuccess(v -> ultimoCompletado = true);
+    }
+
+    // Filas leídas de la colección; menos que filasPorSegmento si ya no quedan más anteriores al corte
+    private Mono<Integer> segmento(LocalDateTime corte) {
+        return transferenciaRepository.listarAnteriores(corte, filasPorSegmento)
+                .collectList()
+                .flatMap(filas -> {
+                    if (filas.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    List<Transferencia> nuevas = new ArrayList<>(filas.size());
+                    return Mono.fromCallable(() -> escribir(filas, nuevas))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(numero -> numero == 0 ? Mono.<Void>empty()
+                                    : saldoArchivadoRepository.acumular(netos(nuevas), numero))
+                            .then(borrar(filas))
+                            .thenReturn(filas.size());
+                });
+    }
+
+    // Número del segmento escrito, o 0 si todas estaban ya archivadas
+    private long escribir(List<Transferencia> filas, List<Transferencia> nuevas) throws IOException {
+        for (Transferencia t : filas) {
+            if (!archivo.archivada(t)) {
+                nuevas.add(t);
+            }
+        }
+        if (nuevas.size() < filas.size()) {
+            log.warn("{} transferencias ya estaban archivadas; solo se borran de la colección", filas.size() - nuevas.size());
+        }
+        if (nuevas.isEmpty()) {
+            return 0;
+        }
+        SegmentoArchivo.Resumen resumen = SegmentoArchivo.escribir(archivo.directorio(), archivo.siguienteNumero(), nuevas);
+        archivo.registrar(resumen);
+        log.info("Segmento de archivo {}: {} transferencias del {} al {}, {} bytes",
+                resumen.numero, resumen.filas, resumen.fechaMinima, resumen.fechaMaxima, resumen.bytes);
+        return resumen.numero;
+    }
+
+    private Mono<Void> borrar(List<Transferencia> filas) {
+        return Flux.fromIterable(filas)
+                .map(Transferencia::getId)
+                .buffer(loteBorrado)
+                .concatMap(ids -> transferenciaRepository.deleteAllById(ids), 1)
+                .then();
+    }
+
+    // Entradas menos salidas de cada cuenta en su moneda, solo de las exitosas, como la conciliación
+    static Map<String, BigDecimal> netos(List<Transferencia> transferencias) {
+        Map<String, BigDecimal> netos = new HashMap<>();
+        for (Transferencia t : transferencias) {
+            if (EXITOSA.equals(t.getEstado()) && t.getMonto() != null) {
+                netos.merge(t.getCuentaOrigen(), t.getMonto().negate(), BigDecimal::add);
+                netos.merge(t.getCuentaDestino(), t.montoAcreditado(), BigDecimal::add);
+            }
+        }
+        return netos;
+    }
+}
@@ -0,0 +1,285 @@
+package com.banco.archivo;
+
+import com.banco.model.Transferencia;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Nivel frío de las transferencias: los segmentos que ha escrito el {@link Archivador}. De
+ * cada segmento solo se tiene en memoria su resumen (rango de fechas y filtros de Bloom de
+ * referencias y cuentas); los pocos que una consulta no puede descartar se descomprimen y
+ * quedan en una caché pequeña. Las lecturas de disco van en el planificador elástico.
+ */
+@Component
+public class ArchivoTransferencias {
+    private static final Logger log = LoggerFactory.getLogger(ArchivoTransferencias.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.archivo.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${banco.archivo.directorio:archivo}")
+    private String directorio;
+
+    @Value("${banco.archivo.segmentos-en-memoria:4}")
+    private long segmentosEnMemoria;
+
+    // Filas por consulta al exportar un historial completo desde el archivo
+    @Value("${banco.archivo.tamano-pagina:500}")
+    private int tamanoPagina;
+
+    // Cada cuánto se buscan en el directorio segmentos escritos por otra instancia; 0 = nunca
+    @Value("${banco.archivo.refresco-segundos:60}")
+    private long refrescoSegundos;
+
+    // Del más reciente al más antiguo; se reemplaza entera al añadir un segmento
+    private volatile List<SegmentoArchivo.Resumen> resumenes = List.of();
+    private volatile LocalDateTime fechaMaxima;
+    private Cache<Long, SegmentoArchivo> abiertos;
+    private Disposable refresco;
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        releer();
+        abiertos = Caffeine.newBuilder()
+                .maximumSize(segmentosEnMemoria)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, abiertos, "archivo");
+        Gauge.builder("banco.archivo.segmentos", this, a -> a.resumenes.size())
+                .description("Segmentos en el archivo de transferencias")
+                .register(meterRegistry);
+        Gauge.builder("banco.archivo.filas", this, a -> a.resumenes.stream().mapToLong(r -> r.filas).sum())
+                .description("Transferencias en el archivo")
+                .register(meterRegistry);
+        Gauge.builder("banco.archivo.bytes", this, a -> a.resumenes.stream().mapToLong(r -> r.bytes).sum())
+                .description("Tamaño en disco del archivo de transferencias")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Archivo de transferencias en {}: {} segmentos", directorio, resumenes.size());
+        if (refrescoSegundos > 0) {
+            refresco = Flux.interval(Duration.ofSeconds(refrescoSegundos))
+                    .onBackpressureDrop()
+                    .concatMap(n -> Mono.fromCallable(() -> {
+                                releer();
+                                return n;
+                            })
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .onErrorResume(e -> {
+                                log.warn("No se pudo releer el directorio del archivo", e);
+                                return Mono.empty();
+                            }), 1)
+                    .subscribe();
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        if (refresco != null) {
+            refresco.dispose();
+        }
+    }
+
+    // Añade los segmentos del directorio que aún no se conocen
+    private void releer() throws IOException {
+        for (Path ruta : SegmentoArchivo.listar(Path.of(directorio))) {
+            if (!conocido(SegmentoArchivo.numero(ruta))) {
+                registrar(SegmentoArchivo.resumen(ruta));
+            }
+        }
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /** Fecha de la transferencia archivada más reciente (redondeada arriba al segundo), o null si no hay ninguna. */
+    public LocalDateTime fechaMaxima() {
+        return fechaMaxima;
+    }
+
+    public Mono<Transferencia> buscar(String codigoReferencia) {
+        if (!habilitado || codigoReferencia == null) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> buscarEnSegmentos(codigoReferencia))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    Transferencia buscarEnSegmentos(String codigoReferencia) {
+        for (SegmentoArchivo.Resumen r : resumenes) {
+            if (r.referencias.puedeContener(codigoReferencia)) {
+                Transferencia t = abrir(r).buscar(codigoReferencia);
+                if (t != null) {
+                    return t;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Las transferencias de la lista que no están en el archivo, en el mismo orden. Solo abre
+     * segmentos por las que no son posteriores a la fecha máxima archivada.
+     */
+    public Mono<List<Transferencia>> sinArchivar(List<Transferencia> transferencias) {
+        LocalDateTime maxima = fechaMaxima;
+        if (!habilitado || maxima == null
+                || transferencias.stream().allMatch(t -> t.getFechaTransferencia().isAfter(maxima))) {
+            return Mono.just(transferencias);
+        }
+        return Mono.fromCallable(() -> transferencias.stream().filter(t -> !archivada(t)).toList())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Si la transferencia ya está en algún segmento; solo se abren los de su fecha. */
+    boolean archivada(Transferencia t) {
+        if (t.getCodigoReferencia() == null) {
+            return false;
+        }
+        LocalDateTime fecha = t.getFechaTransferencia();
+        for (SegmentoArchivo.Resumen r : resumenes) {
+            if (r.cubre(fecha, fecha) && r.referencias.puedeContener(t.getCodigoReferencia())
+                    && abrir(r).buscar(t.getCodigoReferencia()) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Historial archivado de la cuenta con la misma semántica que
+     * {@code TransferenciaRepositoryCustom.buscarHistorial}, con limite mayor que 0.
+     */
+    public Mono<List<Transferencia>> historial(String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId,
+                                               LocalDateTime desde, LocalDateTime hasta, int limite) {
+        if (!habilitado || resumenes.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return Mono.fromCallable(() -> historialEnSegmentos(numeroCuenta, antesDeFecha, antesDeId, desde, hasta, limite))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Historial archivado completo, de página en página. */
+    public Flux<Transferencia> historialCompleto(String numeroCuenta, LocalDateTime desde, LocalDateTime hasta) {
+        return historial(numeroCuenta, null, null, desde, hasta, tamanoPagina)
+                .expand(pagina -> {
+                    if (pagina.size() < tamanoPagina) {
+                        return Mono.empty();
+                    }
+                    Transferencia ultima = pagina.get(pagina.size() - 1);
+                    return historial(numeroCuenta, ultima.getFechaTransferencia(), ultima.getId(), desde, hasta, tamanoPagina);
+                })
+                .flatMapIterable(pagina -> pagina);
+    }
+
+    List<Transferencia> historialEnSegmentos(String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId,
+                                             LocalDateTime desde, LocalDateTime hasta, int limite) {
+        LocalDateTime tope = hasta == null || (antesDeFecha != null && antesDeFecha.isBefore(hasta)) ? antesDeFecha : hasta;
+        List<SegmentoArchivo.Resumen> candidatos = new ArrayList<>();
+        for (SegmentoArchivo.Resumen r : resumenes) {
+            if (r.cubre(desde, tope) && r.cuentas.puedeContener(numeroCuenta)) {
+                candidatos.add(r);
+            }
+        }
+        // Los segmentos casi nunca se solapan en fechas: en cuanto el siguiente es anterior a
+        // la última fila de la página, ya no puede aportar nada
+        candidatos.sort(Comparator.comparing((SegmentoArchivo.Resumen r) -> r.fechaMaxima).reversed());
+        List<Transferencia> filas = new ArrayList<>();
+        for (SegmentoArchivo.Resumen r : candidatos) {
+            if (filas.size() >= limite && r.fechaMaxima.isBefore(filas.get(limite - 1).getFechaTransferencia())) {
+                break;
+            }
+            abrir(r).historial(numeroCuenta, antesDeFecha, antesDeId, desde, hasta, limite, filas);
+            filas.sort(SegmentoArchivo.HISTORIAL);
+            if (filas.size() > limite) {
+                filas.subList(limite, filas.size()).clear();
+            }
+        }
+        return filas;
+    }
+
+    Path directorio() {
+        return Path.of(directorio);
+    }
+
+    long siguienteNumero() {
+        List<SegmentoArchivo.Resumen> actuales = resumenes;
+        return actuales.isEmpty() ? 1 : actuales.get(0).numero + 1;
+    }
+
+    /** El segmento escrito más recientemente, o null si el archivo está vacío. */
+    SegmentoArchivo ultimo() {
+        List<SegmentoArchivo.Resumen> actuales = resumenes;
+        return actuales.isEmpty() ? null : abrir(actuales.get(0));
+    }
+
+    private boolean conocido(long numero) {
+        return resumenes.stream().anyMatch(r -> r.numero == numero);
+    }
+
+    /** Lo hace visible a las consultas; no hace nada si ya lo estaba. */
+    synchronized void registrar(SegmentoArchivo.Resumen nuevo) {
+        if (conocido(nuevo.numero)) {
+            return;
+        }
+        List<SegmentoArchivo.Resumen> actualizados = new ArrayList<>(resumenes.size() + 1);
+        actualizados.add(nuevo);
+        actualizados.addAll(resumenes);
+        actualizados.sort(Comparator.comparingLong((SegmentoArchivo.Resumen r) -> r.numero).reversed());
+        resumenes = List.copyOf(actualizados);
+        if (fechaMaxima == null || nuevo.fechaMaxima.isAfter(fechaMaxima)) {
+            fechaMaxima = nuevo.fechaMaxima;
+        }
+    }
+
+    int segmentos() {
+        return resumenes.size();
+    }
+
+    long filas() {
+        return resumenes.stream().mapToLong(r -> r.filas).sum();
+    }
+
+    long bytes() {
+        return resumenes.stream().mapToLong(r -> r.bytes).sum();
+    }
+
+    private SegmentoArchivo abrir(SegmentoArchivo.Resumen r) {
+        return abiertos.get(r.numero, numero -> {
+            try {
+                return SegmentoArchivo.leer(r.ruta);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.banco.archivo;
+
+/**
+ * Filtro de Bloom sobre textos con doble hash: dice con seguridad que un texto no está y, con
+ * diez bits por clave, se equivoca al decir que sí en torno al 1% de las veces.
+ */
+final class FiltroBloom {
+    static final int BITS_POR_CLAVE = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+
+    FiltroBloom(int claves) {
+        this(new long[Math.max(1, (int) (((long) claves * BITS_POR_CLAVE + 63) / 64))]);
+    }
+
+    FiltroBloom(long[] bits) {
+        this.bits = bits;
+    }
+
+    void agregar(String clave) {
+        long hash = hash(clave);
+        long total = bits.length * 64L;
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, total);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean puedeContener(String clave) {
+        long hash = hash(clave);
+        long total = bits.length * 64L;
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, total);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] bits() {
+        return bits;
+    }
+
+    // FNV-1a de 64 bits con la mezcla final de MurmurHash3 para repartir los bits altos
+    private static long hash(String clave) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < clave.length(); i++) {
+            h ^= clave.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,652 @@
+package com.banco.archivo;
+
+import com.banco.model.Transferencia;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Segmento inmutable del archivo de transferencias. Las filas van ordenadas como el historial
+ * (fecha y id descendentes) y se guardan por columnas, cada una comprimida con Deflate por
+ * separado: textos repetidos, fechas cercanas y montos pequeños comprimen mucho mejor juntos
+ * que mezclados fila a fila.
+ * <pre>
+ *   0  int    magia
+ *   4  int    versión
+ *   8  long   número del segmento
+ *  16  int    filas
+ *  20  int    longs del filtro de códigos de referencia
+ *  24  int    longs del filtro de cuentas
+ *  28  int    CRC32C de los bytes [64, fin)
+ *  32  long   fecha mínima, segundos desde la época en UTC (redondeada abajo)
+ *  40  long   fecha máxima, segundos desde la época en UTC (redondeada arriba)
+ *  64  filtros de Bloom de referencias y de cuentas, sin comprimir
+ *      directorio: bytes comprimidos y originales de cada bloque (int, int)
+ *      bloques: una columna por campo y el índice de cuentas
+ * </pre>
+ * Los filtros y las fechas forman el resumen, lo único que se lee al arrancar; las columnas
+ * se descomprimen al consultar el segmento. El índice lleva las cuentas ordenadas y, por
+ * cada una, sus filas como origen o destino en orden de historial. Origen y destino son
+ * posiciones en esa lista, y monedas, estados, conceptos y motivos posiciones en un
+ * diccionario al principio de su columna: al leer, cada valor repetido es una sola instancia.
+ */
+final class SegmentoArchivo {
+    static final int CABECERA = 64;
+    private static final int MAGIA = 0x41524331;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".archivo";
+
+    private static final int ID = 0;
+    private static final int REFERENCIA = 1;
+    private static final int ORIGEN = 2;
+    private static final int DESTINO = 3;
+    private static final int MONEDA = 4;
+    private static final int ESTADO = 5;
+    private static final int CONCEPTO = 6;
+    private static final int MOTIVO = 7;
+    private static final int MONEDA_DESTINO = 8;
+    private static final int FECHA = 9;
+    private static final int ACTUALIZACION = 10;
+    private static final int MONTO = 11;
+    private static final int TASA = 12;
+    private static final int MONTO_DESTINO = 13;
+    private static final int INDICE = 14;
+    private static final int BLOQUES = 15;
+    private static final int[] DICCIONARIOS = {MONEDA, ESTADO, CONCEPTO, MOTIVO, MONEDA_DESTINO};
+
+    static final Comparator<Transferencia> HISTORIAL = Comparator
+            .comparing(Transferencia::getFechaTransferencia, Comparator.reverseOrder())
+            .thenComparing(Transferencia::getId, Comparator.reverseOrder());
+
+    private final long numero;
+    private final String[] ids;
+    private final String[] referencias;
+    private final int[] hashesReferencia;
+    private final String[] origenes;
+    private final String[] destinos;
+    private final String[] monedas;
+    private final String[] estados;
+    private final String[] conceptos;
+    private final String[] motivos;
+    private final String[] monedasDestino;
+    private final long[] segundos;
+    private final int[] nanos;
+    private final LocalDateTime[] actualizaciones;
+    private final BigDecimal[] montos;
+    private final BigDecimal[] tasas;
+    private final BigDecimal[] montosDestino;
+    private final String[] cuentas;
+    private final int[][] filasCuenta;
+
+    private SegmentoArchivo(long numero, int filas, int cuentas) {
+        this.numero = numero;
+        ids = new String[filas];
+        referencias = new String[filas];
+        hashesReferencia = new int[filas];
+        origenes = new String[filas];
+        destinos = new String[filas];
+        monedas = new String[filas];
+        estados = new String[filas];
+        conceptos = new String[filas];
+        motivos = new String[filas];
+        monedasDestino = new String[filas];
+        segundos = new long[filas];
+        nanos = new int[filas];
+        actualizaciones = new LocalDateTime[filas];
+        montos = new BigDecimal[filas];
+        tasas = new BigDecimal[filas];
+        montosDestino = new BigDecimal[filas];
+        this.cuentas = new String[cuentas];
+        filasCuenta = new int[cuentas][];
+    }
+
+    /** Lo que se conserva en memoria de cada segmento para decidir si hace falta abrirlo. */
+    static final class Resumen {
+        final long numero;
+        final Path ruta;
+        final int filas;
+        final long bytes;
+        final LocalDateTime fechaMinima;
+        final LocalDateTime fechaMaxima;
+        final FiltroBloom referencias;
+        final FiltroBloom cuentas;
+
+        private Resumen(long numero, Path ruta, int filas, long bytes, long fechaMinima, long fechaMaxima,
+                        FiltroBloom referencias, FiltroBloom cuentas) {
+            this.numero = numero;
+            this.ruta = ruta;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.fechaMinima = LocalDateTime.ofEpochSecond(fechaMinima, 0, ZoneOffset.UTC);
+            this.fechaMaxima = LocalDateTime.ofEpochSecond(fechaMaxima, 0, ZoneOffset.UTC);
+            this.referencias = referencias;
+            this.cuentas = cuentas;
+        }
+
+        /** Si alguna fila puede caer en [desde, hasta]; los extremos nulos no acotan. */
+        boolean cubre(LocalDateTime desde, LocalDateTime hasta) {
+            return (desde == null || !fechaMaxima.isBefore(desde)) && (hasta == null || !fechaMinima.isAfter(hasta));
+        }
+    }
+
+    /**
+     * Escribe las transferencias como el segmento con el número dado y devuelve su resumen.
+     * El fichero aparece completo o no aparece: se escribe aparte y se renombra.
+     */
+    static Resumen escribir(Path directorio, long numero, List<Transferencia> transferencias) throws IOException {
+        if (transferencias.isEmpty()) {
+            throw new IllegalArgumentException("Un segmento de archivo no puede estar vacío");
+        }
+        List<Transferencia> filas = new ArrayList<>(transferencias);
+        filas.sort(HISTORIAL);
+        int n = filas.size();
+
+        Escritor[] columnas = new Escritor[BLOQUES];
+        for (int b = 0; b < BLOQUES; b++) {
+            columnas[b] = new Escritor();
+        }
+        FiltroBloom filtroReferencias = new FiltroBloom(n);
+        Map<String, List<Integer>> porCuenta = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            Transferencia t = filas.get(i);
+            agregarFila(porCuenta, t.getCuentaOrigen(), i);
+            if (t.getCuentaDestino() != null && !t.getCuentaDestino().equals(t.getCuentaOrigen())) {
+                agregarFila(porCuenta, t.getCuentaDestino(), i);
+            }
+        }
+        Map<String, Integer> posicionCuenta = new HashMap<>();
+        for (String cuenta : porCuenta.keySet()) {
+            posicionCuenta.put(cuenta, posicionCuenta.size());
+        }
+        List<Map<String, Integer>> diccionarios = new ArrayList<>();
+        for (int b = 0; b < BLOQUES; b++) {
+            diccionarios.add(new LinkedHashMap<>());
+        }
+        LocalDateTime primera = filas.get(0).getFechaTransferencia();
+        long fechaMaxima = segundos(primera) + (primera.getNano() > 0 ? 1 : 0);
+        long anterior = 0;
+        for (int i = 0; i < n; i++) {
+            Transferencia t = filas.get(i);
+            columnas[ID].texto(t.getId());
+            columnas[REFERENCIA].texto(t.getCodigoReferencia());
+            columnas[ORIGEN].natural(codigo(posicionCuenta, t.getCuentaOrigen()));
+            columnas[DESTINO].natural(codigo(posicionCuenta, t.getCuentaDestino()));
+            columnas[MONEDA].natural(codigo(diccionarios.get(MONEDA), t.getMoneda()));
+            columnas[ESTADO].natural(codigo(diccionarios.get(ESTADO), t.getEstado()));
+            columnas[CONCEPTO].natural(codigo(diccionarios.get(CONCEPTO), t.getConcepto()));
+            columnas[MOTIVO].natural(codigo(diccionarios.get(MOTIVO), t.getMotivo()));
+            columnas[MONEDA_DESTINO].natural(codigo(diccionarios.get(MONEDA_DESTINO), t.getMonedaDestino()));
+            // Filas ordenadas por fecha: la diferencia con la anterior suele caber en un byte;
+            // la primera va completa
+            long fecha = segundos(t.getFechaTransferencia());
+            columnas[FECHA].largo(fecha - anterior).natural(t.getFechaTransferencia().getNano());
+            anterior = fecha;
+            LocalDateTime actualizacion = t.getFechaActualizacion();
+            if (actualizacion == null) {
+                columnas[ACTUALIZACION].natural(0);
+            } else {
+                columnas[ACTUALIZACION].natural(1).largo(segundos(actualizacion) - fecha).natural(actualizacion.getNano());
+            }
+            columnas[MONTO].importe(t.getMonto());
+            columnas[TASA].importe(t.getTasaCambio());
+            columnas[MONTO_DESTINO].importe(t.getMontoDestino());
+            if (t.getCodigoReferencia() != null) {
+                filtroReferencias.agregar(t.getCodigoReferencia());
+            }
+        }
+        long fechaMinima = anterior;
+        for (int b : DICCIONARIOS) {
+            Escritor conDiccionario = new Escritor().natural(diccionarios.get(b).size());
+            for (String valor : diccionarios.get(b).keySet()) {
+                conDiccionario.texto(valor);
+            }
+            columnas[b] = conDiccionario.bytes(columnas[b].bytes());
+        }
+
+        FiltroBloom filtroCuentas = new FiltroBloom(porCuenta.size());
+        Escritor indice = columnas[INDICE].natural(porCuenta.size());
+        for (Map.Entry<String, List<Integer>> cuenta : porCuenta.entrySet()) {
+            filtroCuentas.agregar(cuenta.getKey());
+            indice.texto(cuenta.getKey()).natural(cuenta.getValue().size());
+            int previa = 0;
+            for (int fila : cuenta.getValue()) {
+                indice.natural(fila - previa);
+                previa = fila;
+            }
+        }
+
+        byte[][] comprimidas = new byte[BLOQUES][];
+        int total = CABECERA + 8 * (filtroReferencias.bits().length + filtroCuentas.bits().length) + 8 * BLOQUES;
+        for (int b = 0; b < BLOQUES; b++) {
+            comprimidas[b] = comprimir(columnas[b].bytes());
+            total += comprimidas[b].length;
+        }
+        ByteBuffer fichero = ByteBuffer.allocate(total);
+        fichero.putInt(0, MAGIA).putInt(4, VERSION).putLong(8, numero).putInt(16, n)
+                .putInt(20, filtroReferencias.bits().length).putInt(24, filtroCuentas.bits().length)
+                .putLong(32, fechaMinima).putLong(40, fechaMaxima);
+        fichero.position(CABECERA);
+        for (long palabra : filtroReferencias.bits()) {
+            fichero.putLong(palabra);
+        }
+        for (long palabra : filtroCuentas.bits()) {
+            fichero.putLong(palabra);
+        }
+        for (int b = 0; b < BLOQUES; b++) {
+            fichero.putInt(comprimidas[b].length).putInt(columnas[b].tamano());
+        }
+        for (byte[] bloque : comprimidas) {
+            fichero.put(bloque);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(fichero.array(), CABECERA, total - CABECERA);
+        fichero.putInt(28, (int) crc.getValue());
+
+        Files.createDirectories(directorio);
+        Path ruta = directorio.resolve(nombre(numero));
+        Path temporal = directorio.resolve(nombre(numero) + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            fichero.position(0);
+            while (fichero.hasRemaining()) {
+                canal.write(fichero);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel dir = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        return new Resumen(numero, ruta, n, total, fechaMinima, fechaMaxima, filtroReferencias, filtroCuentas);
+    }
+
+    // 0 es nulo; si no, la posición más uno. Un valor nuevo se añade al final del diccionario
+    private static int codigo(Map<String, Integer> diccionario, String valor) {
+        if (valor == null) {
+            return 0;
+        }
+        Integer posicion = diccionario.get(valor);
+        if (posicion == null) {
+            posicion = diccionario.size();
+            diccionario.put(valor, posicion);
+        }
+        return posicion + 1;
+    }
+
+    private static void agregarFila(Map<String, List<Integer>> porCuenta, String cuenta, int fila) {
+        if (cuenta != null) {
+            porCuenta.computeIfAbsent(cuenta, c -> new ArrayList<>()).add(fila);
+        }
+    }
+
+    /** Lee solo la cabecera y los filtros. */
+    static Resumen resumen(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA);
+            while (cabecera.hasRemaining() && canal.read(cabecera) >= 0) {
+            }
+            if (cabecera.hasRemaining() || cabecera.getInt(0) != MAGIA || cabecera.getInt(4) != VERSION) {
+                throw new IOException("Segmento de archivo inválido: " + ruta);
+            }
+            int bitsReferencias = cabecera.getInt(20);
+            int bitsCuentas = cabecera.getInt(24);
+            ByteBuffer filtros = ByteBuffer.allocate(8 * (bitsReferencias + bitsCuentas));
+            while (filtros.hasRemaining() && canal.read(filtros) >= 0) {
+            }
+            if (filtros.hasRemaining()) {
+                throw new IOException("Segmento de archivo truncado: " + ruta);
+            }
+            filtros.flip();
+            long[] referencias = new long[bitsReferencias];
+            filtros.asLongBuffer().get(referencias);
+            long[] cuentas = new long[bitsCuentas];
+            filtros.position(8 * bitsReferencias).asLongBuffer().get(cuentas);
+            return new Resumen(cabecera.getLong(8), ruta, cabecera.getInt(16), canal.size(),
+                    cabecera.getLong(32), cabecera.getLong(40), new FiltroBloom(referencias), new FiltroBloom(cuentas));
+        }
+    }
+
+    /** Lee y descomprime el segmento completo comprobando su CRC. */
+    static SegmentoArchivo leer(Path ruta) throws IOException {
+        ByteBuffer fichero = ByteBuffer.wrap(Files.readAllBytes(ruta));
+        if (fichero.limit() < CABECERA || fichero.getInt(0) != MAGIA || fichero.getInt(4) != VERSION) {
+            throw new IOException("Segmento de archivo inválido: " + ruta);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(fichero.array(), CABECERA, fichero.limit() - CABECERA);
+        if ((int) crc.getValue() != fichero.getInt(28)) {
+            throw new IOException("CRC incorrecto en el segmento de archivo " + ruta);
+        }
+        int filas = fichero.getInt(16);
+        fichero.position(CABECERA + 8 * (fichero.getInt(20) + fichero.getInt(24)));
+        int[] comprimidos = new int[BLOQUES];
+        int[] originales = new int[BLOQUES];
+        for (int b = 0; b < BLOQUES; b++) {
+            comprimidos[b] = fichero.getInt();
+            originales[b] = fichero.getInt();
+        }
+        Lector[] columnas = new Lector[BLOQUES];
+        for (int b = 0; b < BLOQUES; b++) {
+            columnas[b] = new Lector(descomprimir(fichero, comprimidos[b], originales[b], ruta));
+        }
+
+        Lector indice = columnas[INDICE];
+        SegmentoArchivo s = new SegmentoArchivo(fichero.getLong(8), filas, (int) indice.natural());
+        for (int c = 0; c < s.cuentas.length; c++) {
+            s.cuentas[c] = indice.texto();
+            int[] filasCuenta = new int[(int) indice.natural()];
+            int fila = 0;
+            for (int j = 0; j < filasCuenta.length; j++) {
+                fila += (int) indice.natural();
+                filasCuenta[j] = fila;
+            }
+            s.filasCuenta[c] = filasCuenta;
+        }
+        String[][] diccionarios = new String[BLOQUES][];
+        for (int b : DICCIONARIOS) {
+            diccionarios[b] = new String[(int) columnas[b].natural()];
+            for (int v = 0; v < diccionarios[b].length; v++) {
+                diccionarios[b][v] = columnas[b].texto();
+            }
+        }
+        long anterior = 0;
+        for (int i = 0; i < filas; i++) {
+            s.ids[i] = columnas[ID].texto();
+            s.referencias[i] = columnas[REFERENCIA].texto();
+            s.hashesReferencia[i] = s.referencias[i] == null ? 0 : s.referencias[i].hashCode();
+            s.origenes[i] = valor(s.cuentas, columnas[ORIGEN]);
+            s.destinos[i] = valor(s.cuentas, columnas[DESTINO]);
+            s.monedas[i] = valor(diccionarios[MONEDA], columnas[MONEDA]);
+            s.estados[i] = valor(diccionarios[ESTADO], columnas[ESTADO]);
+            s.conceptos[i] = valor(diccionarios[CONCEPTO], columnas[CONCEPTO]);
+            s.motivos[i] = valor(diccionarios[MOTIVO], columnas[MOTIVO]);
+            s.monedasDestino[i] = valor(diccionarios[MONEDA_DESTINO], columnas[MONEDA_DESTINO]);
+            anterior += columnas[FECHA].largo();
+            s.segundos[i] = anterior;
+            s.nanos[i] = (int) columnas[FECHA].natural();
+            if (columnas[ACTUALIZACION].natural() != 0) {
+                long segundos = s.segundos[i] + columnas[ACTUALIZACION].largo();
+                s.actualizaciones[i] = LocalDateTime.ofEpochSecond(segundos, (int) columnas[ACTUALIZACION].natural(),
+                        ZoneOffset.UTC);
+            }
+            s.montos[i] = columnas[MONTO].importe();
+            s.tasas[i] = columnas[TASA].importe();
+            s.montosDestino[i] = columnas[MONTO_DESTINO].importe();
+        }
+        return s;
+    }
+
+    static List<Path> listar(Path directorio) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            return rutas.filter(r -> r.getFileName().toString().endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static String nombre(long numero) {
+        return String.format("%020d%s", numero, EXTENSION);
+    }
+
+    static long numero(Path ruta) {
+        String nombre = ruta.getFileName().toString();
+        return Long.parseLong(nombre.substring(0, nombre.length() - EXTENSION.length()));
+    }
+
+    long numero() {
+        return numero;
+    }
+
+    int filas() {
+        return ids.length;
+    }
+
+    List<Transferencia> transferencias() {
+        List<Transferencia> todas = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            todas.add(fila(i));
+        }
+        return todas;
+    }
+
+    Transferencia buscar(String codigoReferencia) {
+        int hash = codigoReferencia.hashCode();
+        for (int i = 0; i < referencias.length; i++) {
+            if (hashesReferencia[i] == hash && codigoReferencia.equals(referencias[i])) {
+                return fila(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Añade las transferencias de la cuenta en orden de historial, a partir de la posición
+     * (antesDeFecha, antesDeId) excluida y dentro de [desde, hasta]; limite 0 no limita.
+     */
+    void historial(String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId, LocalDateTime desde,
+                   LocalDateTime hasta, int limite, List<Transferencia> resultado) {
+        int c = Arrays.binarySearch(cuentas, numeroCuenta);
+        if (c < 0) {
+            return;
+        }
+        int anadidas = 0;
+        for (int fila : filasCuenta[c]) {
+            LocalDateTime fecha = fecha(fila);
+            if (desde != null && fecha.isBefore(desde)) {
+                return;
+            }
+            if ((hasta != null && fecha.isAfter(hasta)) || (antesDeFecha != null
+                    && (fecha.isAfter(antesDeFecha) || (fecha.isEqual(antesDeFecha) && ids[fila].compareTo(antesDeId) >= 0)))) {
+                continue;
+            }
+            resultado.add(fila(fila));
+            if (++anadidas == limite) {
+                return;
+            }
+        }
+    }
+
+    private LocalDateTime fecha(int fila) {
+        return LocalDateTime.ofEpochSecond(segundos[fila], nanos[fila], ZoneOffset.UTC);
+    }
+
+    private Transferencia fila(int i) {
+        return new Transferencia(ids[i], origenes[i], destinos[i], montos[i], monedas[i], estados[i], conceptos[i],
+                fecha(i), actualizaciones[i], referencias[i], motivos[i], monedasDestino[i], tasas[i], montosDestino[i]);
+    }
+
+    private static long segundos(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static String valor(String[] valores, Lector columna) {
+        int codigo = (int) columna.natural();
+        return codigo == 0 ? null : valores[codigo - 1];
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+            byte[] bloque = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                salida.write(bloque, 0, deflater.deflate(bloque));
+            }
+            return salida.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] descomprimir(ByteBuffer fichero, int comprimidos, int originales, Path ruta) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(fichero.array(), fichero.position(), comprimidos);
+            byte[] datos = new byte[originales];
+            int leidos = 0;
+            while (leidos < originales && !inflater.finished()) {
+                int n = inflater.inflate(datos, leidos, originales - leidos);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                leidos += n;
+            }
+            if (leidos != originales) {
+                throw new IOException("Bloque incompleto en el segmento de archivo " + ruta);
+            }
+            fichero.position(fichero.position() + comprimidos);
+            return datos;
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque corrupto en el segmento de archivo " + ruta, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Enteros de longitud variable (LEB128, con zigzag los que tienen signo), textos e importes. */
+    private static final class Escritor {
+        private byte[] datos = new byte[1024];
+        private int tamano;
+
+        Escritor natural(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                datos[tamano++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            datos[tamano++] = (byte) valor;
+            return this;
+        }
+
+        Escritor largo(long valor) {
+            return natural((valor << 1) ^ (valor >> 63));
+        }
+
+        // 0 es nulo; si no, la longitud en bytes más uno
+        Escritor texto(String texto) {
+            if (texto == null) {
+                return natural(0);
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            natural(bytes.length + 1L);
+            return bytes(bytes);
+        }
+
+        // 0 es nulo, 1 un valor sin escala que cabe en un long y 2 uno mayor, en complemento a dos
+        Escritor importe(BigDecimal importe) {
+            if (importe == null) {
+                return natural(0);
+            }
+            BigInteger sinEscala = importe.unscaledValue();
+            if (sinEscala.bitLength() <= 63) {
+                natural(1).largo(sinEscala.longValue());
+            } else {
+                byte[] bytes = sinEscala.toByteArray();
+                natural(2).natural(bytes.length).bytes(bytes);
+            }
+            return largo(importe.scale());
+        }
+
+        Escritor bytes(byte[] bytes) {
+            asegurar(bytes.length);
+            System.arraycopy(bytes, 0, datos, tamano, bytes.length);
+            tamano += bytes.length;
+            return this;
+        }
+
+        private void asegurar(int bytes) {
+            if (tamano + bytes > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tamano + bytes));
+            }
+        }
+
+        int tamano() {
+            return tamano;
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(datos, tamano);
+        }
+    }
+
+    private static final class Lector {
+        private final byte[] datos;
+        private int posicion;
+
+        Lector(byte[] datos) {
+            this.datos = datos;
+        }
+
+        long natural() {
+            long valor = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = datos[posicion++];
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            return valor;
+        }
+
+        long largo() {
+            long valor = natural();
+            return (valor >>> 1) ^ -(valor & 1);
+        }
+
+        String texto() {
+            int longitud = (int) natural() - 1;
+            if (longitud < 0) {
+                return null;
+            }
+            String texto = new String(datos, posicion, longitud, StandardCharsets.UTF_8);
+            posicion += longitud;
+            return texto;
+        }
+
+        BigDecimal importe() {
+            long tipo = natural();
+            if (tipo == 0) {
+                return null;
+            }
+            BigInteger sinEscala;
+            if (tipo == 1) {
+                sinEscala = BigInteger.valueOf(largo());
+            } else {
+                int longitud = (int) natural();
+                sinEscala = new BigInteger(datos, posicion, longitud);
+                posicion += longitud;
+            }
+            return new BigDecimal(sinEscala, (int) largo());
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.banco.bitacora;
+
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bitácora local de solo escritura al final con las transferencias aceptadas, en segmentos
+ * proyectados en memoria (ver {@link FormatoRegistro}). Un único hilo escritor toma todas las
+ * solicitudes pendientes, las copia seguidas y las lleva a disco con un solo force (escritura
+ * agrupada); cada solicitud se confirma cuando su registro ya es durable. Si el segmento no
+ * tiene sitio se pasa al siguiente, que otro hilo ya dejó preasignado en disco.
+ * Un error de escritura detiene la bitácora: a partir de ahí toda solicitud falla, porque ya
+ * no se puede garantizar qué llegó a disco. Del lote en curso solo se confirman las solicitudes
+ * que quedaron enteras en un segmento ya forzado al rotar; lo que escribieron las demás se borra
+ * del segmento antes de fallarlas, para que no se reproduzca al reabrir.
+ */
+@Component
+public class Bitacora {
+    private static final Logger log = LoggerFactory.getLogger(Bitacora.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.bitacora.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${banco.bitacora.directorio:bitacora}")
+    private String rutaDirectorio;
+
+    @Value("${banco.bitacora.tamano-segmento-mb:64}")
+    private int tamanoSegmentoMb;
+
+    // Registros como máximo por cada force
+    @Value("${banco.bitacora.lote-maximo:8192}")
+    private int loteMaximo;
+
+    // Solicitudes en cola; por encima se rechazan en lugar de esperar
+    @Value("${banco.bitacora.pendientes-maximos:65536}")
+    private int pendientesMaximos;
+
+    private Path directorio;
+    private int tamanoSegmento;
+    private BlockingQueue<Solicitud> cola;
+    private Thread escritor;
+    private volatile boolean detenida;
+    private volatile Throwable fallo;
+    private volatile long confirmadaHasta;
+    private final Sinks.Many<Long> confirmaciones = Sinks.many().replay().latest();
+
+    // Solo los usa el hilo escritor
+    private Segmento segmento;
+    private CompletableFuture<Path> preasignado;
+    private Timer forzado;
+    private DistributionSummary registrosPorForzado;
+
+    public Bitacora() {
+    }
+
+    public Bitacora(MeterRegistry meterRegistry, Path directorio, int tamanoSegmento, int loteMaximo) {
+        this.meterRegistry = meterRegistry;
+        this.directorio = directorio;
+        this.loteMaximo = loteMaximo;
+        this.pendientesMaximos = 65536;
+        this.habilitada = true;
+        iniciar(tamanoSegmento);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (habilitada) {
+            directorio = Path.of(rutaDirectorio);
+            iniciar(tamanoSegmentoMb * 1024 * 1024);
+        }
+    }
+
+    private void iniciar(int tamano) {
+        if (tamano < 2 * FormatoRegistro.MAXIMO + Segmento.CABECERA) {
+            throw new IllegalStateException("banco.bitacora.tamano-segmento-mb es demasiado pequeño");
+        }
+        tamanoSegmento = tamano;
+        try {
+            List<Path> segmentos = Segmento.listar(directorio);
+            if (!segmentos.isEmpty()) {
+                segmento = Segmento.abrir(segmentos.get(segmentos.size() - 1));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir la bitácora en " + directorio.toAbsolutePath(), e);
+        }
+        if (segmento != null) {
+            preasignarSiguiente();
+        }
+        confirmadaHasta = segmento == null ? 0 : segmento.siguienteSecuencia() - 1;
+        confirmaciones.tryEmitNext(confirmadaHasta);
+        log.info("Bitácora en {}, última secuencia {}", directorio.toAbsolutePath(), confirmadaHasta);
+
+        cola = new ArrayBlockingQueue<>(pendientesMaximos);
+        forzado = Timer.builder("banco.bitacora.forzado")
+                .description("Duración de cada escritura agrupada hasta quedar en disco")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        registrosPorForzado = DistributionSummary.builder("banco.bitacora.registros.por.forzado")
+                .description("Registros llevados a disco en cada escritura agrupada")
+                .register(meterRegistry);
+        Gauge.builder("banco.bitacora.pendientes", cola, BlockingQueue::size)
+                .description("Solicitudes esperando al escritor de la bitácora")
+                .register(meterRegistry);
+        escritor = new Thread(this::escribir, "bitacora-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (escritor == null || detenida) {
+            return;
+        }
+        // El escritor vacía la cola antes de terminar
+        detenida = true;
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Lo que entró en la cola después de la última vuelta del escritor ya no se escribirá
+        fallarPendientes();
+        try {
+            if (segmento != null) {
+                segmento.close();
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el segmento de la bitácora", e);
+        }
+        confirmaciones.tryEmitComplete();
+    }
+
+    public boolean habilitada() {
+        return habilitada;
+    }
+
+    public Path directorio() {
+        return directorio;
+    }
+
+    /** Última secuencia que ya está en disco; 0 si la bitácora está vacía. */
+    public long confirmadaHasta() {
+        return confirmadaHasta;
+    }
+
+    /** La última secuencia confirmada ahora y tras cada escritura agrupada. */
+    public Flux<Long> confirmaciones() {
+        return confirmaciones.asFlux();
+    }
+
+    /** Registra la transferencia y emite su secuencia una vez durable. */
+    public Mono<Long> registrar(Transferencia transferencia) {
+        return registrar(List.of(transferencia));
+    }
+
+    /** Registra las transferencias seguidas y emite la secuencia de la última una vez durables. */
+    public Mono<Long> registrar(List<Transferencia> transferencias) {
+        return registrar(transferencias, false);
+    }
+
+    /**
+     * Como {@link #registrar(List)}, pero con la cola llena espera sitio en lugar de rechazar. Es
+     * para quien ya aplicó las transferencias y no puede deshacerlas, como el motor de saldos; la
+     * solicitud entra en la cola en el momento de suscribirse, así que el orden es el de llamada.
+     * Puede ser mayor que un segmento: entonces se reparte entre varios y, si falla a medias, lo
+     * escrito en los segmentos ya llenos se reproduce al reabrir, como lo que aplicó quien llama.
+     * La confirmación llega en el hilo escritor: quien la recibe tiene que pasar a otro hilo.
+     */
+    public Mono<Long> registrarEsperando(List<Transferencia> transferencias) {
+        return registrar(transferencias, true);
+    }
+
+    private Mono<Long> registrar(List<Transferencia> transferencias, boolean esperar) {
+        Mono<Long> registro = Mono.create(sink -> {
+            if (!habilitada || detenida) {
+                sink.error(new IllegalStateException("La bitácora no está disponible"));
+                return;
+            }
+            if (fallo != null) {
+                sink.error(new IllegalStateException("La bitácora se detuvo por un error de escritura", fallo));
+                return;
+            }
+            // La codificación se reparte entre quienes registran; el escritor solo copia
+            byte[][] registros = new byte[transferencias.size()][];
+            int bytes = 0;
+            for (int i = 0; i < registros.length; i++) {
+                registros[i] = FormatoRegistro.codificar(transferencias.get(i));
+                bytes += registros[i].length;
+            }
+            // Quien compensa ante un error necesita que nada de lo que falla llegue a reproducirse
+            if (!esperar && bytes > tamanoSegmento - Segmento.CABECERA) {
+                sink.error(new IllegalArgumentException("Demasiadas transferencias para un segmento de la bitácora"));
+                return;
+            }
+            Solicitud solicitud = new Solicitud(registros, bytes, sink);
+            if (esperar) {
+                try {
+                    cola.put(solicitud);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    sink.error(new IllegalStateException("Interrumpido esperando sitio en la bitácora", e));
+                }
+            } else if (!cola.offer(solicitud)) {
+                sink.error(new IllegalStateException("La bitácora está saturada"));
+                return;
+            }
+            // Si cerrar ya vació la cola, nadie más la verá: se retira y falla aquí
+            if (detenida && cola.remove(solicitud)) {
+                sink.error(new IllegalStateException("La bitácora no está disponible"));
+            }
+        });
+        // Lo que sigue a la confirmación no corre en el hilo escritor
+        return esperar ? registro : registro.publishOn(Schedulers.parallel());
+    }
+
+    /** Los registros entre las dos secuencias, incluidas, por lotes y en orden. */
+    public Flux<List<RegistroBitacora>> leer(long desde, long hasta, int tamanoLote) {
+        return Flux.defer(() -> {
+                    LectorBitacora lector = new LectorBitacora(directorio);
+                    return Flux.<List<RegistroBitacora>, Long>generate(() -> desde, (siguiente, sink) -> {
+                        try {
+                            List<RegistroBitacora> lote = lector.leer(siguiente, hasta, tamanoLote);
+                            if (lote.isEmpty()) {
+                                sink.complete();
+                            } else {
+                                sink.next(lote);
+                            }
+                            // El primer lote puede empezar después de desde si ese tramo ya se retiró
+                            return lote.isEmpty() ? siguiente : lote.get(lote.size() - 1).secuencia() + 1;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Borra los segmentos más antiguos que ya no hacen falta para reconstruir: todos sus registros
+     * están proyectados hasta la secuencia dada y son anteriores al corte de un archivado ya
+     * completado, así que están en el archivo. Se para en el primero que no cumple, para que lo
+     * que queda siga siendo un tramo continuo, y nunca borra el último. Devuelve cuántos borró.
+     */
+    public int retirar(long proyectadaHasta, LocalDateTime corte) throws IOException {
+        List<Path> segmentos = Segmento.listar(directorio);
+        int retirados = 0;
+        for (int i = 0; i + 1 < segmentos.size(); i++) {
+            Path ruta = segmentos.get(i);
+            long ultima = Segmento.primeraSecuencia(segmentos.get(i + 1)) - 1;
+            if (ultima > proyectadaHasta || !anteriores(ruta, corte)) {
+                break;
+            }
+            Files.delete(ruta);
+            retirados++;
+        }
+        if (retirados > 0) {
+            log.info("Retirados {} segmentos de la bitácora anteriores a {}", retirados, corte);
+        }
+        return retirados;
+    }
+
+    // Si todos los registros del segmento son anteriores al corte
+    private static boolean anteriores(Path ruta, LocalDateTime corte) throws IOException {
+        MappedByteBuffer mapa = Segmento.mapearLectura(ruta);
+        long secuencia = Segmento.primeraSecuencia(ruta);
+        int posicion = Segmento.CABECERA;
+        int longitud;
+        while ((longitud = FormatoRegistro.validar(mapa, posicion, secuencia)) > 0) {
+            if (!FormatoRegistro.decodificar(mapa, posicion).getFechaTransferencia().isBefore(corte)) {
+                return false;
+            }
+            posicion += longitud;
+            secuencia++;
+        }
+        return true;
+    }
+
+    private void escribir() {
+        List<Solicitud> lote = new ArrayList<>();
+        while (true) {
+            Solicitud primera;
+            try {
+                primera = cola.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Con la interrupción pendiente los canales de fichero se cerrarían a medio escribir:
+                // el escritor se detiene sin escribir más y lo que queda en cola falla
+                Thread.currentThread().interrupt();
+                detenida = true;
+                fallarPendientes();
+                return;
+            }
+            if (primera == null) {
+                if (detenida && cola.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            lote.add(primera);
+            int registros = primera.registros.length;
+            Solicitud siguiente;
+            while (registros < loteMaximo && (siguiente = cola.poll()) != null) {
+                lote.add(siguiente);
+                registros += siguiente.registros.length;
+            }
+            if (fallo != null) {
+                lote.forEach(s -> s.sink.error(new IllegalStateException(
+                        "La bitácora se detuvo por un error de escritura", fallo)));
+            } else {
+                escribirLote(lote, registros);
+            }
+            lote.clear();
+        }
+    }
+
+    private void escribirLote(List<Solicitud> lote, int registros) {
+        long inicio = System.nanoTime();
+        // Solicitudes del principio del lote que ya están en disco y secuencia hasta la que llegan
+        int duraderas = 0;
+        long duraderaHasta = confirmadaHasta;
+        // Posición del segmento actual a partir de la cual nada está aún en disco
+        int desde = segmento == null ? 0 : segmento.posicion();
+        try {
+            for (int i = 0; i < lote.size(); i++) {
+                Solicitud solicitud = lote.get(i);
+                // Una solicitud que cabe en un segmento vacío no se parte entre dos: así lo escrito
+                // de una solicitud que falla está entero detrás de desde y se puede descartar
+                boolean entera = solicitud.bytes <= tamanoSegmento - Segmento.CABECERA;
+                if (segmento == null || entera && !segmento.cabe(solicitud.bytes)) {
+                    if (segmento != null) {
+                        // Lo escrito en el segmento lleno queda durable antes de pasar al siguiente;
+                        // si la rotación falla no queda nada suyo por descartar
+                        segmento.forzar(desde);
+                        duraderas = i;
+                        duraderaHasta = segmento.siguienteSecuencia() - 1;
+                        desde = segmento.posicion();
+                    }
+                    desde = rotar();
+                }
+                for (byte[] registro : solicitud.registros) {
+                    if (!segmento.cabe(registro.length)) {
+                        // Solo una solicitud mayor que un segmento llega aquí; su parte en el
+                        // segmento lleno queda durable aunque luego falle (ver registrarEsperando)
+                        segmento.forzar(desde);
+                        duraderas = i;
+                        duraderaHasta = segmento.siguienteSecuencia() - 1;
+                        desde = segmento.posicion();
+                        desde = rotar();
+                    }
+                    solicitud.ultima = segmento.escribir(registro);
+                }
+            }
+            segmento.forzar(desde);
+        } catch (Throwable e) {
+            log.error("Error de escritura en la bitácora; se detiene", e);
+            fallo = e;
+            // Lo que falla ya está copiado en el segmento y el sistema podría volcarlo: se borra
+            // antes de avisar, o al reabrir se reproducirían transferencias ya compensadas
+            descartar(desde);
+            confirmar(lote.subList(0, duraderas), duraderaHasta);
+            lote.subList(duraderas, lote.size()).forEach(s -> s.sink.error(e));
+            return;
+        }
+        forzado.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        registrosPorForzado.record(registros);
+        confirmar(lote, segmento.siguienteSecuencia() - 1);
+    }
+
+    private void descartar(int desde) {
+        if (segmento == null) {
+            return;
+        }
+        try {
+            segmento.descartar(desde);
+        } catch (Throwable e) {
+            log.error("No se pudo llevar a disco el descarte de {} desde la posición {}; los ceros siguen "
+                    + "pendientes de volcar", segmento.ruta(), desde, e);
+        }
+    }
+
+    private void confirmar(List<Solicitud> solicitudes, long hasta) {
+        confirmadaHasta = hasta;
+        solicitudes.forEach(s -> s.sink.success(s.ultima));
+        confirmaciones.tryEmitNext(hasta);
+    }
+
+    private void fallarPendientes() {
+        List<Solicitud> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        restantes.forEach(s -> s.sink.error(new IllegalStateException("La bitácora no está disponible")));
+    }
+
+    // Cierra el segmento lleno, ya forzado, y abre el siguiente
+    private int rotar() throws IOException {
+        long siguienteSecuencia = 1;
+        if (segmento != null) {
+            segmento.close();
+            siguienteSecuencia = segmento.siguienteSecuencia();
+        }
+        Path fichero = preasignado == null ? Segmento.preasignar(directorio, tamanoSegmento) : esperar(preasignado);
+        segmento = Segmento.crear(fichero, siguienteSecuencia, tamanoSegmento);
+        preasignarSiguiente();
+        return segmento.posicion();
+    }
+
+    private void preasignarSiguiente() {
+        preasignado = CompletableFuture.supplyAsync(() -> {
+            try {
+                return Segmento.preasignar(directorio, tamanoSegmento);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, tarea -> {
+            Thread hilo = new Thread(tarea, "bitacora-preasignacion");
+            hilo.setDaemon(true);
+            hilo.start();
+        });
+    }
+
+    private static Path esperar(CompletableFuture<Path> preasignado) throws IOException {
+        try {
+            return preasignado.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException io ? io.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private static final class Solicitud {
+        private final byte[][] registros;
+        private final int bytes;
+        private final MonoSink<Long> sink;
+        private long ultima;
+
+        Solicitud(byte[][] registros, int bytes, MonoSink<Long> sink) {
+            this.registros = registros;
+            this.bytes = bytes;
+            this.sink = sink;
+        }
+    }
+}
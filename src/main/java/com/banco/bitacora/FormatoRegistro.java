@@ -0,0 +1,199 @@
+package com.banco.bitacora;
+
+import com.banco.model.Transferencia;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Disposición binaria de un registro de la bitácora. Todos los campos tienen posición fija
+ * salvo el concepto, que va al final; la longitud total se redondea a 8 bytes.
+ * <pre>
+ *   0  int    longitud del registro (0 marca el final de los datos del segmento)
+ *   4  int    CRC32C de los bytes [8, longitud)
+ *   8  long   secuencia
+ *  16  long   fecha de la transferencia, segundos desde la época en UTC
+ *  24  int    nanosegundos de la fecha
+ *  28  short  escala del monto
+ *  30  short  bytes del concepto en UTF-8, -1 si es nulo
+ *  32  long   monto sin escala
+ *  40  id (32), código de referencia (32), cuenta origen (40), cuenta destino (40),
+ *      moneda (8) y estado (16): un byte de longitud (-1 si es nulo) y el texto en UTF-8
+ * 208  concepto
+ * </pre>
+ * Una transferencia entre monedas lleva tras el concepto un bloque de cambio:
+ * <pre>
+ *  +0  long   monto destino sin escala
+ *  +8  long   tasa sin escala
+ * +16  short  escala del monto destino
+ * +18  short  escala de la tasa
+ * +20  moneda destino (8), como los textos de arriba
+ * </pre>
+ * El relleno hasta 8 bytes nunca llega a ocupar un bloque, así que los registros anteriores a
+ * él se siguen leyendo igual. El motivo no se guarda: solo se registran transferencias
+ * aceptadas, que no lo llevan.
+ */
+final class FormatoRegistro {
+    static final int FIJO = 208;
+    static final int MAXIMO = FIJO + Short.MAX_VALUE + 7;
+
+    private static final int LONGITUD = 0;
+    private static final int CRC = 4;
+    private static final int SECUENCIA = 8;
+    private static final int SEGUNDOS = 16;
+    private static final int NANOS = 24;
+    private static final int ESCALA = 28;
+    private static final int BYTES_CONCEPTO = 30;
+    private static final int MONTO = 32;
+    private static final int ID = 40;
+    private static final int REFERENCIA = 72;
+    private static final int ORIGEN = 104;
+    private static final int DESTINO = 144;
+    private static final int MONEDA = 184;
+    private static final int ESTADO = 192;
+
+    private static final int CAMBIO = 28;
+    private static final int MONTO_DESTINO = 0;
+    private static final int TASA = 8;
+    private static final int ESCALA_MONTO_DESTINO = 16;
+    private static final int ESCALA_TASA = 18;
+    private static final int MONEDA_DESTINO = 20;
+
+    private FormatoRegistro() {
+    }
+
+    /** Registro completo con la secuencia y el CRC a cero; los pone {@link #sellar}. */
+    static byte[] codificar(Transferencia t) {
+        BigDecimal monto = t.getMonto();
+        if (monto == null || !representable(monto)) {
+            throw new IllegalArgumentException("Monto no representable en la bitácora: " + monto);
+        }
+        boolean conCambio = t.getMontoDestino() != null;
+        if (conCambio && (t.getTasaCambio() == null || !representable(t.getMontoDestino())
+                || !representable(t.getTasaCambio()))) {
+            throw new IllegalArgumentException("Cambio no representable en la bitácora: "
+                    + t.getTasaCambio() + " -> " + t.getMontoDestino());
+        }
+        byte[] concepto = t.getConcepto() == null ? null : t.getConcepto().getBytes(StandardCharsets.UTF_8);
+        if (concepto != null && concepto.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Concepto demasiado largo para la bitácora");
+        }
+        int finConcepto = FIJO + (concepto == null ? 0 : concepto.length);
+        int longitud = (finConcepto + (conCambio ? CAMBIO : 0) + 7) & ~7;
+        byte[] registro = new byte[longitud];
+        ByteBuffer b = ByteBuffer.wrap(registro);
+        LocalDateTime fecha = t.getFechaTransferencia();
+        b.putInt(LONGITUD, longitud);
+        b.putLong(SEGUNDOS, fecha.toEpochSecond(ZoneOffset.UTC));
+        b.putInt(NANOS, fecha.getNano());
+        b.putShort(ESCALA, (short) monto.scale());
+        b.putShort(BYTES_CONCEPTO, (short) (concepto == null ? -1 : concepto.length));
+        b.putLong(MONTO, monto.unscaledValue().longValue());
+        escribirTexto(b, ID, REFERENCIA - ID, t.getId());
+        escribirTexto(b, REFERENCIA, ORIGEN - REFERENCIA, t.getCodigoReferencia());
+        escribirTexto(b, ORIGEN, DESTINO - ORIGEN, t.getCuentaOrigen());
+        escribirTexto(b, DESTINO, MONEDA - DESTINO, t.getCuentaDestino());
+        escribirTexto(b, MONEDA, ESTADO - MONEDA, t.getMoneda());
+        escribirTexto(b, ESTADO, FIJO - ESTADO, t.getEstado());
+        if (concepto != null) {
+            b.put(FIJO, concepto);
+        }
+        if (conCambio) {
+            b.putLong(finConcepto + MONTO_DESTINO, t.getMontoDestino().unscaledValue().longValue());
+            b.putLong(finConcepto + TASA, t.getTasaCambio().unscaledValue().longValue());
+            b.putShort(finConcepto + ESCALA_MONTO_DESTINO, (short) t.getMontoDestino().scale());
+            b.putShort(finConcepto + ESCALA_TASA, (short) t.getTasaCambio().scale());
+            escribirTexto(b, finConcepto + MONEDA_DESTINO, CAMBIO - MONEDA_DESTINO, t.getMonedaDestino());
+        }
+        return registro;
+    }
+
+    private static boolean representable(BigDecimal importe) {
+        return importe.unscaledValue().bitLength() <= 63
+                && importe.scale() >= Short.MIN_VALUE && importe.scale() <= Short.MAX_VALUE;
+    }
+
+    static void sellar(byte[] registro, long secuencia) {
+        ByteBuffer b = ByteBuffer.wrap(registro);
+        b.putLong(SECUENCIA, secuencia);
+        CRC32C crc = new CRC32C();
+        crc.update(registro, SECUENCIA, registro.length - SECUENCIA);
+        b.putInt(CRC, (int) crc.getValue());
+    }
+
+    /**
+     * Longitud del registro en la posición dada si está completo, su CRC cuadra y lleva la
+     * secuencia esperada; -1 en otro caso, incluido el final de los datos.
+     */
+    static int validar(ByteBuffer b, int posicion, long secuencia) {
+        if (posicion + FIJO > b.limit()) {
+            return -1;
+        }
+        int longitud = b.getInt(posicion + LONGITUD);
+        if (longitud < FIJO || (longitud & 7) != 0 || longitud > b.limit() - posicion
+                || b.getLong(posicion + SECUENCIA) != secuencia
+                || FIJO + Math.max(0, b.getShort(posicion + BYTES_CONCEPTO)) > longitud) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(b.slice(posicion + SECUENCIA, longitud - SECUENCIA));
+        return (int) crc.getValue() == b.getInt(posicion + CRC) ? longitud : -1;
+    }
+
+    static Transferencia decodificar(ByteBuffer b, int posicion) {
+        LocalDateTime fecha = LocalDateTime.ofEpochSecond(
+                b.getLong(posicion + SEGUNDOS), b.getInt(posicion + NANOS), ZoneOffset.UTC);
+        Transferencia t = new Transferencia();
+        t.setId(leerTexto(b, posicion + ID));
+        t.setCodigoReferencia(leerTexto(b, posicion + REFERENCIA));
+        t.setCuentaOrigen(leerTexto(b, posicion + ORIGEN));
+        t.setCuentaDestino(leerTexto(b, posicion + DESTINO));
+        t.setMoneda(leerTexto(b, posicion + MONEDA));
+        t.setEstado(leerTexto(b, posicion + ESTADO));
+        t.setMonto(new BigDecimal(BigInteger.valueOf(b.getLong(posicion + MONTO)), b.getShort(posicion + ESCALA)));
+        t.setFechaTransferencia(fecha);
+        t.setFechaActualizacion(fecha);
+        short bytesConcepto = b.getShort(posicion + BYTES_CONCEPTO);
+        if (bytesConcepto >= 0) {
+            byte[] concepto = new byte[bytesConcepto];
+            b.get(posicion + FIJO, concepto);
+            t.setConcepto(new String(concepto, StandardCharsets.UTF_8));
+        }
+        int cambio = posicion + FIJO + Math.max(0, bytesConcepto);
+        if (posicion + b.getInt(posicion + LONGITUD) - cambio >= CAMBIO) {
+            t.setMontoDestino(new BigDecimal(BigInteger.valueOf(b.getLong(cambio + MONTO_DESTINO)),
+                    b.getShort(cambio + ESCALA_MONTO_DESTINO)));
+            t.setTasaCambio(new BigDecimal(BigInteger.valueOf(b.getLong(cambio + TASA)), b.getShort(cambio + ESCALA_TASA)));
+            t.setMonedaDestino(leerTexto(b, cambio + MONEDA_DESTINO));
+        }
+        return t;
+    }
+
+    private static void escribirTexto(ByteBuffer b, int posicion, int ancho, String texto) {
+        if (texto == null) {
+            b.put(posicion, (byte) -1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > ancho - 1) {
+            throw new IllegalArgumentException("Campo demasiado largo para la bitácora: " + texto);
+        }
+        b.put(posicion, (byte) bytes.length);
+        b.put(posicion + 1, bytes);
+    }
+
+    private static String leerTexto(ByteBuffer b, int posicion) {
+        int longitud = b.get(posicion);
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        b.get(posicion + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.banco.bitacora;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorre la bitácora en orden de secuencia con proyecciones de solo lectura. Recuerda dónde
+ * se quedó, así que pedir justo la secuencia siguiente no vuelve a recorrer el segmento.
+ * No es seguro entre hilos.
+ */
+final class LectorBitacora {
+    private final Path directorio;
+    private MappedByteBuffer mapa;
+    private long primeraDelMapa;
+    private int posicion;
+    private long siguiente = -1;
+
+    LectorBitacora(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Hasta máximo registros a partir de desde, sin pasar de hasta (una secuencia ya confirmada).
+     * Si desde está en un segmento ya retirado, empieza en el primero que queda.
+     */
+    List<RegistroBitacora> leer(long desde, long hasta, int maximo) throws IOException {
+        if (desde != siguiente) {
+            situar(desde);
+        }
+        List<RegistroBitacora> registros = new ArrayList<>(Math.min(maximo, 1024));
+        while (registros.size() < maximo && siguiente <= hasta) {
+            int longitud = mapa == null ? -1 : FormatoRegistro.validar(mapa, posicion, siguiente);
+            if (longitud < 0) {
+                // Al final de los datos de un segmento solo se sigue si el escritor ya rotó
+                if ((mapa != null && primeraDelMapa == siguiente)
+                        || !abrir(directorio.resolve(Segmento.nombre(siguiente)))) {
+                    break;
+                }
+                continue;
+            }
+            registros.add(new RegistroBitacora(siguiente, FormatoRegistro.decodificar(mapa, posicion)));
+            posicion += longitud;
+            siguiente++;
+        }
+        return registros;
+    }
+
+    private void situar(long desde) throws IOException {
+        mapa = null;
+        siguiente = desde;
+        List<Path> segmentos = Segmento.listar(directorio);
+        Path elegido = null;
+        for (Path ruta : segmentos) {
+            if (Segmento.primeraSecuencia(ruta) <= desde) {
+                elegido = ruta;
+            }
+        }
+        if (elegido == null && !segmentos.isEmpty()) {
+            // Lo anterior al primer segmento se retiró tras archivarlo: se sigue desde ahí
+            elegido = segmentos.get(0);
+        }
+        if (elegido == null || !abrir(elegido)) {
+            return;
+        }
+        siguiente = primeraDelMapa;
+        int longitud;
+        while (siguiente < desde && (longitud = FormatoRegistro.validar(mapa, posicion, siguiente)) > 0) {
+            posicion += longitud;
+            siguiente++;
+        }
+        if (siguiente < desde) {
+            // La secuencia pedida está en un segmento posterior que aún no existe
+            mapa = null;
+            siguiente = desde;
+        }
+    }
+
+    private boolean abrir(Path ruta) throws IOException {
+        if (!Files.exists(ruta)) {
+            return false;
+        }
+        mapa = Segmento.mapearLectura(ruta);
+        primeraDelMapa = Segmento.primeraSecuencia(ruta);
+        posicion = Segmento.CABECERA;
+        return true;
+    }
+}
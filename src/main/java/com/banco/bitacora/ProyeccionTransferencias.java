@@ -0,0 +1,171 @@
+package com.banco.bitacora;
+
+import com.banco.archivo.ArchivoTransferencias;
+import com.banco.exception.InsercionParcialException;
+import com.banco.model.Transferencia;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.TransferenciaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Lleva a la colección transferencias lo que la bitácora ya confirmó. Con la bitácora activa
+ * la inserción en Mongo sale del camino de la petición: esta proyección sigue la bitácora por
+ * lotes, inserta las transferencias que faltan y acumula los agregados diarios solo de esas.
+ * La última secuencia proyectada se guarda junto a los segmentos; tras un reinicio se sigue
+ * desde ahí. Volver a proyectar una transferencia ya insertada no tiene efecto, y una que ya
+ * se archivó y borró de la colección se salta, en lugar de insertarla y acumularla otra vez.
+ */
+@Component
+public class ProyeccionTransferencias {
+    private static final Logger log = LoggerFactory.getLogger(ProyeccionTransferencias.class);
+    private static final String FICHERO_POSICION = "proyeccion.posicion";
+
+    @Autowired
+    private Bitacora bitacora;
+
+    @Autowired
+    private TransferenciaRepository transferenciaRepository;
+
+    @Autowired
+    private AgregadoDiarioRepository agregadoDiarioRepository;
+
+    @Autowired
+    private ArchivoTransferencias archivo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.bitacora.proyeccion.lote:1000}")
+    private int tamanoLote;
+
+    private LectorBitacora lector;
+    private Disposable suscripcion;
+    private Counter insertadas;
+    private volatile long proyectadaHasta;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!bitacora.habilitada()) {
+            return;
+        }
+        proyectadaHasta = leerPosicion();
+        lector = new LectorBitacora(bitacora.directorio());
+        insertadas = Counter.builder("banco.bitacora.proyeccion.insertadas")
+                .description("Transferencias llevadas de la bitácora a Mongo")
+                .register(meterRegistry);
+        Gauge.builder("banco.bitacora.proyeccion.retraso", this, p -> bitacora.confirmadaHasta() - p.proyectadaHasta)
+                .description("Registros confirmados en la bitácora que aún no están en Mongo")
+                .register(meterRegistry);
+
+        // Solo importa la última confirmación: cada pasada proyecta todo lo pendiente hasta ella
+        suscripcion = bitacora.confirmaciones()
+                .onBackpressureLatest()
+                .concatMap(hasta -> proyectarHasta(hasta), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void detener() {
+        if (suscripcion != null) {
+            suscripcion.dispose();
+        }
+    }
+
+    public long proyectadaHasta() {
+        return proyectadaHasta;
+    }
+
+    private Mono<Void> proyectarHasta(long hasta) {
+        return Mono.defer(() -> proyectarLote(hasta))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100))
+                        .maxBackoff(Duration.ofSeconds(10))
+                        .doBeforeRetry(s -> log.warn("No se pudo proyectar la bitácora desde la secuencia {}; se reintenta",
+                                proyectadaHasta + 1, s.failure())))
+                .repeat(() -> proyectadaHasta < hasta)
+                .then();
+    }
+
+    private Mono<Void> proyectarLote(long hasta) {
+        if (proyectadaHasta >= hasta) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> lector.leer(proyectadaHasta + 1, hasta, tamanoLote))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(registros -> {
+                    if (registros.isEmpty()) {
+                        return Mono.error(new IllegalStateException(
+                                "Falta la secuencia " + (proyectadaHasta + 1) + " en la bitácora"));
+                    }
+                    long ultima = registros.get(registros.size() - 1).secuencia();
+                    List<Transferencia> transferencias = registros.stream().map(RegistroBitacora::transferencia).toList();
+                    return archivo.sinArchivar(transferencias)
+                            .flatMap(transferenciaRepository::insertarNuevas)
+                            // Al reintentar, las que sí se guardaron salen como ya existentes: se acumulan ahora
+                            .onErrorResume(InsercionParcialException.class,
+                                    e -> acumular(e.getInsertadas()).then(Mono.error(e)))
+                            .flatMap(nuevas -> acumular(nuevas).thenReturn(nuevas.size()))
+                            .doOnNext(n -> {
+                                proyectadaHasta = ultima;
+                                guardarPosicion(ultima);
+                            })
+                            .then();
+                });
+    }
+
+    // Igual que sin bitácora: un fallo aquí solo desajusta los extractos
+    private Mono<Void> acumular(List<Transferencia> nuevas) {
+        insertadas.increment(nuevas.size());
+        return agregadoDiarioRepository.acumular(nuevas)
+                .onErrorResume(e -> {
+                    log.error("No se pudieron actualizar los agregados diarios de {} transferencias",
+                            nuevas.size(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private long leerPosicion() {
+        Path ruta = bitacora.directorio().resolve(FICHERO_POSICION);
+        try {
+            return Files.exists(ruta) ? Long.parseLong(Files.readString(ruta, StandardCharsets.UTF_8).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            // Sin posición se proyecta desde el principio; las ya insertadas o archivadas se saltan
+            log.warn("No se pudo leer {}; la proyección empieza desde el principio de la bitácora", ruta, e);
+            return 0;
+        }
+    }
+
+    // No hace falta forzarla a disco: perderla solo hace repasar registros que ya están en la
+    // colección o en el archivo, y esos se saltan sin insertar ni acumular nada
+    private void guardarPosicion(long secuencia) {
+        Path ruta = bitacora.directorio().resolve(FICHERO_POSICION);
+        Path temporal = bitacora.directorio().resolve(FICHERO_POSICION + ".tmp");
+        try {
+            Files.writeString(temporal, Long.toString(secuencia), StandardCharsets.UTF_8);
+            Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("No se pudo guardar la posición de la proyección en {}", ruta, e);
+        }
+    }
+}
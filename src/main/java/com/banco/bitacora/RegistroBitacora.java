@@ -0,0 +1,22 @@
+package com.banco.bitacora;
+
+import com.banco.model.Transferencia;
+
+/** Transferencia leída de la bitácora junto con su secuencia. */
+public final class RegistroBitacora {
+    private final long secuencia;
+    private final Transferencia transferencia;
+
+    RegistroBitacora(long secuencia, Transferencia transferencia) {
+        this.secuencia = secuencia;
+        this.transferencia = transferencia;
+    }
+
+    public long secuencia() {
+        return secuencia;
+    }
+
+    public Transferencia transferencia() {
+        return transferencia;
+    }
+}
@@ -0,0 +1,176 @@
+package com.banco.bitacora;
+
+import com.banco.archivo.ArchivoTransferencias;
+import com.banco.dto.ResultadoBitacoraDTO;
+import com.banco.exception.InsercionParcialException;
+import com.banco.model.Transferencia;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.TransferenciaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reproduce la bitácora contra la colección transferencias: reconstruir inserta las que falten
+ * (con sus agregados diarios) y verificar compara cada registro con su documento sin escribir
+ * nada. Ambas recorren la bitácora hasta la última secuencia confirmada al empezar. Las que ya
+ * se archivaron no faltan: no se reinsertan ni se cuentan como faltantes.
+ */
+@Service
+public class ReproduccionBitacora {
+    private static final Logger log = LoggerFactory.getLogger(ReproduccionBitacora.class);
+    private static final int MAXIMO_EJEMPLOS = 20;
+
+    @Autowired
+    private Bitacora bitacora;
+
+    @Autowired
+    private TransferenciaRepository transferenciaRepository;
+
+    @Autowired
+    private AgregadoDiarioRepository agregadoDiarioRepository;
+
+    @Autowired
+    private ArchivoTransferencias archivo;
+
+    @Value("${banco.bitacora.proyeccion.lote:1000}")
+    private int tamanoLote;
+
+    public Mono<ResultadoBitacoraDTO> reconstruir(long desde) {
+        if (!bitacora.habilitada()) {
+            return Mono.error(new IllegalStateException("La bitácora no está habilitada"));
+        }
+        long hasta = bitacora.confirmadaHasta();
+        Recuento recuento = new Recuento(desde);
+        return bitacora.leer(desde, hasta, tamanoLote)
+                .concatMap(lote -> {
+                    recuento.leidas(lote);
+                    List<Transferencia> transferencias = lote.stream().map(RegistroBitacora::transferencia).toList();
+                    return archivo.sinArchivar(transferencias)
+                            .flatMap(transferenciaRepository::insertarNuevas)
+                            // Las que sí se guardaron no saldrían como nuevas en otra reconstrucción
+                            .onErrorResume(InsercionParcialException.class, e -> acumular(e.getInsertadas(), recuento)
+                                    .then(Mono.error(e)))
+                            .flatMap(nuevas -> acumular(nuevas, recuento));
+                }, 1)
+                .then(Mono.fromSupplier(() -> recuento.resultado(hasta)))
+                .doOnNext(r -> log.info("Reconstrucción desde la bitácora: {} revisadas, {} insertadas",
+                        r.getRevisadas(), r.getInsertadas()));
+    }
+
+    public Mono<ResultadoBitacoraDTO> verificar(long desde) {
+        if (!bitacora.habilitada()) {
+            return Mono.error(new IllegalStateException("La bitácora no está habilitada"));
+        }
+        long hasta = bitacora.confirmadaHasta();
+        Recuento recuento = new Recuento(desde);
+        return bitacora.leer(desde, hasta, tamanoLote)
+                .concatMap(lote -> transferenciaRepository
+                        .findAllById(lote.stream().map(r -> r.transferencia().getId()).toList())
+                        .collectMap(Transferencia::getId)
+                        .flatMap(guardadas -> {
+                            recuento.leidas(lote);
+                            List<Transferencia> ausentes = new ArrayList<>();
+                            for (RegistroBitacora registro : lote) {
+                                Transferencia registrada = registro.transferencia();
+                                Transferencia guardada = guardadas.get(registrada.getId());
+                                if (guardada == null) {
+                                    ausentes.add(registrada);
+                                } else if (!coincide(registrada, guardada)) {
+                                    recuento.distinta(registrada.getCodigoReferencia());
+                                }
+                            }
+                            return archivo.sinArchivar(ausentes)
+                                    .doOnNext(faltantes -> faltantes.forEach(t -> recuento.faltante(t.getCodigoReferencia())));
+                        }), 1)
+                .then(Mono.fromSupplier(() -> recuento.resultado(hasta)));
+    }
+
+    private Mono<Void> acumular(List<Transferencia> nuevas, Recuento recuento) {
+        nuevas.forEach(t -> recuento.insertada(t.getCodigoReferencia()));
+        return agregadoDiarioRepository.acumular(nuevas);
+    }
+
+    // Mongo guarda las fechas con precisión de milisegundos
+    private static boolean coincide(Transferencia registrada, Transferencia guardada) {
+        return Objects.equals(registrada.getCodigoReferencia(), guardada.getCodigoReferencia())
+                && Objects.equals(registrada.getCuentaOrigen(), guardada.getCuentaOrigen())
+                && Objects.equals(registrada.getCuentaDestino(), guardada.getCuentaDestino())
+                && guardada.getMonto() != null && registrada.getMonto().compareTo(guardada.getMonto()) == 0
+                && Objects.equals(registrada.getMoneda(), guardada.getMoneda())
+                && Objects.equals(registrada.getMonedaDestino(), guardada.getMonedaDestino())
+                && mismoImporte(registrada.getTasaCambio(), guardada.getTasaCambio())
+                && mismoImporte(registrada.getMontoDestino(), guardada.getMontoDestino())
+                && Objects.equals(registrada.getEstado(), guardada.getEstado())
+                && Objects.equals(registrada.getConcepto(), guardada.getConcepto())
+                && Objects.equals(registrada.getFechaTransferencia().truncatedTo(ChronoUnit.MILLIS),
+                guardada.getFechaTransferencia());
+    }
+
+    private static boolean mismoImporte(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
+    private static final class Recuento {
+        private final long desde;
+        private long ultimaLeida;
+        private long revisadas;
+        private long insertadas;
+        private long faltantes;
+        private long distintas;
+        private final List<String> ejemplos = new ArrayList<>();
+
+        Recuento(long desde) {
+            this.desde = desde;
+            this.ultimaLeida = desde - 1;
+        }
+
+        void leidas(List<RegistroBitacora> lote) {
+            revisadas += lote.size();
+            ultimaLeida = lote.get(lote.size() - 1).secuencia();
+        }
+
+        void insertada(String codigo) {
+            insertadas++;
+            ejemplo(codigo);
+        }
+
+        void faltante(String codigo) {
+            faltantes++;
+            ejemplo(codigo);
+        }
+
+        void distinta(String codigo) {
+            distintas++;
+            ejemplo(codigo);
+        }
+
+        private void ejemplo(String codigo) {
+            if (ejemplos.size() < MAXIMO_EJEMPLOS) {
+                ejemplos.add(codigo);
+            }
+        }
+
+        ResultadoBitacoraDTO resultado(long hasta) {
+            return ResultadoBitacoraDTO.builder()
+                    .desde(desde)
+                    .hasta(hasta)
+                    .ultimaLeida(ultimaLeida)
+                    .revisadas(revisadas)
+                    .insertadas(insertadas)
+                    .faltantes(faltantes)
+                    .distintas(distintas)
+                    .ejemplos(ejemplos)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.banco.bitacora;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Fichero de la bitácora de tamaño fijo, proyectado en memoria. El nombre es la primera
+ * secuencia que contiene, con ceros a la izquierda para que el orden alfabético sea el de
+ * escritura. Tras la cabecera van los registros seguidos; el primer registro inválido marca
+ * el final de los datos.
+ */
+final class Segmento implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(Segmento.class);
+
+    static final int CABECERA = 64;
+    private static final int MAGIA = 0x42495431;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".bitacora";
+    private static final String PREASIGNADO = "siguiente.preasignado";
+
+    private final Path ruta;
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final long primeraSecuencia;
+    private int posicion;
+    private long siguienteSecuencia;
+
+    private Segmento(Path ruta, FileChannel canal, MappedByteBuffer mapa, long primeraSecuencia) {
+        this.ruta = ruta;
+        this.canal = canal;
+        this.mapa = mapa;
+        this.primeraSecuencia = primeraSecuencia;
+        this.posicion = CABECERA;
+        this.siguienteSecuencia = primeraSecuencia;
+    }
+
+    /**
+     * Fichero del tamaño de un segmento con todos sus bloques ya escritos. En un fichero disperso
+     * cada force tendría que reservar bloques y registrar ese cambio de metadatos; así solo lleva
+     * los datos a disco.
+     */
+    static Path preasignar(Path directorio, int tamano) throws IOException {
+        Files.createDirectories(directorio);
+        Path ruta = directorio.resolve(PREASIGNADO);
+        Files.deleteIfExists(ruta);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer ceros = ByteBuffer.allocateDirect(1 << 20);
+            for (long escritos = 0; escritos < tamano; ) {
+                ceros.clear().limit((int) Math.min(ceros.capacity(), tamano - escritos));
+                while (ceros.hasRemaining()) {
+                    escritos += canal.write(ceros, escritos);
+                }
+            }
+            canal.force(true);
+        }
+        return ruta;
+    }
+
+    /** Convierte un fichero preasignado en el segmento que empieza en la secuencia dada. */
+    static Segmento crear(Path preasignado, long primeraSecuencia, int tamano) throws IOException {
+        Path directorio = preasignado.getParent();
+        Path ruta = directorio.resolve(nombre(primeraSecuencia));
+        Files.move(preasignado, ruta, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+        mapa.putInt(0, MAGIA).putInt(4, VERSION).putLong(8, primeraSecuencia).putInt(16, tamano);
+        mapa.force(0, CABECERA);
+        // El cambio de nombre también tiene que sobrevivir a una caída
+        try (FileChannel dir = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        return new Segmento(ruta, canal, mapa, primeraSecuencia);
+    }
+
+    /**
+     * Abre el segmento para seguir escribiendo: recorre los registros válidos y, si detrás
+     * queda un registro a medias de una caída, borra el resto del segmento.
+     */
+    static Segmento abrir(Path ruta) throws IOException {
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+        if (mapa.capacity() < CABECERA || mapa.getInt(0) != MAGIA || mapa.getInt(4) != VERSION) {
+            canal.close();
+            throw new IOException("Segmento de bitácora inválido: " + ruta);
+        }
+        Segmento segmento = new Segmento(ruta, canal, mapa, mapa.getLong(8));
+        int longitud;
+        while ((longitud = FormatoRegistro.validar(mapa, segmento.posicion, segmento.siguienteSecuencia)) > 0) {
+            segmento.posicion += longitud;
+            segmento.siguienteSecuencia++;
+        }
+        if (segmento.posicion + 4 <= mapa.capacity() && mapa.getInt(segmento.posicion) != 0) {
+            log.warn("Registro incompleto en {} tras la secuencia {}; se descarta el resto del segmento",
+                    ruta, segmento.siguienteSecuencia - 1);
+            byte[] ceros = new byte[64 * 1024];
+            for (int i = segmento.posicion; i < mapa.capacity(); i += ceros.length) {
+                mapa.put(i, ceros, 0, Math.min(ceros.length, mapa.capacity() - i));
+            }
+            mapa.force(segmento.posicion, mapa.capacity() - segmento.posicion);
+        }
+        return segmento;
+    }
+
+    static MappedByteBuffer mapearLectura(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    static List<Path> listar(Path directorio) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            return rutas.filter(r -> r.getFileName().toString().endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static String nombre(long primeraSecuencia) {
+        return String.format("%020d%s", primeraSecuencia, EXTENSION);
+    }
+
+    static long primeraSecuencia(Path ruta) {
+        String nombre = ruta.getFileName().toString();
+        return Long.parseLong(nombre.substring(0, nombre.length() - EXTENSION.length()));
+    }
+
+    boolean cabe(int longitud) {
+        return posicion + longitud <= mapa.capacity();
+    }
+
+    /** Copia el registro sellado con la siguiente secuencia y devuelve esa secuencia. */
+    long escribir(byte[] registro) {
+        long secuencia = siguienteSecuencia++;
+        FormatoRegistro.sellar(registro, secuencia);
+        mapa.put(posicion, registro);
+        posicion += registro.length;
+        return secuencia;
+    }
+
+    /** Lleva a disco lo escrito desde la posición dada. */
+    void forzar(int desde) {
+        if (posicion > desde) {
+            mapa.force(desde, posicion - desde);
+        }
+    }
+
+    /**
+     * Borra con ceros lo escrito desde la posición dada y lo lleva a disco, para que al reabrir
+     * el primer registro inválido marque ahí el final. Los ceros van a las mismas páginas que
+     * volcaría el sistema, así que tras un force fallido lo pendiente de volcar ya no son los registros.
+     */
+    void descartar(int desde) {
+        if (posicion <= desde) {
+            return;
+        }
+        byte[] ceros = new byte[64 * 1024];
+        for (int i = desde; i < posicion; i += ceros.length) {
+            mapa.put(i, ceros, 0, Math.min(ceros.length, posicion - i));
+        }
+        mapa.force(desde, posicion - desde);
+    }
+
+    int posicion() {
+        return posicion;
+    }
+
+    long primeraSecuencia() {
+        return primeraSecuencia;
+    }
+
+    long siguienteSecuencia() {
+        return siguienteSecuencia;
+    }
+
+    Path ruta() {
+        return ruta;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
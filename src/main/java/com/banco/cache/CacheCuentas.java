@@ -0,0 +1,164 @@
+package com.banco.cache;
+
+import com.banco.model.Cuenta;
+import com.banco.repository.CuentaRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caché de lectura delante de CuentaRepository. Los datos del titular (nombre, email, moneda,
+ * estado) cambian poco y viven más que el saldo, que se guarda aparte con su propio TTL.
+ * Cada fallo dispara una única consulta aunque lleguen cientos de lecturas a la vez, y toda
+ * escritura de saldo desde este nodo invalida la entrada antes de responder.
+ */
+@Component
+public class CacheCuentas {
+    @Autowired
+    private CuentaRepository cuentaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.cache.cuentas.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${banco.cache.cuentas.maximo:100000}")
+    private long maximo;
+
+    @Value("${banco.cache.cuentas.ttl-perfil-segundos:600}")
+    private long ttlPerfilSegundos;
+
+    @Value("${banco.cache.cuentas.ttl-saldo-segundos:5}")
+    private long ttlSaldoSegundos;
+
+    private AsyncCache<String, Cuenta> perfiles;
+    private AsyncCache<String, BigDecimal> saldos;
+    private AsyncCache<String, String> emails;
+
+    // Versión del saldo por cuenta, repartida en franjas para no crecer con el número de cuentas:
+    // cambia con cada invalidación y un saldo leído antes de un cambio no se precarga. Dos cuentas
+    // en la misma franja solo se cuestan alguna precarga de más
+    private static final int FRANJAS = 4096;
+    private final AtomicLongArray versionesSaldo = new AtomicLongArray(FRANJAS);
+
+    @PostConstruct
+    void iniciar() {
+        perfiles = crear(ttlPerfilSegundos);
+        saldos = crear(ttlSaldoSegundos);
+        emails = crear(ttlPerfilSegundos);
+        CaffeineCacheMetrics.monitor(meterRegistry, perfiles.synchronous(), "cuentas.perfil");
+        CaffeineCacheMetrics.monitor(meterRegistry, saldos.synchronous(), "cuentas.saldo");
+        CaffeineCacheMetrics.monitor(meterRegistry, emails.synchronous(), "cuentas.email");
+    }
+
+    private <V> AsyncCache<String, V> crear(long ttlSegundos) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .buildAsync();
+    }
+
+    public Mono<Cuenta> buscarPorNumeroCuenta(String numeroCuenta) {
+        if (!habilitada) {
+            return cuentaRepository.findByNumeroCuenta(numeroCuenta);
+        }
+        return Mono.fromFuture(() -> perfiles.get(numeroCuenta, (k, e) -> cargarPerfil(k)), true)
+                .flatMap(perfil -> Mono.fromFuture(() -> saldos.get(numeroCuenta, (k, e) -> cargarSaldo(k)), true)
+                        .map(saldo -> conSaldo(perfil, saldo)));
+    }
+
+    /** Datos del titular; el saldo que traiga puede no estar al día. No se debe modificar. */
+    public Mono<Cuenta> buscarPerfil(String numeroCuenta) {
+        if (!habilitada) {
+            return cuentaRepository.findByNumeroCuenta(numeroCuenta);
+        }
+        return Mono.fromFuture(() -> perfiles.get(numeroCuenta, (k, e) -> cargarPerfil(k)), true);
+    }
+
+    public Mono<Cuenta> buscarPorEmail(String email) {
+        if (!habilitada) {
+            return cuentaRepository.findByEmail(email);
+        }
+        return Mono.fromFuture(() -> emails.get(email, (k, e) -> cargarPorEmail(k)), true)
+                .flatMap(this::buscarPorNumeroCuenta);
+    }
+
+    public void invalidarSaldo(String numeroCuenta) {
+        versionesSaldo.incrementAndGet(franja(numeroCuenta));
+        saldos.synchronous().invalidate(numeroCuenta);
+    }
+
+    public void invalidar(Cuenta cuenta) {
+        versionesSaldo.incrementAndGet(franja(cuenta.getNumeroCuenta()));
+        perfiles.synchronous().invalidate(cuenta.getNumeroCuenta());
+        saldos.synchronous().invalidate(cuenta.getNumeroCuenta());
+        if (cuenta.getEmail() != null) {
+            emails.synchronous().invalidate(cuenta.getEmail());
+        }
+    }
+
+    public void invalidarEmail(String email) {
+        if (email != null) {
+            emails.synchronous().invalidate(email);
+        }
+    }
+
+    // Un valor nulo en el futuro no se guarda, así que las cuentas inexistentes no ocupan caché
+    private CompletableFuture<Cuenta> cargarPerfil(String numeroCuenta) {
+        long version = versionesSaldo.get(franja(numeroCuenta));
+        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
+                .doOnNext(cuenta -> precargarSaldo(cuenta, version))
+                .toFuture();
+    }
+
+    private CompletableFuture<BigDecimal> cargarSaldo(String numeroCuenta) {
+        return cuentaRepository.buscarSaldo(numeroCuenta).toFuture();
+    }
+
+    // Sin el número de cuenta antes de leer no hay versión con la que validar el saldo: solo se
+    // guarda el perfil y el saldo se carga aparte
+    private CompletableFuture<String> cargarPorEmail(String email) {
+        return cuentaRepository.findByEmail(email)
+                .doOnNext(cuenta -> perfiles.asMap().putIfAbsent(cuenta.getNumeroCuenta(),
+                        CompletableFuture.completedFuture(cuenta)))
+                .map(Cuenta::getNumeroCuenta)
+                .toFuture();
+    }
+
+    private void precargarSaldo(Cuenta cuenta, long version) {
+        int franja = franja(cuenta.getNumeroCuenta());
+        if (cuenta.getSaldo() == null || versionesSaldo.get(franja) != version) {
+            return;
+        }
+        CompletableFuture<BigDecimal> saldo = CompletableFuture.completedFuture(cuenta.getSaldo());
+        if (saldos.asMap().putIfAbsent(cuenta.getNumeroCuenta(), saldo) == null
+                && versionesSaldo.get(franja) != version) {
+            saldos.asMap().remove(cuenta.getNumeroCuenta(), saldo);
+        }
+    }
+
+    private static int franja(String numeroCuenta) {
+        int h = numeroCuenta.hashCode();
+        return (h ^ (h >>> 16)) & (FRANJAS - 1);
+    }
+
+    // Las entradas de la caché son compartidas: nunca se entregan para ser modificadas
+    private Cuenta conSaldo(Cuenta perfil, BigDecimal saldo) {
+        return new Cuenta(perfil.getId(), perfil.getNumeroCuenta(), perfil.getNombreTitular(), perfil.getEmail(),
+                saldo, perfil.getMoneda(), perfil.getFechaCreacion(), perfil.getUltimaActualizacion(),
+                perfil.getActiva(), perfil.getSaldoBase());
+    }
+}
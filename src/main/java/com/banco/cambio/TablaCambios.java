@@ -0,0 +1,135 @@
+package com.banco.cambio;
+
+import com.banco.model.Dinero;
+import com.banco.model.TipoCambio;
+import com.banco.model.Transferencia;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Foto inmutable de los tipos de cambio. Cada moneda tiene un índice y las tasas de todos los
+ * pares van en una matriz plana: buscar una tasa son dos lecturas de mapa y una de array, sin
+ * bloqueos ni asignaciones. Si solo se da un sentido de un par, el otro es su inversa.
+ */
+public final class TablaCambios {
+    public static final TablaCambios VACIA = new TablaCambios(Map.of(), new BigDecimal[0], 0, null);
+    private static final int PRECISION_MAXIMA = 18;
+
+    private final Map<String, Integer> indices;
+    private final int monedas;
+    private final BigDecimal[] tasas;
+    private final int pares;
+    private final Instant cargada;
+
+    private TablaCambios(Map<String, Integer> indices, BigDecimal[] tasas, int pares, Instant cargada) {
+        this.indices = indices;
+        this.monedas = indices.size();
+        this.tasas = tasas;
+        this.pares = pares;
+        this.cargada = cargada;
+    }
+
+    static TablaCambios de(Collection<TipoCambio> tipos, Instant cargada) {
+        Map<String, Integer> indices = new HashMap<>();
+        for (TipoCambio tipo : tipos) {
+            if (tipo.getOrigen() == null || tipo.getDestino() == null
+                    || tipo.getTasa() == null || tipo.getTasa().signum() <= 0
+                    // La bitácora guarda la tasa como un long sin escala
+                    || tipo.getTasa().stripTrailingZeros().precision() > PRECISION_MAXIMA) {
+                throw new IllegalArgumentException("Tipo de cambio inválido: " + tipo);
+            }
+            indices.putIfAbsent(tipo.getOrigen(), indices.size());
+            indices.putIfAbsent(tipo.getDestino(), indices.size());
+        }
+        int n = indices.size();
+        BigDecimal[] tasas = new BigDecimal[n * n];
+        int pares = 0;
+        for (TipoCambio tipo : tipos) {
+            if (tipo.getOrigen().equals(tipo.getDestino())) {
+                continue;
+            }
+            int origen = indices.get(tipo.getOrigen());
+            int destino = indices.get(tipo.getDestino());
+            if (tasas[origen * n + destino] != null) {
+                throw new IllegalArgumentException("Tipo de cambio repetido: " + tipo.getOrigen() + "/" + tipo.getDestino());
+            }
+            tasas[origen * n + destino] = tipo.getTasa();
+            pares++;
+        }
+        for (int origen = 0; origen < n; origen++) {
+            for (int destino = 0; destino < n; destino++) {
+                BigDecimal inversa = tasas[destino * n + origen];
+                if (origen != destino && tasas[origen * n + destino] == null && inversa != null) {
+                    tasas[origen * n + destino] = BigDecimal.ONE.divide(inversa, MathContext.DECIMAL64);
+                    pares++;
+                }
+            }
+        }
+        return new TablaCambios(Map.copyOf(indices), tasas, pares, cargada);
+    }
+
+    /** Tasa de origen a destino, o null si no hay. */
+    public BigDecimal tasa(String origen, String destino) {
+        Integer i = indices.get(origen);
+        Integer j = indices.get(destino);
+        return i == null || j == null ? null : tasas[i * monedas + j];
+    }
+
+    /**
+     * Deja la transferencia en la moneda de la cuenta origen y, si la destino usa otra, le fija
+     * la tasa y el monto convertido, redondeado a la escala de esa moneda. Devuelve el motivo
+     * del rechazo, o null. Sin moneda conocida en alguna de las cuentas no se convierte.
+     */
+    public String aplicar(Transferencia t, String monedaOrigen, String monedaDestino) {
+        if (monedaOrigen != null) {
+            if (t.getMoneda() != null && !t.getMoneda().equals(monedaOrigen)) {
+                return "La transferencia debe ir en la moneda de la cuenta origen (" + monedaOrigen + ")";
+            }
+            if (t.getMoneda() == null) {
+                // Sin moneda el monto solo se validó con la escala por defecto
+                try {
+                    Dinero.unidades(t.getMonto(), Dinero.escala(monedaOrigen));
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+                t.setMoneda(monedaOrigen);
+            }
+        }
+        if (monedaDestino == null || t.getMoneda() == null || monedaDestino.equals(t.getMoneda())) {
+            return null;
+        }
+        BigDecimal tasa = tasa(t.getMoneda(), monedaDestino);
+        if (tasa == null) {
+            return "No hay tipo de cambio de " + t.getMoneda() + " a " + monedaDestino;
+        }
+        BigDecimal convertido = t.getMonto().multiply(tasa)
+                .setScale(Dinero.escala(monedaDestino), RoundingMode.HALF_EVEN);
+        if (convertido.signum() <= 0) {
+            return "El monto convertido a " + monedaDestino + " es cero";
+        }
+        try {
+            Dinero.unidades(convertido, Dinero.escala(monedaDestino));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        t.setMonedaDestino(monedaDestino);
+        t.setTasaCambio(tasa);
+        t.setMontoDestino(convertido);
+        return null;
+    }
+
+    public int pares() {
+        return pares;
+    }
+
+    /** Cuándo se cargó; null en la tabla vacía inicial. */
+    public Instant cargada() {
+        return cargada;
+    }
+}
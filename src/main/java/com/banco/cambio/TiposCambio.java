@@ -0,0 +1,137 @@
+package com.banco.cambio;
+
+import com.banco.model.TipoCambio;
+import com.banco.repository.TipoCambioRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tipos de cambio vigentes, leídos de un fichero local o de la colección tipos_cambio y
+ * recargados periódicamente. Cada recarga construye una TablaCambios nueva y la sustituye de
+ * una vez: quien la está usando sigue con la anterior y nadie espera. Si una recarga falla se
+ * mantiene la última buena.
+ */
+@Component
+public class TiposCambio {
+    private static final Logger log = LoggerFactory.getLogger(TiposCambio.class);
+
+    @Autowired
+    private TipoCambioRepository tipoCambioRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // fichero | mongo
+    @Value("${banco.cambios.fuente:fichero}")
+    private String fuente;
+
+    @Value("${banco.cambios.fichero:tipos-cambio.csv}")
+    private String fichero;
+
+    @Value("${banco.cambios.refresco-segundos:60}")
+    private long refrescoSegundos;
+
+    private volatile TablaCambios tabla = TablaCambios.VACIA;
+    private Disposable refresco;
+
+    @PostConstruct
+    void iniciar() {
+        try {
+            tabla = cargar().block(Duration.ofSeconds(30));
+            log.info("Tipos de cambio cargados de {}: {} pares", fuente, tabla.pares());
+        } catch (RuntimeException e) {
+            log.error("No se pudieron cargar los tipos de cambio; solo se aceptan transferencias en una moneda", e);
+        }
+        Gauge.builder("banco.cambios.pares", this, t -> t.tabla.pares())
+                .description("Pares de monedas con tipo de cambio")
+                .register(meterRegistry);
+        Gauge.builder("banco.cambios.antiguedad", this, t -> t.tabla.cargada() == null
+                        ? Double.NaN : Duration.between(t.tabla.cargada(), Instant.now()).toSeconds())
+                .description("Segundos desde la última carga correcta de los tipos de cambio")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        if (refrescoSegundos > 0) {
+            refresco = Flux.interval(Duration.ofSeconds(refrescoSegundos))
+                    .onBackpressureDrop()
+                    .concatMap(n -> cargar()
+                            .doOnNext(nueva -> tabla = nueva)
+                            .onErrorResume(e -> {
+                                log.warn("No se pudieron recargar los tipos de cambio; se mantienen los anteriores", e);
+                                return Mono.empty();
+                            }), 1)
+                    .subscribe();
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        if (refresco != null) {
+            refresco.dispose();
+        }
+    }
+
+    public TablaCambios actual() {
+        return tabla;
+    }
+
+    private Mono<TablaCambios> cargar() {
+        if ("mongo".equals(fuente)) {
+            return tipoCambioRepository.findAll()
+                    .collectList()
+                    .map(tipos -> TablaCambios.de(tipos, Instant.now()));
+        }
+        return Mono.fromCallable(() -> TablaCambios.de(leerFichero(Path.of(fichero)), Instant.now()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Una línea ORIGEN,DESTINO,TASA por par; las vacías y las que empiezan por # se ignoran
+    static List<TipoCambio> leerFichero(Path ruta) throws IOException {
+        List<TipoCambio> tipos = new ArrayList<>();
+        if (!Files.exists(ruta)) {
+            return tipos;
+        }
+        int numero = 0;
+        for (String linea : Files.readAllLines(ruta, StandardCharsets.UTF_8)) {
+            numero++;
+            linea = linea.trim();
+            if (linea.isEmpty() || linea.startsWith("#")) {
+                continue;
+            }
+            String[] campos = linea.split(",");
+            try {
+                if (campos.length != 3) {
+                    throw new IllegalArgumentException("se esperaban tres campos");
+                }
+                String origen = campos[0].trim();
+                String destino = campos[1].trim();
+                tipos.add(new TipoCambio(origen + "/" + destino, origen, destino,
+                        new BigDecimal(campos[2].trim()), null));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Línea " + numero + " de " + ruta + " inválida: " + e.getMessage(), e);
+            }
+        }
+        return tipos;
+    }
+}
@@ -0,0 +1,363 @@
+package com.banco.conciliacion;
+
+import com.banco.dto.DescuadreDTO;
+import com.banco.id.Identificadores;
+import com.banco.model.Conciliacion;
+import com.banco.model.Cuenta;
+import com.banco.model.SaldoArchivado;
+import com.banco.model.Transferencia;
+import com.banco.repository.ConciliacionRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concilia cada saldo con sus transferencias: saldo == saldoBase + archivado + entradas - salidas,
+ * donde archivado es el neto de las que ya se movieron al archivo (saldos_archivados). Recorre
+ * las cuentas por rangos consecutivos de numeroCuenta y, para cada rango, lee en streaming las
+ * salidas y las entradas de esas cuentas por los índices de origen y destino. Los rangos se
+ * procesan en paralelo; la memoria depende del tamaño del rango y de la concurrencia, no del
+ * número de transferencias.
+ *
+ * <p>Con tráfico en curso un saldo leído y sus transferencias no son del mismo instante, así
+ * que cada descuadre se reverifica pasado un rato sumando en Mongo solo las de esa cuenta; el
+ * informe solo recoge los que persisten. Tras cada rango se guarda el punto de control y se
+ * puede reanudar desde él. El ritmo de lectura se limita en documentos por segundo.
+ */
+@Component
+public class Conciliador {
+    private static final Logger log = LoggerFactory.getLogger(Conciliador.class);
+    private static final String EXITOSA = "EXITOSA";
+    private static final String CABECERA = "numeroCuenta,moneda,saldo,esperado,diferencia";
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConciliacionRepository conciliacionRepository;
+
+    @Autowired
+    private Identificadores identificadores;
+
+    @Value("${banco.conciliacion.cuentas-por-particion:50000}")
+    private int cuentasPorParticion;
+
+    @Value("${banco.conciliacion.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${banco.conciliacion.tamano-lote-cursor:1000}")
+    private int tamanoLote;
+
+    @Value("${banco.conciliacion.documentos-por-segundo:20000}")
+    private volatile long documentosPorSegundo;
+
+    @Value("${banco.conciliacion.espera-reverificacion-ms:2000}")
+    private long esperaReverificacionMs;
+
+    @Value("${banco.conciliacion.directorio:conciliaciones}")
+    private String directorio;
+
+    @Value("${banco.conciliacion.maximo-ejemplos:100}")
+    private int maximoEjemplos;
+
+    private final AtomicReference<Disposable> enCurso = new AtomicReference<>();
+    private final AtomicLong proximoHueco = new AtomicLong(System.nanoTime());
+
+    /** Empieza una conciliación nueva, o reanuda la indicada desde su punto de control, en segundo plano. */
+    public Mono<Conciliacion> iniciar(String reanudar) {
+        Disposable.Swap reserva = Disposables.swap();
+        if (!enCurso.compareAndSet(null, reserva)) {
+            return Mono.error(new IllegalStateException("Ya hay una conciliación en curso"));
+        }
+        Mono<Conciliacion> conciliacion = reanudar == null
+                ? Mono.fromCallable(this::nueva).subscribeOn(Schedulers.boundedElastic())
+                : conciliacionRepository
+                .findById(reanudar)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("No existe la conciliación " + reanudar)))
+                .filter(c -> !Conciliacion.COMPLETADA.equals(c.getEstado()))
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("La conciliación ya está completada")));
+        return conciliacion
+                .doOnNext(c -> {
+                    c.setEstado(Conciliacion.EN_CURSO);
+                    c.setError(null);
+                    c.setActualizada(LocalDateTime.now());
+                })
+                .flatMap(conciliacionRepository::save)
+                // Si la detienen antes de arrancar, la reserva ya está cerrada y cancela la ejecución
+                .doOnNext(c -> reserva.update(ejecutar(c, reserva).subscribe()))
+                .doOnError(e -> enCurso.compareAndSet(reserva, null));
+    }
+
+    /** Detiene la conciliación en curso; se puede reanudar desde su último punto de control. */
+    public Mono<Boolean> detener() {
+        Disposable ejecucion = enCurso.getAndSet(null);
+        if (ejecucion == null) {
+            return Mono.just(false);
+        }
+        ejecucion.dispose();
+        return Mono.just(true);
+    }
+
+    public Mono<Conciliacion> consultar(String id) {
+        return conciliacionRepository.findById(id);
+    }
+
+    /** Descuadres confirmados, leídos del fichero del informe. */
+    public Flux<DescuadreDTO> descuadres(String id) {
+        return conciliacionRepository.findById(id)
+                .flatMapMany(c -> Flux.using(() -> Files.lines(Path.of(c.getFichero()), StandardCharsets.UTF_8),
+                        lineas -> Flux.fromStream(lineas.skip(1)).map(Conciliador::leerLinea),
+                        lineas -> lineas.close()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Cambia el ritmo de lectura en caliente; 0 lo deja sin límite. */
+    public long ritmo(long documentosPorSegundo) {
+        if (documentosPorSegundo < 0) {
+            throw new IllegalArgumentException("El ritmo no puede ser negativo");
+        }
+        this.documentosPorSegundo = documentosPorSegundo;
+        return documentosPorSegundo;
+    }
+
+    @PreDestroy
+    void apagar() {
+        Disposable ejecucion = enCurso.getAndSet(null);
+        if (ejecucion != null) {
+            ejecucion.dispose();
+        }
+    }
+
+    private Conciliacion nueva() throws IOException {
+        Conciliacion c = new Conciliacion();
+        c.setId(identificadores.nuevoId());
+        c.setIniciada(LocalDateTime.now());
+        Path fichero = Path.of(directorio).resolve("conciliacion-" + c.getId() + ".csv");
+        Files.createDirectories(fichero.toAbsolutePath().getParent());
+        Files.writeString(fichero, CABECERA + "\n", StandardCharsets.UTF_8);
+        c.setFichero(fichero.toString());
+        return c;
+    }
+
+    private Mono<Void> ejecutar(Conciliacion c, Disposable reserva) {
+        log.info("Conciliación {} desde la cuenta {}", c.getId(), c.getUltimaCuenta());
+        return particiones(c.getUltimaCuenta())
+                // En orden de número aunque se procesen a la vez: el punto de control siempre avanza
+                .flatMapSequential(this::conciliar, Math.max(1, concurrencia), 1)
+                .concatMap(p -> guardarAvance(c, p))
+                .then(Mono.defer(() -> terminar(c, Conciliacion.COMPLETADA, null)))
+                .onErrorResume(e -> {
+                    log.error("La conciliación {} ha fallado", c.getId(), e);
+                    return terminar(c, Conciliacion.FALLIDA, e.getMessage());
+                })
+                .doOnCancel(() -> terminar(c, Conciliacion.DETENIDA, null).subscribe())
+                .doFinally(s -> enCurso.compareAndSet(reserva, null));
+    }
+
+    private Mono<Void> terminar(Conciliacion c, String estado, String error) {
+        c.setEstado(estado);
+        c.setError(error);
+        c.setActualizada(LocalDateTime.now());
+        return conciliacionRepository.save(c)
+                .doOnNext(guardada -> log.info("Conciliación {} {}: {} cuentas, {} movimientos, {} descuadres, {} sin base",
+                        guardada.getId(), estado, guardada.getCuentas(), guardada.getMovimientos(),
+                        guardada.getDescuadres(), guardada.getSinBase()))
+                .then();
+    }
+
+    private Flux<ParticionCuentas> particiones(String desde) {
+        return cargar(desde).expand(p -> p.tamano() < cuentasPorParticion ? Mono.empty() : cargar(p.ultima()))
+                .filter(p -> p.tamano() > 0);
+    }
+
+    private Mono<ParticionCuentas> cargar(String desde) {
+        Query query = new Query(desde == null ? new Criteria() : Criteria.where("numeroCuenta").gt(desde))
+                .with(Sort.by("numeroCuenta"))
+                .limit(cuentasPorParticion)
+                .cursorBatchSize(tamanoLote);
+        query.fields().include("numeroCuenta", "saldo", "saldoBase", "moneda");
+        return leer(query, Cuenta.class)
+                .collect(() -> new ParticionCuentas(cuentasPorParticion), (p, d) -> p.agregar(d.getString("numeroCuenta"),
+                        importe(d.get("saldo")), importe(d.get("saldoBase")), d.getString("moneda")));
+    }
+
+    private Mono<ParticionCuentas> conciliar(ParticionCuentas p) {
+        Query salidas = Query.query(Criteria.where("cuentaOrigen").gte(p.primera()).lte(p.ultima()).and("estado").is(EXITOSA))
+                .cursorBatchSize(tamanoLote);
+        salidas.fields().include("cuentaOrigen", "monto");
+        Query entradas = Query.query(Criteria.where("cuentaDestino").gte(p.primera()).lte(p.ultima()).and("estado").is(EXITOSA))
+                .cursorBatchSize(tamanoLote);
+        entradas.fields().include("cuentaDestino", "monto", "montoDestino");
+        Query archivados = Query.query(Criteria.where("_id").gte(p.primera()).lte(p.ultima()))
+                .cursorBatchSize(tamanoLote);
+        return Mono.when(
+                        leer(archivados, SaldoArchivado.class)
+                                .doOnNext(d -> p.archivado(d.getString("_id"), importe(d.get("neto")))),
+                        leer(salidas, Transferencia.class)
+                                .doOnNext(d -> p.salida(d.getString("cuentaOrigen"), importe(d.get("monto")))),
+                        leer(entradas, Transferencia.class)
+                                .doOnNext(d -> p.entrada(d.getString("cuentaDestino"), importe(
+                                        d.get("montoDestino") != null ? d.get("montoDestino") : d.get("monto")))))
+                .then(Mono.defer(() -> reverificar(p.candidatos())))
+                .doOnNext(p::confirmar)
+                .thenReturn(p);
+    }
+
+    // Documentos crudos con el ritmo limitado por lotes: la espera frena también el cursor
+    private Flux<Document> leer(Query query, Class<?> entidad) {
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(entidad))
+                .buffer(tamanoLote)
+                .concatMap(lote -> pausa(lote.size()).thenReturn(lote), 1)
+                .flatMapIterable(lote -> lote);
+    }
+
+    private Mono<Void> pausa(int documentos) {
+        long ritmo = documentosPorSegundo;
+        if (ritmo <= 0) {
+            return Mono.empty();
+        }
+        long coste = documentos * 1_000_000_000L / ritmo;
+        long ahora = System.nanoTime();
+        long inicio = Math.max(ahora, proximoHueco.getAndAccumulate(coste, (previo, c) -> Math.max(previo, ahora) + c));
+        long espera = inicio - ahora;
+        return espera <= 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(espera)).then();
+    }
+
+    private Mono<List<DescuadreDTO>> reverificar(List<DescuadreDTO> candidatos) {
+        if (candidatos.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return Mono.delay(Duration.ofMillis(esperaReverificacionMs))
+                .thenMany(Flux.fromIterable(candidatos))
+                .flatMap(d -> reverificar(d.getNumeroCuenta()), 4)
+                .collectList();
+    }
+
+    // Suma en decimal, en Mongo, solo las transferencias de la cuenta
+    private Mono<DescuadreDTO> reverificar(String numeroCuenta) {
+        Query cuenta = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta));
+        cuenta.fields().include("numeroCuenta", "saldo", "saldoBase", "moneda");
+        return mongoTemplate.findOne(cuenta, Document.class, mongoTemplate.getCollectionName(Cuenta.class))
+                .flatMap(c -> Mono.zip(
+                        sumar(new Document("cuentaOrigen", numeroCuenta), "$monto"),
+                        sumar(new Document("cuentaDestino", numeroCuenta),
+                                new Document("$ifNull", List.of("$montoDestino", "$monto"))),
+                        mongoTemplate.findById(numeroCuenta, Document.class, mongoTemplate.getCollectionName(SaldoArchivado.class))
+                                .mapNotNull(d -> importe(d.get("neto")))
+                                .defaultIfEmpty(BigDecimal.ZERO))
+                        .mapNotNull(sumas -> {
+                            BigDecimal saldo = importe(c.get("saldo"));
+                            BigDecimal base = importe(c.get("saldoBase"));
+                            if (base == null) {
+                                return null;
+                            }
+                            saldo = saldo == null ? BigDecimal.ZERO : saldo;
+                            BigDecimal esperado = base.add(sumas.getT3()).add(sumas.getT2()).subtract(sumas.getT1());
+                            if (esperado.compareTo(saldo) == 0) {
+                                return null;
+                            }
+                            return DescuadreDTO.builder()
+                                    .numeroCuenta(numeroCuenta)
+                                    .moneda(c.getString("moneda"))
+                                    .saldo(saldo)
+                                    .esperado(esperado)
+                                    .diferencia(saldo.subtract(esperado))
+                                    .build();
+                        }));
+    }
+
+    private Mono<BigDecimal> sumar(Document filtro, Object importe) {
+        List<Document> pipeline = List.of(
+                new Document("$match", filtro.append("estado", EXITOSA)),
+                new Document("$group", new Document("_id", null).append("total", new Document("$sum", importe))));
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transferencia.class))
+                .flatMap(coleccion -> Mono.from(coleccion.aggregate(pipeline).first()))
+                .map(d -> importe(d.get("total")))
+                .defaultIfEmpty(BigDecimal.ZERO);
+    }
+
+    private Mono<Void> guardarAvance(Conciliacion c, ParticionCuentas p) {
+        List<DescuadreDTO> confirmados = p.confirmados();
+        Mono<Void> informe = confirmados.isEmpty() ? Mono.empty() : Mono.<Void>fromRunnable(() -> {
+            List<String> lineas = new ArrayList<>(confirmados.size());
+            for (DescuadreDTO d : confirmados) {
+                lineas.add(String.join(",", d.getNumeroCuenta(), String.valueOf(d.getMoneda()),
+                        d.getSaldo().toPlainString(), d.getEsperado().toPlainString(), d.getDiferencia().toPlainString()));
+            }
+            try {
+                Files.write(Path.of(c.getFichero()), lineas, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+        return informe.then(Mono.defer(() -> {
+            c.setUltimaCuenta(p.ultima());
+            c.setCuentas(c.getCuentas() + p.tamano());
+            c.setMovimientos(c.getMovimientos() + p.movimientos());
+            c.setDescuadres(c.getDescuadres() + confirmados.size());
+            c.setSinBase(c.getSinBase() + p.sinBase());
+            c.setHuerfanas(c.getHuerfanas() + p.huerfanas());
+            for (DescuadreDTO d : confirmados) {
+                if (c.getEjemplos().size() < maximoEjemplos) {
+                    c.getEjemplos().add(d);
+                }
+            }
+            c.setActualizada(LocalDateTime.now());
+            return conciliacionRepository.save(c).then();
+        }));
+    }
+
+    private static DescuadreDTO leerLinea(String linea) {
+        String[] campos = linea.split(",");
+        return DescuadreDTO.builder()
+                .numeroCuenta(campos[0])
+                .moneda(campos[1])
+                .saldo(new BigDecimal(campos[2]))
+                .esperado(new BigDecimal(campos[3]))
+                .diferencia(new BigDecimal(campos[4]))
+                .build();
+    }
+
+    // Decimal128 normalmente; texto o número binario si el documento es anterior a la migración
+    private static BigDecimal importe(Object valor) {
+        if (valor == null) {
+            return null;
+        }
+        if (valor instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        try {
+            return new BigDecimal(valor.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
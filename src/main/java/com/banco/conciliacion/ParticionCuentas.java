@@ -0,0 +1,181 @@
+package com.banco.conciliacion;
+
+import com.banco.dto.DescuadreDTO;
+import com.banco.model.Dinero;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Un rango de cuentas consecutivas por número con sus acumuladores en unidades mínimas de la
+ * moneda de cada cuenta. La cuenta de una transferencia se localiza por búsqueda binaria y
+ * todo va en arrays de primitivos, sin un objeto por cuenta. Las salidas y las entradas tienen
+ * arrays separados para que las acumulen dos flujos a la vez.
+ */
+final class ParticionCuentas {
+    private static final long SIN_BASE = Long.MIN_VALUE;
+
+    private final String[] numeros;
+    private final String[] monedas;
+    private final int[] escalas;
+    private final long[] saldos;
+    private final long[] bases;
+    private final long[] entradas;
+    private final long[] salidas;
+    // Algún importe no cabe en unidades mínimas: se decide en la reverificación, en decimal
+    private final boolean[] inexactasEntrada;
+    private final boolean[] inexactasSalida;
+    private final boolean[] inexactasArchivo;
+    private int tamano;
+    private long transferenciasSalida;
+    private long transferenciasEntrada;
+    private long huerfanasSalida;
+    private long huerfanasEntrada;
+    private List<DescuadreDTO> confirmados = List.of();
+
+    ParticionCuentas(int capacidad) {
+        numeros = new String[capacidad];
+        monedas = new String[capacidad];
+        escalas = new int[capacidad];
+        saldos = new long[capacidad];
+        bases = new long[capacidad];
+        entradas = new long[capacidad];
+        salidas = new long[capacidad];
+        inexactasEntrada = new boolean[capacidad];
+        inexactasSalida = new boolean[capacidad];
+        inexactasArchivo = new boolean[capacidad];
+    }
+
+    /** Las cuentas tienen que llegar ordenadas por número. */
+    void agregar(String numeroCuenta, BigDecimal saldo, BigDecimal base, String moneda) {
+        int i = tamano++;
+        numeros[i] = numeroCuenta;
+        monedas[i] = moneda;
+        escalas[i] = Dinero.escala(moneda);
+        bases[i] = SIN_BASE;
+        try {
+            saldos[i] = Dinero.unidades(saldo == null ? BigDecimal.ZERO : saldo, escalas[i]);
+            if (base != null) {
+                bases[i] = Dinero.unidades(base, escalas[i]);
+            }
+        } catch (IllegalArgumentException e) {
+            inexactasEntrada[i] = true;
+            if (base != null) {
+                bases[i] = 0;
+            }
+        }
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    String primera() {
+        return numeros[0];
+    }
+
+    String ultima() {
+        return numeros[tamano - 1];
+    }
+
+    // Solo desde el flujo de salidas
+    void salida(String numeroCuenta, BigDecimal monto) {
+        transferenciasSalida++;
+        int i = indice(numeroCuenta);
+        if (i < 0) {
+            huerfanasSalida++;
+        } else if (monto == null) {
+            inexactasSalida[i] = true;
+        } else {
+            try {
+                salidas[i] = Math.addExact(salidas[i], Dinero.unidades(monto, escalas[i]));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                inexactasSalida[i] = true;
+            }
+        }
+    }
+
+    // Solo desde el flujo de entradas
+    void entrada(String numeroCuenta, BigDecimal monto) {
+        transferenciasEntrada++;
+        int i = indice(numeroCuenta);
+        if (i < 0) {
+            huerfanasEntrada++;
+        } else if (monto == null) {
+            inexactasEntrada[i] = true;
+        } else {
+            try {
+                entradas[i] = Math.addExact(entradas[i], Dinero.unidades(monto, escalas[i]));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                inexactasEntrada[i] = true;
+            }
+        }
+    }
+
+    // Solo desde el flujo de saldos archivados: lo ya archivado pasa a formar parte de la base
+    void archivado(String numeroCuenta, BigDecimal neto) {
+        int i = indice(numeroCuenta);
+        if (i < 0 || bases[i] == SIN_BASE) {
+            return;
+        }
+        try {
+            bases[i] = Math.addExact(bases[i], Dinero.unidades(neto, escalas[i]));
+        } catch (IllegalArgumentException | ArithmeticException | NullPointerException e) {
+            inexactasArchivo[i] = true;
+        }
+    }
+
+    private int indice(String numeroCuenta) {
+        return numeroCuenta == null ? -1 : Arrays.binarySearch(numeros, 0, tamano, numeroCuenta);
+    }
+
+    /** Cuentas con base cuyo saldo no cuadra, o que no se pudieron sumar en unidades mínimas. */
+    List<DescuadreDTO> candidatos() {
+        List<DescuadreDTO> candidatos = new ArrayList<>();
+        for (int i = 0; i < tamano; i++) {
+            if (bases[i] == SIN_BASE) {
+                continue;
+            }
+            boolean inexacta = inexactasEntrada[i] || inexactasSalida[i] || inexactasArchivo[i];
+            long esperado = bases[i] + entradas[i] - salidas[i];
+            if (inexacta || esperado != saldos[i]) {
+                candidatos.add(DescuadreDTO.builder()
+                        .numeroCuenta(numeros[i])
+                        .moneda(monedas[i])
+                        .saldo(inexacta ? null : BigDecimal.valueOf(saldos[i], escalas[i]))
+                        .esperado(inexacta ? null : BigDecimal.valueOf(esperado, escalas[i]))
+                        .diferencia(inexacta ? null : BigDecimal.valueOf(saldos[i] - esperado, escalas[i]))
+                        .build());
+            }
+        }
+        return candidatos;
+    }
+
+    long sinBase() {
+        long sinBase = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (bases[i] == SIN_BASE) {
+                sinBase++;
+            }
+        }
+        return sinBase;
+    }
+
+    long movimientos() {
+        return transferenciasSalida + transferenciasEntrada;
+    }
+
+    long huerfanas() {
+        return huerfanasSalida + huerfanasEntrada;
+    }
+
+    List<DescuadreDTO> confirmados() {
+        return confirmados;
+    }
+
+    void confirmar(List<DescuadreDTO> confirmados) {
+        this.confirmados = confirmados;
+    }
+}
@@ -0,0 +1,220 @@
+package com.banco.concurrencia;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serializa las operaciones que tocan una misma cuenta repartiendo los números de cuenta
+ * en un conjunto fijo de carriles. Cada carril es un turno asíncrono: nunca bloquea un hilo,
+ * la siguiente operación se encadena cuando la anterior termina. Las operaciones sobre dos
+ * cuentas toman los carriles en orden de índice, por lo que no hay interbloqueos.
+ */
+@Component
+public class SecuenciadorCuentas {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.secuenciador.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${banco.secuenciador.carriles:64}")
+    private int numeroCarriles;
+
+    private Carril[] carriles;
+
+    public SecuenciadorCuentas() {
+    }
+
+    public SecuenciadorCuentas(MeterRegistry meterRegistry, int numeroCarriles) {
+        this.meterRegistry = meterRegistry;
+        this.numeroCarriles = numeroCarriles;
+        this.habilitado = true;
+        iniciar();
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (numeroCarriles < 1) {
+            throw new IllegalStateException("banco.secuenciador.carriles debe ser mayor que cero");
+        }
+        carriles = new Carril[numeroCarriles];
+        for (int i = 0; i < numeroCarriles; i++) {
+            carriles[i] = new Carril(i, meterRegistry);
+        }
+    }
+
+    public <T> Mono<T> ejecutar(String cuentaA, String cuentaB, Supplier<Mono<T>> tarea) {
+        if (!habilitado) {
+            return Mono.defer(tarea);
+        }
+        int a = indice(cuentaA);
+        int b = indice(cuentaB);
+        Carril primero = carriles[Math.min(a, b)];
+        Carril segundo = a == b ? null : carriles[Math.max(a, b)];
+
+        return Mono.defer(() -> {
+            Turno turno = new Turno(primero, segundo);
+            return Mono.<Void>create(turno::iniciar)
+                    .then(Mono.defer(tarea))
+                    .doFinally(s -> turno.liberar());
+        });
+    }
+
+    public int indice(String numeroCuenta) {
+        int h = numeroCuenta.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % carriles.length;
+    }
+
+    public int profundidad(int carril) {
+        return carriles[carril].ocupacion.get();
+    }
+
+    private static final class Carril {
+        private static final Scheduler CONCESIONES = Schedulers.parallel();
+
+        // Cada solicitud se encola antes de incrementar la ocupación, así al conceder siempre hay alguien en la cola
+        private final Queue<Espera> cola = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger ocupacion = new AtomicInteger();
+        private final Timer tiempoEspera;
+
+        Carril(int indice, MeterRegistry registry) {
+            String carril = String.valueOf(indice);
+            Gauge.builder("banco.secuenciador.profundidad", ocupacion, AtomicInteger::get)
+                    .description("Operaciones en curso o en espera en el carril")
+                    .tag("carril", carril)
+                    .register(registry);
+            this.tiempoEspera = Timer.builder("banco.secuenciador.espera")
+                    .description("Tiempo de espera hasta obtener el carril")
+                    .tag("carril", carril)
+                    .register(registry);
+        }
+
+        void solicitar(Espera espera) {
+            cola.offer(espera);
+            if (ocupacion.getAndIncrement() == 0) {
+                conceder();
+            }
+        }
+
+        // El siguiente turno se concede en otro hilo: concederlo aquí ejecutaría su operación dentro
+        // del doFinally de la anterior, y un carril largo de operaciones síncronas desbordaría la pila
+        void liberar() {
+            if (ocupacion.decrementAndGet() > 0) {
+                CONCESIONES.schedule(this::conceder);
+            }
+        }
+
+        private void conceder() {
+            Espera siguiente = cola.poll();
+            tiempoEspera.record(System.nanoTime() - siguiente.inicio, TimeUnit.NANOSECONDS);
+            siguiente.conceder();
+        }
+    }
+
+    private static final class Espera {
+        private static final int ESPERANDO = 0;
+        private static final int CONCEDIDA = 1;
+        private static final int ABANDONADA = 2;
+        private static final int LIBERADA = 3;
+
+        private final Carril carril;
+        private final Runnable alConceder;
+        private final AtomicInteger estado = new AtomicInteger(ESPERANDO);
+        private final long inicio = System.nanoTime();
+
+        Espera(Carril carril, Runnable alConceder) {
+            this.carril = carril;
+            this.alConceder = alConceder;
+        }
+
+        void conceder() {
+            if (estado.compareAndSet(ESPERANDO, CONCEDIDA)) {
+                alConceder.run();
+            } else {
+                // El solicitante se canceló mientras esperaba: el turno pasa al siguiente
+                carril.liberar();
+            }
+        }
+
+        void soltar() {
+            if (estado.compareAndSet(ESPERANDO, ABANDONADA)) {
+                return;
+            }
+            if (estado.compareAndSet(CONCEDIDA, LIBERADA)) {
+                carril.liberar();
+            }
+        }
+    }
+
+    private static final class Turno {
+        private final Carril primero;
+        private final Carril segundo;
+        private MonoSink<Void> sink;
+        private Espera esperaPrimero;
+        private Espera esperaSegundo;
+        private boolean terminado;
+
+        Turno(Carril primero, Carril segundo) {
+            this.primero = primero;
+            this.segundo = segundo;
+        }
+
+        void iniciar(MonoSink<Void> sink) {
+            Espera espera;
+            synchronized (this) {
+                this.sink = sink;
+                espera = new Espera(primero, this::primeroConcedido);
+                esperaPrimero = espera;
+            }
+            primero.solicitar(espera);
+        }
+
+        private void primeroConcedido() {
+            if (segundo == null) {
+                sink.success();
+                return;
+            }
+            Espera espera;
+            synchronized (this) {
+                if (terminado) {
+                    return;
+                }
+                espera = new Espera(segundo, sink::success);
+                esperaSegundo = espera;
+            }
+            segundo.solicitar(espera);
+        }
+
+        void liberar() {
+            Espera a;
+            Espera b;
+            synchronized (this) {
+                terminado = true;
+                a = esperaPrimero;
+                b = esperaSegundo;
+            }
+            if (b != null) {
+                b.soltar();
+            }
+            if (a != null) {
+                a.soltar();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.banco.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Protege /api/v1/admin/**, que reconfigura en caliente, migra, archiva y reproduce la bitácora:
+ * solo pasa quien presenta el token configurado como "Authorization: Bearer". Sin token
+ * configurado esas rutas no existen (404), para que un despliegue sin él no las exponga.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FiltroAdministracion implements WebFilter {
+    static final String ADMIN = "/api/v1/admin";
+    private static final String BEARER = "Bearer ";
+
+    private final byte[] token;
+
+    public FiltroAdministracion(@Value("${banco.admin.token:}") String token) {
+        this.token = token == null || token.isBlank() ? null : token.trim().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String ruta = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!ruta.equals(ADMIN) && !ruta.startsWith(ADMIN + "/")) {
+            return chain.filter(exchange);
+        }
+        if (token == null) {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        }
+        if (!autorizada(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))) {
+            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            exchange.getResponse().getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange);
+    }
+
+    private boolean autorizada(String cabecera) {
+        if (cabecera == null || !cabecera.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return false;
+        }
+        // Comparación en tiempo constante para no filtrar el token carácter a carácter
+        byte[] presentado = cabecera.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(token, presentado);
+    }
+}
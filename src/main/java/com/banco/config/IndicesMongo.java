@@ -0,0 +1,141 @@
+package com.banco.config;
+
+import com.banco.model.AgregadoDiario;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Crea al arrancar los índices declarados en el modelo (@Indexed, @CompoundIndex) y comprueba
+ * con explain que cada búsqueda de los repositorios usa un índice y no recorre la colección.
+ */
+@Component
+public class IndicesMongo {
+    private static final Logger log = LoggerFactory.getLogger(IndicesMongo.class);
+    private static final List<Class<?>> ENTIDADES = List.of(Cuenta.class, Transferencia.class, AgregadoDiario.class);
+    private static final List<Consulta> CONSULTAS = List.of(
+            new Consulta("CuentaRepository.findByNumeroCuenta", "cuentas", "numeroCuenta", ""),
+            new Consulta("CuentaRepository.findByEmail", "cuentas", "email", ""),
+            new Consulta("TransferenciaRepository.findByCuentaOrigen", "transferencias", "cuentaOrigen", ""),
+            new Consulta("TransferenciaRepository.findByCuentaDestino", "transferencias", "cuentaDestino", ""),
+            new Consulta("TransferenciaRepository.findByEstado", "transferencias", "estado", "EXITOSA"),
+            new Consulta("TransferenciaRepository.findByCodigoReferencia", "transferencias", "codigoReferencia", ""),
+            new Consulta("TransferenciaRepository.listarAnteriores", "transferencias", "fechaTransferencia", ""));
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @Value("${banco.indices.al-iniciar:true}")
+    private boolean alIniciar;
+
+    // advertir | fallar
+    @Value("${banco.indices.collscan:advertir}")
+    private String siHayCollscan;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (!alIniciar) {
+            return;
+        }
+        try {
+            crearIndices().block(Duration.ofMinutes(5));
+        } catch (RuntimeException e) {
+            log.error("No se pudieron crear los índices", e);
+        }
+
+        Map<String, String> planes;
+        try {
+            planes = verificarPlanes().block(Duration.ofMinutes(2));
+        } catch (RuntimeException e) {
+            log.error("No se pudieron verificar los planes de consulta", e);
+            return;
+        }
+        planes.forEach((consulta, etapa) -> {
+            if ("COLLSCAN".equals(etapa)) {
+                log.warn("La consulta {} recorre la colección completa (COLLSCAN)", consulta);
+            } else {
+                log.info("La consulta {} usa {}", consulta, etapa);
+            }
+        });
+        if ("fallar".equals(siHayCollscan) && planes.containsValue("COLLSCAN")) {
+            throw new IllegalStateException("Hay consultas sin índice: " + planes);
+        }
+    }
+
+    public Mono<Void> crearIndices() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        return Flux.fromIterable(ENTIDADES)
+                .concatMap(entidad -> Flux.fromIterable(resolver.resolveIndexFor(entidad))
+                        .concatMap(indice -> mongoTemplate.indexOps(entidad).ensureIndex(indice))
+                        .doOnNext(nombre -> log.info("Índice {} listo en {}", nombre,
+                                mongoTemplate.getCollectionName(entidad))))
+                .then();
+    }
+
+    // Consulta de cada método de búsqueda de los repositorios -> etapa de acceso del plan ganador
+    public Mono<Map<String, String>> verificarPlanes() {
+        return Flux.fromIterable(CONSULTAS)
+                .concatMap(c -> etapaDeAcceso(c.coleccion, c.filtro)
+                        .map(etapa -> Map.entry(c.finder, etapa)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    private Mono<String> etapaDeAcceso(String coleccion, Document filtro) {
+        return mongoTemplate.getCollection(coleccion)
+                .flatMap(c -> Mono.from(c.find(filtro).explain(Document.class)))
+                .map(explicacion -> {
+                    Document plan = explicacion.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+                    return etapaHoja(plan);
+                })
+                .onErrorResume(e -> {
+                    log.warn("No se pudo obtener el plan de {} {}", coleccion, filtro.toJson(), e);
+                    return Mono.just("DESCONOCIDO");
+                });
+    }
+
+    // La etapa más profunda del plan es la que accede a los datos: IXSCAN, COLLSCAN, EOF...
+    private static String etapaHoja(Document plan) {
+        Document actual = plan.containsKey("queryPlan") ? plan.get("queryPlan", Document.class) : plan;
+        while (true) {
+            if (actual.containsKey("inputStage")) {
+                actual = actual.get("inputStage", Document.class);
+            } else if (actual.containsKey("inputStages")) {
+                actual = actual.getList("inputStages", Document.class).get(0);
+            } else {
+                return actual.getString("stage");
+            }
+        }
+    }
+
+    private static final class Consulta {
+        private final String finder;
+        private final String coleccion;
+        private final Document filtro;
+
+        Consulta(String finder, String coleccion, String campo, Object valor) {
+            this.finder = finder;
+            this.coleccion = coleccion;
+            this.filtro = new Document(campo, valor);
+        }
+    }
+}
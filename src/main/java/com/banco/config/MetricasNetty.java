@@ -0,0 +1,40 @@
+package com.banco.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.regex.Pattern;
+
+/**
+ * Activa las métricas propias de Reactor Netty (conexiones, bytes, tiempos de respuesta y de
+ * escritura de datos) en el servidor HTTP. Los segmentos de la ruta con identificadores se
+ * sustituyen por {id} para que cada cuenta o transferencia no cree una serie distinta.
+ * Desactivadas salvo que se pidan: sus tiempos por ruta repiten los de http.server.requests.
+ */
+@Configuration
+@ConditionalOnProperty(name = "banco.metricas.netty.habilitadas", havingValue = "true")
+public class MetricasNetty {
+    private static final Pattern VERSION = Pattern.compile("v\\d+");
+
+    @Bean
+    public NettyServerCustomizer metricasServidorNetty() {
+        return servidor -> servidor.metrics(true, MetricasNetty::ruta);
+    }
+
+    static String ruta(String uri) {
+        int consulta = uri.indexOf('?');
+        String camino = consulta < 0 ? uri : uri.substring(0, consulta);
+        StringBuilder ruta = new StringBuilder(camino.length());
+        for (String segmento : camino.split("/")) {
+            if (segmento.isEmpty()) {
+                continue;
+            }
+            boolean variable = !VERSION.matcher(segmento).matches()
+                    && segmento.chars().anyMatch(c -> Character.isDigit(c) || c == '@');
+            ruta.append('/').append(variable ? "{id}" : segmento);
+        }
+        return ruta.length() == 0 ? "/" : ruta.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package com.banco.config;
+
+import com.banco.dto.ResultadoMigracionDTO;
+import com.banco.model.AgregadoDiario;
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.Transferencia;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reescribe como Decimal128 los importes que documentos antiguos guardan como texto o como
+ * número binario, en la escala de su moneda. Con texto las consultas por rango y $sum no
+ * funcionan y el $inc de los débitos falla. Un importe que no es exacto en unidades mínimas
+ * no se redondea: se deja como está y se informa.
+ */
+@Component
+public class MigracionImportes {
+    private static final Logger log = LoggerFactory.getLogger(MigracionImportes.class);
+    private static final int MAXIMO_EJEMPLOS = 20;
+    // Marca en la colección migraciones: tras una pasada completa no se vuelve a recorrer todo al arrancar
+    private static final String COLECCION_MIGRACIONES = "migraciones";
+    private static final String MARCA = "importes-decimal128";
+    private static final List<JsonSchemaObject.Type> TIPOS_A_MIGRAR = List.of(JsonSchemaObject.Type.stringType(),
+            JsonSchemaObject.Type.doubleType(), JsonSchemaObject.Type.intType(), JsonSchemaObject.Type.longType());
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${banco.migracion.importes.al-iniciar:true}")
+    private boolean alIniciar;
+
+    @Value("${banco.migracion.importes.lote:1000}")
+    private int tamanoLote;
+
+    @Value("${banco.migracion.importes.concurrencia:4}")
+    private int concurrencia;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (!alIniciar) {
+            return;
+        }
+        Query marca = Query.query(Criteria.where("_id").is(MARCA));
+        try {
+            if (Boolean.TRUE.equals(mongoTemplate.exists(marca, COLECCION_MIGRACIONES).block(Duration.ofSeconds(30)))) {
+                return;
+            }
+            List<ResultadoMigracionDTO> resultados = migrar()
+                    .doOnNext(r -> log.info("Importes migrados en {}.{}: {} de {} ({} no convertibles)",
+                            r.getColeccion(), r.getCampo(), r.getConvertidos(), r.getRevisados(), r.getNoConvertibles()))
+                    .collectList()
+                    .block(Duration.ofHours(1));
+            // Con importes no convertibles se vuelve a intentar en el próximo arranque
+            if (resultados != null && resultados.stream().allMatch(r -> r.getNoConvertibles() == 0)) {
+                mongoTemplate.upsert(marca, new Update().currentDate("fecha"), COLECCION_MIGRACIONES)
+                        .block(Duration.ofSeconds(30));
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron migrar los importes", e);
+        }
+    }
+
+    /** Migra campo a campo; cada uno se procesa por lotes que se escriben en paralelo. */
+    public Flux<ResultadoMigracionDTO> migrar() {
+        return Flux.concat(
+                migrar(mongoTemplate.getCollectionName(Cuenta.class), "saldo", true),
+                migrar(mongoTemplate.getCollectionName(Transferencia.class), "monto", true),
+                migrar(mongoTemplate.getCollectionName(AgregadoDiario.class), "entradas", false),
+                migrar(mongoTemplate.getCollectionName(AgregadoDiario.class), "salidas", false));
+    }
+
+    // Sin moneda en el documento (agregados) solo se cambia el tipo, sin reescalar
+    private Mono<ResultadoMigracionDTO> migrar(String coleccion, String campo, boolean conMoneda) {
+        return Mono.defer(() -> {
+            AtomicLong revisados = new AtomicLong();
+            AtomicLong convertidos = new AtomicLong();
+            AtomicLong noConvertibles = new AtomicLong();
+            List<String> ejemplos = new ArrayList<>();
+            Query query = Query.query(Criteria.where(campo).type(TIPOS_A_MIGRAR)).cursorBatchSize(tamanoLote);
+            query.fields().include(campo, "moneda");
+            return mongoTemplate.find(query, Document.class, coleccion)
+                    .buffer(tamanoLote)
+                    .flatMap(lote -> {
+                        ReactiveBulkOperations operaciones =
+                                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, coleccion);
+                        int conversiones = 0;
+                        for (Document documento : lote) {
+                            revisados.incrementAndGet();
+                            Object original = documento.get(campo);
+                            BigDecimal importe = convertir(original,
+                                    conMoneda ? Dinero.escala(documento.getString("moneda")) : null);
+                            if (importe == null) {
+                                noConvertibles.incrementAndGet();
+                                synchronized (ejemplos) {
+                                    if (ejemplos.size() < MAXIMO_EJEMPLOS) {
+                                        ejemplos.add(String.valueOf(documento.get("_id")));
+                                    }
+                                }
+                                continue;
+                            }
+                            // Si el importe cambió mientras tanto no se pisa; lo recogerá otra pasada
+                            operaciones.updateOne(
+                                    Query.query(Criteria.where("_id").is(documento.get("_id")).and(campo).is(original)),
+                                    new Update().set(campo, new Decimal128(importe)));
+                            conversiones++;
+                        }
+                        if (conversiones == 0) {
+                            return Mono.empty();
+                        }
+                        return operaciones.execute()
+                                .doOnNext(r -> convertidos.addAndGet(r.getModifiedCount()));
+                    }, concurrencia)
+                    .then(Mono.fromSupplier(() -> ResultadoMigracionDTO.builder()
+                            .coleccion(coleccion)
+                            .campo(campo)
+                            .revisados(revisados.get())
+                            .convertidos(convertidos.get())
+                            .noConvertibles(noConvertibles.get())
+                            .ejemplos(ejemplos)
+                            .build()));
+        });
+    }
+
+    /** Importe con esa escala (si la hay), o null si no es un número exacto en unidades mínimas. */
+    static BigDecimal convertir(Object valor, Integer escala) {
+        BigDecimal importe;
+        try {
+            if (valor instanceof String texto) {
+                importe = new BigDecimal(texto.trim());
+            } else if (valor instanceof Double doble) {
+                importe = BigDecimal.valueOf(doble);
+            } else if (valor instanceof Number numero) {
+                importe = BigDecimal.valueOf(numero.longValue());
+            } else {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (escala == null) {
+            return importe;
+        }
+        try {
+            return BigDecimal.valueOf(Dinero.unidades(importe, escala), escala);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
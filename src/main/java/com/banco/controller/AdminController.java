@@ -0,0 +1,145 @@
+package com.banco.controller;
+
+import com.banco.admision.ControlAdmision;
+import com.banco.archivo.Archivador;
+import com.banco.bitacora.ReproduccionBitacora;
+import com.banco.conciliacion.Conciliador;
+import com.banco.config.MigracionImportes;
+import com.banco.dto.ConfiguracionAdmisionDTO;
+import com.banco.dto.DescuadreDTO;
+import com.banco.dto.ErrorResponse;
+import com.banco.dto.EstadoArchivoDTO;
+import com.banco.dto.ResultadoBitacoraDTO;
+import com.banco.dto.ResultadoMigracionDTO;
+import com.banco.model.Conciliacion;
+import com.banco.service.ExtractoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+    @Autowired
+    private ExtractoService extractoService;
+
+    @Autowired
+    private ReproduccionBitacora reproduccionBitacora;
+
+    @Autowired
+    private MigracionImportes migracionImportes;
+
+    @Autowired
+    private ControlAdmision controlAdmision;
+
+    @Autowired
+    private Conciliador conciliador;
+
+    @Autowired
+    private Archivador archivador;
+
+    // Emite cada día a medida que queda reconstruido
+    @PostMapping(value = "/extractos/reconstruccion", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<LocalDate> reconstruirExtractos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return extractoService.reconstruir(desde, hasta);
+    }
+
+    // Inserta en Mongo las transferencias de la bitácora que falten, desde la secuencia dada
+    @PostMapping("/bitacora/reconstruccion")
+    public Mono<ResultadoBitacoraDTO> reconstruirDesdeBitacora(@RequestParam(defaultValue = "1") long desde) {
+        return reproduccionBitacora.reconstruir(desde);
+    }
+
+    // Compara la bitácora con la colección transferencias sin escribir nada
+    @GetMapping("/bitacora/verificacion")
+    public Mono<ResultadoBitacoraDTO> verificarBitacora(@RequestParam(defaultValue = "1") long desde) {
+        return reproduccionBitacora.verificar(desde);
+    }
+
+    // Pasa a Decimal128 los importes antiguos guardados como texto o número binario; emite un resultado por campo
+    @PostMapping(value = "/migraciones/importes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ResultadoMigracionDTO> migrarImportes() {
+        return migracionImportes.migrar();
+    }
+
+    @GetMapping("/admision")
+    public ConfiguracionAdmisionDTO configuracionAdmision() {
+        return controlAdmision.configuracion();
+    }
+
+    // Cambia en caliente los límites dados; los que faltan se quedan como están
+    @PutMapping("/admision")
+    public ConfiguracionAdmisionDTO configurarAdmision(@RequestBody ConfiguracionAdmisionDTO cambios) {
+        return controlAdmision.configurar(cambios);
+    }
+
+    // Arranca en segundo plano una conciliación de saldos, o reanuda la indicada desde su punto de control
+    @PostMapping("/conciliaciones")
+    public Mono<ResponseEntity<Conciliacion>> iniciarConciliacion(@RequestParam(required = false) String reanudar) {
+        return conciliador.iniciar(reanudar)
+                .map(c -> ResponseEntity.status(HttpStatus.ACCEPTED).body(c));
+    }
+
+    @PostMapping("/conciliaciones/detener")
+    public Mono<Boolean> detenerConciliacion() {
+        return conciliador.detener();
+    }
+
+    // Documentos leídos por segundo entre todas las particiones; 0 = sin límite
+    @PutMapping("/conciliaciones/ritmo")
+    public long ritmoConciliacion(@RequestParam long documentosPorSegundo) {
+        return conciliador.ritmo(documentosPorSegundo);
+    }
+
+    @GetMapping("/conciliaciones/{id}")
+    public Mono<ResponseEntity<Conciliacion>> consultarConciliacion(@PathVariable String id) {
+        return conciliador.consultar(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // Todos los descuadres confirmados, del fichero del informe
+    @GetMapping(value = "/conciliaciones/{id}/descuadres", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DescuadreDTO> descuadresConciliacion(@PathVariable String id) {
+        return conciliador.descuadres(id);
+    }
+
+    @GetMapping("/archivo")
+    public EstadoArchivoDTO estadoArchivo() {
+        return archivador.estado();
+    }
+
+    // Archiva ya, sin esperar al intervalo, todo lo anterior al corte
+    @PostMapping("/archivo")
+    public Mono<EstadoArchivoDTO> archivar() {
+        return archivador.archivar();
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public Mono<ResponseEntity<ErrorResponse>> manejarEstadoIlegal(
+            IllegalStateException e
+    ) {
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse("Operación no disponible", e.getMessage())));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Mono<ResponseEntity<ErrorResponse>> manejarArgumentoIlegal(
+            IllegalArgumentException e
+    ) {
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse("Solicitud inválida", e.getMessage())));
+    }
+}
@@ -1,34 +1,65 @@
 package com.banco.controller;
 
+import com.banco.admision.ControlAdmision;
 import com.banco.dto.CuentaDTO;
+import com.banco.dto.ErrorResponse;
+import com.banco.dto.EventoCuentaDTO;
+import com.banco.dto.ExtractoDTO;
+import com.banco.dto.ResultadoCuentaDTO;
+import com.banco.dto.ResultadoTransferenciaDTO;
 import com.banco.dto.TransferenciaDTO;
+import com.banco.eventos.BusEventos;
+import com.banco.exception.AdmisionRechazadaException;
 import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.exception.LimiteVelocidadException;
 import com.banco.exception.SaldoInsuficienteException;
 import com.banco.model.Cuenta;
 import com.banco.model.Transferencia;
 import com.banco.service.CuentaService;
+import com.banco.service.ExtractoService;
 import com.banco.service.TransferenciaService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1")
 @CrossOrigin("*")
 public class BancoController {
     private static final Logger log = LoggerFactory.getLogger(BancoController.class);
+    private static final String TEXT_CSV_VALUE = "text/csv";
     @Autowired
     private CuentaService cuentaService;
 
     @Autowired
     private TransferenciaService transferenciaService;
 
+    @Autowired
+    private ExtractoService extractoService;
+
+    @Autowired
+    private BusEventos busEventos;
+
+    // Un único temporizador compartido mantiene vivas todas las conexiones SSE abiertas
+    private final Flux<ServerSentEvent<EventoCuentaDTO>> latidos = Flux.interval(Duration.ofSeconds(15))
+            .map(i -> ServerSentEvent.<EventoCuentaDTO>builder().comment("latido").build())
+            .share();
+
     // ========== ENDPOINTS DE CUENTAS ==========
     @PostMapping("/cuentas")
     public Mono<ResponseEntity<CuentaDTO>> crearCuenta(@Valid @RequestBody Cuenta cuenta) {
@@ -43,9 +74,33 @@ public class BancoController {
                 .onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
     }
 
-    @GetMapping("/cuentas")
-    public Flux<CuentaDTO> obtenerTodasCuentas() {
-        return cuentaService.obtenerTodas();
+    @GetMapping(value = "/cuentas", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<?> obtenerTodasCuentas(@RequestParam(required = false) String fields) {
+        return cuentaService.obtenerTodas(fields);
+    }
+
+    @PostMapping(value = "/cuentas/importacion",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ResultadoCuentaDTO> importarCuentas(@RequestBody Flux<String> lineas) {
+        return cuentaService.importar(lineas);
+    }
+
+    @PostMapping(value = "/cuentas/importacion",
+            consumes = TEXT_CSV_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ResultadoCuentaDTO> importarCuentasCsv(@RequestBody Flux<String> lineas) {
+        return cuentaService.importarCsv(lineas);
+    }
+
+    @GetMapping(value = "/cuentas/exportacion", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CuentaDTO> exportarCuentas() {
+        return cuentaService.exportar();
+    }
+
+    @GetMapping(value = "/cuentas/exportacion", produces = TEXT_CSV_VALUE)
+    public Flux<String> exportarCuentasCsv() {
+        return cuentaService.exportarCsv();
     }
 
     @GetMapping("/cuentas/email/{email}")
@@ -55,19 +110,45 @@ public class BancoController {
                 .onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
     }
 
+    @GetMapping("/cuentas/{numeroCuenta}/extracto")
+    public Mono<ExtractoDTO> obtenerExtracto(
+            @PathVariable String numeroCuenta,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return extractoService.obtenerExtracto(numeroCuenta, desde, hasta);
+    }
+
+    @GetMapping(value = "/cuentas/{numeroCuenta}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<EventoCuentaDTO>> eventosCuenta(@PathVariable String numeroCuenta) {
+        Flux<ServerSentEvent<EventoCuentaDTO>> eventos = busEventos.suscribir(numeroCuenta)
+                .map(evento -> ServerSentEvent.builder(evento).event(evento.getTipo()).build());
+        return Flux.merge(eventos, latidos);
+    }
+
     // ========== ENDPOINTS DE TRANSFERENCIAS ==========
     @PostMapping("/transferencias")
     public Mono<ResponseEntity<TransferenciaDTO>> realizarTransferencia(
-            @Valid @RequestBody Transferencia transferencia
+            @Valid @RequestBody Transferencia transferencia,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia
     ) {
-        return transferenciaService.realizarTransferencia(transferencia)
+        // El cliente y la concurrencia ya los controla FiltroAdmision; la cuenta origen, solo si se ejecuta
+        return transferenciaService.realizarTransferencia(transferencia, claveIdempotencia)
                 .map(t -> ResponseEntity.status(HttpStatus.CREATED).body(t))
-                .onErrorResume(e -> {
+                // La admisión y las reglas de velocidad tienen su propia respuesta
+                .onErrorResume(e -> !(e instanceof LimiteVelocidadException || e instanceof AdmisionRechazadaException), e -> {
                     log.error("Error en transferencia: {}", e.getMessage());
                     return Mono.just(ResponseEntity.badRequest().build());
                 });
     }
 
+    @PostMapping(value = "/transferencias/lote",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ResultadoTransferenciaDTO> realizarLote(@RequestBody Flux<Transferencia> transferencias) {
+        return transferenciaService.realizarLote(transferencias);
+    }
+
     @GetMapping("/transferencias/{codigoReferencia}")
     public Mono<ResponseEntity<TransferenciaDTO>> obtenerTransferencia(
             @PathVariable String codigoReferencia
@@ -78,13 +159,36 @@ public class BancoController {
     }
 
     @GetMapping("/transferencias/historial/{numeroCuenta}")
-    public Flux<TransferenciaDTO> obtenerHistorial(@PathVariable String numeroCuenta) {
-        return transferenciaService.obtenerTransferenciasPorCuenta(numeroCuenta);
+    public Mono<ResponseEntity<List<TransferenciaDTO>>> obtenerHistorial(
+            @PathVariable String numeroCuenta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limite,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta
+    ) {
+        return transferenciaService.obtenerHistorial(numeroCuenta, cursor, limite, desde, hasta)
+                .map(pagina -> {
+                    ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+                    if (pagina.getSiguienteCursor() != null) {
+                        respuesta.header("X-Siguiente-Cursor", pagina.getSiguienteCursor());
+                    }
+                    return respuesta.body(pagina.getElementos());
+                });
     }
 
-    @GetMapping("/transferencias/estado/exitosas")
-    public Flux<TransferenciaDTO> obtenerTransferenciasExitosas() {
-        return transferenciaService.obtenerTransferenciasExitosas();
+    @GetMapping(value = "/transferencias/historial/{numeroCuenta}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<TransferenciaDTO> exportarHistorial(
+            @PathVariable String numeroCuenta,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta
+    ) {
+        return transferenciaService.obtenerTransferenciasPorCuenta(numeroCuenta, desde, hasta);
+    }
+
+    @GetMapping(value = "/transferencias/estado/exitosas",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<?> obtenerTransferenciasExitosas(@RequestParam(required = false) String fields) {
+        return transferenciaService.obtenerTransferenciasExitosas(fields);
     }
 
     // ========== MANEJO DE EXCEPCIONES ==========
@@ -97,6 +201,25 @@ public class BancoController {
                 .body(new ErrorResponse("Saldo insuficiente", e.getMessage())));
     }
 
+    @ExceptionHandler(AdmisionRechazadaException.class)
+    public Mono<ResponseEntity<ErrorResponse>> manejarAdmisionRechazada(
+            AdmisionRechazadaException e
+    ) {
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ControlAdmision.segundos(e.getEsperaNs())))
+                .<ErrorResponse>build());
+    }
+
+    @ExceptionHandler(LimiteVelocidadException.class)
+    public Mono<ResponseEntity<ErrorResponse>> manejarLimiteVelocidad(
+            LimiteVelocidadException e
+    ) {
+        return Mono.just(ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new ErrorResponse("Límite de velocidad excedido", e.getMessage())));
+    }
+
     @ExceptionHandler(CuentaNoEncontradaException.class)
     public Mono<ResponseEntity<ErrorResponse>> manejarCuentaNoEncontrada(
             CuentaNoEncontradaException e
@@ -132,13 +255,3 @@ public class BancoController {
                 .body(new ErrorResponse("Solicitud inválida", e.getMessage())));
     }
 }
-
-class ErrorResponse {
-    public String tipo;
-    public String mensaje;
-
-    public ErrorResponse(String tipo, String mensaje) {
-        this.tipo = tipo;
-        this.mensaje = mensaje;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Límites del control de admisión; al modificarlos, los campos nulos no cambian. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ConfiguracionAdmisionDTO {
+    private Boolean habilitada;
+    private Double tasaCliente;
+    private Integer rafagaCliente;
+    private Double tasaCuenta;
+    private Integer rafagaCuenta;
+    private Integer concurrenciaMinima;
+    private Integer concurrenciaMaxima;
+    private Long latenciaObjetivoMs;
+    // Solo lectura
+    private Integer limiteConcurrencia;
+    private Integer enCurso;
+}
@@ -0,0 +1,21 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DescuadreDTO {
+    private String numeroCuenta;
+    private String moneda;
+    private BigDecimal saldo;
+    // saldoBase + entradas - salidas
+    private BigDecimal esperado;
+    private BigDecimal diferencia;
+}
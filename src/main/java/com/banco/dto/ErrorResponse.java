@@ -0,0 +1,14 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Cuerpo de las respuestas de error de la API. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ErrorResponse {
+    private String tipo;
+    private String mensaje;
+}
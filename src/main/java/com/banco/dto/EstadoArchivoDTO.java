@@ -0,0 +1,24 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class EstadoArchivoDTO {
+    private Integer segmentos;
+    private Long filas;
+    private Long bytes;
+    // Transferencia archivada más reciente, redondeada al segundo
+    private LocalDateTime fechaMaxima;
+    private LocalDateTime ultimaEjecucion;
+    private LocalDateTime ultimoCorte;
+    // Movidas fuera de la colección en la última ejecución
+    private Long ultimasArchivadas;
+}
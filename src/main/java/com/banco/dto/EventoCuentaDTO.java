@@ -0,0 +1,31 @@
+package com.banco.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EventoCuentaDTO {
+    public static final String TRANSFERENCIA_ENTRANTE = "TRANSFERENCIA_ENTRANTE";
+    public static final String TRANSFERENCIA_SALIENTE = "TRANSFERENCIA_SALIENTE";
+    public static final String CUENTA_ACTUALIZADA = "CUENTA_ACTUALIZADA";
+    public static final String CUENTA_ELIMINADA = "CUENTA_ELIMINADA";
+
+    private String tipo;
+    private String numeroCuenta;
+    private BigDecimal saldo;
+    private String moneda;
+    private String codigoReferencia;
+    private String contraparte;
+    private BigDecimal monto;
+    private LocalDateTime fecha;
+}
@@ -0,0 +1,30 @@
+package com.banco.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExtractoDTO {
+    private String numeroCuenta;
+    private String moneda;
+    private LocalDate desde;
+    private LocalDate hasta;
+    private BigDecimal saldoApertura;
+    private BigDecimal saldoCierre;
+    private BigDecimal totalEntradas;
+    private BigDecimal totalSalidas;
+    private Long numeroEntradas;
+    private Long numeroSalidas;
+    private List<MovimientoDiarioDTO> dias;
+}
@@ -0,0 +1,25 @@
+package com.banco.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovimientoDiarioDTO {
+    private LocalDate fecha;
+    private BigDecimal saldoApertura;
+    private BigDecimal saldoCierre;
+    private BigDecimal totalEntradas;
+    private BigDecimal totalSalidas;
+    private Long numeroEntradas;
+    private Long numeroSalidas;
+}
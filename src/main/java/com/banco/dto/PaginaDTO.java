@@ -0,0 +1,15 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaDTO<T> {
+    private List<T> elementos;
+    private String siguienteCursor;
+}
@@ -0,0 +1,25 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoBitacoraDTO {
+    private Long desde;
+    private Long hasta;
+    // Menor que hasta si un registro intermedio no pasó la verificación de CRC
+    private Long ultimaLeida;
+    private Long revisadas;
+    private Long insertadas;
+    private Long faltantes;
+    private Long distintas;
+    // Códigos de referencia de las primeras transferencias insertadas, faltantes o distintas
+    private List<String> ejemplos;
+}
@@ -0,0 +1,17 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoCuentaDTO {
+    private Long posicion;
+    private CuentaDTO cuenta;
+    private String error;
+    private String mensaje;
+}
@@ -0,0 +1,23 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoMigracionDTO {
+    private String coleccion;
+    private String campo;
+    private Long revisados;
+    private Long convertidos;
+    // Importes que no son exactos en unidades mínimas de su moneda; se dejan como estaban
+    private Long noConvertibles;
+    // Ids de los primeros documentos no convertibles
+    private List<String> ejemplos;
+}
@@ -0,0 +1,17 @@
+package com.banco.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoTransferenciaDTO {
+    private Long posicion;
+    private TransferenciaDTO transferencia;
+    private String error;
+    private String mensaje;
+}
@@ -1,5 +1,6 @@
 package com.banco.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,6 +19,13 @@ public class TransferenciaDTO {
     private String cuentaDestino;
     private BigDecimal monto;
     private String moneda;
+    // Solo en transferencias entre cuentas de distinta moneda
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String monedaDestino;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal tasaCambio;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal montoDestino;
     private String estado;
     private String concepto;
     private LocalDateTime fechaTransferencia;
@@ -0,0 +1,200 @@
+package com.banco.eventos;
+
+import com.banco.dto.EventoCuentaDTO;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bus en proceso de eventos por cuenta. Solo existe un canal mientras la cuenta tiene
+ * suscriptores, así que publicar para una cuenta sin oyentes es una búsqueda en un mapa.
+ * Cada suscriptor tiene su propio buffer acotado que descarta los eventos más antiguos si
+ * no consume a tiempo; nunca frena a quien publica.
+ * Con banco.eventos.fuente=change-stream los eventos salen de los change streams de Mongo
+ * y llegan a los suscriptores de cualquier instancia.
+ */
+@Component
+public class BusEventos {
+    private static final Logger log = LoggerFactory.getLogger(BusEventos.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${banco.eventos.buffer-por-suscriptor:32}")
+    private int bufferPorSuscriptor;
+
+    // local | change-stream
+    @Value("${banco.eventos.fuente:local}")
+    private String fuente;
+
+    private final ConcurrentHashMap<String, Canal> canales = new ConcurrentHashMap<>();
+    private final AtomicInteger suscriptores = new AtomicInteger();
+    private final Disposable.Composite changeStreams = Disposables.composite();
+    private Counter descartados;
+
+    @PostConstruct
+    void iniciar() {
+        Gauge.builder("banco.eventos.suscriptores", suscriptores, AtomicInteger::get)
+                .description("Suscriptores de eventos conectados")
+                .register(meterRegistry);
+        descartados = Counter.builder("banco.eventos.descartados")
+                .description("Eventos descartados por suscriptores lentos")
+                .register(meterRegistry);
+        if (usaChangeStream()) {
+            escucharChangeStreams();
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        changeStreams.dispose();
+    }
+
+    public Flux<EventoCuentaDTO> suscribir(String numeroCuenta) {
+        return Flux.defer(() -> {
+            Canal canal = canales.compute(numeroCuenta, (k, actual) -> {
+                Canal c = actual != null ? actual : new Canal();
+                c.suscriptores++;
+                return c;
+            });
+            suscriptores.incrementAndGet();
+            return canal.sink.asFlux()
+                    .onBackpressureBuffer(bufferPorSuscriptor, e -> descartados.increment(),
+                            BufferOverflowStrategy.DROP_OLDEST)
+                    .doFinally(s -> {
+                        suscriptores.decrementAndGet();
+                        canales.computeIfPresent(numeroCuenta, (k, c) -> --c.suscriptores == 0 ? null : c);
+                    });
+        });
+    }
+
+    public void publicarTransferencia(Transferencia transferencia, Cuenta origen, Cuenta destino) {
+        if (usaChangeStream()) {
+            return;
+        }
+        emitirTransferencia(transferencia,
+                origen == null ? null : origen.getSaldo(),
+                destino == null ? null : destino.getSaldo());
+    }
+
+    public void publicarCuenta(String tipo, Cuenta cuenta) {
+        if (usaChangeStream()) {
+            return;
+        }
+        emitir(EventoCuentaDTO.builder()
+                .tipo(tipo)
+                .numeroCuenta(cuenta.getNumeroCuenta())
+                .saldo(cuenta.getSaldo())
+                .moneda(cuenta.getMoneda())
+                .fecha(LocalDateTime.now())
+                .build());
+    }
+
+    private void emitirTransferencia(Transferencia t, BigDecimal saldoOrigen, BigDecimal saldoDestino) {
+        if (canales.isEmpty()) {
+            return;
+        }
+        emitir(EventoCuentaDTO.builder()
+                .tipo(EventoCuentaDTO.TRANSFERENCIA_SALIENTE)
+                .numeroCuenta(t.getCuentaOrigen())
+                .saldo(saldoOrigen)
+                .moneda(t.getMoneda())
+                .codigoReferencia(t.getCodigoReferencia())
+                .contraparte(t.getCuentaDestino())
+                .monto(t.getMonto())
+                .fecha(t.getFechaTransferencia())
+                .build());
+        emitir(EventoCuentaDTO.builder()
+                .tipo(EventoCuentaDTO.TRANSFERENCIA_ENTRANTE)
+                .numeroCuenta(t.getCuentaDestino())
+                .saldo(saldoDestino)
+                .moneda(t.getMonedaDestino() != null ? t.getMonedaDestino() : t.getMoneda())
+                .codigoReferencia(t.getCodigoReferencia())
+                .contraparte(t.getCuentaOrigen())
+                .monto(t.montoAcreditado())
+                .fecha(t.getFechaTransferencia())
+                .build());
+    }
+
+    private void emitir(EventoCuentaDTO evento) {
+        Canal canal = canales.get(evento.getNumeroCuenta());
+        if (canal == null) {
+            return;
+        }
+        // Varios hilos pueden publicar a la vez en la misma cuenta; el sink exige emisiones serializadas
+        synchronized (canal) {
+            canal.sink.tryEmitNext(evento);
+        }
+    }
+
+    private boolean usaChangeStream() {
+        return "change-stream".equals(fuente);
+    }
+
+    private void escucharChangeStreams() {
+        ChangeStreamOptions soloInserciones = ChangeStreamOptions.builder()
+                .filter(new Document("$match", new Document("operationType", "insert")))
+                .build();
+        changeStreams.add(mongoTemplate
+                .changeStream(mongoTemplate.getCollectionName(Transferencia.class), soloInserciones, Transferencia.class)
+                .mapNotNull(e -> e.getBody())
+                .doOnNext(t -> emitirTransferencia(t, null, null))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(r -> log.warn("Change stream de transferencias interrumpido", r.failure())))
+                .subscribe());
+
+        ChangeStreamOptions actualizaciones = ChangeStreamOptions.builder()
+                .filter(new Document("$match", new Document("operationType",
+                        new Document("$in", List.of("update", "replace")))))
+                .returnFullDocumentOnUpdate()
+                .build();
+        changeStreams.add(mongoTemplate
+                .changeStream(mongoTemplate.getCollectionName(Cuenta.class), actualizaciones, Cuenta.class)
+                .mapNotNull(e -> e.getBody())
+                .doOnNext(c -> emitir(EventoCuentaDTO.builder()
+                        .tipo(EventoCuentaDTO.CUENTA_ACTUALIZADA)
+                        .numeroCuenta(c.getNumeroCuenta())
+                        .saldo(c.getSaldo())
+                        .moneda(c.getMoneda())
+                        .fecha(c.getUltimaActualizacion())
+                        .build()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(r -> log.warn("Change stream de cuentas interrumpido", r.failure())))
+                .subscribe());
+        log.info("Eventos de cuenta alimentados por change streams de Mongo");
+    }
+
+    private static final class Canal {
+        private final Sinks.Many<EventoCuentaDTO> sink = Sinks.many().multicast().directBestEffort();
+        // Solo se modifica dentro de compute/computeIfPresent del mapa
+        private int suscriptores;
+    }
+}
@@ -0,0 +1,15 @@
+package com.banco.exception;
+
+public class AdmisionRechazadaException extends RuntimeException {
+    // Nanosegundos hasta que habrá token, para el Retry-After
+    private final long esperaNs;
+
+    public AdmisionRechazadaException(String mensaje, long esperaNs) {
+        super(mensaje);
+        this.esperaNs = esperaNs;
+    }
+
+    public long getEsperaNs() {
+        return esperaNs;
+    }
+}
@@ -0,0 +1,19 @@
+package com.banco.exception;
+
+import com.banco.model.Transferencia;
+
+import java.util.List;
+
+// Una inserción masiva en la que parte de las filas sí quedaron guardadas
+public class InsercionParcialException extends RuntimeException {
+    private final List<Transferencia> insertadas;
+
+    public InsercionParcialException(List<Transferencia> insertadas, Throwable causa) {
+        super("Solo se insertaron " + insertadas.size() + " transferencias", causa);
+        this.insertadas = insertadas;
+    }
+
+    public List<Transferencia> getInsertadas() {
+        return insertadas;
+    }
+}
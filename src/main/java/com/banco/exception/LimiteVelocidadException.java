@@ -0,0 +1,7 @@
+package com.banco.exception;
+
+public class LimiteVelocidadException extends RuntimeException {
+    public LimiteVelocidadException(String mensaje) {
+        super(mensaje);
+    }
+}
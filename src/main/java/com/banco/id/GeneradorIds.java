@@ -0,0 +1,23 @@
+package com.banco.id;
+
+import java.time.Instant;
+
+/**
+ * Fuente de identificadores numéricos ordenables por tiempo de creación.
+ */
+public interface GeneradorIds {
+
+    long siguiente();
+
+    /** Varios ids seguidos de una vez, en orden creciente. */
+    default long[] siguientes(int cantidad) {
+        long[] ids = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            ids[i] = siguiente();
+        }
+        return ids;
+    }
+
+    /** Momento de creación codificado en un id emitido por este generador. */
+    Instant instante(long id);
+}
@@ -0,0 +1,199 @@
+package com.banco.id;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Formatos de los identificadores del banco sobre un {@link GeneradorIds}:
+ * <ul>
+ *   <li>ids de documento: 13 caracteres en base32 de Crockford, de ancho fijo para que el orden
+ *   lexicográfico coincida con el de creación;</li>
+ *   <li>números de cuenta: "ACC", 19 dígitos y un dígito de control Luhn;</li>
+ *   <li>códigos de referencia: "TRF" y el id en base32.</li>
+ * </ul>
+ * Todos conservan el momento de creación, que {@link #fechaCreacion(String)} recupera.
+ */
+@Component
+public class Identificadores {
+    private static final Logger log = LoggerFactory.getLogger(Identificadores.class);
+
+    public static final String PREFIJO_CUENTA = "ACC";
+    public static final String PREFIJO_REFERENCIA = "TRF";
+
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LONGITUD_BASE32 = 13;
+    private static final int DIGITOS_CUENTA = 19;
+    private static final int LONGITUD_CUENTA = PREFIJO_CUENTA.length() + DIGITOS_CUENTA + 1;
+
+    // -1: se deriva del host y del pid; en despliegues con varias instancias conviene fijarlo
+    @Value("${banco.ids.nodo:-1}")
+    private int nodo;
+
+    private GeneradorIds generador;
+
+    public Identificadores() {
+    }
+
+    public Identificadores(GeneradorIds generador) {
+        this.generador = generador;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (generador != null) {
+            return;
+        }
+        if (nodo < 0) {
+            nodo = nodoDerivado();
+            log.warn("banco.ids.nodo no está definido; se usa el nodo {} derivado del host", nodo);
+        }
+        generador = new Snowflake(nodo);
+    }
+
+    public String nuevoId() {
+        return base32(null, generador.siguiente());
+    }
+
+    public String nuevoCodigoReferencia() {
+        return base32(PREFIJO_REFERENCIA, generador.siguiente());
+    }
+
+    public String nuevoNumeroCuenta() {
+        return numeroCuenta(generador.siguiente());
+    }
+
+    /** Ids de documento para un bloque de altas, reservados de una vez. */
+    public String[] nuevosIds(int cantidad) {
+        long[] ids = generador.siguientes(cantidad);
+        String[] textos = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            textos[i] = base32(null, ids[i]);
+        }
+        return textos;
+    }
+
+    /** Números de cuenta para un bloque de altas, reservados de una vez y en orden creciente. */
+    public String[] nuevosNumerosCuenta(int cantidad) {
+        long[] ids = generador.siguientes(cantidad);
+        String[] numeros = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            numeros[i] = numeroCuenta(ids[i]);
+        }
+        return numeros;
+    }
+
+    private static String numeroCuenta(long id) {
+        char[] c = new char[LONGITUD_CUENTA];
+        PREFIJO_CUENTA.getChars(0, PREFIJO_CUENTA.length(), c, 0);
+        long resto = id;
+        for (int i = LONGITUD_CUENTA - 2; i >= PREFIJO_CUENTA.length(); i--) {
+            c[i] = (char) ('0' + resto % 10);
+            resto /= 10;
+        }
+        c[LONGITUD_CUENTA - 1] = (char) ('0' + digitoControl(c, PREFIJO_CUENTA.length(), LONGITUD_CUENTA - 1));
+        return new String(c);
+    }
+
+    /**
+     * Momento de creación de un id, número de cuenta o código de referencia emitido por este
+     * generador. Vacío para formatos anteriores o números de cuenta con dígito de control erróneo.
+     */
+    public Optional<Instant> fechaCreacion(String identificador) {
+        if (identificador == null) {
+            return Optional.empty();
+        }
+        if (identificador.length() == LONGITUD_CUENTA && identificador.startsWith(PREFIJO_CUENTA)) {
+            if (!numeroCuentaValido(identificador)) {
+                return Optional.empty();
+            }
+            long id = Long.parseLong(identificador, PREFIJO_CUENTA.length(), LONGITUD_CUENTA - 1, 10);
+            return Optional.of(generador.instante(id));
+        }
+        int inicio = identificador.startsWith(PREFIJO_REFERENCIA) ? PREFIJO_REFERENCIA.length() : 0;
+        if (identificador.length() - inicio != LONGITUD_BASE32) {
+            return Optional.empty();
+        }
+        long id = 0;
+        for (int i = inicio; i < identificador.length(); i++) {
+            int valor = valorBase32(identificador.charAt(i));
+            if (valor < 0) {
+                return Optional.empty();
+            }
+            id = (id << 5) | valor;
+        }
+        return Optional.of(generador.instante(id));
+    }
+
+    /** Comprueba el formato y el dígito de control de un número de cuenta. */
+    public static boolean numeroCuentaValido(String numeroCuenta) {
+        if (numeroCuenta == null || numeroCuenta.length() != LONGITUD_CUENTA
+                || !numeroCuenta.startsWith(PREFIJO_CUENTA)) {
+            return false;
+        }
+        char[] c = numeroCuenta.toCharArray();
+        for (int i = PREFIJO_CUENTA.length(); i < LONGITUD_CUENTA; i++) {
+            if (c[i] < '0' || c[i] > '9') {
+                return false;
+            }
+        }
+        return c[LONGITUD_CUENTA - 1] - '0' == digitoControl(c, PREFIJO_CUENTA.length(), LONGITUD_CUENTA - 1);
+    }
+
+    // Luhn sobre c[desde, hasta): detecta cualquier dígito cambiado y casi todas las transposiciones
+    private static int digitoControl(char[] c, int desde, int hasta) {
+        int suma = 0;
+        boolean doblar = true;
+        for (int i = hasta - 1; i >= desde; i--) {
+            int d = c[i] - '0';
+            if (doblar) {
+                d *= 2;
+                if (d > 9) {
+                    d -= 9;
+                }
+            }
+            suma += d;
+            doblar = !doblar;
+        }
+        return (10 - suma % 10) % 10;
+    }
+
+    private static String base32(String prefijo, long id) {
+        int desplazamiento = prefijo == null ? 0 : prefijo.length();
+        char[] c = new char[desplazamiento + LONGITUD_BASE32];
+        if (prefijo != null) {
+            prefijo.getChars(0, desplazamiento, c, 0);
+        }
+        for (int i = c.length - 1; i >= desplazamiento; i--) {
+            c[i] = BASE32[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(c);
+    }
+
+    private static int valorBase32(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int nodoDerivado() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "desconocido";
+        }
+        int h = (host + ":" + ProcessHandle.current().pid()).hashCode();
+        return (h ^ (h >>> 16)) & Snowflake.NODO_MAXIMO;
+    }
+}
@@ -0,0 +1,211 @@
+package com.banco.metricas;
+
+import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.exception.SaldoInsuficienteException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.util.context.Context;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Temporizadores por etapa de los flujos reactivos, etiquetados con el resultado: exito,
+ * saldo_insuficiente, cuenta_no_encontrada, otro o cancelado. Cada {@link Etapa} registra sus
+ * temporizadores una sola vez, así que medir una señal no busca nada en el registro.
+ * El tiempo va desde la suscripción hasta el valor de un Mono o la señal terminal de un Flux.
+ */
+@Component
+public class MetricasEtapas {
+    public static final String EXITO = "exito";
+    public static final String SALDO_INSUFICIENTE = "saldo_insuficiente";
+    public static final String CUENTA_NO_ENCONTRADA = "cuenta_no_encontrada";
+    public static final String OTRO = "otro";
+    public static final String CANCELADO = "cancelado";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.metricas.etapas.habilitadas:true}")
+    private boolean habilitadas;
+
+    @Value("${banco.metricas.histogramas:true}")
+    private boolean histogramas;
+
+    // Fracción de ejecuciones que miden las etapas internas; los percentiles siguen siendo válidos
+    @Value("${banco.metricas.etapas.muestreo:0.01}")
+    private double muestreo;
+
+    /** Etapa con la etiqueta clave=valor dentro de la métrica dada; mide todas las ejecuciones. */
+    public Etapa etapa(String metrica, String clave, String valor) {
+        return new Etapa(metrica, clave, valor, 1.0);
+    }
+
+    /**
+     * Etapa que solo mide la fracción banco.metricas.etapas.muestreo de las ejecuciones. Sus
+     * recuentos son una muestra; los totales exactos salen de http.server.requests.
+     */
+    public Etapa etapaMuestreada(String metrica, String clave, String valor) {
+        return new Etapa(metrica, clave, valor, muestreo);
+    }
+
+    public final class Etapa {
+        private final Timer exito;
+        private final Timer saldoInsuficiente;
+        private final Timer cuentaNoEncontrada;
+        private final Timer otro;
+        private final Timer cancelado;
+        private final double fraccion;
+
+        private Etapa(String metrica, String clave, String valor, double fraccion) {
+            this.fraccion = fraccion;
+            exito = temporizador(metrica, clave, valor, EXITO);
+            saldoInsuficiente = temporizador(metrica, clave, valor, SALDO_INSUFICIENTE);
+            cuentaNoEncontrada = temporizador(metrica, clave, valor, CUENTA_NO_ENCONTRADA);
+            otro = temporizador(metrica, clave, valor, OTRO);
+            cancelado = temporizador(metrica, clave, valor, CANCELADO);
+        }
+
+        public <T> Mono<T> medir(Mono<T> mono) {
+            return medir() ? new MonoMedido<>(mono, this) : mono;
+        }
+
+        public <T> Flux<T> medir(Flux<T> flux) {
+            return medir() ? new FluxMedido<>(flux, this) : flux;
+        }
+
+        private boolean medir() {
+            return habilitadas && (fraccion >= 1.0 || ThreadLocalRandom.current().nextDouble() < fraccion);
+        }
+
+        private Timer porError(Throwable e) {
+            if (e instanceof SaldoInsuficienteException) {
+                return saldoInsuficiente;
+            }
+            if (e instanceof CuentaNoEncontradaException) {
+                return cuentaNoEncontrada;
+            }
+            return otro;
+        }
+    }
+
+    private Timer temporizador(String metrica, String clave, String valor, String resultado) {
+        return Timer.builder(metrica)
+                .tag(clave, valor)
+                .tag("resultado", resultado)
+                .publishPercentileHistogram(histogramas)
+                .register(meterRegistry);
+    }
+
+    private static final class MonoMedido<T> extends MonoOperator<T, T> {
+        private final Etapa etapa;
+
+        MonoMedido(Mono<? extends T> fuente, Etapa etapa) {
+            super(fuente);
+            this.etapa = etapa;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super T> actual) {
+            source.subscribe(new Medidor<>(actual, etapa, true));
+        }
+    }
+
+    private static final class FluxMedido<T> extends FluxOperator<T, T> {
+        private final Etapa etapa;
+
+        FluxMedido(Flux<? extends T> fuente, Etapa etapa) {
+            super(fuente);
+            this.etapa = etapa;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super T> actual) {
+            source.subscribe(new Medidor<>(actual, etapa, false));
+        }
+    }
+
+    /**
+     * Suscriptor intermedio que mide una suscripción: una asignación por medición y una lectura
+     * del reloj en cada extremo, sin operadores doOn* ni lambdas en el camino caliente.
+     */
+    private static final class Medidor<T> implements CoreSubscriber<T>, Subscription {
+        @SuppressWarnings("unchecked")
+        private static final AtomicIntegerFieldUpdater<Medidor<?>> REGISTRADO =
+                (AtomicIntegerFieldUpdater<Medidor<?>>) (AtomicIntegerFieldUpdater<?>)
+                        AtomicIntegerFieldUpdater.newUpdater(Medidor.class, "registrado");
+
+        private final CoreSubscriber<? super T> actual;
+        private final Etapa etapa;
+        // En un Mono el primer valor ya es el éxito; en un Flux hay que esperar a onComplete
+        private final boolean exitoAlPrimerValor;
+        private final long inicio = System.nanoTime();
+        private Subscription subscription;
+        // La cancelación puede competir con la señal terminal; solo se registra una de las dos
+        private volatile int registrado;
+
+        Medidor(CoreSubscriber<? super T> actual, Etapa etapa, boolean exitoAlPrimerValor) {
+            this.actual = actual;
+            this.etapa = etapa;
+            this.exitoAlPrimerValor = exitoAlPrimerValor;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            actual.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T valor) {
+            if (exitoAlPrimerValor) {
+                registrar(etapa.exito);
+            }
+            actual.onNext(valor);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            registrar(etapa.porError(e));
+            actual.onError(e);
+        }
+
+        @Override
+        public void onComplete() {
+            registrar(etapa.exito);
+            actual.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            registrar(etapa.cancelado);
+            subscription.cancel();
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        private void registrar(Timer temporizador) {
+            if (registrado == 0 && REGISTRADO.compareAndSet(this, 0, 1)) {
+                temporizador.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
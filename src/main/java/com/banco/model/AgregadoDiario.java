@@ -0,0 +1,50 @@
+package com.banco.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "agregados_diarios")
+@CompoundIndex(name = "cuenta_fecha", def = "{'numeroCuenta': 1, 'fecha': -1}")
+public class AgregadoDiario {
+    // numeroCuenta:yyyy-MM-dd
+    @Id
+    private String id;
+
+    private String numeroCuenta;
+    private LocalDate fecha;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal entradas;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal salidas;
+
+    private Long numeroEntradas;
+    private Long numeroSalidas;
+    private LocalDateTime reconstruidoEn;
+
+    public static String idPara(String numeroCuenta, LocalDate fecha) {
+        return numeroCuenta + ":" + fecha;
+    }
+
+    public BigDecimal neto() {
+        return valor(entradas).subtract(valor(salidas));
+    }
+
+    private static BigDecimal valor(BigDecimal v) {
+        return v == null ? BigDecimal.ZERO : v;
+    }
+}
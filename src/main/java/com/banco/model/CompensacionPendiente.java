@@ -0,0 +1,34 @@
+package com.banco.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ajuste de saldo que deshace un movimiento ya aplicado y que no se pudo escribir en el momento.
+ * Queda aquí hasta que {@code CompensacionesPendientes} lo aplica a la cuenta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "compensaciones_pendientes")
+public class CompensacionPendiente {
+    @Id
+    private String id;
+
+    private String numeroCuenta;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal delta;
+
+    private String motivo;
+
+    private LocalDateTime fechaCreacion;
+}
@@ -0,0 +1,47 @@
+package com.banco.model;
+
+import com.banco.dto.DescuadreDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Estado y punto de control de una conciliación de saldos contra transferencias. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "conciliaciones")
+public class Conciliacion {
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String COMPLETADA = "COMPLETADA";
+    public static final String DETENIDA = "DETENIDA";
+    public static final String FALLIDA = "FALLIDA";
+
+    @Id
+    private String id;
+
+    private String estado;
+
+    // Punto de control: todas las cuentas con número menor o igual ya están revisadas
+    private String ultimaCuenta;
+
+    private long cuentas;
+    // Salidas y entradas leídas: cada transferencia aporta una de cada
+    private long movimientos;
+    private long descuadres;
+    // Cuentas anteriores a saldoBase, que no se pueden conciliar
+    private long sinBase;
+    // Transferencias cuya cuenta origen o destino ya no existe
+    private long huerfanas;
+    private List<DescuadreDTO> ejemplos = new ArrayList<>();
+
+    private String fichero;
+    private String error;
+    private LocalDateTime iniciada;
+    private LocalDateTime actualizada;
+}
@@ -5,6 +5,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import org.springframework.data.mongodb.core.index.Indexed;
 import jakarta.validation.constraints.*;
 
@@ -19,6 +21,7 @@ public class Cuenta {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     private String numeroCuenta;
 
     @NotBlank(message = "El nombre del titular es requerido")
@@ -26,9 +29,11 @@ public class Cuenta {
 
     @NotBlank(message = "El email es requerido")
     @Email
+    @Indexed(unique = true)
     private String email;
 
     @PositiveOrZero(message = "El saldo no puede ser negativo")
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal saldo;
 
     @NotBlank(message = "El tipo de moneda es requerido")
@@ -37,4 +42,9 @@ public class Cuenta {
     private LocalDateTime fechaCreacion;
     private LocalDateTime ultimaActualizacion;
     private Boolean activa;
+
+    // Parte del saldo que no sale de transferencias: el inicial más los ajustes manuales. La
+    // conciliación comprueba saldo == saldoBase + entradas - salidas
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal saldoBase;
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.banco.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Importe como número entero de unidades mínimas de su moneda (centavos para USD, yenes para
+ * JPY). La escala sale de ISO 4217; una moneda desconocida usa dos decimales. Las operaciones
+ * fallan en vez de desbordar.
+ */
+public final class Dinero implements Comparable<Dinero> {
+    public static final int ESCALA_POR_DEFECTO = 2;
+    // Ninguna moneda ISO 4217 usa más de cuatro decimales
+    public static final int ESCALA_MAXIMA = 4;
+    /** Mayor saldo que cabe en un long de unidades mínimas sea cual sea la moneda. */
+    public static final BigDecimal SALDO_MAXIMO = BigDecimal.valueOf(Long.MAX_VALUE, ESCALA_MAXIMA);
+
+    // Calculadas una vez para las monedas ISO 4217 del JDK; los códigos que mande un cliente no
+    // se guardan, así que no pueden hacer crecer el mapa
+    private static final Map<String, Integer> ESCALAS = escalasIso();
+
+    private final long unidades;
+    private final int escala;
+
+    private Dinero(long unidades, int escala) {
+        this.unidades = unidades;
+        this.escala = escala;
+    }
+
+    public static Dinero de(BigDecimal cantidad, String moneda) {
+        int escala = escala(moneda);
+        return new Dinero(unidades(cantidad, escala), escala);
+    }
+
+    /** Decimales de la moneda. */
+    public static int escala(String moneda) {
+        if (moneda == null) {
+            return ESCALA_POR_DEFECTO;
+        }
+        return ESCALAS.getOrDefault(moneda, ESCALA_POR_DEFECTO);
+    }
+
+    private static Map<String, Integer> escalasIso() {
+        Map<String, Integer> escalas = new HashMap<>();
+        for (Currency moneda : Currency.getAvailableCurrencies()) {
+            int decimales = moneda.getDefaultFractionDigits();
+            escalas.put(moneda.getCurrencyCode(),
+                    decimales < 0 || decimales > ESCALA_MAXIMA ? ESCALA_POR_DEFECTO : decimales);
+        }
+        return Map.copyOf(escalas);
+    }
+
+    /** Unidades mínimas exactas de la cantidad; falla si tiene más decimales o no cabe en un long. */
+    public static long unidades(BigDecimal cantidad, int escala) {
+        if (cantidad.scale() > escala && cantidad.stripTrailingZeros().scale() > escala) {
+            throw new IllegalArgumentException("El monto admite como mucho " + escala + " decimales");
+        }
+        try {
+            return cantidad.movePointRight(escala).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("El monto supera el máximo representable", e);
+        }
+    }
+
+    /** SALDO_MAXIMO en unidades mínimas de esa escala, truncado. */
+    public static long saldoMaximo(int escala) {
+        long saldo = Long.MAX_VALUE;
+        for (int i = escala; i < ESCALA_MAXIMA; i++) {
+            saldo /= 10;
+        }
+        return saldo;
+    }
+
+    public long unidades() {
+        return unidades;
+    }
+
+    public int escala() {
+        return escala;
+    }
+
+    public BigDecimal cantidad() {
+        return BigDecimal.valueOf(unidades, escala);
+    }
+
+    public Dinero sumar(Dinero otro) {
+        return new Dinero(Math.addExact(unidades, mismaEscala(otro).unidades), escala);
+    }
+
+    public Dinero restar(Dinero otro) {
+        return new Dinero(Math.subtractExact(unidades, mismaEscala(otro).unidades), escala);
+    }
+
+    @Override
+    public int compareTo(Dinero otro) {
+        return Long.compare(unidades, mismaEscala(otro).unidades);
+    }
+
+    private Dinero mismaEscala(Dinero otro) {
+        if (otro.escala != escala) {
+            throw new IllegalArgumentException("No se pueden operar importes de distinta escala");
+        }
+        return otro;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Dinero otro && otro.unidades == unidades && otro.escala == escala;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(unidades) * 31 + escala;
+    }
+
+    @Override
+    public String toString() {
+        return cantidad().toPlainString();
+    }
+}
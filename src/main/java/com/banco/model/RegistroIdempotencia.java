@@ -0,0 +1,27 @@
+package com.banco.model;
+
+import com.banco.dto.TransferenciaDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotencia")
+public class RegistroIdempotencia {
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String COMPLETADA = "COMPLETADA";
+
+    @Id
+    private String clave;
+
+    private String huella;
+    private String estado;
+    private TransferenciaDTO resultado;
+    private LocalDateTime creadoEn;
+}
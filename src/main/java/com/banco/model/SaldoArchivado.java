@@ -0,0 +1,30 @@
+package com.banco.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+/**
+ * Efecto neto sobre una cuenta de sus transferencias exitosas ya archivadas (entradas menos
+ * salidas, en su moneda), para que la conciliación cuadre sin leer el archivo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "saldos_archivados")
+public class SaldoArchivado {
+    @Id
+    private String numeroCuenta;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal neto;
+
+    // Último segmento de archivo sumado: volver a sumar uno ya sumado no tiene efecto
+    private Long segmento;
+}
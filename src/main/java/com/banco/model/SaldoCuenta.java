@@ -0,0 +1,28 @@
+package com.banco.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+/**
+ * Lo que el motor de saldos lee de cada documento de cuentas al reconstruirse. secuenciaMotor
+ * es la última secuencia de la bitácora que ya incluye el saldo guardado; no forma parte de
+ * {@link Cuenta} para que no se pueda fijar desde la API.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoCuenta {
+    private String numeroCuenta;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal saldo;
+
+    private String moneda;
+    private Boolean activa;
+    private Long secuenciaMotor;
+}
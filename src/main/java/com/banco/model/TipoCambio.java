@@ -0,0 +1,31 @@
+package com.banco.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** Unidades de la moneda destino que se obtienen por cada unidad de la moneda origen. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "tipos_cambio")
+public class TipoCambio {
+    // ORIGEN/DESTINO, por ejemplo USD/EUR
+    @Id
+    private String id;
+
+    private String origen;
+    private String destino;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal tasa;
+
+    private LocalDateTime actualizado;
+}
@@ -4,7 +4,11 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import jakarta.validation.constraints.*;
 
 import java.math.BigDecimal;
@@ -14,6 +18,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "transferencias")
+@CompoundIndex(name = "origen_fecha", def = "{'cuentaOrigen': 1, 'fechaTransferencia': -1, '_id': -1}")
+@CompoundIndex(name = "destino_fecha", def = "{'cuentaDestino': 1, 'fechaTransferencia': -1, '_id': -1}")
+@CompoundIndex(name = "estado_fecha", def = "{'estado': 1, 'fechaTransferencia': -1}")
+@CompoundIndex(name = "fecha", def = "{'fechaTransferencia': 1, '_id': 1}")
 public class Transferencia {
     @Id
     private String id;
@@ -25,6 +33,7 @@ public class Transferencia {
     private String cuentaDestino;
 
     @Positive(message = "El monto debe ser positivo")
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal monto;
 
     private String moneda;
@@ -32,6 +41,21 @@ public class Transferencia {
     private String concepto;
     private LocalDateTime fechaTransferencia;
     private LocalDateTime fechaActualizacion;
+    @Indexed(unique = true)
     private String codigoReferencia;
     private String motivo;
+
+    // Solo si la cuenta destino usa otra moneda: la tasa aplicada y lo que recibe en la suya
+    private String monedaDestino;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal tasaCambio;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal montoDestino;
+
+    /** Lo que se acredita a la cuenta destino, en su moneda. */
+    public BigDecimal montoAcreditado() {
+        return montoDestino != null ? montoDestino : monto;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,699 @@
+package com.banco.motor;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.bitacora.RegistroBitacora;
+import com.banco.cambio.TablaCambios;
+import com.banco.cambio.TiposCambio;
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.SaldoCuenta;
+import com.banco.model.Transferencia;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saldos en memoria para inquilinos de mucho volumen. Con banco.motor.habilitado los saldos
+ * viven en una {@link TablaSaldos} que solo toca el hilo del motor: aplica por lotes las
+ * transferencias pendientes sin E/S y registra las aplicadas en la bitácora con una sola
+ * solicitud; cada transferencia se confirma cuando ese registro es durable.
+ * Mongo pasa a ser una copia asíncrona: la proyección de la bitácora inserta las transferencias
+ * y el motor vuelca cada poco los saldos cambiados junto con la secuencia de la bitácora que
+ * ya incluyen. Al arrancar carga los saldos de Mongo y reaplica lo posterior de la bitácora.
+ * Supone que esta instancia es la única que mueve los saldos de esas cuentas.
+ */
+@Component
+public class MotorSaldos {
+    private static final Logger log = LoggerFactory.getLogger(MotorSaldos.class);
+    private static final String FICHERO_POSICION = "motor.posicion";
+    private static final Executor CONFIRMACIONES = tarea -> Schedulers.parallel().schedule(tarea);
+
+    @Autowired
+    private Bitacora bitacora;
+
+    @Autowired
+    private CuentaRepository cuentaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TiposCambio tiposCambio;
+
+    @Value("${banco.motor.habilitado:false}")
+    private boolean habilitado;
+
+    // Decimales de las unidades mínimas; un monto con más se rechaza
+    @Value("${banco.motor.decimales:2}")
+    private int decimales;
+
+    // Órdenes como máximo por cada lote del hilo del motor
+    @Value("${banco.motor.lote-maximo:4096}")
+    private int loteMaximo;
+
+    @Value("${banco.motor.pendientes-maximos:65536}")
+    private int pendientesMaximos;
+
+    @Value("${banco.motor.volcado-ms:200}")
+    private long intervaloVolcadoMs;
+
+    @Value("${banco.listados.tamano-lote-cursor:500}")
+    private int tamanoLoteCursor;
+
+    private final BlockingQueue<Orden> cola = new LinkedBlockingQueue<>();
+    private Thread hilo;
+    private volatile boolean detenido;
+    private volatile Throwable fallo;
+    // Secuencia guardada en motor.posicion: al arrancar se reaplica la bitácora desde la siguiente
+    private volatile long volcadaHasta;
+    private Timer volcado;
+
+    // Solo los usa el hilo del motor, o el arranque antes de que exista
+    private TablaSaldos tabla;
+    private CompletableFuture<Long> ultimoEnvio;
+    private CompletableFuture<Void> volcadoEnCurso = CompletableFuture.completedFuture(null);
+    private long ultimoVolcado;
+    private final List<Transferencia> porRegistrar = new ArrayList<>();
+    private final List<Orden> porConfirmar = new ArrayList<>();
+    private final Map<String, List<Orden>> esperandoCarga = new HashMap<>();
+
+    @PostConstruct
+    void iniciar() {
+        if (!bitacora.habilitada()) {
+            if (habilitado) {
+                throw new IllegalStateException("El motor de saldos necesita banco.bitacora.habilitada=true");
+            }
+            return;
+        }
+        Path posicion = bitacora.directorio().resolve(FICHERO_POSICION);
+        if (!habilitado) {
+            if (Files.exists(posicion)) {
+                // El motor estuvo activo y Mongo puede no tener los últimos saldos: se vuelcan antes de seguir sin él
+                reconstruir();
+                cuentaRepository.guardarSaldos(saldosSucios(), ultimoEnvio.join()).block();
+                try {
+                    Files.delete(posicion);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                log.info("Saldos del motor volcados a Mongo; se sigue sin motor");
+            }
+            return;
+        }
+
+        reconstruir();
+        volcado = Timer.builder("banco.motor.volcado")
+                .description("Duración de cada volcado de saldos del motor a Mongo")
+                .register(meterRegistry);
+        Gauge.builder("banco.motor.pendientes", cola, BlockingQueue::size)
+                .description("Órdenes esperando al hilo del motor de saldos")
+                .register(meterRegistry);
+        Gauge.builder("banco.motor.cuentas", this, m -> m.tabla.tamano())
+                .description("Cuentas en el motor de saldos")
+                .register(meterRegistry);
+        ultimoVolcado = System.nanoTime();
+        hilo = new Thread(this::ejecutar, "motor-saldos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (hilo == null || detenido) {
+            return;
+        }
+        // El hilo termina lo que hay en cola y vuelca los últimos saldos
+        detenido = true;
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(15));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    /** Hasta qué secuencia no hace falta la bitácora para reconstruir los saldos al arrancar. */
+    public long volcadaHasta() {
+        return volcadaHasta;
+    }
+
+    /** Motivo por el que el motor no puede representar el monto, o null si puede. */
+    public String validarMonto(BigDecimal monto) {
+        if (monto.signum() <= 0) {
+            return "El monto debe ser positivo";
+        }
+        try {
+            unidades(monto);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    public Mono<ResultadoMotor> transferir(Transferencia transferencia) {
+        return transferir(List.of(transferencia)).map(resultados -> resultados.get(0));
+    }
+
+    /**
+     * Aplica las transferencias en orden y emite un resultado por cada una cuando las aplicadas
+     * ya son durables en la bitácora. Las rechazadas no se registran.
+     */
+    public Mono<List<ResultadoMotor>> transferir(List<Transferencia> transferencias) {
+        return Mono.<List<ResultadoMotor>>create(sink -> {
+                    long[] unidades = new long[transferencias.size()];
+                    for (int i = 0; i < unidades.length; i++) {
+                        String error = validarMonto(transferencias.get(i).getMonto());
+                        if (error != null) {
+                            sink.error(new IllegalArgumentException(error));
+                            return;
+                        }
+                        unidades[i] = unidades(transferencias.get(i).getMonto());
+                    }
+                    encolar(new Transferir(transferencias, unidades, sink));
+                });
+    }
+
+    /**
+     * Saldo actual de las cuentas que están en el motor, incluido todo lo confirmado hasta ahora.
+     * Las que no están no las ha movido el motor, así que su saldo en Mongo es el vigente.
+     */
+    public Mono<Map<String, BigDecimal>> saldos(Collection<String> numerosCuenta) {
+        return Mono.<Map<String, BigDecimal>>create(sink -> encolar(new Consulta(numerosCuenta, sink)))
+                .publishOn(Schedulers.parallel());
+    }
+
+    /** Aplica en el motor el cambio de estado que ya se guardó en Mongo. */
+    public Mono<Void> actualizarEstado(String numeroCuenta, boolean activa) {
+        return Mono.<Void>create(sink -> encolar(new CambioCuenta(numeroCuenta, activa, sink)))
+                .publishOn(Schedulers.parallel());
+    }
+
+    /** Saca del motor una cuenta ya eliminada de Mongo. */
+    public Mono<Void> olvidar(String numeroCuenta) {
+        return Mono.<Void>create(sink -> encolar(new CambioCuenta(numeroCuenta, null, sink)))
+                .publishOn(Schedulers.parallel());
+    }
+
+    private void encolar(Orden orden) {
+        if (!habilitado || detenido) {
+            orden.fallar(new IllegalStateException("El motor de saldos no está disponible"));
+        } else if (fallo != null) {
+            orden.fallar(detenidoPorFallo(fallo));
+        } else if (cola.size() >= pendientesMaximos) {
+            orden.fallar(new IllegalStateException("El motor de saldos está saturado"));
+        } else {
+            cola.add(orden);
+        }
+    }
+
+    private void ejecutar() {
+        List<Orden> lote = new ArrayList<>();
+        while (true) {
+            Orden primera;
+            try {
+                primera = cola.poll(intervaloVolcadoMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                primera = null;
+            }
+            if (primera == null) {
+                if (detenido && cola.isEmpty()) {
+                    break;
+                }
+            } else {
+                lote.add(primera);
+                cola.drainTo(lote, loteMaximo - 1);
+                for (Orden orden : lote) {
+                    ejecutar(orden);
+                }
+                lote.clear();
+                enviar();
+            }
+            volcarSiToca();
+        }
+        terminar();
+    }
+
+    private void ejecutar(Orden orden) {
+        Throwable causa = fallo;
+        if (causa != null) {
+            orden.fallar(detenidoPorFallo(causa));
+            return;
+        }
+        try {
+            orden.ejecutar();
+        } catch (RuntimeException e) {
+            // La tabla puede haber quedado a medias: se para igual que ante un error de la bitácora
+            log.error("Error inesperado en el motor de saldos; se detiene", e);
+            fallo = e;
+            orden.fallar(e);
+        }
+    }
+
+    // Registra en la bitácora lo aplicado en el lote y confirma sus órdenes cuando sea durable
+    private void enviar() {
+        if (porConfirmar.isEmpty()) {
+            return;
+        }
+        List<Orden> ordenes = new ArrayList<>(porConfirmar);
+        porConfirmar.clear();
+        if (!porRegistrar.isEmpty()) {
+            List<Transferencia> registros = new ArrayList<>(porRegistrar);
+            porRegistrar.clear();
+            ultimoEnvio = bitacora.registrarEsperando(registros).toFuture();
+            ultimoEnvio.whenComplete((secuencia, e) -> {
+                if (e != null && fallo == null) {
+                    log.error("La bitácora rechazó transferencias ya aplicadas en el motor; se detiene", e);
+                    fallo = e;
+                }
+            });
+        }
+        // Hasta que lo anterior es durable tampoco se responde a consultas ni rechazos que lo ven.
+        // Un solo salto por lote: lo que sigue a la confirmación no corre en el hilo del motor ni
+        // en el escritor de la bitácora
+        ultimoEnvio.whenCompleteAsync((secuencia, e) -> {
+            Throwable error = e == null ? null : detenidoPorFallo(e);
+            ordenes.forEach(o -> o.confirmar(error));
+        }, CONFIRMACIONES);
+    }
+
+    private void volcarSiToca() {
+        long ahora = System.nanoTime();
+        if (ahora - ultimoVolcado < TimeUnit.MILLISECONDS.toNanos(intervaloVolcadoMs) || !volcadoEnCurso.isDone()) {
+            return;
+        }
+        ultimoVolcado = ahora;
+        Map<String, BigDecimal> saldos = saldosSucios();
+        if (!saldos.isEmpty()) {
+            volcadoEnCurso = Mono.fromFuture(ultimoEnvio)
+                    .flatMap(secuencia -> volcar(saldos, secuencia))
+                    .toFuture();
+        }
+    }
+
+    // Los saldos se toman entre dos lotes, así que son exactamente los de la secuencia del último envío
+    private Mono<Void> volcar(Map<String, BigDecimal> saldos, long secuencia) {
+        return Mono.defer(() -> {
+                    long inicio = System.nanoTime();
+                    return cuentaRepository.guardarSaldos(saldos, secuencia)
+                            .doOnSuccess(v -> volcado.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS));
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100))
+                        .maxBackoff(Duration.ofSeconds(10))
+                        .doBeforeRetry(s -> log.warn("No se pudieron volcar {} saldos del motor a Mongo; se reintenta",
+                                saldos.size(), s.failure())))
+                // Todo lo cambiado hasta esa secuencia ya está en Mongo
+                .then(Mono.fromRunnable(() -> guardarPosicion(secuencia)));
+    }
+
+    private void terminar() {
+        esperandoCarga.values().forEach(ordenes -> ordenes.forEach(o ->
+                o.fallar(new IllegalStateException("El motor de saldos no está disponible"))));
+        esperandoCarga.clear();
+        if (fallo != null) {
+            return;
+        }
+        Map<String, BigDecimal> saldos = saldosSucios();
+        try {
+            Mono.fromFuture(volcadoEnCurso)
+                    .then(Mono.fromFuture(ultimoEnvio))
+                    .flatMap(secuencia -> volcar(saldos, secuencia))
+                    .block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron volcar los últimos saldos del motor; se reaplicarán de la bitácora al arrancar", e);
+        }
+    }
+
+    private Map<String, BigDecimal> saldosSucios() {
+        int[] sucias = tabla.tomarSucias();
+        Map<String, BigDecimal> saldos = new HashMap<>(sucias.length * 2);
+        for (int ranura : sucias) {
+            if (!tabla.eliminada(ranura)) {
+                saldos.put(tabla.numero(ranura), BigDecimal.valueOf(tabla.saldo(ranura), decimales));
+            }
+        }
+        return saldos;
+    }
+
+    /**
+     * Carga los saldos de Mongo y reaplica las transferencias de la bitácora que cada uno aún no
+     * incluye. motor.posicion es la secuencia hasta la que se volcaron todos los saldos cambiados;
+     * una cuenta volcada después guarda además su propia secuencia.
+     */
+    private void reconstruir() {
+        long inicio = System.nanoTime();
+        long hasta = bitacora.confirmadaHasta();
+        long base = leerPosicion();
+        if (base < 0) {
+            // Primera vez con el motor: lo que ya hay en la bitácora se aplicó directamente sobre Mongo
+            base = hasta;
+            guardarPosicion(base);
+        } else {
+            volcadaHasta = base;
+        }
+        tabla = new TablaSaldos(1024);
+        for (SaldoCuenta cuenta : cuentaRepository.listarSaldos(tamanoLoteCursor).toIterable()) {
+            long secuencia = cuenta.getSecuenciaMotor() == null ? base : Math.max(base, cuenta.getSecuenciaMotor());
+            cargar(cuenta.getNumeroCuenta(), cuenta.getSaldo(), cuenta.getMoneda(), cuenta.getActiva(), secuencia);
+        }
+        long reaplicadas = 0;
+        if (hasta > base) {
+            for (List<RegistroBitacora> lote : bitacora.leer(base + 1, hasta, 1000).toIterable()) {
+                for (RegistroBitacora registro : lote) {
+                    Transferencia t = registro.transferencia();
+                    reaplicar(t.getCuentaOrigen(), -unidades(t.getMonto()), registro.secuencia());
+                    reaplicar(t.getCuentaDestino(), unidades(t.montoAcreditado()), registro.secuencia());
+                    reaplicadas++;
+                }
+            }
+        }
+        ultimoEnvio = CompletableFuture.completedFuture(hasta);
+        log.info("Motor de saldos con {} cuentas; {} transferencias reaplicadas desde la secuencia {} en {} ms",
+                tabla.tamano(), reaplicadas, base, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    private void reaplicar(String numeroCuenta, long delta, long secuencia) {
+        int ranura = tabla.buscar(numeroCuenta);
+        if (ranura >= 0) {
+            tabla.reaplicar(ranura, delta, secuencia);
+        }
+    }
+
+    private void cargar(String numeroCuenta, BigDecimal saldo, String moneda, Boolean activa, long secuencia) {
+        long unidades;
+        try {
+            unidades = unidades(saldo == null ? BigDecimal.ZERO : saldo);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("El saldo de la cuenta " + numeroCuenta + " no cabe en el motor: "
+                    + e.getMessage(), e);
+        }
+        tabla.agregar(numeroCuenta, unidades, moneda, Boolean.TRUE.equals(activa), secuencia);
+    }
+
+    private long unidades(BigDecimal monto) {
+        return Dinero.unidades(monto, decimales);
+    }
+
+    /**
+     * Aplaza la orden si alguna de sus cuentas no está en la tabla y la pide a Mongo: es una
+     * cuenta creada después de arrancar. Cada orden se aplaza como mucho una vez.
+     */
+    private boolean aplazar(Orden orden, Collection<String> numerosCuenta) {
+        if (orden.cargada) {
+            return false;
+        }
+        orden.cargada = true;
+        for (String numeroCuenta : numerosCuenta) {
+            if (tabla.buscar(numeroCuenta) < 0) {
+                esperandoCarga.computeIfAbsent(numeroCuenta, n -> {
+                    pedirCuenta(n);
+                    return new ArrayList<>();
+                }).add(orden);
+                orden.faltantes++;
+            }
+        }
+        return orden.faltantes > 0;
+    }
+
+    private void pedirCuenta(String numeroCuenta) {
+        cuentaRepository.findByNumeroCuenta(numeroCuenta)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .subscribe(cuenta -> cola.add(new Carga(numeroCuenta, cuenta.orElse(null), null)),
+                        e -> cola.add(new Carga(numeroCuenta, null, e)));
+    }
+
+    private long leerPosicion() {
+        Path ruta = bitacora.directorio().resolve(FICHERO_POSICION);
+        try {
+            return Files.exists(ruta) ? Long.parseLong(Files.readString(ruta, StandardCharsets.UTF_8).trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("No se pudo leer " + ruta, e);
+        }
+    }
+
+    private void guardarPosicion(long secuencia) {
+        Path ruta = bitacora.directorio().resolve(FICHERO_POSICION);
+        Path temporal = bitacora.directorio().resolve(FICHERO_POSICION + ".tmp");
+        try {
+            Files.createDirectories(bitacora.directorio());
+            Files.writeString(temporal, Long.toString(secuencia), StandardCharsets.UTF_8);
+            Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            volcadaHasta = secuencia;
+        } catch (IOException e) {
+            // Sin avanzarla se reaplica más bitácora al arrancar, pero cada cuenta guarda su secuencia
+            log.warn("No se pudo guardar la posición del motor en {}", ruta, e);
+        }
+    }
+
+    private static IllegalStateException detenidoPorFallo(Throwable causa) {
+        return new IllegalStateException("El motor de saldos se detuvo por un error de la bitácora", causa);
+    }
+
+    private abstract static class Orden {
+        // Cuentas que se están cargando de Mongo antes de poder ejecutarla
+        int faltantes;
+        boolean cargada;
+        Throwable errorCarga;
+
+        abstract void ejecutar();
+
+        abstract void fallar(Throwable e);
+
+        void confirmar(Throwable error) {
+        }
+    }
+
+    private final class Transferir extends Orden {
+        private final List<Transferencia> transferencias;
+        private final long[] unidades;
+        private final MonoSink<List<ResultadoMotor>> sink;
+        private ResultadoMotor[] resultados;
+
+        Transferir(List<Transferencia> transferencias, long[] unidades, MonoSink<List<ResultadoMotor>> sink) {
+            this.transferencias = transferencias;
+            this.unidades = unidades;
+            this.sink = sink;
+        }
+
+        @Override
+        void ejecutar() {
+            Set<String> cuentas = new LinkedHashSet<>();
+            for (Transferencia t : transferencias) {
+                cuentas.add(t.getCuentaOrigen());
+                cuentas.add(t.getCuentaDestino());
+            }
+            if (aplazar(this, cuentas)) {
+                return;
+            }
+            resultados = new ResultadoMotor[transferencias.size()];
+            // Una sola tabla de cambios para toda la orden
+            TablaCambios cambios = tiposCambio.actual();
+            for (int i = 0; i < resultados.length; i++) {
+                Transferencia t = transferencias.get(i);
+                int origen = tabla.buscar(t.getCuentaOrigen());
+                int destino = tabla.buscar(t.getCuentaDestino());
+                if (origen < 0 || destino < 0) {
+                    resultados[i] = new ResultadoMotor(
+                            origen < 0 ? ResultadoMotor.ORIGEN_NO_EXISTE : ResultadoMotor.DESTINO_NO_EXISTE, 0, 0, decimales);
+                    continue;
+                }
+                String motivo = cambios.aplicar(t, tabla.moneda(origen), tabla.moneda(destino));
+                long credito = unidades[i];
+                if (motivo == null && t.getMontoDestino() != null) {
+                    try {
+                        credito = unidades(t.getMontoDestino());
+                    } catch (IllegalArgumentException e) {
+                        motivo = e.getMessage();
+                    }
+                }
+                if (motivo != null) {
+                    resultados[i] = new ResultadoMotor(motivo);
+                    continue;
+                }
+                int resultado = tabla.transferir(origen, destino, unidades[i], credito);
+                resultados[i] = new ResultadoMotor(resultado, tabla.saldo(origen), tabla.saldo(destino), decimales);
+                if (resultado == TablaSaldos.APLICADA) {
+                    porRegistrar.add(t);
+                }
+            }
+            porConfirmar.add(this);
+        }
+
+        @Override
+        void fallar(Throwable e) {
+            CONFIRMACIONES.execute(() -> sink.error(e));
+        }
+
+        @Override
+        void confirmar(Throwable error) {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.success(Arrays.asList(resultados));
+            }
+        }
+    }
+
+    private final class Consulta extends Orden {
+        private final Collection<String> numerosCuenta;
+        private final MonoSink<Map<String, BigDecimal>> sink;
+        private final Map<String, BigDecimal> saldos = new HashMap<>();
+
+        Consulta(Collection<String> numerosCuenta, MonoSink<Map<String, BigDecimal>> sink) {
+            this.numerosCuenta = numerosCuenta;
+            this.sink = sink;
+        }
+
+        @Override
+        void ejecutar() {
+            for (String numeroCuenta : numerosCuenta) {
+                int ranura = tabla.buscar(numeroCuenta);
+                if (ranura >= 0) {
+                    saldos.put(numeroCuenta, BigDecimal.valueOf(tabla.saldo(ranura), decimales));
+                }
+            }
+            porConfirmar.add(this);
+        }
+
+        @Override
+        void fallar(Throwable e) {
+            sink.error(e);
+        }
+
+        @Override
+        void confirmar(Throwable error) {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.success(saldos);
+            }
+        }
+    }
+
+    // Activa o desactiva la cuenta; con activa nula la elimina
+    private final class CambioCuenta extends Orden {
+        private final String numeroCuenta;
+        private final Boolean activa;
+        private final MonoSink<Void> sink;
+
+        CambioCuenta(String numeroCuenta, Boolean activa, MonoSink<Void> sink) {
+            this.numeroCuenta = numeroCuenta;
+            this.activa = activa;
+            this.sink = sink;
+        }
+
+        @Override
+        void ejecutar() {
+            // Si ya se está cargando, se aplica sobre lo cargado para no quedarse con el estado anterior
+            List<Orden> esperando = esperandoCarga.get(numeroCuenta);
+            if (esperando != null && !cargada) {
+                cargada = true;
+                faltantes++;
+                esperando.add(this);
+                return;
+            }
+            int ranura = tabla.buscar(numeroCuenta);
+            if (ranura >= 0) {
+                if (activa == null) {
+                    tabla.eliminar(ranura);
+                } else {
+                    tabla.activar(ranura, activa);
+                }
+            }
+            sink.success();
+        }
+
+        @Override
+        void fallar(Throwable e) {
+            sink.error(e);
+        }
+    }
+
+    private final class Carga extends Orden {
+        private final String numeroCuenta;
+        private final Cuenta cuenta;
+        private final Throwable error;
+
+        Carga(String numeroCuenta, Cuenta cuenta, Throwable error) {
+            this.numeroCuenta = numeroCuenta;
+            this.cuenta = cuenta;
+            this.error = error;
+        }
+
+        @Override
+        void ejecutar() {
+            Throwable causa = error;
+            if (causa == null && cuenta != null && tabla.buscar(numeroCuenta) < 0) {
+                try {
+                    // Nunca la movió el motor, así que su saldo en Mongo lo incluye todo
+                    cargar(numeroCuenta, cuenta.getSaldo(), cuenta.getMoneda(), cuenta.getActiva(), 0);
+                } catch (IllegalStateException e) {
+                    causa = e;
+                }
+            }
+            reanudar(causa);
+        }
+
+        @Override
+        void fallar(Throwable e) {
+            reanudar(e);
+        }
+
+        private void reanudar(Throwable causa) {
+            List<Orden> esperando = esperandoCarga.remove(numeroCuenta);
+            if (esperando == null) {
+                return;
+            }
+            for (Orden orden : esperando) {
+                if (causa != null) {
+                    orden.errorCarga = causa;
+                }
+                if (--orden.faltantes == 0) {
+                    if (orden.errorCarga != null) {
+                        orden.fallar(orden.errorCarga);
+                    } else {
+                        MotorSaldos.this.ejecutar(orden);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.banco.motor;
+
+import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.exception.SaldoInsuficienteException;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de una transferencia en el motor de saldos. Guarda solo unidades mínimas y el
+ * motivo del rechazo; los BigDecimal y la excepción se construyen al pedirlos, fuera del hilo
+ * del motor.
+ */
+public final class ResultadoMotor {
+    static final int ORIGEN_NO_EXISTE = 10;
+    static final int DESTINO_NO_EXISTE = 11;
+    static final int RECHAZO_CAMBIO = 12;
+
+    private final int resultado;
+    private final long saldoOrigen;
+    private final long saldoDestino;
+    private final int decimales;
+    private final String motivo;
+
+    ResultadoMotor(int resultado, long saldoOrigen, long saldoDestino, int decimales) {
+        this.resultado = resultado;
+        this.saldoOrigen = saldoOrigen;
+        this.saldoDestino = saldoDestino;
+        this.decimales = decimales;
+        this.motivo = null;
+    }
+
+    /** Rechazo por la conversión de moneda, con el mismo mensaje que fuera del motor. */
+    ResultadoMotor(String motivo) {
+        this.resultado = RECHAZO_CAMBIO;
+        this.saldoOrigen = 0;
+        this.saldoDestino = 0;
+        this.decimales = 0;
+        this.motivo = motivo;
+    }
+
+    public boolean aplicada() {
+        return resultado == TablaSaldos.APLICADA;
+    }
+
+    /** Saldo de la cuenta origen justo después de aplicarla. */
+    public BigDecimal saldoOrigen() {
+        return BigDecimal.valueOf(saldoOrigen, decimales);
+    }
+
+    /** Saldo de la cuenta destino justo después de aplicarla. */
+    public BigDecimal saldoDestino() {
+        return BigDecimal.valueOf(saldoDestino, decimales);
+    }
+
+    /** La misma excepción que da el camino sobre Mongo ante este rechazo; null si se aplicó. */
+    public RuntimeException error() {
+        return switch (resultado) {
+            case TablaSaldos.APLICADA -> null;
+            case ORIGEN_NO_EXISTE -> new CuentaNoEncontradaException("Cuenta origen no existe");
+            case DESTINO_NO_EXISTE -> new CuentaNoEncontradaException("Cuenta destino no existe");
+            case RECHAZO_CAMBIO -> new IllegalArgumentException(motivo);
+            case TablaSaldos.ORIGEN_INACTIVA -> new IllegalArgumentException("La cuenta origen está inactiva");
+            case TablaSaldos.DESTINO_INACTIVA -> new IllegalArgumentException("La cuenta destino está inactiva");
+            case TablaSaldos.SALDO_INSUFICIENTE -> new SaldoInsuficienteException(
+                    "Saldo insuficiente. Disponible: " + saldoOrigen());
+            default -> new IllegalArgumentException("El saldo de la cuenta destino superaría el máximo");
+        };
+    }
+}
@@ -0,0 +1,204 @@
+package com.banco.motor;
+
+import java.util.Arrays;
+
+/**
+ * Saldos de las cuentas en unidades mínimas, en arreglos paralelos. Cada cuenta ocupa una
+ * ranura fija; un índice hash de direccionamiento abierto lleva del número de cuenta a su
+ * ranura. Un débito y un crédito son dos sumas sobre long, sin objetos por cuenta ni BigDecimal.
+ * No es segura entre hilos: solo la usa el hilo del motor.
+ */
+final class TablaSaldos {
+    static final int APLICADA = 0;
+    static final int SALDO_INSUFICIENTE = 1;
+    static final int ORIGEN_INACTIVA = 2;
+    static final int DESTINO_INACTIVA = 3;
+    static final int SALDO_EXCEDIDO = 4;
+
+    private static final int LIBRE = -1;
+
+    // Posición hash -> ranura, o LIBRE; se mantiene como mucho a la mitad
+    private int[] indice;
+    private String[] numeros;
+    private String[] monedas;
+    private long[] saldos;
+    private long[] secuencias;
+    private boolean[] activas;
+    private boolean[] eliminadas;
+    private boolean[] sucias;
+    private int[] listaSucias;
+    private int numeroSucias;
+    private int tamano;
+
+    TablaSaldos(int capacidadInicial) {
+        int capacidad = Math.max(16, Integer.highestOneBit(Math.max(1, capacidadInicial) - 1) << 1);
+        indice = new int[capacidad * 2];
+        Arrays.fill(indice, LIBRE);
+        numeros = new String[capacidad];
+        monedas = new String[capacidad];
+        saldos = new long[capacidad];
+        secuencias = new long[capacidad];
+        activas = new boolean[capacidad];
+        eliminadas = new boolean[capacidad];
+        sucias = new boolean[capacidad];
+        listaSucias = new int[capacidad];
+    }
+
+    /** Ranura de la cuenta, o -1 si no está o se eliminó. */
+    int buscar(String numeroCuenta) {
+        int ranura = ranura(numeroCuenta);
+        return ranura >= 0 && !eliminadas[ranura] ? ranura : -1;
+    }
+
+    /**
+     * Añade la cuenta con el saldo que tiene en Mongo y la secuencia de la bitácora que ese
+     * saldo ya incluye; si ya estaba, la reemplaza.
+     */
+    int agregar(String numeroCuenta, long saldo, String moneda, boolean activa, long secuencia) {
+        int ranura = ranura(numeroCuenta);
+        if (ranura < 0) {
+            if (tamano == numeros.length) {
+                crecer();
+            }
+            ranura = tamano++;
+            numeros[ranura] = numeroCuenta;
+            indice[libre(numeroCuenta)] = ranura;
+        }
+        saldos[ranura] = saldo;
+        monedas[ranura] = moneda;
+        secuencias[ranura] = secuencia;
+        activas[ranura] = activa;
+        eliminadas[ranura] = false;
+        return ranura;
+    }
+
+    void eliminar(int ranura) {
+        eliminadas[ranura] = true;
+    }
+
+    void activar(int ranura, boolean activa) {
+        activas[ranura] = activa;
+    }
+
+    /**
+     * Mismas condiciones que el débito y el crédito condicionales sobre Mongo. Entre monedas
+     * distintas lo acreditado es el monto ya convertido.
+     */
+    int transferir(int origen, int destino, long debito, long credito) {
+        if (!activas[origen]) {
+            return ORIGEN_INACTIVA;
+        }
+        if (!activas[destino]) {
+            return DESTINO_INACTIVA;
+        }
+        if (saldos[origen] < debito) {
+            return SALDO_INSUFICIENTE;
+        }
+        if (saldos[destino] > Long.MAX_VALUE - credito) {
+            return SALDO_EXCEDIDO;
+        }
+        saldos[origen] -= debito;
+        saldos[destino] += credito;
+        marcar(origen);
+        marcar(destino);
+        return APLICADA;
+    }
+
+    /**
+     * Vuelve a aplicar un movimiento de la bitácora al reconstruir, sin condiciones, salvo que
+     * el saldo leído de Mongo ya lo incluya.
+     */
+    void reaplicar(int ranura, long delta, long secuencia) {
+        if (secuencia > secuencias[ranura]) {
+            saldos[ranura] += delta;
+            marcar(ranura);
+        }
+    }
+
+    /** Ranuras cambiadas desde la llamada anterior. */
+    int[] tomarSucias() {
+        int[] resultado = Arrays.copyOf(listaSucias, numeroSucias);
+        for (int ranura : resultado) {
+            sucias[ranura] = false;
+        }
+        numeroSucias = 0;
+        return resultado;
+    }
+
+    String numero(int ranura) {
+        return numeros[ranura];
+    }
+
+    /** Moneda de la cuenta; null si Mongo no la tiene. */
+    String moneda(int ranura) {
+        return monedas[ranura];
+    }
+
+    long saldo(int ranura) {
+        return saldos[ranura];
+    }
+
+    boolean activa(int ranura) {
+        return activas[ranura];
+    }
+
+    boolean eliminada(int ranura) {
+        return eliminadas[ranura];
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    private void marcar(int ranura) {
+        if (!sucias[ranura]) {
+            sucias[ranura] = true;
+            listaSucias[numeroSucias++] = ranura;
+        }
+    }
+
+    private int ranura(String numeroCuenta) {
+        int mascara = indice.length - 1;
+        for (int i = posicion(numeroCuenta, mascara); ; i = (i + 1) & mascara) {
+            int ranura = indice[i];
+            if (ranura == LIBRE) {
+                return -1;
+            }
+            if (numeros[ranura].equals(numeroCuenta)) {
+                return ranura;
+            }
+        }
+    }
+
+    private int libre(String numeroCuenta) {
+        int mascara = indice.length - 1;
+        int i = posicion(numeroCuenta, mascara);
+        while (indice[i] != LIBRE) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void crecer() {
+        int capacidad = numeros.length * 2;
+        numeros = Arrays.copyOf(numeros, capacidad);
+        monedas = Arrays.copyOf(monedas, capacidad);
+        saldos = Arrays.copyOf(saldos, capacidad);
+        secuencias = Arrays.copyOf(secuencias, capacidad);
+        activas = Arrays.copyOf(activas, capacidad);
+        eliminadas = Arrays.copyOf(eliminadas, capacidad);
+        sucias = Arrays.copyOf(sucias, capacidad);
+        listaSucias = Arrays.copyOf(listaSucias, capacidad);
+        indice = new int[capacidad * 2];
+        Arrays.fill(indice, LIBRE);
+        for (int ranura = 0; ranura < tamano; ranura++) {
+            indice[libre(numeros[ranura])] = ranura;
+        }
+    }
+
+    // El hashCode de String queda en caché; se mezcla porque los números comparten prefijo
+    private static int posicion(String numeroCuenta, int mascara) {
+        int h = numeroCuenta.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+}
@@ -0,0 +1,13 @@
+package com.banco.repository;
+
+import com.banco.model.AgregadoDiario;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+
+@Repository
+public interface AgregadoDiarioRepository extends ReactiveMongoRepository<AgregadoDiario, String>, AgregadoDiarioRepositoryCustom {
+    Flux<AgregadoDiario> findByNumeroCuentaAndFechaGreaterThanEqualOrderByFechaDesc(String numeroCuenta, LocalDate desde);
+}
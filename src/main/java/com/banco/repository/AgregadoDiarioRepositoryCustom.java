@@ -0,0 +1,15 @@
+package com.banco.repository;
+
+import com.banco.model.Transferencia;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+public interface AgregadoDiarioRepositoryCustom {
+    // Suma las transferencias a los agregados de origen y destino de su día en una escritura masiva
+    Mono<Void> acumular(Collection<Transferencia> transferencias);
+
+    // Recalcula en el servidor los agregados de un día a partir de transferencias; devuelve los eliminados por obsoletos
+    Mono<Long> reconstruirDia(LocalDate dia);
+}
@@ -0,0 +1,131 @@
+package com.banco.repository;
+
+import com.banco.model.AgregadoDiario;
+import com.banco.model.Transferencia;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AgregadoDiarioRepositoryCustomImpl implements AgregadoDiarioRepositoryCustom {
+    private static final Decimal128 CERO = new Decimal128(BigDecimal.ZERO);
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> acumular(Collection<Transferencia> transferencias) {
+        if (transferencias.isEmpty()) {
+            return Mono.empty();
+        }
+        // Un lote con muchas transferencias de la misma cuenta y día produce una sola operación
+        Map<String, Movimiento> movimientos = new LinkedHashMap<>();
+        for (Transferencia t : transferencias) {
+            LocalDate dia = t.getFechaTransferencia().toLocalDate();
+            movimientos.computeIfAbsent(AgregadoDiario.idPara(t.getCuentaOrigen(), dia),
+                    id -> new Movimiento(t.getCuentaOrigen(), dia)).salida(t.getMonto());
+            movimientos.computeIfAbsent(AgregadoDiario.idPara(t.getCuentaDestino(), dia),
+                    id -> new Movimiento(t.getCuentaDestino(), dia)).entrada(t.montoAcreditado());
+        }
+
+        return Mono.defer(() -> {
+            ReactiveBulkOperations operaciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AgregadoDiario.class);
+            movimientos.forEach((id, m) -> operaciones.upsert(
+                    Query.query(Criteria.where("id").is(id)),
+                    new Update()
+                            .setOnInsert("numeroCuenta", m.numeroCuenta)
+                            .setOnInsert("fecha", m.dia)
+                            .inc("entradas", new Decimal128(m.entradas))
+                            .inc("salidas", new Decimal128(m.salidas))
+                            .inc("numeroEntradas", m.numeroEntradas)
+                            .inc("numeroSalidas", m.numeroSalidas)));
+            return operaciones.execute().then();
+        });
+    }
+
+    @Override
+    public Mono<Long> reconstruirDia(LocalDate dia) {
+        ZoneId zona = ZoneId.systemDefault();
+        Date inicio = Date.from(dia.atStartOfDay(zona).toInstant());
+        Date fin = Date.from(dia.plusDays(1).atStartOfDay(zona).toInstant());
+        Date marca = Date.from(LocalDateTime.now().atZone(zona).toInstant());
+        String sufijo = ":" + dia;
+
+        // Cada transferencia aporta una salida a su origen y una entrada a su destino, en la moneda de
+        // cada cuenta; $merge escribe el resultado sin que los documentos pasen por la aplicación
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("estado", "EXITOSA")
+                        .append("fechaTransferencia", new Document("$gte", inicio).append("$lt", fin))),
+                new Document("$project", new Document("movimientos", List.of(
+                        new Document("cuenta", "$cuentaOrigen").append("entradas", CERO).append("salidas", "$monto")
+                                .append("numeroEntradas", 0L).append("numeroSalidas", 1L),
+                        new Document("cuenta", "$cuentaDestino")
+                                .append("entradas", new Document("$ifNull", List.of("$montoDestino", "$monto")))
+                                .append("salidas", CERO)
+                                .append("numeroEntradas", 1L).append("numeroSalidas", 0L)))),
+                new Document("$unwind", "$movimientos"),
+                new Document("$group", new Document("_id", "$movimientos.cuenta")
+                        .append("entradas", new Document("$sum", "$movimientos.entradas"))
+                        .append("salidas", new Document("$sum", "$movimientos.salidas"))
+                        .append("numeroEntradas", new Document("$sum", "$movimientos.numeroEntradas"))
+                        .append("numeroSalidas", new Document("$sum", "$movimientos.numeroSalidas"))),
+                new Document("$project", new Document("_id", new Document("$concat", List.of("$_id", sufijo)))
+                        .append("numeroCuenta", "$_id")
+                        .append("fecha", inicio)
+                        .append("entradas", 1).append("salidas", 1)
+                        .append("numeroEntradas", 1).append("numeroSalidas", 1)
+                        .append("reconstruidoEn", marca)),
+                new Document("$merge", new Document("into", mongoTemplate.getCollectionName(AgregadoDiario.class))
+                        .append("on", "_id")
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert")));
+
+        Query obsoletos = Query.query(Criteria.where("fecha").is(dia)
+                .and("reconstruidoEn").ne(marca));
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transferencia.class))
+                .flatMap(c -> Mono.from(c.aggregate(pipeline).allowDiskUse(true).toCollection()))
+                .then(mongoTemplate.remove(obsoletos, AgregadoDiario.class))
+                .map(r -> r.getDeletedCount());
+    }
+
+    private static final class Movimiento {
+        private final String numeroCuenta;
+        private final LocalDate dia;
+        private BigDecimal entradas = BigDecimal.ZERO;
+        private BigDecimal salidas = BigDecimal.ZERO;
+        private long numeroEntradas;
+        private long numeroSalidas;
+
+        Movimiento(String numeroCuenta, LocalDate dia) {
+            this.numeroCuenta = numeroCuenta;
+            this.dia = dia;
+        }
+
+        void entrada(BigDecimal monto) {
+            entradas = entradas.add(monto);
+            numeroEntradas++;
+        }
+
+        void salida(BigDecimal monto) {
+            salidas = salidas.add(monto);
+            numeroSalidas++;
+        }
+    }
+}
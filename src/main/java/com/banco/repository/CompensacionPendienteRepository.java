@@ -0,0 +1,9 @@
+package com.banco.repository;
+
+import com.banco.model.CompensacionPendiente;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CompensacionPendienteRepository extends ReactiveMongoRepository<CompensacionPendiente, String> {
+}
@@ -0,0 +1,9 @@
+package com.banco.repository;
+
+import com.banco.model.Conciliacion;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConciliacionRepository extends ReactiveMongoRepository<Conciliacion, String> {
+}
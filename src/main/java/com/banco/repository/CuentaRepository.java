@@ -3,10 +3,14 @@ package com.banco.repository;
 import com.banco.model.Cuenta;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 @Repository
-public interface CuentaRepository extends ReactiveMongoRepository<Cuenta, String> {
+public interface CuentaRepository extends ReactiveMongoRepository<Cuenta, String>, CuentaRepositoryCustom {
     Mono<Cuenta> findByNumeroCuenta(String numeroCuenta);
     Mono<Cuenta> findByEmail(String email);
+    Flux<Cuenta> findByNumeroCuentaIn(Collection<String> numerosCuenta);
 }
\ No newline at end of file
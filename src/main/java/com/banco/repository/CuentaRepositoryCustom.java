@@ -0,0 +1,58 @@
+package com.banco.repository;
+
+import com.banco.model.Cuenta;
+import com.banco.model.SaldoCuenta;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface CuentaRepositoryCustom {
+    // Resta el monto solo si la cuenta está activa y tiene saldo suficiente; vacío si no se aplicó
+    Mono<Cuenta> debitar(String numeroCuenta, BigDecimal monto);
+
+    // Suma el monto solo si la cuenta está activa; vacío si no se aplicó
+    Mono<Cuenta> acreditar(String numeroCuenta, BigDecimal monto);
+
+    // Ajuste incondicional usado para deshacer un movimiento ya aplicado
+    Mono<Cuenta> compensar(String numeroCuenta, BigDecimal delta);
+
+    // Aplica una compensación diferida una sola vez: la cuenta guarda su id hasta que se olvida;
+    // false si ya estaba aplicada o la cuenta no existe
+    Mono<Boolean> aplicarCompensacion(String numeroCuenta, BigDecimal delta, String idCompensacion);
+
+    // Quita de la cuenta el id de una compensación ya aplicada y borrada
+    Mono<Void> olvidarCompensacion(String numeroCuenta, String idCompensacion);
+
+    // Fija solo los campos de perfil que traen los cambios (nombre, email, estado) sin reemplazar el
+    // documento. Un saldo nuevo se aplica como delta sobre el de anterior, y sobre su base si la
+    // tiene, siempre que la cuenta siga con ese saldo; vacío si no existe o el saldo cambió entre medias
+    Mono<Cuenta> actualizarPerfil(String numeroCuenta, Cuenta cambios, Cuenta anterior);
+
+    // Lee solo el saldo, sin hidratar el resto del documento
+    Mono<BigDecimal> buscarSaldo(String numeroCuenta);
+
+    // Recorre la colección leyendo solo los campos pedidos (todos si está vacío)
+    Flux<Cuenta> listar(Set<String> campos, int limite, int tamanoLoteCursor);
+
+    // Número de cuentas según los metadatos de la colección, sin recorrerla
+    Mono<Long> contarEstimado();
+
+    // Aplica varios créditos con las condiciones de acreditar en una sola escritura masiva no
+    // ordenada y emite las cuentas que no se acreditaron, porque Mongo las rechazó o ya no estaban
+    // activas o con sitio; un error sin detalle por cuenta deja en duda todo el bloque
+    Mono<Set<String>> acreditarEnBloque(Map<String, BigDecimal> creditos);
+
+    // Número, saldo, estado y secuencia del motor de todas las cuentas
+    Flux<SaldoCuenta> listarSaldos(int tamanoLoteCursor);
+
+    // Fija el saldo de varias cuentas y la secuencia de la bitácora que ya incluye, en una escritura masiva
+    Mono<Void> guardarSaldos(Map<String, BigDecimal> saldos, long secuencia);
+
+    // Inserción masiva sin orden de cuentas nuevas; las que chocan con un email ya registrado (o
+    // repetido en el mismo bloque) se saltan y solo se emiten las que se insertaron de verdad
+    Mono<List<Cuenta>> insertarNuevas(List<Cuenta> cuentas);
+}
@@ -0,0 +1,254 @@
+package com.banco.repository;
+
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.SaldoCuenta;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CuentaRepositoryCustomImpl implements CuentaRepositoryCustom {
+    private static final FindAndModifyOptions RETORNAR_NUEVA = FindAndModifyOptions.options().returnNew(true);
+    // Ids de compensaciones diferidas aplicadas y aún no borradas; fuera del modelo, como secuenciaMotor
+    private static final String COMPENSACIONES = "compensacionesAplicadas";
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Cuenta> debitar(String numeroCuenta, BigDecimal monto) {
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta)
+                .and("activa").is(true)
+                .and("saldo").gte(new Decimal128(monto)));
+        return mongoTemplate.findAndModify(query, movimiento(monto.negate()), RETORNAR_NUEVA, Cuenta.class);
+    }
+
+    @Override
+    public Mono<Cuenta> acreditar(String numeroCuenta, BigDecimal monto) {
+        // El saldo resultante tiene que seguir cabiendo en unidades mínimas
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta)
+                .and("activa").is(true)
+                .and("saldo").lte(new Decimal128(Dinero.SALDO_MAXIMO.subtract(monto))));
+        return mongoTemplate.findAndModify(query, movimiento(monto), RETORNAR_NUEVA, Cuenta.class);
+    }
+
+    @Override
+    public Mono<Cuenta> compensar(String numeroCuenta, BigDecimal delta) {
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta));
+        return mongoTemplate.findAndModify(query, movimiento(delta), RETORNAR_NUEVA, Cuenta.class);
+    }
+
+    @Override
+    public Mono<Boolean> aplicarCompensacion(String numeroCuenta, BigDecimal delta, String idCompensacion) {
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta)
+                .and(COMPENSACIONES).ne(idCompensacion));
+        return mongoTemplate.updateFirst(query, movimiento(delta).push(COMPENSACIONES, idCompensacion), Cuenta.class)
+                .map(r -> r.getModifiedCount() > 0);
+    }
+
+    @Override
+    public Mono<Void> olvidarCompensacion(String numeroCuenta, String idCompensacion) {
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta));
+        return mongoTemplate.updateFirst(query, new Update().pull(COMPENSACIONES, idCompensacion), Cuenta.class).then();
+    }
+
+    @Override
+    public Mono<Cuenta> actualizarPerfil(String numeroCuenta, Cuenta cambios, Cuenta anterior) {
+        Criteria criterio = Criteria.where("numeroCuenta").is(numeroCuenta);
+        Update update = new Update().set("ultimaActualizacion", LocalDateTime.now());
+        if (cambios.getNombreTitular() != null) {
+            update.set("nombreTitular", cambios.getNombreTitular());
+        }
+        if (cambios.getEmail() != null) {
+            update.set("email", cambios.getEmail());
+        }
+        if (cambios.getActiva() != null) {
+            update.set("activa", cambios.getActiva());
+        }
+        if (cambios.getSaldo() != null) {
+            // Un débito o crédito concurrente cambia el saldo y la escritura ya no encuentra la cuenta
+            BigDecimal saldoAnterior = anterior.getSaldo() == null ? BigDecimal.ZERO : anterior.getSaldo();
+            BigDecimal delta = cambios.getSaldo().subtract(saldoAnterior);
+            if (anterior.getSaldo() == null) {
+                criterio.and("saldo").is(null);
+                update.set("saldo", new Decimal128(cambios.getSaldo()));
+            } else {
+                criterio.and("saldo").is(new Decimal128(anterior.getSaldo()));
+                update.inc("saldo", new Decimal128(delta));
+            }
+            // Un ajuste manual mueve también la base, o la conciliación lo daría por descuadre
+            if (anterior.getSaldoBase() != null) {
+                criterio.and("saldoBase").exists(true);
+                update.inc("saldoBase", new Decimal128(delta));
+            }
+        }
+        return mongoTemplate.findAndModify(Query.query(criterio), update, RETORNAR_NUEVA, Cuenta.class);
+    }
+
+    @Override
+    public Mono<BigDecimal> buscarSaldo(String numeroCuenta) {
+        Query query = Query.query(Criteria.where("numeroCuenta").is(numeroCuenta));
+        query.fields().include("saldo");
+        return mongoTemplate.findOne(query, Cuenta.class)
+                .mapNotNull(Cuenta::getSaldo);
+    }
+
+    @Override
+    public Flux<Cuenta> listar(Set<String> campos, int limite, int tamanoLoteCursor) {
+        Query query = new Query().limit(limite).cursorBatchSize(tamanoLoteCursor);
+        campos.forEach(campo -> query.fields().include(campo));
+        return mongoTemplate.find(query, Cuenta.class);
+    }
+
+    @Override
+    public Mono<Long> contarEstimado() {
+        return mongoTemplate.estimatedCount(Cuenta.class);
+    }
+
+    @Override
+    public Mono<Set<String>> acreditarEnBloque(Map<String, BigDecimal> creditos) {
+        if (creditos.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return Mono.defer(() -> {
+            List<String> cuentas = new ArrayList<>(creditos.keySet());
+            List<UpdateOneModel<Document>> operaciones = new ArrayList<>(cuentas.size());
+            for (String numeroCuenta : cuentas) {
+                BigDecimal monto = creditos.get(numeroCuenta);
+                // Mismas condiciones que acreditar: entre la lectura del bloque y el crédito la cuenta
+                // pudo borrarse, desactivarse o recibir otros créditos
+                operaciones.add(new UpdateOneModel<>(Filters.and(
+                        Filters.eq("numeroCuenta", numeroCuenta),
+                        Filters.eq("activa", true),
+                        Filters.lte("saldo", new Decimal128(Dinero.SALDO_MAXIMO.subtract(monto)))),
+                        movimiento(monto).getUpdateObject()));
+            }
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cuenta.class))
+                    .flatMap(c -> Mono.from(c.bulkWrite(operaciones, new BulkWriteOptions().ordered(false))))
+                    .flatMap(r -> noAcreditadas(creditos, Set.of(), cuentas.size() - r.getMatchedCount()))
+                    .onErrorResume(MongoBulkWriteException.class, e -> {
+                        // Sin orden, Mongo intenta todas: las que tienen error quedan sin aplicar
+                        Set<String> fallidas = new HashSet<>();
+                        for (BulkWriteError error : e.getWriteErrors()) {
+                            fallidas.add(cuentas.get(error.getIndex()));
+                        }
+                        return noAcreditadas(creditos, fallidas,
+                                cuentas.size() - fallidas.size() - e.getWriteResult().getMatchedCount());
+                    });
+        });
+    }
+
+    // El resultado masivo solo da cuántas operaciones encontraron su cuenta, no cuáles: si faltan,
+    // se busca qué cuentas del bloque no cumplen ahora las condiciones del crédito
+    private Mono<Set<String>> noAcreditadas(Map<String, BigDecimal> creditos, Set<String> fallidas, int sinCoincidir) {
+        if (sinCoincidir <= 0) {
+            return Mono.just(fallidas);
+        }
+        List<String> aplicables = creditos.keySet().stream().filter(c -> !fallidas.contains(c)).toList();
+        Query query = Query.query(Criteria.where("numeroCuenta").in(aplicables));
+        query.fields().include("numeroCuenta", "saldo", "activa");
+        return mongoTemplate.find(query, Cuenta.class)
+                .collectMap(Cuenta::getNumeroCuenta)
+                .map(encontradas -> {
+                    Set<String> noAcreditadas = new HashSet<>(fallidas);
+                    for (String numeroCuenta : aplicables) {
+                        Cuenta cuenta = encontradas.get(numeroCuenta);
+                        if (cuenta == null || !Boolean.TRUE.equals(cuenta.getActiva()) || cuenta.getSaldo() == null
+                                || cuenta.getSaldo().compareTo(Dinero.SALDO_MAXIMO.subtract(creditos.get(numeroCuenta))) > 0) {
+                            noAcreditadas.add(numeroCuenta);
+                        }
+                    }
+                    return noAcreditadas;
+                });
+    }
+
+    @Override
+    public Flux<SaldoCuenta> listarSaldos(int tamanoLoteCursor) {
+        Query query = new Query().cursorBatchSize(tamanoLoteCursor);
+        query.fields().include("numeroCuenta", "saldo", "moneda", "activa", "secuenciaMotor");
+        return mongoTemplate.find(query, SaldoCuenta.class, mongoTemplate.getCollectionName(Cuenta.class));
+    }
+
+    @Override
+    public Mono<Void> guardarSaldos(Map<String, BigDecimal> saldos, long secuencia) {
+        if (saldos.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            ReactiveBulkOperations operaciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cuenta.class);
+            saldos.forEach((numeroCuenta, saldo) -> operaciones.updateOne(
+                    Query.query(Criteria.where("numeroCuenta").is(numeroCuenta)),
+                    new Update()
+                            .set("saldo", new Decimal128(saldo))
+                            .set("secuenciaMotor", secuencia)
+                            .set("ultimaActualizacion", ahora)));
+            return operaciones.execute().then();
+        });
+    }
+
+    @Override
+    public Mono<List<Cuenta>> insertarNuevas(List<Cuenta> cuentas) {
+        if (cuentas.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return Mono.defer(() -> {
+            List<Document> documentos = new ArrayList<>(cuentas.size());
+            for (Cuenta cuenta : cuentas) {
+                Document documento = new Document();
+                mongoTemplate.getConverter().write(cuenta, documento);
+                documentos.add(documento);
+            }
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cuenta.class))
+                    .flatMap(c -> Mono.from(c.insertMany(documentos, new InsertManyOptions().ordered(false))))
+                    .thenReturn(cuentas)
+                    .onErrorResume(MongoBulkWriteException.class, e -> {
+                        // Sin orden, Mongo intenta todas y devuelve un error por cada fila rechazada
+                        Set<Integer> duplicadas = new HashSet<>();
+                        for (BulkWriteError error : e.getWriteErrors()) {
+                            if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                                return Mono.error(e);
+                            }
+                            duplicadas.add(error.getIndex());
+                        }
+                        List<Cuenta> nuevas = new ArrayList<>(cuentas.size() - duplicadas.size());
+                        for (int i = 0; i < cuentas.size(); i++) {
+                            if (!duplicadas.contains(i)) {
+                                nuevas.add(cuentas.get(i));
+                            }
+                        }
+                        return Mono.just(nuevas);
+                    });
+        });
+    }
+
+    private Update movimiento(BigDecimal delta) {
+        return new Update()
+                .inc("saldo", new Decimal128(delta))
+                .set("ultimaActualizacion", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,9 @@
+package com.banco.repository;
+
+import com.banco.model.SaldoArchivado;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SaldoArchivadoRepository extends ReactiveMongoRepository<SaldoArchivado, String>, SaldoArchivadoRepositoryCustom {
+}
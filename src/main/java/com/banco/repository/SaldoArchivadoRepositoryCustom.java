@@ -0,0 +1,12 @@
+package com.banco.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public interface SaldoArchivadoRepositoryCustom {
+    // Suma los netos de un segmento de archivo en una escritura masiva; las cuentas que ya
+    // tienen sumado ese segmento o uno posterior se saltan, así que repetirla no duplica nada
+    Mono<Void> acumular(Map<String, BigDecimal> netos, long segmento);
+}
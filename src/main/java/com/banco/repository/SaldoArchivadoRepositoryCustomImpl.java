@@ -0,0 +1,54 @@
+package com.banco.repository;
+
+import com.banco.model.SaldoArchivado;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SaldoArchivadoRepositoryCustomImpl implements SaldoArchivadoRepositoryCustom {
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Mono<Void> acumular(Map<String, BigDecimal> netos, long segmento) {
+        if (netos.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            List<UpdateOneModel<Document>> operaciones = new ArrayList<>(netos.size());
+            UpdateOptions upsert = new UpdateOptions().upsert(true);
+            netos.forEach((cuenta, neto) -> operaciones.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", cuenta), Filters.lt("segmento", segmento)),
+                    Updates.combine(Updates.inc("neto", new Decimal128(neto)), Updates.set("segmento", segmento)),
+                    upsert)));
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(SaldoArchivado.class))
+                    .flatMap(c -> Mono.from(c.bulkWrite(operaciones, new BulkWriteOptions().ordered(false))))
+                    .then()
+                    // Si la cuenta ya tiene este segmento el filtro no la encuentra y el upsert choca con su _id
+                    .onErrorResume(MongoBulkWriteException.class, e -> {
+                        for (BulkWriteError error : e.getWriteErrors()) {
+                            if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                                return Mono.error(e);
+                            }
+                        }
+                        return Mono.empty();
+                    });
+        });
+    }
+}
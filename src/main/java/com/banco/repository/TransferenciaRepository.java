@@ -7,7 +7,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface TransferenciaRepository extends ReactiveMongoRepository<Transferencia, String> {
+public interface TransferenciaRepository extends ReactiveMongoRepository<Transferencia, String>, TransferenciaRepositoryCustom {
     Flux<Transferencia> findByCuentaOrigen(String cuentaOrigen);
     Flux<Transferencia> findByCuentaDestino(String cuentaDestino);
     Flux<Transferencia> findByEstado(String estado);
@@ -0,0 +1,27 @@
+package com.banco.repository;
+
+import com.banco.model.Transferencia;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+public interface TransferenciaRepositoryCustom {
+    // Enviadas y recibidas por la cuenta, de la más reciente a la más antigua, a partir de la
+    // posición (antesDeFecha, antesDeId) excluida; los parámetros nulos no filtran y limite 0 no limita
+    Flux<Transferencia> buscarHistorial(String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId,
+                                        LocalDateTime desde, LocalDateTime hasta, int limite);
+
+    // Por estado, más recientes primero, leyendo solo los campos pedidos (todos si está vacío)
+    Flux<Transferencia> listarPorEstado(String estado, Set<String> campos, int limite, int tamanoLoteCursor);
+
+    // Las más antiguas anteriores al corte, en orden de fecha e _id, para archivarlas
+    Flux<Transferencia> listarAnteriores(LocalDateTime corte, int limite);
+
+    // Inserción masiva sin orden que salta las que ya existen (mismo _id o código de referencia);
+    // emite solo las que se insertaron de verdad. Si Mongo rechaza alguna por otro motivo, falla con
+    // InsercionParcialException, que lleva las que sí quedaron guardadas
+    Mono<List<Transferencia>> insertarNuevas(List<Transferencia> transferencias);
+}
@@ -0,0 +1,122 @@
+package com.banco.repository;
+
+import com.banco.exception.InsercionParcialException;
+import com.banco.model.Transferencia;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TransferenciaRepositoryCustomImpl implements TransferenciaRepositoryCustom {
+    private static final Sort MAS_RECIENTES_PRIMERO = Sort.by(
+            Sort.Order.desc("fechaTransferencia"), Sort.Order.desc("id"));
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<Transferencia> buscarHistorial(String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId,
+                                               LocalDateTime desde, LocalDateTime hasta, int limite) {
+        // Una rama por índice (cuenta, fecha, _id): Mongo mezcla ambas ya ordenadas y corta en el límite
+        Query query = new Query(new Criteria().orOperator(
+                rama("cuentaOrigen", numeroCuenta, antesDeFecha, antesDeId, desde, hasta),
+                rama("cuentaDestino", numeroCuenta, antesDeFecha, antesDeId, desde, hasta)))
+                .with(MAS_RECIENTES_PRIMERO);
+        if (limite > 0) {
+            query.limit(limite);
+        }
+        return mongoTemplate.find(query, Transferencia.class);
+    }
+
+    @Override
+    public Flux<Transferencia> listarPorEstado(String estado, Set<String> campos, int limite, int tamanoLoteCursor) {
+        Query query = Query.query(Criteria.where("estado").is(estado))
+                .with(Sort.by(Sort.Order.desc("fechaTransferencia")))
+                .limit(limite)
+                .cursorBatchSize(tamanoLoteCursor);
+        campos.forEach(campo -> query.fields().include(campo));
+        return mongoTemplate.find(query, Transferencia.class);
+    }
+
+    @Override
+    public Flux<Transferencia> listarAnteriores(LocalDateTime corte, int limite) {
+        Query query = Query.query(Criteria.where("fechaTransferencia").lt(corte))
+                .with(Sort.by(Sort.Order.asc("fechaTransferencia"), Sort.Order.asc("id")))
+                .limit(limite)
+                .cursorBatchSize(Math.min(limite, 1000));
+        return mongoTemplate.find(query, Transferencia.class);
+    }
+
+    @Override
+    public Mono<List<Transferencia>> insertarNuevas(List<Transferencia> transferencias) {
+        if (transferencias.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return Mono.defer(() -> {
+            List<Document> documentos = new ArrayList<>(transferencias.size());
+            for (Transferencia t : transferencias) {
+                Document documento = new Document();
+                mongoTemplate.getConverter().write(t, documento);
+                documentos.add(documento);
+            }
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transferencia.class))
+                    .flatMap(c -> Mono.from(c.insertMany(documentos, new InsertManyOptions().ordered(false))))
+                    .thenReturn(transferencias)
+                    .onErrorResume(MongoBulkWriteException.class, e -> {
+                        // Sin orden, Mongo intenta todas y devuelve un error por cada fila rechazada
+                        Set<Integer> rechazadas = new HashSet<>();
+                        boolean soloDuplicadas = true;
+                        for (BulkWriteError error : e.getWriteErrors()) {
+                            soloDuplicadas &= ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY;
+                            rechazadas.add(error.getIndex());
+                        }
+                        List<Transferencia> nuevas = new ArrayList<>(transferencias.size() - rechazadas.size());
+                        for (int i = 0; i < transferencias.size(); i++) {
+                            if (!rechazadas.contains(i)) {
+                                nuevas.add(transferencias.get(i));
+                            }
+                        }
+                        return soloDuplicadas && e.getWriteConcernError() == null
+                                ? Mono.just(nuevas)
+                                : Mono.error(new InsercionParcialException(nuevas, e));
+                    });
+        });
+    }
+
+    private Criteria rama(String campoCuenta, String numeroCuenta, LocalDateTime antesDeFecha, String antesDeId,
+                          LocalDateTime desde, LocalDateTime hasta) {
+        Criteria rama = Criteria.where(campoCuenta).is(numeroCuenta);
+        LocalDateTime tope = hasta == null || (antesDeFecha != null && antesDeFecha.isBefore(hasta))
+                ? antesDeFecha : hasta;
+        if (desde != null || tope != null) {
+            Criteria fecha = rama.and("fechaTransferencia");
+            if (desde != null) {
+                fecha.gte(desde);
+            }
+            if (tope != null) {
+                fecha.lte(tope);
+            }
+        }
+        if (antesDeFecha != null) {
+            // La fecha acota el recorrido del índice; el _id solo desempata filas del mismo instante
+            rama.orOperator(
+                    Criteria.where("fechaTransferencia").lt(antesDeFecha),
+                    Criteria.where("id").lt(antesDeId));
+        }
+        return rama;
+    }
+}
@@ -0,0 +1,110 @@
+package com.banco.service;
+
+import com.banco.dto.CuentaDTO;
+import com.banco.dto.ResultadoCuentaDTO;
+import com.banco.model.Cuenta;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Estado de un bloque de la importación de cuentas: la cuenta leída de cada línea y, si se
+ * rechaza, por qué.
+ */
+class BloqueCuentas {
+    static final String SOLICITUD_INVALIDA = "Solicitud inválida";
+    static final String EMAIL_DUPLICADO = "Email duplicado";
+    static final String ERROR_INTERNO = "Error interno";
+
+    private final long[] posiciones;
+    private final String[] lineas;
+    private final Cuenta[] cuentas;
+    private final ResultadoCuentaDTO[] rechazos;
+
+    BloqueCuentas(List<Tuple2<Long, String>> elementos) {
+        int n = elementos.size();
+        posiciones = new long[n];
+        lineas = new String[n];
+        cuentas = new Cuenta[n];
+        rechazos = new ResultadoCuentaDTO[n];
+        for (int i = 0; i < n; i++) {
+            posiciones[i] = elementos.get(i).getT1();
+            lineas[i] = elementos.get(i).getT2();
+        }
+    }
+
+    int tamano() {
+        return lineas.length;
+    }
+
+    String linea(int i) {
+        return lineas[i];
+    }
+
+    Cuenta cuenta(int i) {
+        return cuentas[i];
+    }
+
+    void leida(int i, Cuenta cuenta) {
+        cuentas[i] = cuenta;
+    }
+
+    void rechazar(int i, String error, String mensaje) {
+        rechazos[i] = ResultadoCuentaDTO.builder()
+                .posicion(posiciones[i])
+                .error(error)
+                .mensaje(mensaje)
+                .build();
+    }
+
+    boolean rechazada(int i) {
+        return rechazos[i] != null;
+    }
+
+    List<Cuenta> aceptadas() {
+        List<Cuenta> aceptadas = new ArrayList<>(cuentas.length);
+        for (int i = 0; i < cuentas.length; i++) {
+            if (rechazos[i] == null) {
+                aceptadas.add(cuentas[i]);
+            }
+        }
+        return aceptadas;
+    }
+
+    // Lo que se intentó insertar y no está entre las insertadas chocó con un email existente
+    void rechazarNoInsertadas(List<Cuenta> insertadas) {
+        Set<Cuenta> nuevas = Collections.newSetFromMap(new IdentityHashMap<>(insertadas.size() * 2));
+        nuevas.addAll(insertadas);
+        for (int i = 0; i < cuentas.length; i++) {
+            if (rechazos[i] == null && !nuevas.contains(cuentas[i])) {
+                rechazar(i, EMAIL_DUPLICADO, "Ya existe una cuenta con el email " + cuentas[i].getEmail());
+            }
+        }
+    }
+
+    void rechazarAceptadas(String error, String mensaje) {
+        for (int i = 0; i < cuentas.length; i++) {
+            if (rechazos[i] == null) {
+                rechazar(i, error, mensaje);
+            }
+        }
+    }
+
+    List<ResultadoCuentaDTO> resultados(Function<Cuenta, CuentaDTO> convertir) {
+        List<ResultadoCuentaDTO> resultados = new ArrayList<>(cuentas.length);
+        for (int i = 0; i < cuentas.length; i++) {
+            resultados.add(rechazos[i] != null
+                    ? rechazos[i]
+                    : ResultadoCuentaDTO.builder()
+                            .posicion(posiciones[i])
+                            .cuenta(convertir.apply(cuentas[i]))
+                            .build());
+        }
+        return resultados;
+    }
+}
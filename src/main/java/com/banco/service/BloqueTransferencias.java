@@ -0,0 +1,252 @@
+package com.banco.service;
+
+import com.banco.cambio.TablaCambios;
+import com.banco.dto.ResultadoTransferenciaDTO;
+import com.banco.dto.TransferenciaDTO;
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.Transferencia;
+import com.banco.velocidad.AnotacionVelocidad;
+import reactor.util.function.Tuple2;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Estado de un bloque del lote: qué transferencias se rechazan, cuáles se aplican y los
+ * movimientos agrupados por cuenta que resultan de ellas.
+ */
+class BloqueTransferencias {
+    static final String SALDO_INSUFICIENTE = "Saldo insuficiente";
+    static final String CUENTA_NO_ENCONTRADA = "Cuenta no encontrada";
+    static final String SOLICITUD_INVALIDA = "Solicitud inválida";
+    static final String ERROR_INTERNO = "Error interno";
+    static final String LIMITE_EXCEDIDO = "Límite excedido";
+    static final String LIMITE_VELOCIDAD = "Límite de velocidad";
+
+    private final long[] posiciones;
+    private final Transferencia[] transferencias;
+    private final ResultadoTransferenciaDTO[] rechazos;
+    private final boolean[] aceptadas;
+    private final AnotacionVelocidad[] anotaciones;
+    private final Map<String, BigDecimal> debitos = new LinkedHashMap<>();
+
+    BloqueTransferencias(List<Tuple2<Long, Transferencia>> elementos) {
+        int n = elementos.size();
+        posiciones = new long[n];
+        transferencias = new Transferencia[n];
+        rechazos = new ResultadoTransferenciaDTO[n];
+        aceptadas = new boolean[n];
+        anotaciones = new AnotacionVelocidad[n];
+        for (int i = 0; i < n; i++) {
+            posiciones[i] = elementos.get(i).getT1();
+            transferencias[i] = elementos.get(i).getT2();
+        }
+    }
+
+    int tamano() {
+        return transferencias.length;
+    }
+
+    Transferencia transferencia(int i) {
+        return transferencias[i];
+    }
+
+    void rechazar(int i, String error, String mensaje) {
+        aceptadas[i] = false;
+        rechazos[i] = ResultadoTransferenciaDTO.builder()
+                .posicion(posiciones[i])
+                .error(error)
+                .mensaje(mensaje)
+                .build();
+    }
+
+    boolean rechazada(int i) {
+        return rechazos[i] != null;
+    }
+
+    void anotar(int i, AnotacionVelocidad anotacion) {
+        anotaciones[i] = anotacion;
+    }
+
+    // Lo anotado en los límites de velocidad por transferencias que al final se rechazaron, o
+    // por todas si el bloque no llegó a aplicarse
+    List<AnotacionVelocidad> anotaciones(boolean soloRechazadas) {
+        List<AnotacionVelocidad> lista = new ArrayList<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            if (anotaciones[i] != null && (rechazos[i] != null || !soloRechazadas)) {
+                lista.add(anotaciones[i]);
+            }
+        }
+        return lista;
+    }
+
+    Set<String> cuentasInvolucradas() {
+        Set<String> cuentas = new HashSet<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            if (rechazos[i] == null) {
+                cuentas.add(transferencias[i].getCuentaOrigen());
+                cuentas.add(transferencias[i].getCuentaDestino());
+            }
+        }
+        return cuentas;
+    }
+
+    // Recorre el bloque en orden descontando del saldo leído lo que ya se comprometió antes. Los
+    // saldos se llevan en unidades mínimas de la moneda de cada cuenta; lo acreditado cuenta para
+    // no pasar de Dinero.SALDO_MAXIMO pero no como disponible
+    void planificar(Map<String, Cuenta> cuentas, TablaCambios cambios) {
+        Map<String, Dinero> disponible = new HashMap<>();
+        Map<String, Dinero> acreditado = new HashMap<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            if (rechazos[i] != null) {
+                continue;
+            }
+            Transferencia t = transferencias[i];
+            Cuenta origen = cuentas.get(t.getCuentaOrigen());
+            Cuenta destino = cuentas.get(t.getCuentaDestino());
+            if (origen == null) {
+                rechazar(i, CUENTA_NO_ENCONTRADA, "Cuenta origen no existe");
+                continue;
+            }
+            if (destino == null) {
+                rechazar(i, CUENTA_NO_ENCONTRADA, "Cuenta destino no existe");
+                continue;
+            }
+            if (!Boolean.TRUE.equals(origen.getActiva())) {
+                rechazar(i, SOLICITUD_INVALIDA, "La cuenta origen está inactiva");
+                continue;
+            }
+            if (!Boolean.TRUE.equals(destino.getActiva())) {
+                rechazar(i, SOLICITUD_INVALIDA, "La cuenta destino está inactiva");
+                continue;
+            }
+            String error = cambios.aplicar(t, origen.getMoneda(), destino.getMoneda());
+            if (error != null) {
+                rechazar(i, SOLICITUD_INVALIDA, error);
+                continue;
+            }
+            Dinero debito;
+            Dinero credito;
+            Dinero saldo;
+            Dinero saldoDestino;
+            try {
+                debito = Dinero.de(t.getMonto(), origen.getMoneda());
+                credito = Dinero.de(t.montoAcreditado(), destino.getMoneda());
+                saldo = disponible.get(origen.getNumeroCuenta());
+                if (saldo == null) {
+                    saldo = Dinero.de(origen.getSaldo(), origen.getMoneda());
+                }
+                saldoDestino = acreditado.get(destino.getNumeroCuenta());
+                if (saldoDestino == null) {
+                    saldoDestino = Dinero.de(destino.getSaldo(), destino.getMoneda());
+                }
+            } catch (IllegalArgumentException e) {
+                rechazar(i, SOLICITUD_INVALIDA, e.getMessage());
+                continue;
+            }
+            if (saldo.compareTo(debito) < 0) {
+                rechazar(i, SALDO_INSUFICIENTE, "Saldo insuficiente. Disponible: " + saldo);
+                continue;
+            }
+            if (saldoDestino.unidades() > Dinero.saldoMaximo(saldoDestino.escala()) - credito.unidades()) {
+                rechazar(i, SOLICITUD_INVALIDA, "El saldo de la cuenta destino superaría el máximo");
+                continue;
+            }
+            disponible.put(origen.getNumeroCuenta(), saldo.restar(debito));
+            acreditado.put(destino.getNumeroCuenta(), saldoDestino.sumar(credito));
+            debitos.merge(origen.getNumeroCuenta(), t.getMonto(), BigDecimal::add);
+            aceptadas[i] = true;
+        }
+    }
+
+    Map<String, BigDecimal> debitos() {
+        return debitos;
+    }
+
+    // El saldo cambió entre la lectura y el débito: se rechaza todo lo que salía de esas cuentas
+    void rechazarOrigenes(Collection<String> cuentas) {
+        rechazarOrigenes(cuentas, SALDO_INSUFICIENTE, "Saldo insuficiente");
+    }
+
+    // Débitos que no se aplicaron: sus transferencias se rechazan sin nada que deshacer
+    void rechazarOrigenes(Collection<String> cuentas, String error, String mensaje) {
+        if (cuentas.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < transferencias.length; i++) {
+            if (aceptadas[i] && cuentas.contains(transferencias[i].getCuentaOrigen())) {
+                rechazar(i, error, mensaje);
+            }
+        }
+        cuentas.forEach(debitos::remove);
+    }
+
+    Map<String, BigDecimal> creditos() {
+        Map<String, BigDecimal> creditos = new LinkedHashMap<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            if (aceptadas[i]) {
+                creditos.merge(transferencias[i].getCuentaDestino(), transferencias[i].montoAcreditado(), BigDecimal::add);
+            }
+        }
+        return creditos;
+    }
+
+    // Créditos que no se aplicaron: se rechazan las transferencias hacia esas cuentas y se
+    // devuelve lo que hay que reintegrar a sus cuentas origen, ya debitadas
+    Map<String, BigDecimal> rechazarDestinos(Collection<String> cuentas, String error, String mensaje) {
+        Map<String, BigDecimal> reversion = new HashMap<>();
+        if (cuentas.isEmpty()) {
+            return reversion;
+        }
+        for (int i = 0; i < transferencias.length; i++) {
+            Transferencia t = transferencias[i];
+            if (aceptadas[i] && cuentas.contains(t.getCuentaDestino())) {
+                rechazar(i, error, mensaje);
+                reversion.merge(t.getCuentaOrigen(), t.getMonto(), BigDecimal::add);
+            }
+        }
+        return reversion;
+    }
+
+    // Las aceptadas que no llegaron a registrarse se rechazan; devuelve el movimiento neto que
+    // deshace sus débitos y créditos, ya aplicados
+    Map<String, BigDecimal> rechazarNoRegistradas(Collection<Transferencia> registradas, String error, String mensaje) {
+        Set<String> ids = new HashSet<>();
+        registradas.forEach(t -> ids.add(t.getId()));
+        Map<String, BigDecimal> reversion = new HashMap<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            Transferencia t = transferencias[i];
+            if (aceptadas[i] && !ids.contains(t.getId())) {
+                rechazar(i, error, mensaje);
+                reversion.merge(t.getCuentaOrigen(), t.getMonto(), BigDecimal::add);
+                reversion.merge(t.getCuentaDestino(), t.montoAcreditado().negate(), BigDecimal::add);
+            }
+        }
+        return reversion;
+    }
+
+    List<Transferencia> aceptadas() {
+        List<Transferencia> lista = new ArrayList<>();
+        for (int i = 0; i < transferencias.length; i++) {
+            if (aceptadas[i]) {
+                lista.add(transferencias[i]);
+            }
+        }
+        return lista;
+    }
+
+    List<ResultadoTransferenciaDTO> resultados(Function<Transferencia, TransferenciaDTO> convertir) {
+        List<ResultadoTransferenciaDTO> resultados = new ArrayList<>(transferencias.length);
+        for (int i = 0; i < transferencias.length; i++) {
+            resultados.add(rechazos[i] != null
+                    ? rechazos[i]
+                    : ResultadoTransferenciaDTO.builder()
+                            .posicion(posiciones[i])
+                            .transferencia(convertir.apply(transferencias[i]))
+                            .build());
+        }
+        return resultados;
+    }
+}
@@ -0,0 +1,49 @@
+package com.banco.service;
+
+import org.springframework.beans.BeanUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lista de campos pedida con fields=a,b,c para proyectar en Mongo solo lo que se devuelve.
+ */
+final class Campos {
+    private Campos() {
+    }
+
+    // Conjunto vacío significa documento completo
+    static Set<String> parsear(String fields, Set<String> permitidos) {
+        Set<String> campos = new LinkedHashSet<>();
+        if (fields == null || fields.isBlank()) {
+            return campos;
+        }
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(c -> !c.isEmpty())
+                .forEach(campo -> {
+                    if (!permitidos.contains(campo)) {
+                        throw new IllegalArgumentException("Campo desconocido: " + campo);
+                    }
+                    campos.add(campo);
+                });
+        return campos;
+    }
+
+    // Solo los campos pedidos, en ese orden; uno pedido sin valor sale como null en vez de desaparecer
+    static Map<String, Object> proyectar(Object dto, Set<String> campos) {
+        Map<String, Object> proyeccion = new LinkedHashMap<>();
+        for (String campo : campos) {
+            try {
+                proyeccion.put(campo, BeanUtils.getPropertyDescriptor(dto.getClass(), campo).getReadMethod().invoke(dto));
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("No se pudo leer el campo " + campo, e);
+            }
+        }
+        return proyeccion;
+    }
+}
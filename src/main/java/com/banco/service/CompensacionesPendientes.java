@@ -0,0 +1,141 @@
+package com.banco.service;
+
+import com.banco.cache.CacheCuentas;
+import com.banco.id.Identificadores;
+import com.banco.model.CompensacionPendiente;
+import com.banco.repository.CompensacionPendienteRepository;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compensaciones que no se pudieron escribir al deshacer una transferencia. En lugar de perder
+ * el dinero debitado se guardan en compensaciones_pendientes y se reintentan periódicamente.
+ * Cada una se aplica a lo sumo una vez: la cuenta recibe el ajuste junto con el id de la
+ * compensación en la misma escritura, y el id se quita cuando la pendiente ya está borrada.
+ */
+@Service
+public class CompensacionesPendientes {
+    private static final Logger log = LoggerFactory.getLogger(CompensacionesPendientes.class);
+
+    @Autowired
+    private CompensacionPendienteRepository pendientes;
+
+    @Autowired
+    private CuentaRepository cuentaRepository;
+
+    @Autowired
+    private CacheCuentas cacheCuentas;
+
+    @Autowired
+    private Identificadores identificadores;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0 = solo al arrancar
+    @Value("${banco.compensaciones.intervalo-segundos:30}")
+    private long intervaloSegundos;
+
+    private final AtomicLong pendientesVistas = new AtomicLong();
+    private Counter perdidas;
+    private Disposable reintentos;
+
+    @PostConstruct
+    void iniciar() {
+        Gauge.builder("banco.compensaciones.pendientes", pendientesVistas, AtomicLong::get)
+                .description("Compensaciones de saldo diferidas que quedaban en la última pasada")
+                .register(meterRegistry);
+        perdidas = Counter.builder("banco.compensaciones.perdidas")
+                .description("Compensaciones que no se pudieron ni aplicar ni guardar")
+                .register(meterRegistry);
+        Flux<Long> pasadas = intervaloSegundos > 0
+                ? Flux.interval(Duration.ZERO, Duration.ofSeconds(intervaloSegundos)).onBackpressureDrop()
+                : Flux.just(0L);
+        reintentos = pasadas
+                .concatMap(n -> reintentar()
+                        .onErrorResume(e -> {
+                            log.warn("No se pudieron reintentar las compensaciones pendientes", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void detener() {
+        if (reintentos != null) {
+            reintentos.dispose();
+        }
+    }
+
+    /** Guarda la compensación para reintentarla; solo si ni eso es posible se da por perdida. */
+    public Mono<Void> diferir(String numeroCuenta, BigDecimal delta, String motivo) {
+        CompensacionPendiente pendiente = new CompensacionPendiente(identificadores.nuevoId(), numeroCuenta, delta,
+                motivo, LocalDateTime.now());
+        return pendientes.insert(pendiente)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100)))
+                .doOnSuccess(p -> {
+                    pendientesVistas.incrementAndGet();
+                    log.warn("Compensación de {} en la cuenta {} diferida como {}", delta, numeroCuenta, p.getId());
+                })
+                .onErrorResume(e -> {
+                    perdidas.increment();
+                    log.error("COMPENSACIÓN PERDIDA: {} en la cuenta {} ({})", delta, numeroCuenta, motivo, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /** Una pasada sobre todas las pendientes, de la más antigua a la más reciente. */
+    public Mono<Long> reintentar() {
+        AtomicLong aplicadas = new AtomicLong();
+        AtomicLong restantes = new AtomicLong();
+        return pendientes.findAll(Sort.by("id"))
+                .concatMap(p -> aplicar(p)
+                        .doOnSuccess(v -> aplicadas.incrementAndGet())
+                        .onErrorResume(e -> {
+                            restantes.incrementAndGet();
+                            log.warn("No se pudo aplicar la compensación pendiente {}", p.getId(), e);
+                            return Mono.empty();
+                        }))
+                .then(Mono.fromSupplier(() -> {
+                    pendientesVistas.set(restantes.get());
+                    if (aplicadas.get() > 0) {
+                        log.info("Compensaciones pendientes aplicadas: {}; quedan {}", aplicadas.get(), restantes.get());
+                    }
+                    return aplicadas.get();
+                }));
+    }
+
+    // Si el ajuste ya estaba aplicado (se cayó antes de borrar la pendiente) solo queda borrarla
+    private Mono<Void> aplicar(CompensacionPendiente p) {
+        return cuentaRepository.aplicarCompensacion(p.getNumeroCuenta(), p.getDelta(), p.getId())
+                .doOnTerminate(() -> cacheCuentas.invalidarSaldo(p.getNumeroCuenta()))
+                .doOnNext(aplicada -> {
+                    if (!aplicada) {
+                        log.warn("La compensación {} ya estaba aplicada o la cuenta {} ya no existe",
+                                p.getId(), p.getNumeroCuenta());
+                    }
+                })
+                .then(pendientes.deleteById(p.getId()))
+                .then(cuentaRepository.olvidarCompensacion(p.getNumeroCuenta(), p.getId()));
+    }
+}
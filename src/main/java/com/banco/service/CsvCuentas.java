@@ -0,0 +1,139 @@
+package com.banco.service;
+
+import com.banco.dto.CuentaDTO;
+import com.banco.model.Cuenta;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato CSV de la importación y la exportación de cuentas: una cabecera con los nombres de
+ * los campos y una cuenta por línea, con comillas dobles si el valor lleva comas o comillas.
+ * Al importar las columnas se buscan por nombre y las que no se usan se ignoran, así que un
+ * fichero exportado se puede volver a importar tal cual. Un valor no puede ocupar varias líneas.
+ */
+final class CsvCuentas {
+    static final String CABECERA = "numeroCuenta,nombreTitular,email,saldo,moneda,activa\n";
+
+    private final int nombreTitular;
+    private final int email;
+    private final int saldo;
+    private final int moneda;
+
+    private CsvCuentas(List<String> columnas) {
+        nombreTitular = requerida(columnas, "nombreTitular");
+        email = requerida(columnas, "email");
+        moneda = requerida(columnas, "moneda");
+        saldo = columnas.indexOf("saldo");
+    }
+
+    static CsvCuentas desdeCabecera(String cabecera) {
+        // Las hojas de cálculo suelen añadir la marca de orden de bytes
+        String limpia = cabecera.startsWith("\uFEFF") ? cabecera.substring(1) : cabecera;
+        List<String> columnas = new ArrayList<>();
+        for (String columna : campos(limpia)) {
+            columnas.add(columna.trim());
+        }
+        return new CsvCuentas(columnas);
+    }
+
+    private static int requerida(List<String> columnas, String nombre) {
+        int i = columnas.indexOf(nombre);
+        if (i < 0) {
+            throw new IllegalArgumentException("Falta la columna " + nombre + " en la cabecera del CSV");
+        }
+        return i;
+    }
+
+    Cuenta leer(String linea) {
+        List<String> valores = campos(linea);
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNombreTitular(valor(valores, nombreTitular));
+        cuenta.setEmail(valor(valores, email));
+        cuenta.setMoneda(valor(valores, moneda));
+        String importe = saldo < 0 ? null : valor(valores, saldo);
+        if (importe != null && !importe.isBlank()) {
+            try {
+                cuenta.setSaldo(new BigDecimal(importe.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Saldo no numérico: " + importe);
+            }
+        }
+        return cuenta;
+    }
+
+    private static String valor(List<String> valores, int i) {
+        return i < valores.size() ? valores.get(i) : null;
+    }
+
+    static String linea(CuentaDTO cuenta) {
+        StringBuilder linea = new StringBuilder(96);
+        agregar(linea, cuenta.getNumeroCuenta()).append(',');
+        agregar(linea, cuenta.getNombreTitular()).append(',');
+        agregar(linea, cuenta.getEmail()).append(',');
+        agregar(linea, cuenta.getSaldo() == null ? null : cuenta.getSaldo().toPlainString()).append(',');
+        agregar(linea, cuenta.getMoneda()).append(',');
+        agregar(linea, cuenta.getActiva() == null ? null : cuenta.getActiva().toString()).append('\n');
+        return linea.toString();
+    }
+
+    private static StringBuilder agregar(StringBuilder linea, String valor) {
+        if (valor == null) {
+            return linea;
+        }
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            return linea.append(valor);
+        }
+        linea.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            // Un salto de línea partiría la fila al volver a leerla
+            if (c == '\n' || c == '\r') {
+                c = ' ';
+            }
+            if (c == '"') {
+                linea.append('"');
+            }
+            linea.append(c);
+        }
+        return linea.append('"');
+    }
+
+    // Separa por comas respetando las comillas dobles ("" dentro de comillas es una comilla)
+    static List<String> campos(String linea) {
+        List<String> campos = new ArrayList<>(8);
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    actual.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else if (c == '"' && actual.length() == 0) {
+                entreComillas = true;
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
@@ -1,63 +1,305 @@
 package com.banco.service;
 
+import com.banco.cache.CacheCuentas;
 import com.banco.dto.CuentaDTO;
+import com.banco.dto.EventoCuentaDTO;
+import com.banco.dto.ResultadoCuentaDTO;
+import com.banco.eventos.BusEventos;
 import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.id.Identificadores;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.motor.MotorSaldos;
 import com.banco.model.Cuenta;
 import com.banco.repository.CuentaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CuentaService {
     private static final Logger log = LogManager.getLogger(CuentaService.class);
+    private static final String METRICA_OPERACIONES = "banco.cuentas.operacion";
+    // Lecturas y escrituras de un ajuste de saldo antes de rendirse ante los movimientos concurrentes
+    private static final int INTENTOS_ACTUALIZAR = 5;
+    private static final Set<String> CAMPOS_DTO = Set.of(
+            "id", "numeroCuenta", "nombreTitular", "email", "saldo", "moneda", "activa");
     @Autowired
     private CuentaRepository cuentaRepository;
 
+    @Autowired
+    private CacheCuentas cacheCuentas;
+
+    @Autowired
+    private BusEventos busEventos;
+
+    @Autowired
+    private Identificadores identificadores;
+
+    @Autowired
+    private MetricasEtapas metricas;
+
+    @Autowired
+    private MotorSaldos motor;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${banco.listados.limite-maximo:100000}")
+    private int limiteListados;
+
+    @Value("${banco.listados.tamano-lote-cursor:500}")
+    private int tamanoLoteCursor;
+
+    @Value("${banco.listados.prefetch:256}")
+    private int prefetchListados;
+
+    @Value("${banco.importacion.tamano-bloque:1000}")
+    private int tamanoBloqueImportacion;
+
+    // 0 = tantos bloques validándose a la vez como núcleos
+    @Value("${banco.importacion.validaciones-en-paralelo:0}")
+    private int validacionesEnParalelo;
+
+    @Value("${banco.importacion.escrituras-en-paralelo:2}")
+    private int escriturasEnParalelo;
+
+    private MetricasEtapas.Etapa etapaCrear;
+    private MetricasEtapas.Etapa etapaObtener;
+    private MetricasEtapas.Etapa etapaObtenerPorEmail;
+    private MetricasEtapas.Etapa etapaListar;
+    private MetricasEtapas.Etapa etapaActualizar;
+    private MetricasEtapas.Etapa etapaEliminar;
+    private MetricasEtapas.Etapa etapaImportar;
+
+    @PostConstruct
+    void iniciarMetricas() {
+        etapaCrear = metricas.etapa(METRICA_OPERACIONES, "operacion", "crear");
+        etapaObtener = metricas.etapa(METRICA_OPERACIONES, "operacion", "obtener");
+        etapaObtenerPorEmail = metricas.etapa(METRICA_OPERACIONES, "operacion", "obtener_por_email");
+        etapaListar = metricas.etapa(METRICA_OPERACIONES, "operacion", "listar");
+        etapaActualizar = metricas.etapa(METRICA_OPERACIONES, "operacion", "actualizar");
+        etapaEliminar = metricas.etapa(METRICA_OPERACIONES, "operacion", "eliminar");
+        etapaImportar = metricas.etapa(METRICA_OPERACIONES, "operacion", "importar");
+    }
+
     public Mono<CuentaDTO> crearCuenta(Cuenta cuenta) {
         log.info("Creando nueva cuenta para: {}", cuenta.getNombreTitular());
-        cuenta.setId(UUID.randomUUID().toString());
-        cuenta.setNumeroCuenta(generarNumeroCuenta());
-        cuenta.setFechaCreacion(LocalDateTime.now());
-        cuenta.setUltimaActualizacion(LocalDateTime.now());
-        cuenta.setActiva(true);
+        prepararAlta(cuenta, identificadores.nuevoId(), identificadores.nuevoNumeroCuenta(), LocalDateTime.now());
 
-        return cuentaRepository.save(cuenta)
+        return etapaCrear.medir(cuentaRepository.save(cuenta))
                 .map(this::convertirADTO)
                 .doOnError(e -> log.error("Error al crear cuenta", e));
     }
 
+    private static void prepararAlta(Cuenta cuenta, String id, String numeroCuenta, LocalDateTime ahora) {
+        cuenta.setId(id);
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setFechaCreacion(ahora);
+        cuenta.setUltimaActualizacion(ahora);
+        cuenta.setActiva(true);
+        cuenta.setSaldoBase(cuenta.getSaldo() == null ? BigDecimal.ZERO : cuenta.getSaldo());
+    }
+
+    /**
+     * Alta masiva desde un flujo NDJSON, una cuenta por línea. Se procesa por bloques: varios
+     * bloques se leen y validan a la vez en el planificador paralelo, cada uno recibe sus ids y
+     * números de una sola reserva y se inserta con una escritura masiva no ordenada. Emite un
+     * resultado por línea en el orden de entrada; una línea inválida o un email ya registrado
+     * se rechaza sin afectar a las demás. La memoria depende del tamaño y número de bloques en
+     * vuelo, no del volumen.
+     */
+    public Flux<ResultadoCuentaDTO> importar(Flux<String> lineas) {
+        ObjectReader lector = objectMapper.readerFor(Cuenta.class);
+        return importarLineas(lineas.filter(linea -> !linea.isBlank()), linea -> {
+            try {
+                return lector.readValue(linea);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("JSON inválido: " + e.getOriginalMessage());
+            }
+        });
+    }
+
+    /** Como {@link #importar(Flux)}, pero desde un CSV con cabecera; las posiciones no cuentan la cabecera. */
+    public Flux<ResultadoCuentaDTO> importarCsv(Flux<String> lineas) {
+        return lineas.switchOnFirst((primera, todas) -> {
+            if (!primera.hasValue()) {
+                return todas.thenMany(Flux.empty());
+            }
+            CsvCuentas csv = CsvCuentas.desdeCabecera(primera.get());
+            return importarLineas(todas.skip(1).filter(linea -> !linea.isBlank()), csv::leer);
+        });
+    }
+
+    private Flux<ResultadoCuentaDTO> importarLineas(Flux<String> lineas, Function<String, Cuenta> leer) {
+        int validaciones = validacionesEnParalelo > 0 ? validacionesEnParalelo : Schedulers.DEFAULT_POOL_SIZE;
+        return lineas
+                .index()
+                .buffer(tamanoBloqueImportacion)
+                .flatMapSequential(elementos -> Mono.fromCallable(() -> prepararBloque(elementos, leer))
+                        .subscribeOn(Schedulers.parallel()), validaciones, 1)
+                .flatMapSequential(this::insertarBloque, escriturasEnParalelo, 1);
+    }
+
+    private BloqueCuentas prepararBloque(List<Tuple2<Long, String>> elementos, Function<String, Cuenta> leer) {
+        BloqueCuentas bloque = new BloqueCuentas(elementos);
+        int validas = 0;
+        for (int i = 0; i < bloque.tamano(); i++) {
+            try {
+                bloque.leida(i, leer.apply(bloque.linea(i)));
+            } catch (IllegalArgumentException e) {
+                bloque.rechazar(i, BloqueCuentas.SOLICITUD_INVALIDA, e.getMessage());
+                continue;
+            }
+            Set<ConstraintViolation<Cuenta>> violaciones = validator.validate(bloque.cuenta(i));
+            if (!violaciones.isEmpty()) {
+                bloque.rechazar(i, BloqueCuentas.SOLICITUD_INVALIDA, violaciones.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+            validas++;
+        }
+        // Una reserva de ids por bloque en lugar de dos por cuenta
+        String[] ids = identificadores.nuevosIds(validas);
+        String[] numeros = identificadores.nuevosNumerosCuenta(validas);
+        LocalDateTime ahora = LocalDateTime.now();
+        int j = 0;
+        for (int i = 0; i < bloque.tamano(); i++) {
+            if (!bloque.rechazada(i)) {
+                prepararAlta(bloque.cuenta(i), ids[j], numeros[j], ahora);
+                j++;
+            }
+        }
+        return bloque;
+    }
+
+    private Flux<ResultadoCuentaDTO> insertarBloque(BloqueCuentas bloque) {
+        List<Cuenta> aceptadas = bloque.aceptadas();
+        Mono<List<Cuenta>> insercion = aceptadas.isEmpty()
+                ? Mono.just(aceptadas)
+                : etapaImportar.medir(cuentaRepository.insertarNuevas(aceptadas));
+        return insercion
+                .doOnNext(bloque::rechazarNoInsertadas)
+                .onErrorResume(e -> {
+                    log.error("Error al importar un bloque de {} cuentas", aceptadas.size(), e);
+                    bloque.rechazarAceptadas(BloqueCuentas.ERROR_INTERNO, "No se pudo registrar la cuenta");
+                    return Mono.empty();
+                })
+                .thenMany(Flux.defer(() -> Flux.fromIterable(bloque.resultados(this::convertirADTO))));
+    }
+
+    /** Todas las cuentas, sin el tope de los listados, leídas del cursor a medida que se envían. */
+    public Flux<CuentaDTO> exportar() {
+        return Flux.defer(() -> cuentaRepository.listar(Set.of(), 0, tamanoLoteCursor))
+                .limitRate(prefetchListados)
+                .transform(this::conSaldosDelMotor)
+                .map(this::convertirADTO);
+    }
+
+    /** La exportación en el formato CSV que acepta {@link #importarCsv(Flux)}, por trozos de varias líneas. */
+    public Flux<String> exportarCsv() {
+        return Flux.concat(
+                Mono.just(CsvCuentas.CABECERA),
+                exportar()
+                        .map(CsvCuentas::linea)
+                        .buffer(prefetchListados)
+                        .map(trozo -> String.join("", trozo)));
+    }
+
     public Mono<CuentaDTO> obtenerPorNumeroCuenta(String numeroCuenta) {
         log.info("Buscando cuenta: {}", numeroCuenta);
-        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
+        return etapaObtener.medir(cacheCuentas.buscarPorNumeroCuenta(numeroCuenta)
+                .flatMap(this::conSaldoDelMotor)
                 .map(this::convertirADTO)
                 .switchIfEmpty(Mono.error(
                         new CuentaNoEncontradaException("Cuenta no encontrada: " + numeroCuenta)
-                ));
+                )));
     }
 
     public Flux<CuentaDTO> obtenerTodas() {
-        return cuentaRepository.findAll()
-                .map(this::convertirADTO);
+        return listar(Set.of());
+    }
+
+    // Con fields= cada cuenta sale con solo los campos pedidos
+    public Flux<?> obtenerTodas(String fields) {
+        return Flux.defer(() -> {
+            Set<String> campos = Campos.parsear(fields, CAMPOS_DTO);
+            return listar(campos).map(c -> campos.isEmpty() ? c : Campos.proyectar(c, campos));
+        });
+    }
+
+    // Por encima del tope el listado se rechaza en vez de cortarse sin aviso: el recuento estimado
+    // lo detecta antes de empezar y la fila de más, si la colección creció mientras tanto
+    private Flux<CuentaDTO> listar(Set<String> campos) {
+        String exceso = "Hay más de " + limiteListados + " cuentas; use GET /cuentas/exportacion";
+        return etapaListar.medir(cuentaRepository.contarEstimado()
+                .flatMapMany(total -> total > limiteListados
+                        ? Flux.error(new IllegalArgumentException(exceso))
+                        : cuentaRepository.listar(campos, limiteListados + 1, tamanoLoteCursor))
+                .index()
+                .flatMap(fila -> fila.getT1() < limiteListados
+                        ? Mono.just(fila.getT2())
+                        : Mono.error(new IllegalStateException(exceso)), 1)
+                .limitRate(prefetchListados)
+                .transform(this::conSaldosDelMotor)
+                .map(this::convertirADTO));
+    }
+
+    private Mono<Cuenta> conSaldoDelMotor(Cuenta cuenta) {
+        return conSaldosDelMotor(Flux.just(cuenta)).next();
+    }
+
+    // Con el motor el saldo vigente es el suyo; el de Mongo puede ir un volcado por detrás
+    private Flux<Cuenta> conSaldosDelMotor(Flux<Cuenta> cuentas) {
+        if (!motor.habilitado()) {
+            return cuentas;
+        }
+        return cuentas.buffer(prefetchListados)
+                .concatMap(lote -> motor.saldos(lote.stream()
+                                // Sin número o sin saldo en la proyección pedida no hay nada que sustituir
+                                .filter(c -> c.getNumeroCuenta() != null && c.getSaldo() != null)
+                                .map(Cuenta::getNumeroCuenta)
+                                .toList())
+                        .flatMapIterable(saldos -> {
+                            lote.forEach(c -> {
+                                BigDecimal saldo = c.getSaldo() == null ? null : saldos.get(c.getNumeroCuenta());
+                                if (saldo != null) {
+                                    c.setSaldo(saldo);
+                                }
+                            });
+                            return lote;
+                        }));
     }
 
     public Mono<CuentaDTO> obtenerPorEmail(String email) {
-        return cuentaRepository.findByEmail(email)
+        return etapaObtenerPorEmail.medir(cacheCuentas.buscarPorEmail(email)
+                .flatMap(this::conSaldoDelMotor)
                 .map(this::convertirADTO)
                 .switchIfEmpty(Mono.error(
                         new CuentaNoEncontradaException("Cuenta no encontrada para email: " + email)
-                ));
-    }
-
-    private String generarNumeroCuenta() {
-        return "ACC" + System.currentTimeMillis() +
-                (int)(Math.random() * 10000);
+                )));
     }
 
     private CuentaDTO convertirADTO(Cuenta cuenta) {
@@ -73,43 +315,68 @@ public class CuentaService {
     }
     public Mono<CuentaDTO> actualizarCuenta(String numeroCuenta, Cuenta cuentaActualizada) {
         log.info("Actualizando cuenta: {}", numeroCuenta);
+        if (motor.habilitado() && cuentaActualizada.getSaldo() != null) {
+            return Mono.error(new IllegalArgumentException(
+                    "Con el motor de saldos el saldo solo cambia mediante transferencias"));
+        }
 
+        return etapaActualizar.medir(actualizar(numeroCuenta, cuentaActualizada, INTENTOS_ACTUALIZAR)
+                .switchIfEmpty(Mono.error(
+                        new CuentaNoEncontradaException("Cuenta no encontrada: " + numeroCuenta)
+                )));
+    }
+
+    // Escribe solo los campos que vienen en la solicitud, nunca el documento entero: un reemplazo
+    // perdería los débitos y créditos concurrentes y los campos que no están en el modelo
+    // (compensacionesAplicadas, secuenciaMotor)
+    private Mono<CuentaDTO> actualizar(String numeroCuenta, Cuenta cuentaActualizada, int intentos) {
         return cuentaRepository.findByNumeroCuenta(numeroCuenta)
                 .flatMap(cuentaExistente -> {
-                    // Actualizar solo los campos que vienen en la solicitud
-                    if (cuentaActualizada.getNombreTitular() != null) {
-                        cuentaExistente.setNombreTitular(cuentaActualizada.getNombreTitular());
-                    }
-                    if (cuentaActualizada.getEmail() != null) {
-                        cuentaExistente.setEmail(cuentaActualizada.getEmail());
+                    // Cambiarla reinterpretaría el saldo y las tasas de las transferencias ya hechas
+                    if (cuentaActualizada.getMoneda() != null
+                            && !cuentaActualizada.getMoneda().equals(cuentaExistente.getMoneda())) {
+                        return Mono.error(new IllegalArgumentException("La moneda de una cuenta no se puede cambiar"));
                     }
-                    if (cuentaActualizada.getSaldo() != null) {
-                        cuentaExistente.setSaldo(cuentaActualizada.getSaldo());
-                    }
-                    if (cuentaActualizada.getMoneda() != null) {
-                        cuentaExistente.setMoneda(cuentaActualizada.getMoneda());
-                    }
-                    if (cuentaActualizada.getActiva() != null) {
-                        cuentaExistente.setActiva(cuentaActualizada.getActiva());
-                    }
-
-                    cuentaExistente.setUltimaActualizacion(LocalDateTime.now());
+                    String emailAnterior = cuentaExistente.getEmail();
 
-                    return cuentaRepository.save(cuentaExistente)
-                            .map(this::convertirADTO);
-                })
-                .switchIfEmpty(Mono.error(
-                        new CuentaNoEncontradaException("Cuenta no encontrada: " + numeroCuenta)
-                ));
+                    return cuentaRepository.actualizarPerfil(numeroCuenta, cuentaActualizada, cuentaExistente)
+                            .flatMap(guardada -> motor.habilitado()
+                                    ? motor.actualizarEstado(numeroCuenta, Boolean.TRUE.equals(guardada.getActiva()))
+                                            .thenReturn(guardada)
+                                    : Mono.just(guardada))
+                            .flatMap(this::conSaldoDelMotor)
+                            .doOnNext(guardada -> {
+                                cacheCuentas.invalidar(guardada);
+                                cacheCuentas.invalidarEmail(emailAnterior);
+                                busEventos.publicarCuenta(EventoCuentaDTO.CUENTA_ACTUALIZADA, guardada);
+                            })
+                            .map(this::convertirADTO)
+                            .switchIfEmpty(Mono.defer(() -> {
+                                // Solo un ajuste de saldo se condiciona al saldo leído; sin él, vacío es que ya no existe
+                                if (cuentaActualizada.getSaldo() == null) {
+                                    return Mono.empty();
+                                }
+                                if (intentos <= 1) {
+                                    return Mono.error(new IllegalStateException(
+                                            "El saldo de la cuenta " + numeroCuenta + " cambió durante la actualización"));
+                                }
+                                return actualizar(numeroCuenta, cuentaActualizada, intentos - 1);
+                            }));
+                });
     }
 
     public Mono<Void> eliminarCuenta(String numeroCuenta) {
         log.info("Eliminando cuenta: {}", numeroCuenta);
 
-        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
-                .flatMap(cuenta -> cuentaRepository.deleteById(cuenta.getId()))
+        return etapaEliminar.medir(cuentaRepository.findByNumeroCuenta(numeroCuenta)
+                .flatMap(cuenta -> cuentaRepository.deleteById(cuenta.getId())
+                        .then(motor.habilitado() ? motor.olvidar(numeroCuenta) : Mono.empty())
+                        .doOnSuccess(v -> {
+                            cacheCuentas.invalidar(cuenta);
+                            busEventos.publicarCuenta(EventoCuentaDTO.CUENTA_ELIMINADA, cuenta);
+                        }))
                 .switchIfEmpty(Mono.error(
                         new CuentaNoEncontradaException("Cuenta no encontrada: " + numeroCuenta)
-                ));
+                )));
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.banco.service;
+
+import com.banco.model.Transferencia;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posición opaca dentro del historial de una cuenta: fecha e id de la última transferencia
+ * entregada, para continuar justo después sin contar filas.
+ */
+final class CursorHistorial {
+    private final LocalDateTime fecha;
+    private final String id;
+
+    private CursorHistorial(LocalDateTime fecha, String id) {
+        this.fecha = fecha;
+        this.id = id;
+    }
+
+    LocalDateTime fecha() {
+        return fecha;
+    }
+
+    String id() {
+        return id;
+    }
+
+    static String codificar(Transferencia ultima) {
+        String valor = ultima.getFechaTransferencia() + "|" + ultima.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CursorHistorial decodificar(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.indexOf('|');
+            return new CursorHistorial(LocalDateTime.parse(valor.substring(0, separador)), valor.substring(separador + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor de historial inválido");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.banco.service;
+
+import com.banco.archivo.ArchivoTransferencias;
+import com.banco.dto.ExtractoDTO;
+import com.banco.dto.MovimientoDiarioDTO;
+import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.model.AgregadoDiario;
+import com.banco.model.Cuenta;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.CuentaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extractos diarios a partir de los agregados por cuenta y día que mantiene el flujo de
+ * transferencias: el costo depende de los días consultados, no del número de transferencias.
+ */
+@Service
+public class ExtractoService {
+    private static final Logger log = LoggerFactory.getLogger(ExtractoService.class);
+
+    @Autowired
+    private CuentaRepository cuentaRepository;
+
+    @Autowired
+    private AgregadoDiarioRepository agregadoDiarioRepository;
+
+    @Autowired
+    private ArchivoTransferencias archivo;
+
+    @Value("${banco.extractos.dias-maximos:366}")
+    private long diasMaximos;
+
+    @Value("${banco.extractos.reconstruccion.concurrencia:4}")
+    private int concurrenciaReconstruccion;
+
+    public Mono<ExtractoDTO> obtenerExtracto(String numeroCuenta, LocalDate desde, LocalDate hasta) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.withDayOfMonth(1);
+        if (inicio.isAfter(fin)) {
+            return Mono.error(new IllegalArgumentException("La fecha desde no puede ser posterior a hasta"));
+        }
+        if (inicio.plusDays(diasMaximos).isBefore(fin)) {
+            return Mono.error(new IllegalArgumentException("El extracto no puede superar " + diasMaximos + " días"));
+        }
+
+        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
+                .switchIfEmpty(Mono.error(
+                        new CuentaNoEncontradaException("Cuenta no encontrada: " + numeroCuenta)
+                ))
+                .flatMap(cuenta -> agregadoDiarioRepository
+                        .findByNumeroCuentaAndFechaGreaterThanEqualOrderByFechaDesc(numeroCuenta, inicio)
+                        .collectList()
+                        .map(agregados -> construir(cuenta, inicio, fin, agregados)));
+    }
+
+    // Se parte del saldo actual y se retrocede día a día restando el neto de cada uno
+    private ExtractoDTO construir(Cuenta cuenta, LocalDate desde, LocalDate hasta, List<AgregadoDiario> agregados) {
+        BigDecimal saldo = cuenta.getSaldo();
+        BigDecimal totalEntradas = BigDecimal.ZERO;
+        BigDecimal totalSalidas = BigDecimal.ZERO;
+        long numeroEntradas = 0;
+        long numeroSalidas = 0;
+        BigDecimal saldoCierre = null;
+        List<MovimientoDiarioDTO> dias = new ArrayList<>();
+
+        for (AgregadoDiario agregado : agregados) {
+            if (agregado.getFecha().isAfter(hasta)) {
+                saldo = saldo.subtract(agregado.neto());
+                continue;
+            }
+            if (saldoCierre == null) {
+                saldoCierre = saldo;
+            }
+            BigDecimal apertura = saldo.subtract(agregado.neto());
+            dias.add(MovimientoDiarioDTO.builder()
+                    .fecha(agregado.getFecha())
+                    .saldoApertura(apertura)
+                    .saldoCierre(saldo)
+                    .totalEntradas(agregado.getEntradas())
+                    .totalSalidas(agregado.getSalidas())
+                    .numeroEntradas(agregado.getNumeroEntradas())
+                    .numeroSalidas(agregado.getNumeroSalidas())
+                    .build());
+            totalEntradas = totalEntradas.add(agregado.getEntradas());
+            totalSalidas = totalSalidas.add(agregado.getSalidas());
+            numeroEntradas += agregado.getNumeroEntradas();
+            numeroSalidas += agregado.getNumeroSalidas();
+            saldo = apertura;
+        }
+        Collections.reverse(dias);
+
+        return ExtractoDTO.builder()
+                .numeroCuenta(cuenta.getNumeroCuenta())
+                .moneda(cuenta.getMoneda())
+                .desde(desde)
+                .hasta(hasta)
+                .saldoApertura(saldo)
+                .saldoCierre(saldoCierre != null ? saldoCierre : saldo)
+                .totalEntradas(totalEntradas)
+                .totalSalidas(totalSalidas)
+                .numeroEntradas(numeroEntradas)
+                .numeroSalidas(numeroSalidas)
+                .dias(dias)
+                .build();
+    }
+
+    /**
+     * Recalcula los agregados de un rango de días cerrados desde la colección transferencias.
+     * Cada día es una agregación independiente en el servidor; se procesan varios en paralelo.
+     */
+    public Flux<LocalDate> reconstruir(LocalDate desde, LocalDate hasta) {
+        if (desde.isAfter(hasta)) {
+            return Flux.error(new IllegalArgumentException("La fecha desde no puede ser posterior a hasta"));
+        }
+        if (!hasta.isBefore(LocalDate.now())) {
+            // El día en curso sigue recibiendo incrementos que la reconstrucción pisaría
+            return Flux.error(new IllegalArgumentException("Solo se pueden reconstruir días ya cerrados"));
+        }
+        LocalDateTime fechaArchivo = archivo.fechaMaxima();
+        if (fechaArchivo != null && !desde.isAfter(fechaArchivo.toLocalDate())) {
+            // Sus transferencias ya no están en la colección: se quedarían a cero
+            return Flux.error(new IllegalArgumentException(
+                    "Los días hasta el " + fechaArchivo.toLocalDate() + " están archivados y no se pueden reconstruir"));
+        }
+        return Flux.fromStream(desde.datesUntil(hasta.plusDays(1)))
+                .flatMap(dia -> agregadoDiarioRepository.reconstruirDia(dia)
+                        .doOnNext(eliminados -> log.info("Agregados del {} reconstruidos ({} obsoletos eliminados)",
+                                dia, eliminados))
+                        .thenReturn(dia), concurrenciaReconstruccion);
+    }
+}
@@ -0,0 +1,174 @@
+package com.banco.service;
+
+import com.banco.dto.TransferenciaDTO;
+import com.banco.model.RegistroIdempotencia;
+import com.banco.repository.IdempotenciaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Deduplica transferencias por Idempotency-Key. Las claves recientes se resuelven en una caché
+ * local acotada (una sola búsqueda hash en el reintento); la colección idempotencia, con índice
+ * TTL, es la fuente durable y reserva la clave entre instancias.
+ */
+@Service
+public class IdempotenciaService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+    @Autowired
+    private IdempotenciaRepository idempotenciaRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.idempotencia.maximo-local:100000}")
+    private long maximoLocal;
+
+    @Value("${banco.idempotencia.ttl-local-segundos:600}")
+    private long ttlLocalSegundos;
+
+    @Value("${banco.idempotencia.ttl-horas:24}")
+    private long ttlHoras;
+
+    @Value("${banco.idempotencia.reintentos-guardado:20}")
+    private long reintentosGuardado;
+
+    private Cache<String, Entrada> recientes;
+
+    @PostConstruct
+    void iniciar() {
+        recientes = Caffeine.newBuilder()
+                .maximumSize(maximoLocal)
+                .expireAfterWrite(Duration.ofSeconds(ttlLocalSegundos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recientes, "idempotencia");
+
+        mongoTemplate.indexOps(RegistroIdempotencia.class)
+                .ensureIndex(new Index().on("creadoEn", Sort.Direction.ASC)
+                        .expire(Duration.ofHours(ttlHoras)))
+                .subscribe(i -> log.info("Índice TTL de idempotencia listo: {}", i),
+                        e -> log.warn("No se pudo crear el índice TTL de idempotencia", e));
+    }
+
+    public Mono<TransferenciaDTO> ejecutar(String clave, String huella, Supplier<Mono<TransferenciaDTO>> operacion) {
+        return Mono.defer(() -> {
+            // Las solicitudes concurrentes con la misma clave comparten el mismo resultado en curso
+            Entrada nueva = new Entrada(huella);
+            Entrada entrada = recientes.get(clave, k -> nueva);
+            if (entrada == nueva) {
+                // La operación no depende de quien la pidió: si el cliente se va, la reserva se
+                // completa o se libera igual, porque la transferencia puede estar ya aplicada y un
+                // reintento con la misma clave tiene que recibir su resultado, no repetirla
+                resolver(clave, huella, operacion).subscribe(nueva.resultado::complete, e -> {
+                    recientes.asMap().remove(clave, nueva);
+                    nueva.resultado.completeExceptionally(e);
+                });
+            }
+            if (!entrada.huella.equals(huella)) {
+                return Mono.error(new IllegalArgumentException(
+                        "La clave de idempotencia ya se usó con otra transferencia"));
+            }
+            return Mono.fromFuture(entrada.resultado, true);
+        });
+    }
+
+    private Mono<TransferenciaDTO> resolver(String clave, String huella, Supplier<Mono<TransferenciaDTO>> operacion) {
+        RegistroIdempotencia reserva = new RegistroIdempotencia(
+                clave, huella, RegistroIdempotencia.EN_CURSO, null, LocalDateTime.now());
+
+        return idempotenciaRepository.insert(reserva)
+                .map(Optional::of)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(Optional.empty()))
+                .flatMap(reservada -> reservada.isPresent()
+                        ? completar(reservada.get(), operacion)
+                        : idempotenciaRepository.findById(clave)
+                                .flatMap(existente -> repetir(existente, huella))
+                                .switchIfEmpty(Mono.error(new IllegalStateException(
+                                        "La transferencia con esta clave de idempotencia falló, reintente"))));
+    }
+
+    private Mono<TransferenciaDTO> completar(RegistroIdempotencia reserva, Supplier<Mono<TransferenciaDTO>> operacion) {
+        return Mono.defer(operacion)
+                .onErrorResume(e -> liberar(reserva.getClave()).then(Mono.error(e)))
+                .flatMap(resultado -> {
+                    reserva.setEstado(RegistroIdempotencia.COMPLETADA);
+                    reserva.setResultado(resultado);
+                    // La transferencia ya se hizo: se responde aunque el resultado aún no esté guardado
+                    return guardar(reserva).thenReturn(resultado);
+                });
+    }
+
+    // Mientras no se guarde, la clave sigue EN_CURSO y los reintentos de otras instancias se rechazan;
+    // en esta, la caché local ya devuelve el resultado
+    private Mono<Void> guardar(RegistroIdempotencia reserva) {
+        return idempotenciaRepository.save(reserva)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100)))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("No se pudo guardar el resultado de la clave {}; se sigue intentando", reserva.getClave(), e);
+                    idempotenciaRepository.save(reserva)
+                            .retryWhen(Retry.backoff(reintentosGuardado, Duration.ofSeconds(1))
+                                    .maxBackoff(Duration.ofMinutes(1)))
+                            .subscribe(r -> log.info("Resultado de la clave {} guardado", r.getClave()),
+                                    error -> log.error("La clave {} queda EN_CURSO hasta que caduque",
+                                            reserva.getClave(), error));
+                    return Mono.empty();
+                });
+    }
+
+    // Si la reserva no se borra, la clave queda bloqueada EN_CURSO hasta que caduque
+    private Mono<Void> liberar(String clave) {
+        return idempotenciaRepository.deleteById(clave)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100)))
+                .onErrorResume(e -> {
+                    log.error("No se pudo liberar la clave de idempotencia {}", clave, e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<TransferenciaDTO> repetir(RegistroIdempotencia existente, String huella) {
+        if (!existente.getHuella().equals(huella)) {
+            return Mono.error(new IllegalArgumentException(
+                    "La clave de idempotencia ya se usó con otra transferencia"));
+        }
+        if (!RegistroIdempotencia.COMPLETADA.equals(existente.getEstado())) {
+            return Mono.error(new IllegalStateException(
+                    "Ya hay una transferencia en curso con esta clave de idempotencia"));
+        }
+        log.info("Reintento idempotente de {}", existente.getClave());
+        return Mono.just(existente.getResultado());
+    }
+
+    private static final class Entrada {
+        private final String huella;
+        private final CompletableFuture<TransferenciaDTO> resultado = new CompletableFuture<>();
+
+        Entrada(String huella) {
+            this.huella = huella;
+        }
+    }
+}
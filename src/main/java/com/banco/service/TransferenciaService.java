@@ -1,102 +1,623 @@
 package com.banco.service;
 
+import com.banco.admision.ControlAdmision;
+import com.banco.archivo.ArchivoTransferencias;
+import com.banco.bitacora.Bitacora;
+import com.banco.cache.CacheCuentas;
+import com.banco.cambio.TiposCambio;
+import com.banco.concurrencia.SecuenciadorCuentas;
+import com.banco.dto.PaginaDTO;
+import com.banco.dto.ResultadoTransferenciaDTO;
 import com.banco.dto.TransferenciaDTO;
+import com.banco.eventos.BusEventos;
+import com.banco.exception.AdmisionRechazadaException;
 import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.exception.InsercionParcialException;
+import com.banco.exception.LimiteVelocidadException;
 import com.banco.exception.SaldoInsuficienteException;
+import com.banco.id.Identificadores;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.motor.MotorSaldos;
+import com.banco.motor.ResultadoMotor;
 import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
 import com.banco.model.Transferencia;
+import com.banco.repository.AgregadoDiarioRepository;
 import com.banco.repository.CuentaRepository;
 import com.banco.repository.TransferenciaRepository;
+import com.banco.velocidad.AnotacionVelocidad;
+import com.banco.velocidad.ControlVelocidad;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 
 public class TransferenciaService {
     private static final Logger log = LoggerFactory.getLogger(TransferenciaService.class);
+    private static final String METRICA_ETAPAS = "banco.transferencias.etapa";
+    private static final Set<String> CAMPOS_DTO = Set.of("id", "cuentaOrigen", "cuentaDestino", "monto",
+            "moneda", "monedaDestino", "tasaCambio", "montoDestino", "estado", "concepto", "fechaTransferencia",
+            "codigoReferencia");
+    private static final Comparator<Transferencia> HISTORIAL = Comparator
+            .comparing(Transferencia::getFechaTransferencia, Comparator.reverseOrder())
+            .thenComparing(Transferencia::getId, Comparator.reverseOrder());
     @Autowired
     private TransferenciaRepository transferenciaRepository;
 
     @Autowired
     private CuentaRepository cuentaRepository;
 
+    @Autowired
+    private AgregadoDiarioRepository agregadoDiarioRepository;
+
+    @Autowired
+    private SecuenciadorCuentas secuenciador;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    @Autowired
+    private CacheCuentas cacheCuentas;
+
+    @Autowired
+    private BusEventos busEventos;
+
+    @Autowired
+    private Identificadores identificadores;
+
+    @Autowired
+    private MetricasEtapas metricas;
+
+    @Autowired
+    private Bitacora bitacora;
+
+    @Autowired
+    private MotorSaldos motor;
+
+    @Autowired
+    private TiposCambio tiposCambio;
+
+    @Autowired
+    private ControlAdmision controlAdmision;
+
+    @Autowired
+    private ControlVelocidad controlVelocidad;
+
+    @Autowired
+    private ArchivoTransferencias archivo;
+
+    @Autowired
+    private CompensacionesPendientes compensaciones;
+
+    @Value("${banco.lote.tamano:500}")
+    private int tamanoLote;
+
+    @Value("${banco.lote.espera-maxima-ms:100}")
+    private long esperaMaximaLoteMs;
+
+    @Value("${banco.listados.limite-maximo:100000}")
+    private int limiteListados;
+
+    @Value("${banco.listados.tamano-lote-cursor:500}")
+    private int tamanoLoteCursor;
+
+    @Value("${banco.listados.prefetch:256}")
+    private int prefetchListados;
+
+    @Value("${banco.historial.limite-maximo:500}")
+    private int limiteMaximoHistorial;
+
+    private MetricasEtapas.Etapa etapaTotal;
+    private MetricasEtapas.Etapa etapaValidacion;
+    private MetricasEtapas.Etapa etapaProcesamiento;
+    private MetricasEtapas.Etapa etapaDebito;
+    private MetricasEtapas.Etapa etapaCredito;
+    private MetricasEtapas.Etapa etapaRegistro;
+    private MetricasEtapas.Etapa etapaAgregados;
+
+    @PostConstruct
+    void iniciarMetricas() {
+        // También muestreada: http.server.requests ya cuenta cada transferencia con su estado HTTP
+        etapaTotal = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "total");
+        etapaValidacion = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "validacion");
+        // Desde que el secuenciador da el turno hasta el DTO; la espera del turno va en banco.secuenciador.espera
+        etapaProcesamiento = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "procesamiento");
+        etapaDebito = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "debito");
+        etapaCredito = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "credito");
+        etapaRegistro = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "registro");
+        etapaAgregados = metricas.etapaMuestreada(METRICA_ETAPAS, "etapa", "agregados");
+    }
+
+    // El cubo de la cuenta origen se cobra antes de reservar la clave: un 429 no escribe ni borra
+    // nada en Mongo, aunque repetir una respuesta idempotente cueste también un token
+    public Mono<TransferenciaDTO> realizarTransferencia(Transferencia transferencia, String claveIdempotencia) {
+        long espera = controlAdmision.admitirCuenta(transferencia.getCuentaOrigen());
+        if (espera > 0) {
+            return Mono.error(new AdmisionRechazadaException(
+                    "Demasiadas transferencias desde la cuenta origen", espera));
+        }
+        if (claveIdempotencia == null || claveIdempotencia.isBlank()) {
+            return realizarTransferencia(transferencia);
+        }
+        return idempotenciaService.ejecutar(claveIdempotencia, huella(transferencia),
+                () -> realizarTransferencia(transferencia));
+    }
+
     public Mono<TransferenciaDTO> realizarTransferencia(Transferencia transferencia) {
         log.info("Iniciando transferencia de {} a {}",
                 transferencia.getCuentaOrigen(),
                 transferencia.getCuentaDestino());
 
-        return validarTransferencia(transferencia)
-                .flatMap(this::procesarTransferencia)
+        return etapaTotal.medir(etapaValidacion.medir(validarTransferencia(transferencia))
+                        .flatMap(anotacion -> (motor.habilitado()
+                                ? etapaProcesamiento.medir(procesarEnMotor(transferencia))
+                                : secuenciador.ejecutar(transferencia.getCuentaOrigen(), transferencia.getCuentaDestino(),
+                                        () -> etapaProcesamiento.medir(procesarTransferencia(transferencia))))
+                                // Si no llega a aplicarse, o se compensa, no cuenta para los límites de velocidad
+                                .doOnError(e -> controlVelocidad.anular(anotacion))))
                 .doOnSuccess(t -> log.info("Transferencia exitosa: {}", t.getCodigoReferencia()))
                 .doOnError(e -> log.error("Error en transferencia", e));
     }
 
-    private Mono<Transferencia> validarTransferencia(Transferencia transferencia) {
+    // Identifica el contenido de la solicitud para detectar una clave reutilizada con otros datos
+    static String huella(Transferencia t) {
+        String monto = t.getMonto() == null ? "" : t.getMonto().stripTrailingZeros().toPlainString();
+        return t.getCuentaOrigen() + "|" + t.getCuentaDestino() + "|" + monto + "|" + t.getMoneda()
+                + "|" + (t.getConcepto() == null ? "" : t.getConcepto());
+    }
+
+    private Mono<AnotacionVelocidad> validarTransferencia(Transferencia transferencia) {
         if (transferencia.getCuentaOrigen().equals(transferencia.getCuentaDestino())) {
             return Mono.error(new IllegalArgumentException(
                     "No puedes transferir a la misma cuenta"
             ));
         }
+        if (transferencia.getMonto() == null) {
+            return Mono.error(new IllegalArgumentException("El monto es requerido"));
+        }
+        String error = validarMonto(transferencia);
+        if (error != null) {
+            return Mono.error(new IllegalArgumentException(error));
+        }
+        // La existencia de las cuentas y el saldo se verifican de forma atómica al debitar/acreditar.
+        // Lo último: una transferencia que no pasa las validaciones anteriores no cuenta. Los límites
+        // de importe van por moneda: sin ella en la solicitud se toma la de la cuenta origen
+        if (transferencia.getMoneda() != null || !controlVelocidad.limitaImporte()) {
+            return anotarVelocidad(transferencia, transferencia.getMoneda());
+        }
+        return cacheCuentas.buscarPerfil(transferencia.getCuentaOrigen())
+                .map(Cuenta::getMoneda)
+                .flatMap(moneda -> anotarVelocidad(transferencia, moneda))
+                .switchIfEmpty(Mono.defer(() -> anotarVelocidad(transferencia, null)));
+    }
+
+    private Mono<AnotacionVelocidad> anotarVelocidad(Transferencia transferencia, String monedaOrigen) {
+        AnotacionVelocidad anotacion = controlVelocidad.registrar(transferencia, monedaOrigen);
+        return anotacion.exceso() != null
+                ? Mono.error(new LimiteVelocidadException(anotacion.exceso()))
+                : Mono.just(anotacion);
+    }
+
+    private Mono<TransferenciaDTO> procesarTransferencia(Transferencia transferencia) {
+        prepararTransferencia(transferencia);
+        return aplicarCambio(transferencia).then(Mono.defer(() -> moverSaldos(transferencia)));
+    }
+
+    // La moneda de las cuentas sale de la caché de perfiles, que no cambia: una cuenta no cambia de moneda
+    private Mono<Void> aplicarCambio(Transferencia transferencia) {
+        return Mono.zip(
+                        cacheCuentas.buscarPerfil(transferencia.getCuentaOrigen())
+                                .switchIfEmpty(Mono.error(new CuentaNoEncontradaException("Cuenta origen no existe"))),
+                        cacheCuentas.buscarPerfil(transferencia.getCuentaDestino())
+                                .switchIfEmpty(Mono.error(new CuentaNoEncontradaException("Cuenta destino no existe"))))
+                .flatMap(cuentas -> {
+                    String error = tiposCambio.actual().aplicar(transferencia,
+                            cuentas.getT1().getMoneda(), cuentas.getT2().getMoneda());
+                    return error == null ? Mono.<Void>empty() : Mono.error(new IllegalArgumentException(error));
+                });
+    }
+
+    private Mono<TransferenciaDTO> moverSaldos(Transferencia transferencia) {
+        String origen = transferencia.getCuentaOrigen();
+        String destino = transferencia.getCuentaDestino();
+        BigDecimal monto = transferencia.getMonto();
+        BigDecimal credito = transferencia.montoAcreditado();
+
+        // Tres escrituras y ninguna lectura en el camino feliz; las lecturas solo diagnostican fallos
+        Mono<TransferenciaDTO> movimiento = etapaDebito.medir(debitar(origen, monto)
+                        .switchIfEmpty(Mono.defer(() -> diagnosticarDebito(origen))))
+                .flatMap(cuentaOrigen -> etapaCredito.medir(acreditar(destino, credito)
+                                // Un crédito que falla (tiempo de espera, red) deja el débito aplicado
+                                .onErrorResume(e -> compensar(origen, monto).then(Mono.error(e)))
+                                .switchIfEmpty(Mono.defer(() -> compensar(origen, monto)
+                                        .then(diagnosticarCredito(destino)))))
+                        .flatMap(cuentaDestino -> etapaRegistro.medir(registrar(transferencia))
+                                .onErrorResume(e -> compensar(origen, monto)
+                                        .then(compensar(destino, credito.negate()))
+                                        .then(Mono.error(e)))
+                                .flatMap(guardada -> bitacora.habilitada()
+                                        ? Mono.just(guardada)
+                                        : etapaAgregados.medir(acumularAgregados(List.of(guardada))).thenReturn(guardada))
+                                // Los saldos publicados salen de los findAndModify, sin releer las cuentas
+                                .doOnNext(guardada -> busEventos.publicarTransferencia(guardada, cuentaOrigen, cuentaDestino))))
+                .map(this::convertirADTO);
+        // Si quien espera cancela (el cliente se desconecta), el movimiento sigue sin él: un débito
+        // ya lanzado siempre termina en su crédito y registro o en su compensación
+        return Mono.fromFuture(movimiento::toFuture, true);
+    }
+
+    // El motor aplica la transferencia en memoria y la confirma cuando la bitácora la tiene en disco
+    private Mono<TransferenciaDTO> procesarEnMotor(Transferencia transferencia) {
+        prepararTransferencia(transferencia);
+        return motor.transferir(transferencia)
+                .flatMap(resultado -> {
+                    if (!resultado.aplicada()) {
+                        return Mono.error(resultado.error());
+                    }
+                    busEventos.publicarTransferencia(transferencia,
+                            conSaldo(transferencia.getCuentaOrigen(), resultado.saldoOrigen()),
+                            conSaldo(transferencia.getCuentaDestino(), resultado.saldoDestino()));
+                    return Mono.just(convertirADTO(transferencia));
+                });
+    }
+
+    private static Cuenta conSaldo(String numeroCuenta, BigDecimal saldo) {
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setSaldo(saldo);
+        return cuenta;
+    }
+
+    // Con bitácora la transferencia queda confirmada al ser durable en disco local y
+    // ProyeccionTransferencias la lleva a Mongo con sus agregados fuera de la petición
+    private Mono<Transferencia> registrar(Transferencia transferencia) {
+        if (bitacora.habilitada()) {
+            return bitacora.registrar(transferencia).thenReturn(transferencia);
+        }
+        return transferenciaRepository.insert(transferencia);
+    }
+
+    // Emite las que quedaron registradas: ante un error, el bloque sigue solo con ellas
+    private Mono<List<Transferencia>> registrarBloque(List<Transferencia> aceptadas) {
+        if (bitacora.habilitada()) {
+            return bitacora.registrar(aceptadas)
+                    .thenReturn(aceptadas)
+                    .onErrorResume(e -> {
+                        log.error("Error al registrar un bloque de {} transferencias", aceptadas.size(), e);
+                        return Mono.just(List.of());
+                    });
+        }
+        return transferenciaRepository.insertarNuevas(aceptadas)
+                .onErrorResume(e -> {
+                    log.error("Error al registrar un bloque de {} transferencias", aceptadas.size(), e);
+                    return e instanceof InsercionParcialException parcial
+                            ? Mono.just(parcial.getInsertadas())
+                            : buscarGuardadas(aceptadas);
+                })
+                .flatMap(registradas -> acumularAgregados(registradas).thenReturn(registradas));
+    }
 
-        return cuentaRepository.findByNumeroCuenta(transferencia.getCuentaOrigen())
+    // Sin detalle por fila no se sabe qué llegó a Mongo: se pregunta por los ids
+    private Mono<List<Transferencia>> buscarGuardadas(List<Transferencia> transferencias) {
+        return transferenciaRepository.findAllById(transferencias.stream().map(Transferencia::getId).toList())
+                .collectList()
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(50)))
+                .onErrorResume(e -> {
+                    log.error("No se pudo comprobar qué transferencias de un bloque se guardaron", e);
+                    return Mono.just(List.of());
+                });
+    }
+
+    private Mono<Cuenta> diagnosticarDebito(String numeroCuenta) {
+        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
                 .switchIfEmpty(Mono.error(
                         new CuentaNoEncontradaException("Cuenta origen no existe")
                 ))
-                .flatMap(cuentaOrigen -> {
-                    if (cuentaOrigen.getSaldo().compareTo(transferencia.getMonto()) < 0) {
-                        return Mono.error(new SaldoInsuficienteException(
-                                "Saldo insuficiente. Disponible: " + cuentaOrigen.getSaldo()
-                        ));
+                .flatMap(cuenta -> {
+                    if (!Boolean.TRUE.equals(cuenta.getActiva())) {
+                        return Mono.error(new IllegalArgumentException("La cuenta origen está inactiva"));
                     }
+                    return Mono.error(new SaldoInsuficienteException(
+                            "Saldo insuficiente. Disponible: " + cuenta.getSaldo()
+                    ));
+                });
+    }
 
-                    return cuentaRepository.findByNumeroCuenta(transferencia.getCuentaDestino())
-                            .switchIfEmpty(Mono.error(
-                                    new CuentaNoEncontradaException("Cuenta destino no existe")
-                            ))
-                            .thenReturn(transferencia);
+    private Mono<Cuenta> diagnosticarCredito(String numeroCuenta) {
+        return cuentaRepository.findByNumeroCuenta(numeroCuenta)
+                .switchIfEmpty(Mono.error(
+                        new CuentaNoEncontradaException("Cuenta destino no existe")
+                ))
+                .flatMap(cuenta -> Mono.error(new IllegalArgumentException(Boolean.TRUE.equals(cuenta.getActiva())
+                        ? "El saldo de la cuenta destino superaría el máximo"
+                        : "La cuenta destino está inactiva")));
+    }
+
+    // El dinero ya se movió: un fallo aquí solo desajusta los extractos, que la reconstrucción corrige
+    private Mono<Void> acumularAgregados(List<Transferencia> transferencias) {
+        return agregadoDiarioRepository.acumular(transferencias)
+                .onErrorResume(e -> {
+                    log.error("No se pudieron actualizar los agregados diarios de {} transferencias",
+                            transferencias.size(), e);
+                    return Mono.empty();
                 });
     }
 
-    private Mono<TransferenciaDTO> procesarTransferencia(Transferencia transferencia) {
-        String codigoRef = "TRF" + System.currentTimeMillis();
-        transferencia.setId(UUID.randomUUID().toString());
-        transferencia.setCodigoReferencia(codigoRef);
-        transferencia.setFechaTransferencia(LocalDateTime.now());
-        transferencia.setFechaActualizacion(LocalDateTime.now());
+    // Toda escritura de saldo invalida la caché antes de propagar su resultado
+    private Mono<Cuenta> debitar(String numeroCuenta, BigDecimal monto) {
+        return cuentaRepository.debitar(numeroCuenta, monto)
+                .doOnTerminate(() -> cacheCuentas.invalidarSaldo(numeroCuenta))
+                .doOnCancel(() -> cacheCuentas.invalidarSaldo(numeroCuenta));
+    }
+
+    private Mono<Cuenta> acreditar(String numeroCuenta, BigDecimal monto) {
+        return cuentaRepository.acreditar(numeroCuenta, monto)
+                .doOnTerminate(() -> cacheCuentas.invalidarSaldo(numeroCuenta))
+                .doOnCancel(() -> cacheCuentas.invalidarSaldo(numeroCuenta));
+    }
+
+    private Mono<Set<String>> acreditarEnBloque(Map<String, BigDecimal> creditos) {
+        return cuentaRepository.acreditarEnBloque(creditos)
+                .doOnTerminate(() -> creditos.keySet().forEach(cacheCuentas::invalidarSaldo))
+                .doOnCancel(() -> creditos.keySet().forEach(cacheCuentas::invalidarSaldo));
+    }
+
+    private Mono<Void> compensar(String numeroCuenta, BigDecimal delta) {
+        return cuentaRepository.compensar(numeroCuenta, delta)
+                .doOnTerminate(() -> cacheCuentas.invalidarSaldo(numeroCuenta))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(50)))
+                .then()
+                // El dinero ya se movió: si no se puede deshacer ahora, queda guardado para reintentarlo
+                .onErrorResume(e -> {
+                    log.error("No se pudo compensar {} en la cuenta {}; se difiere", delta, numeroCuenta, e);
+                    return compensaciones.diferir(numeroCuenta, delta, e.toString());
+                });
+    }
+
+    private void prepararTransferencia(Transferencia transferencia) {
+        transferencia.setId(identificadores.nuevoId());
+        transferencia.setCodigoReferencia(identificadores.nuevoCodigoReferencia());
+        LocalDateTime ahora = LocalDateTime.now();
+        transferencia.setFechaTransferencia(ahora);
+        transferencia.setFechaActualizacion(ahora);
         transferencia.setEstado("EXITOSA");
+    }
 
-        return Mono.zip(
-                        cuentaRepository.findByNumeroCuenta(transferencia.getCuentaOrigen()),
-                        cuentaRepository.findByNumeroCuenta(transferencia.getCuentaDestino())
-                )
-                .flatMap(tuple -> {
-                    Cuenta origen = tuple.getT1();
-                    Cuenta destino = tuple.getT2();
-
-                    origen.setSaldo(origen.getSaldo().subtract(transferencia.getMonto()));
-                    destino.setSaldo(destino.getSaldo().add(transferencia.getMonto()));
-                    origen.setUltimaActualizacion(LocalDateTime.now());
-                    destino.setUltimaActualizacion(LocalDateTime.now());
-
-                    return Mono.zip(
-                            cuentaRepository.save(origen),
-                            cuentaRepository.save(destino),
-                            transferenciaRepository.save(transferencia)
-                    );
+    /**
+     * Procesa un flujo de transferencias por bloques acotados: una lectura de cuentas por bloque,
+     * débitos y créditos agrupados por cuenta y una inserción masiva de las transferencias.
+     * Los resultados se emiten por bloque, en el orden de entrada, mientras se sigue leyendo.
+     */
+    public Flux<ResultadoTransferenciaDTO> realizarLote(Flux<Transferencia> transferencias) {
+        return transferencias
+                .index()
+                .bufferTimeout(tamanoLote, Duration.ofMillis(esperaMaximaLoteMs), true)
+                .concatMap(this::procesarBloque, 1);
+    }
+
+    private Flux<ResultadoTransferenciaDTO> procesarBloque(List<Tuple2<Long, Transferencia>> elementos) {
+        BloqueTransferencias bloque = new BloqueTransferencias(elementos);
+        // Un token por cuenta origen y bloque: un fichero de nóminas o liquidaciones con cientos de
+        // líneas desde la misma cuenta no agota su cubo
+        Map<String, Long> esperas = new HashMap<>();
+        for (int i = 0; i < bloque.tamano(); i++) {
+            String error = validarEnLote(bloque.transferencia(i));
+            if (error != null) {
+                bloque.rechazar(i, BloqueTransferencias.SOLICITUD_INVALIDA, error);
+                continue;
+            }
+            long espera = esperas.computeIfAbsent(bloque.transferencia(i).getCuentaOrigen(),
+                    controlAdmision::admitirCuenta);
+            if (espera > 0) {
+                bloque.rechazar(i, BloqueTransferencias.LIMITE_EXCEDIDO, "Demasiadas transferencias desde la cuenta "
+                        + "origen; reintentar en " + ControlAdmision.segundos(espera) + " s");
+            }
+        }
+        return anotarVelocidad(bloque)
+                .thenMany(Flux.defer(() -> motor.habilitado() ? procesarBloqueEnMotor(bloque) : procesarBloqueEnMongo(bloque)));
+    }
+
+    // Como en una transferencia suelta, los límites de importe necesitan la moneda de la cuenta
+    // origen cuando la línea no la trae: se leen de la caché de perfiles, una vez por cuenta
+    private Mono<Void> anotarVelocidad(BloqueTransferencias bloque) {
+        Set<String> sinMoneda = new HashSet<>();
+        if (controlVelocidad.limitaImporte()) {
+            for (int i = 0; i < bloque.tamano(); i++) {
+                if (!bloque.rechazada(i) && bloque.transferencia(i).getMoneda() == null) {
+                    sinMoneda.add(bloque.transferencia(i).getCuentaOrigen());
+                }
+            }
+        }
+        return Flux.fromIterable(sinMoneda)
+                .flatMap(cacheCuentas::buscarPerfil)
+                .collectMap(Cuenta::getNumeroCuenta, Cuenta::getMoneda)
+                .doOnNext(monedas -> {
+                    for (int i = 0; i < bloque.tamano(); i++) {
+                        if (bloque.rechazada(i)) {
+                            continue;
+                        }
+                        Transferencia t = bloque.transferencia(i);
+                        String moneda = t.getMoneda() != null ? t.getMoneda() : monedas.get(t.getCuentaOrigen());
+                        AnotacionVelocidad anotacion = controlVelocidad.registrar(t, moneda);
+                        if (anotacion.exceso() != null) {
+                            bloque.rechazar(i, BloqueTransferencias.LIMITE_VELOCIDAD, anotacion.exceso());
+                        } else {
+                            bloque.anotar(i, anotacion);
+                        }
+                    }
                 })
-                .map(tuple -> convertirADTO(tuple.getT3()));
+                .then();
+    }
+
+    private Flux<ResultadoTransferenciaDTO> procesarBloqueEnMongo(BloqueTransferencias bloque) {
+        return cuentaRepository.findByNumeroCuentaIn(bloque.cuentasInvolucradas())
+                .collectMap(Cuenta::getNumeroCuenta)
+                // Sin la lectura no se mueve nada del bloque
+                .doOnError(e -> bloque.anotaciones(false).forEach(controlVelocidad::anular))
+                .doOnNext(cuentas -> bloque.planificar(cuentas, tiposCambio.actual()))
+                .flatMapMany(cuentas -> Flux.fromIterable(bloque.debitos().entrySet()))
+                // Solo emite los débitos que no se aplicaron; un error rechaza su cuenta y no corta el resto
+                .flatMap(debito -> debitar(debito.getKey(), debito.getValue())
+                        .hasElement()
+                        .filter(aplicado -> !aplicado)
+                        .map(aplicado -> BloqueTransferencias.SALDO_INSUFICIENTE)
+                        .onErrorResume(e -> {
+                            log.error("Error al debitar la cuenta {} en un bloque", debito.getKey(), e);
+                            return Mono.just(BloqueTransferencias.ERROR_INTERNO);
+                        })
+                        .map(error -> Tuples.of(debito.getKey(), error)))
+                .collectMultimap(Tuple2::getT2, Tuple2::getT1)
+                .doOnNext(fallidos -> {
+                    bloque.rechazarOrigenes(fallidos.getOrDefault(BloqueTransferencias.SALDO_INSUFICIENTE, List.of()));
+                    bloque.rechazarOrigenes(fallidos.getOrDefault(BloqueTransferencias.ERROR_INTERNO, List.of()),
+                            BloqueTransferencias.ERROR_INTERNO, "No se pudo debitar la cuenta origen");
+                })
+                .then(Mono.defer(() -> {
+                    Map<String, BigDecimal> creditos = bloque.creditos();
+                    // Las cuentas que no se acreditaron devuelven el débito a sus orígenes, como un débito fallido
+                    return acreditarEnBloque(creditos)
+                            // Sin detalle por cuenta no hay forma de saber cuáles se aplicaron
+                            .onErrorResume(e -> {
+                                log.error("Error al acreditar un bloque", e);
+                                return Mono.just(creditos.keySet());
+                            })
+                            .flatMap(fallidas -> revertir(bloque.rechazarDestinos(fallidas,
+                                    BloqueTransferencias.ERROR_INTERNO, "No se pudo acreditar la cuenta destino")));
+                }))
+                .then(Mono.defer(() -> {
+                    List<Transferencia> aceptadas = bloque.aceptadas();
+                    if (aceptadas.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    aceptadas.forEach(this::prepararTransferencia);
+                    return registrarBloque(aceptadas)
+                            .flatMap(registradas -> {
+                                // En lote no hay saldo resultante por transferencia; el evento lo omite
+                                registradas.forEach(t -> busEventos.publicarTransferencia(t, null, null));
+                                return revertir(bloque.rechazarNoRegistradas(registradas,
+                                        BloqueTransferencias.ERROR_INTERNO, "No se pudo registrar la transferencia"));
+                            });
+                }))
+                .thenMany(Flux.defer(() -> resultados(bloque)));
+    }
+
+    // Las transferencias rechazadas en cualquier paso del bloque dejan de contar para los límites de velocidad
+    private Flux<ResultadoTransferenciaDTO> resultados(BloqueTransferencias bloque) {
+        bloque.anotaciones(true).forEach(controlVelocidad::anular);
+        return Flux.fromIterable(bloque.resultados(this::convertirADTO));
+    }
+
+    // Deshace movimientos ya aplicados cuenta a cuenta; lo que no se puede deshacer queda diferido
+    private Mono<Void> revertir(Map<String, BigDecimal> reversion) {
+        return Flux.fromIterable(reversion.entrySet())
+                .flatMap(movimiento -> compensar(movimiento.getKey(), movimiento.getValue()))
+                .then();
+    }
+
+    // Sin lectura previa ni débitos agrupados: el motor aplica el bloque en orden con los saldos al día
+    private Flux<ResultadoTransferenciaDTO> procesarBloqueEnMotor(BloqueTransferencias bloque) {
+        List<Integer> posiciones = new ArrayList<>();
+        List<Transferencia> validas = new ArrayList<>();
+        for (int i = 0; i < bloque.tamano(); i++) {
+            if (!bloque.rechazada(i)) {
+                prepararTransferencia(bloque.transferencia(i));
+                posiciones.add(i);
+                validas.add(bloque.transferencia(i));
+            }
+        }
+        if (validas.isEmpty()) {
+            return resultados(bloque);
+        }
+        return motor.transferir(validas)
+                .doOnNext(resultados -> {
+                    for (int j = 0; j < resultados.size(); j++) {
+                        ResultadoMotor resultado = resultados.get(j);
+                        Transferencia t = validas.get(j);
+                        if (resultado.aplicada()) {
+                            busEventos.publicarTransferencia(t,
+                                    conSaldo(t.getCuentaOrigen(), resultado.saldoOrigen()),
+                                    conSaldo(t.getCuentaDestino(), resultado.saldoDestino()));
+                        } else {
+                            RuntimeException error = resultado.error();
+                            bloque.rechazar(posiciones.get(j), codigoRechazo(error), error.getMessage());
+                        }
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("Error al registrar un bloque de {} transferencias en el motor", validas.size(), e);
+                    posiciones.forEach(i -> bloque.rechazar(i, BloqueTransferencias.ERROR_INTERNO,
+                            "No se pudo registrar la transferencia"));
+                    return Mono.empty();
+                })
+                .thenMany(Flux.defer(() -> resultados(bloque)));
+    }
+
+    private static String codigoRechazo(RuntimeException error) {
+        if (error instanceof SaldoInsuficienteException) {
+            return BloqueTransferencias.SALDO_INSUFICIENTE;
+        }
+        if (error instanceof CuentaNoEncontradaException) {
+            return BloqueTransferencias.CUENTA_NO_ENCONTRADA;
+        }
+        return BloqueTransferencias.SOLICITUD_INVALIDA;
+    }
+
+    private String validarEnLote(Transferencia transferencia) {
+        Set<ConstraintViolation<Transferencia>> violaciones = validator.validate(transferencia);
+        if (!violaciones.isEmpty()) {
+            return violaciones.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .collect(Collectors.joining(", "));
+        }
+        if (transferencia.getMonto() == null) {
+            return "El monto es requerido";
+        }
+        if (transferencia.getCuentaOrigen().equals(transferencia.getCuentaDestino())) {
+            return "No puedes transferir a la misma cuenta";
+        }
+        return validarMonto(transferencia);
+    }
+
+    // El monto tiene que ser exacto en unidades mínimas de su moneda y, con motor, en las del motor
+    private String validarMonto(Transferencia transferencia) {
+        try {
+            Dinero.unidades(transferencia.getMonto(), Dinero.escala(transferencia.getMoneda()));
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return motor.habilitado() ? motor.validarMonto(transferencia.getMonto()) : null;
     }
 
     public Mono<TransferenciaDTO> obtenerTransferencia(String codigoReferencia) {
         log.info("Buscando transferencia: {}", codigoReferencia);
         return transferenciaRepository.findByCodigoReferencia(codigoReferencia)
+                .switchIfEmpty(Mono.defer(() -> archivo.buscar(codigoReferencia)))
                 .map(this::convertirADTO)
                 .switchIfEmpty(Mono.error(
                         new RuntimeException("Transferencia no encontrada")
@@ -104,15 +625,94 @@ public class TransferenciaService {
     }
 
     public Flux<TransferenciaDTO> obtenerTransferenciasPorCuenta(String numeroCuenta) {
-        return Flux.merge(
-                        transferenciaRepository.findByCuentaOrigen(numeroCuenta),
-                        transferenciaRepository.findByCuentaDestino(numeroCuenta)
-                )
+        return obtenerTransferenciasPorCuenta(numeroCuenta, null, null);
+    }
+
+    // Historial completo ordenado, para exportación en streaming
+    public Flux<TransferenciaDTO> obtenerTransferenciasPorCuenta(String numeroCuenta, LocalDateTime desde,
+                                                                 LocalDateTime hasta) {
+        Flux<Transferencia> recientes = transferenciaRepository.buscarHistorial(numeroCuenta, null, null, desde, hasta, 0);
+        if (archivo.fechaMaxima() == null) {
+            return recientes.map(this::convertirADTO);
+        }
+        // Mientras el archivador borra un segmento, sus filas están en los dos sitios: salen seguidas
+        return Flux.mergeComparing(HISTORIAL, recientes, archivo.historialCompleto(numeroCuenta, desde, hasta))
+                .distinctUntilChanged(Transferencia::getId)
                 .map(this::convertirADTO);
     }
 
+    public Mono<PaginaDTO<TransferenciaDTO>> obtenerHistorial(String numeroCuenta, String cursor, int limite,
+                                                              LocalDateTime desde, LocalDateTime hasta) {
+        if (limite < 1 || limite > limiteMaximoHistorial) {
+            return Mono.error(new IllegalArgumentException(
+                    "El límite debe estar entre 1 y " + limiteMaximoHistorial));
+        }
+        CursorHistorial posicion;
+        try {
+            posicion = cursor == null ? null : CursorHistorial.decodificar(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        // Se pide una fila de más solo para saber si existe una página siguiente
+        return transferenciaRepository.buscarHistorial(numeroCuenta,
+                        posicion == null ? null : posicion.fecha(),
+                        posicion == null ? null : posicion.id(),
+                        desde, hasta, limite + 1)
+                .collectList()
+                .flatMap(filas -> completarConArchivo(filas, numeroCuenta, posicion, desde, hasta, limite + 1))
+                .map(filas -> {
+                    boolean hayMas = filas.size() > limite;
+                    List<Transferencia> pagina = hayMas ? filas.subList(0, limite) : filas;
+                    String siguiente = hayMas ? CursorHistorial.codificar(pagina.get(limite - 1)) : null;
+                    return new PaginaDTO<>(pagina.stream().map(this::convertirADTO).toList(), siguiente);
+                });
+    }
+
+    // Solo se consulta el archivo si la página no se llena con filas más recientes que todo lo archivado
+    private Mono<List<Transferencia>> completarConArchivo(List<Transferencia> recientes, String numeroCuenta,
+                                                         CursorHistorial posicion, LocalDateTime desde,
+                                                         LocalDateTime hasta, int limite) {
+        LocalDateTime fechaArchivo = archivo.fechaMaxima();
+        if (fechaArchivo == null || (recientes.size() == limite
+                && recientes.get(limite - 1).getFechaTransferencia().isAfter(fechaArchivo))) {
+            return Mono.just(recientes);
+        }
+        return archivo.historial(numeroCuenta, posicion == null ? null : posicion.fecha(),
+                        posicion == null ? null : posicion.id(), desde, hasta, limite)
+                .map(archivadas -> {
+                    List<Transferencia> filas = new ArrayList<>(recientes.size() + archivadas.size());
+                    filas.addAll(recientes);
+                    filas.addAll(archivadas);
+                    filas.sort(HISTORIAL);
+                    List<Transferencia> pagina = new ArrayList<>(limite);
+                    for (Transferencia t : filas) {
+                        if (pagina.size() == limite) {
+                            break;
+                        }
+                        if (pagina.isEmpty() || !pagina.get(pagina.size() - 1).getId().equals(t.getId())) {
+                            pagina.add(t);
+                        }
+                    }
+                    return pagina;
+                });
+    }
+
     public Flux<TransferenciaDTO> obtenerTransferenciasExitosas() {
-        return transferenciaRepository.findByEstado("EXITOSA")
+        return listarExitosas(Set.of());
+    }
+
+    // Con fields= cada transferencia sale con solo los campos pedidos
+    public Flux<?> obtenerTransferenciasExitosas(String fields) {
+        return Flux.defer(() -> {
+            Set<String> campos = Campos.parsear(fields, CAMPOS_DTO);
+            return listarExitosas(campos).map(t -> campos.isEmpty() ? t : Campos.proyectar(t, campos));
+        });
+    }
+
+    private Flux<TransferenciaDTO> listarExitosas(Set<String> campos) {
+        return transferenciaRepository.listarPorEstado("EXITOSA", campos, limiteListados, tamanoLoteCursor)
+                .limitRate(prefetchListados)
                 .map(this::convertirADTO);
     }
 
@@ -123,6 +723,9 @@ public class TransferenciaService {
                 .cuentaDestino(t.getCuentaDestino())
                 .monto(t.getMonto())
                 .moneda(t.getMoneda())
+                .monedaDestino(t.getMonedaDestino())
+                .tasaCambio(t.getTasaCambio())
+                .montoDestino(t.getMontoDestino())
                 .estado(t.getEstado())
                 .concepto(t.getConcepto())
                 .fechaTransferencia(t.getFechaTransferencia())
@@ -0,0 +1,43 @@
+package com.banco.velocidad;
+
+/**
+ * Resultado de {@link ControlVelocidad#registrar}: el motivo si la transferencia excede alguna
+ * regla o, si cabe, lo que se anotó en los contadores de su cuenta origen, para poder anularlo
+ * con {@link ControlVelocidad#anular} si luego no llega a aplicarse.
+ */
+public final class AnotacionVelocidad {
+    static final AnotacionVelocidad NINGUNA = new AnotacionVelocidad(null, null, 0, 0, null, 0, false);
+
+    private final String exceso;
+    final String cuentaOrigen;
+    final long instante;
+    final long importe;
+    final String moneda;
+    final int hashDestino;
+    final boolean destinoNuevo;
+
+    private AnotacionVelocidad(String exceso, String cuentaOrigen, long instante, long importe, String moneda,
+                               int hashDestino, boolean destinoNuevo) {
+        this.exceso = exceso;
+        this.cuentaOrigen = cuentaOrigen;
+        this.instante = instante;
+        this.importe = importe;
+        this.moneda = moneda;
+        this.hashDestino = hashDestino;
+        this.destinoNuevo = destinoNuevo;
+    }
+
+    static AnotacionVelocidad excedida(String motivo) {
+        return new AnotacionVelocidad(motivo, null, 0, 0, null, 0, false);
+    }
+
+    static AnotacionVelocidad anotada(String cuentaOrigen, long instante, long importe, String moneda,
+                                      int hashDestino, boolean destinoNuevo) {
+        return new AnotacionVelocidad(null, cuentaOrigen, instante, importe, moneda, hashDestino, destinoNuevo);
+    }
+
+    /** Motivo del rechazo, o null si la transferencia quedó anotada. */
+    public String exceso() {
+        return exceso;
+    }
+}
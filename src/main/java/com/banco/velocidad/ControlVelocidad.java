@@ -0,0 +1,117 @@
+package com.banco.velocidad;
+
+import com.banco.model.Transferencia;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reglas de velocidad por cuenta origen evaluadas en memoria al validar cada transferencia,
+ * sin consultar Mongo. Cada cuenta tiene sus contadores por franjas de tiempo; las cuentas sin
+ * actividad durante la ventana más larga se olvidan y hay un máximo de cuentas vigiladas.
+ * Cuentan las transferencias que se aplican: se anotan al validar, para que las concurrentes no
+ * pasen todas a la vez, y se anulan si luego fallan o se compensan. Las rechazadas aquí no cuentan.
+ * Desactivado por defecto: los límites adecuados dependen de cada tipo de cliente, y unos
+ * genéricos rechazarían las nóminas y liquidaciones de las cuentas de mucho volumen.
+ */
+@Component
+public class ControlVelocidad {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${banco.velocidad.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${banco.velocidad.reglas:cantidad:10m:50,importe:10m:100000:USD,destinos:1h:20}")
+    private String textoReglas;
+
+    @Value("${banco.velocidad.maximo-cuentas:200000}")
+    private long maximoCuentas;
+
+    @Value("${banco.velocidad.destinos-recordados:64}")
+    private int destinosRecordados;
+
+    private ReglaVelocidad[] reglas;
+    private boolean conImporte;
+    private Cache<String, VentanasCuenta> cuentas;
+    private Counter[] rechazos;
+
+    @PostConstruct
+    void iniciar() {
+        List<ReglaVelocidad> leidas = ReglaVelocidad.leer(textoReglas);
+        reglas = leidas.toArray(new ReglaVelocidad[0]);
+        Duration ventanaMaxima = Duration.ofMinutes(1);
+        rechazos = new Counter[reglas.length];
+        for (int r = 0; r < reglas.length; r++) {
+            conImporte |= reglas[r].tipo == ReglaVelocidad.IMPORTE;
+            if (reglas[r].ventana.compareTo(ventanaMaxima) > 0) {
+                ventanaMaxima = reglas[r].ventana;
+            }
+            rechazos[r] = Counter.builder("banco.velocidad.rechazos")
+                    .description("Transferencias rechazadas por una regla de velocidad")
+                    .tag("regla", reglas[r].toString())
+                    .register(meterRegistry);
+        }
+        // Pasada la ventana más larga sin actividad, los contadores de la cuenta ya están a cero.
+        // El mantenimiento corre en el hilo que llama: despertar otro por transferencia costaba más
+        cuentas = Caffeine.newBuilder()
+                .maximumSize(maximoCuentas)
+                .expireAfterAccess(ventanaMaxima)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cuentas, "velocidad");
+    }
+
+    /** Si alguna regla activa es de importe, y por tanto registrar necesita la moneda de la cuenta origen. */
+    public boolean limitaImporte() {
+        return habilitada && conImporte;
+    }
+
+    /**
+     * Anota la transferencia en los contadores de su cuenta origen, o da el motivo si excede
+     * alguna regla. Sin moneda de la cuenta origen no cuenta para las reglas de importe.
+     */
+    public AnotacionVelocidad registrar(Transferencia transferencia, String monedaOrigen) {
+        return registrar(transferencia, monedaOrigen, System.currentTimeMillis());
+    }
+
+    AnotacionVelocidad registrar(Transferencia transferencia, String monedaOrigen, long ahora) {
+        if (!habilitada || reglas.length == 0) {
+            return AnotacionVelocidad.NINGUNA;
+        }
+        long importe = transferencia.getMonto().movePointRight(ReglaVelocidad.ESCALA_IMPORTE).longValue();
+        VentanasCuenta ventanas = cuentas.get(transferencia.getCuentaOrigen(),
+                k -> new VentanasCuenta(reglas, destinosRecordados));
+        int hashDestino = transferencia.getCuentaDestino().hashCode();
+        int resultado = ventanas.registrar(ahora, importe, monedaOrigen, hashDestino);
+        if (resultado >= 0) {
+            rechazos[resultado].increment();
+            return AnotacionVelocidad.excedida(reglas[resultado].motivo());
+        }
+        return AnotacionVelocidad.anotada(transferencia.getCuentaOrigen(), ahora, importe, monedaOrigen, hashDestino,
+                resultado == VentanasCuenta.ANOTADA_DESTINO_NUEVO);
+    }
+
+    /** Quita de los contadores una transferencia anotada que no llegó a aplicarse. */
+    public void anular(AnotacionVelocidad anotacion) {
+        if (anotacion == null || anotacion.cuentaOrigen == null) {
+            return;
+        }
+        // Si la cuenta ya se olvidó, sus contadores estaban a cero
+        VentanasCuenta ventanas = cuentas.getIfPresent(anotacion.cuentaOrigen);
+        if (ventanas != null) {
+            ventanas.anular(anotacion.instante, anotacion.importe, anotacion.moneda, anotacion.hashDestino,
+                    anotacion.destinoNuevo);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.banco.velocidad;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Regla de velocidad sobre una cuenta origen: como mucho {@code limite} transferencias, importe
+ * o destinos nuevos dentro de la ventana. Se escribe como tipo:ventana:límite, por ejemplo
+ * {@code cantidad:10m:50}. Las de importe llevan además su moneda, {@code importe:10m:50000:USD},
+ * y solo cuentan las transferencias desde cuentas en esa moneda.
+ */
+public final class ReglaVelocidad {
+    static final int CANTIDAD = 0;
+    static final int IMPORTE = 1;
+    static final int DESTINOS = 2;
+    private static final String[] NOMBRES = {"cantidad", "importe", "destinos"};
+
+    // Importes en diezmilésimas: exacto para cualquier moneda ISO 4217
+    static final int ESCALA_IMPORTE = 4;
+
+    final int tipo;
+    final Duration ventana;
+    final long limite;
+    // Solo en las de importe
+    final String moneda;
+    private final String texto;
+
+    private ReglaVelocidad(int tipo, Duration ventana, long limite, String moneda, String texto) {
+        this.tipo = tipo;
+        this.ventana = ventana;
+        this.limite = limite;
+        this.moneda = moneda;
+        this.texto = texto;
+    }
+
+    /** Lista separada por comas; vacía si no hay reglas. */
+    public static List<ReglaVelocidad> leer(String reglas) {
+        List<ReglaVelocidad> resultado = new ArrayList<>();
+        if (reglas == null || reglas.isBlank()) {
+            return resultado;
+        }
+        for (String regla : reglas.split(",")) {
+            resultado.add(de(regla.trim()));
+        }
+        return resultado;
+    }
+
+    static ReglaVelocidad de(String regla) {
+        String[] partes = regla.split(":");
+        int tipo = List.of(NOMBRES).indexOf(partes[0].trim());
+        if (tipo < 0) {
+            throw new IllegalArgumentException("Tipo de regla de velocidad desconocido: " + partes[0]);
+        }
+        if (partes.length != (tipo == IMPORTE ? 4 : 3)) {
+            throw new IllegalArgumentException(tipo == IMPORTE
+                    ? "Regla de velocidad inválida, se espera importe:ventana:límite:moneda: " + regla
+                    : "Regla de velocidad inválida, se espera tipo:ventana:límite: " + regla);
+        }
+        String moneda = null;
+        if (tipo == IMPORTE) {
+            moneda = partes[3].trim();
+            // Falla con una moneda que no es ISO 4217
+            Currency.getInstance(moneda);
+        }
+        Duration ventana = DurationStyle.detectAndParse(partes[1].trim());
+        BigDecimal limite = new BigDecimal(partes[2].trim());
+        if (ventana.toMillis() < VentanasCuenta.FRANJAS || limite.signum() < 0) {
+            throw new IllegalArgumentException("Ventana o límite inválidos en la regla de velocidad: " + regla);
+        }
+        long unidades = tipo == IMPORTE
+                ? limite.movePointRight(ESCALA_IMPORTE).longValueExact()
+                : limite.longValueExact();
+        return new ReglaVelocidad(tipo, ventana, unidades, moneda, regla);
+    }
+
+    /** Si la transferencia desde una cuenta en esa moneda cuenta para la regla; null si no se conoce. */
+    boolean aplica(String monedaOrigen) {
+        return tipo != IMPORTE || moneda.equals(monedaOrigen);
+    }
+
+    public String nombre() {
+        return NOMBRES[tipo];
+    }
+
+    /** Mensaje para quien la excede. */
+    String motivo() {
+        return switch (tipo) {
+            case CANTIDAD -> "Demasiadas transferencias desde la cuenta origen (" + texto + ")";
+            case IMPORTE -> "Importe transferido desde la cuenta origen por encima del límite (" + texto + ")";
+            default -> "Demasiados destinos nuevos desde la cuenta origen (" + texto + ")";
+        };
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -0,0 +1,139 @@
+package com.banco.velocidad;
+
+import java.util.Arrays;
+
+/**
+ * Contadores de una cuenta origen para cada regla: un anillo de FRANJAS franjas de tiempo por
+ * regla más el total de las que siguen dentro de la ventana, que se desliza con la resolución
+ * de una franja. Consultar una regla solo recorre las franjas que han caducado desde la última
+ * vez. También recuerda los últimos destinos (por hash) para saber cuáles son nuevos. Tamaño
+ * fijo desde que se crea, en torno a 1 KB con las reglas por defecto.
+ */
+final class VentanasCuenta {
+    static final int FRANJAS = 20;
+    static final int ANOTADA = -1;
+    static final int ANOTADA_DESTINO_NUEVO = -2;
+
+    private final ReglaVelocidad[] reglas;
+    private final long[] anchos;
+    private final long[] ultimasEpocas;
+    private final long[] totales;
+    private final long[] valores;
+    private final boolean conDestinos;
+    private final int[] destinos;
+    // Destinos de transferencias anuladas: ocupan su hueco hasta que se reutiliza, pero ya no se recuerdan
+    private final boolean[] anulados;
+    private int destinosGuardados;
+    private int siguienteDestino;
+
+    VentanasCuenta(ReglaVelocidad[] reglas, int destinosRecordados) {
+        this.reglas = reglas;
+        this.anchos = new long[reglas.length];
+        boolean conDestinos = false;
+        for (int r = 0; r < reglas.length; r++) {
+            anchos[r] = reglas[r].ventana.toMillis() / FRANJAS;
+            conDestinos |= reglas[r].tipo == ReglaVelocidad.DESTINOS;
+        }
+        this.ultimasEpocas = new long[reglas.length];
+        this.totales = new long[reglas.length];
+        this.valores = new long[reglas.length * FRANJAS];
+        this.conDestinos = conDestinos;
+        this.destinos = new int[conDestinos ? destinosRecordados : 0];
+        this.anulados = new boolean[destinos.length];
+    }
+
+    /**
+     * Si la transferencia cabe en todas las reglas la anota y devuelve ANOTADA, o
+     * ANOTADA_DESTINO_NUEVO si el destino no se recordaba; si no, no anota nada y devuelve el
+     * índice de la primera regla que excedería.
+     */
+    synchronized int registrar(long ahora, long importe, String moneda, int hashDestino) {
+        boolean destinoNuevo = conDestinos && !recuerda(hashDestino);
+        for (int r = 0; r < reglas.length; r++) {
+            avanzar(r, ahora / anchos[r]);
+            long incremento = incremento(reglas[r], importe, moneda, destinoNuevo);
+            if (incremento > 0 && totales[r] > reglas[r].limite - incremento) {
+                return r;
+            }
+        }
+        for (int r = 0; r < reglas.length; r++) {
+            long incremento = incremento(reglas[r], importe, moneda, destinoNuevo);
+            if (incremento > 0) {
+                valores[r * FRANJAS + (int) (ultimasEpocas[r] % FRANJAS)] += incremento;
+                totales[r] += incremento;
+            }
+        }
+        if (destinoNuevo && destinos.length > 0) {
+            // Se olvida el destino más antiguo
+            destinos[siguienteDestino] = hashDestino;
+            anulados[siguienteDestino] = false;
+            siguienteDestino = (siguienteDestino + 1) % destinos.length;
+            destinosGuardados = Math.min(destinosGuardados + 1, destinos.length);
+        }
+        return destinoNuevo ? ANOTADA_DESTINO_NUEVO : ANOTADA;
+    }
+
+    /**
+     * Deshace lo que anotó registrar en el instante dado. Lo que ya salió de la ventana no se
+     * toca: su franja está vacía o es de otra época.
+     */
+    synchronized void anular(long instante, long importe, String moneda, int hashDestino, boolean destinoNuevo) {
+        for (int r = 0; r < reglas.length; r++) {
+            long epoca = instante / anchos[r];
+            long incremento = incremento(reglas[r], importe, moneda, destinoNuevo);
+            if (incremento > 0 && epoca > ultimasEpocas[r] - FRANJAS) {
+                // Si la cuenta se olvidó y se volvió a crear, la franja puede no contenerla
+                int i = r * FRANJAS + (int) (epoca % FRANJAS);
+                long quitado = Math.min(incremento, valores[i]);
+                valores[i] -= quitado;
+                totales[r] -= quitado;
+            }
+        }
+        if (destinoNuevo) {
+            for (int i = 0; i < destinosGuardados; i++) {
+                if (destinos[i] == hashDestino && !anulados[i]) {
+                    anulados[i] = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    // Los importes solo se suman en las reglas de su moneda
+    private static long incremento(ReglaVelocidad regla, long importe, String moneda, boolean destinoNuevo) {
+        return switch (regla.tipo) {
+            case ReglaVelocidad.CANTIDAD -> 1;
+            case ReglaVelocidad.IMPORTE -> regla.aplica(moneda) ? importe : 0;
+            default -> destinoNuevo ? 1 : 0;
+        };
+    }
+
+    // Vacía las franjas que han salido de la ventana desde la última epoca vista
+    private void avanzar(int regla, long epoca) {
+        long ultima = ultimasEpocas[regla];
+        if (epoca <= ultima) {
+            return;
+        }
+        int base = regla * FRANJAS;
+        if (epoca - ultima >= FRANJAS) {
+            Arrays.fill(valores, base, base + FRANJAS, 0);
+            totales[regla] = 0;
+        } else {
+            for (long e = ultima + 1; e <= epoca; e++) {
+                int i = base + (int) (e % FRANJAS);
+                totales[regla] -= valores[i];
+                valores[i] = 0;
+            }
+        }
+        ultimasEpocas[regla] = epoca;
+    }
+
+    private boolean recuerda(int hashDestino) {
+        for (int i = 0; i < destinosGuardados; i++) {
+            if (destinos[i] == hashDestino && !anulados[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.banco.admision;
+
+import junit.framework.TestCase;
+
+public class CubosTokensTest extends TestCase {
+
+    public void testAdmiteLaRafagaYLuegoLaTasa() {
+        // 10 por segundo: un token cada 100 ms, hasta 3 seguidos
+        CubosTokens cubos = new CubosTokens(1000, 10, 3);
+        long ms = 1_000_000;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, cubos.admitir("ACC1", 0));
+        }
+        assertEquals(100 * ms, cubos.admitir("ACC1", 0));
+        assertEquals(40 * ms, cubos.admitir("ACC1", 60 * ms));
+        assertEquals(0, cubos.admitir("ACC1", 100 * ms));
+        assertEquals(100 * ms, cubos.admitir("ACC1", 100 * ms));
+
+        // Cada cuenta tiene su propia ráfaga, aunque sean muchas
+        for (int i = 0; i < 500; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(0, cubos.admitir("OTRA" + i, 100 * ms));
+            }
+        }
+
+        // Tras un rato parado vuelve a tener la ráfaga completa, no más
+        cubos.configurar(10, 2);
+        assertEquals(0, cubos.admitir("ACC1", 10_000 * ms));
+        assertEquals(0, cubos.admitir("ACC1", 10_000 * ms));
+        assertTrue(cubos.admitir("ACC1", 10_000 * ms) > 0);
+        assertEquals(1, ControlAdmision.segundos(1));
+        assertEquals(2, ControlAdmision.segundos(1_000_000_001L));
+    }
+}
@@ -0,0 +1,36 @@
+package com.banco.admision;
+
+import junit.framework.TestCase;
+
+public class LimiteAdaptativoTest extends TestCase {
+
+    public void testCreceConRespuestasRapidasYBajaConLentas() throws InterruptedException {
+        long objetivo = 1_000_000;
+        LimiteAdaptativo limite = new LimiteAdaptativo(4, 2, 5, objetivo);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limite.adquirir());
+        }
+        assertFalse(limite.adquirir());
+
+        // Con el límite lleno, cuatro respuestas rápidas lo suben en uno
+        for (int i = 0; i < 4; i++) {
+            limite.liberar(0, false);
+            assertTrue(limite.adquirir());
+        }
+        assertEquals(5, limite.limite());
+
+        Thread.sleep(2);
+        limite.liberar(2 * objetivo, false);
+        assertEquals(4, limite.limite());
+        // Otra lenta del mismo pico no vuelve a reducirlo
+        limite.liberar(2 * objetivo, true);
+        assertEquals(4, limite.limite());
+        assertEquals(2, limite.enCurso());
+
+        Thread.sleep(2);
+        limite.liberar(0, true);
+        limite.liberar(0, true);
+        assertEquals(3, limite.limite());
+        assertEquals(0, limite.enCurso());
+    }
+}
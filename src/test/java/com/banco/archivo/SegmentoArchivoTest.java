@@ -0,0 +1,130 @@
+package com.banco.archivo;
+
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class SegmentoArchivoTest extends TestCase {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 125_000_000);
+
+    private Path directorio;
+
+    @Override
+    protected void setUp() throws IOException {
+        directorio = Files.createTempDirectory("archivo");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    public void testConservaCadaCampoYLocalizaPorReferencia() throws IOException {
+        Transferencia simple = transferencia("01", "ACC1", "ACC2", "10.50", T0);
+        Transferencia conCambio = transferencia("02", "ACC1", "ACC3", "100.00", T0.plusSeconds(5));
+        conCambio.setMonedaDestino("EUR");
+        conCambio.setTasaCambio(new BigDecimal("0.921300"));
+        conCambio.setMontoDestino(new BigDecimal("92.13"));
+        conCambio.setConcepto("Alquiler de marzo ñ");
+        Transferencia enorme = transferencia("03", "ACC2", "ACC1", "12345678901234567890123.45", T0.minusDays(3));
+        enorme.setFechaActualizacion(null);
+        enorme.setMotivo("Revisada");
+
+        SegmentoArchivo.Resumen resumen = SegmentoArchivo.escribir(directorio, 7, List.of(simple, conCambio, enorme));
+        assertEquals(3, resumen.filas);
+        assertEquals(T0.minusDays(3).withNano(0), resumen.fechaMinima);
+        assertEquals(T0.plusSeconds(6).withNano(0), resumen.fechaMaxima);
+        assertTrue(resumen.referencias.puedeContener("TRF02"));
+        assertTrue(resumen.cuentas.puedeContener("ACC3"));
+
+        SegmentoArchivo.Resumen leido = SegmentoArchivo.resumen(resumen.ruta);
+        assertEquals(7, leido.numero);
+        assertEquals(resumen.bytes, leido.bytes);
+
+        SegmentoArchivo segmento = SegmentoArchivo.leer(resumen.ruta);
+        assertEquals(simple, segmento.buscar("TRF01"));
+        assertEquals(conCambio, segmento.buscar("TRF02"));
+        assertEquals(enorme, segmento.buscar("TRF03"));
+        assertNull(segmento.buscar("TRF04"));
+    }
+
+    public void testHistorialPorCuentaConCursorYFechas() throws IOException {
+        List<Transferencia> filas = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            filas.add(transferencia("0" + i, i % 2 == 0 ? "ACC1" : "ACC2", i % 2 == 0 ? "ACC2" : "ACC1",
+                    "1.00", T0.plusMinutes(i)));
+        }
+        filas.add(transferencia("09", "ACC3", "ACC4", "1.00", T0));
+        SegmentoArchivo segmento = SegmentoArchivo.leer(SegmentoArchivo.escribir(directorio, 1, filas).ruta);
+
+        List<Transferencia> pagina = new ArrayList<>();
+        segmento.historial("ACC1", null, null, null, null, 4, pagina);
+        assertEquals(List.of("05", "04", "03", "02"), ids(pagina));
+
+        Transferencia ultima = pagina.get(3);
+        List<Transferencia> siguiente = new ArrayList<>();
+        segmento.historial("ACC1", ultima.getFechaTransferencia(), ultima.getId(), null, null, 4, siguiente);
+        assertEquals(List.of("01", "00"), ids(siguiente));
+
+        List<Transferencia> rango = new ArrayList<>();
+        segmento.historial("ACC2", null, null, T0.plusMinutes(1), T0.plusMinutes(3), 0, rango);
+        assertEquals(List.of("03", "02", "01"), ids(rango));
+    }
+
+    public void testElArchivoMezclaVariosSegmentosEnOrdenDeHistorial() throws Exception {
+        SegmentoArchivo.escribir(directorio, 1, List.of(
+                transferencia("00", "ACC1", "ACC2", "1.00", T0),
+                transferencia("01", "ACC2", "ACC1", "2.00", T0.plusHours(1))));
+        SegmentoArchivo.escribir(directorio, 2, List.of(
+                transferencia("02", "ACC1", "ACC3", "3.00", T0.plusHours(2)),
+                transferencia("03", "ACC3", "ACC4", "4.00", T0.plusHours(3))));
+        ArchivoTransferencias archivo = archivo();
+
+        assertEquals(T0.plusHours(3).plusSeconds(1).withNano(0), archivo.fechaMaxima());
+        assertEquals("ACC4", archivo.buscarEnSegmentos("TRF03").getCuentaDestino());
+        assertNull(archivo.buscarEnSegmentos("TRF99"));
+        assertEquals(List.of("02", "01", "00"), ids(archivo.historialEnSegmentos("ACC1", null, null, null, null, 10)));
+        assertEquals(List.of("02", "01"), ids(archivo.historialEnSegmentos("ACC1", null, null, null, null, 2)));
+        assertEquals(List.of("01"), ids(archivo.historialEnSegmentos("ACC1", T0.plusHours(2), "02", T0.plusMinutes(1), null, 10)));
+        assertTrue(archivo.archivada(transferencia("00", "ACC1", "ACC2", "1.00", T0)));
+        assertEquals(3, archivo.siguienteNumero());
+    }
+
+    private ArchivoTransferencias archivo() throws Exception {
+        ArchivoTransferencias archivo = new ArchivoTransferencias();
+        inyectar(archivo, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(archivo, "habilitado", true);
+        inyectar(archivo, "directorio", directorio.toString());
+        inyectar(archivo, "segmentosEnMemoria", 1L);
+        inyectar(archivo, "tamanoPagina", 2);
+        inyectar(archivo, "refrescoSegundos", 0L);
+        archivo.iniciar();
+        return archivo;
+    }
+
+
+    private static Transferencia transferencia(String id, String origen, String destino, String monto, LocalDateTime fecha) {
+        return new Transferencia(id, origen, destino, new BigDecimal(monto), "USD", "EXITOSA", null, fecha,
+                fecha.plusNanos(3_000_000), "TRF" + id, null, null, null, null);
+    }
+
+    private static List<String> ids(List<Transferencia> transferencias) {
+        return transferencias.stream().map(Transferencia::getId).toList();
+    }
+}
@@ -0,0 +1,257 @@
+package com.banco.bitacora;
+
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.banco.soporte.Pruebas.leer;
+
+public class BitacoraTest extends TestCase {
+    private static final int TAMANO_SEGMENTO = 128 * 1024;
+
+    private Path directorio;
+
+    @Override
+    protected void setUp() throws IOException {
+        directorio = Files.createTempDirectory("bitacora-test");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+        }
+    }
+
+    public void testConservaLosCamposDeLaTransferencia() {
+        Transferencia original = transferencia(7);
+        original.setConcepto("Alquiler de mayo — señal");
+        original.setMonto(new BigDecimal("1234.50"));
+        Transferencia sinConcepto = transferencia(8);
+        sinConcepto.setConcepto(null);
+        Transferencia conCambio = transferencia(9);
+        conCambio.setConcepto("Cambio");
+        conCambio.setMonedaDestino("EUR");
+        conCambio.setTasaCambio(new BigDecimal("0.9213"));
+        conCambio.setMontoDestino(new BigDecimal("1.00"));
+
+        for (Transferencia t : List.of(original, sinConcepto, conCambio)) {
+            byte[] registro = FormatoRegistro.codificar(t);
+            FormatoRegistro.sellar(registro, 42);
+            ByteBuffer b = ByteBuffer.wrap(registro);
+            assertEquals(registro.length, FormatoRegistro.validar(b, 0, 42));
+            assertEquals(-1, FormatoRegistro.validar(b, 0, 43));
+            assertEquals(t, FormatoRegistro.decodificar(b, 0));
+        }
+    }
+
+    public void testRecuperaLaSecuenciaTrasReabrirConVariosSegmentos() throws IOException {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        Flux.range(1, 2000)
+                .flatMap(i -> bitacora.registrar(transferencia(i)), 128)
+                .blockLast(Duration.ofSeconds(30));
+        assertEquals(2000, bitacora.confirmadaHasta());
+        bitacora.cerrar();
+
+        Bitacora reabierta = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        try {
+            assertEquals(2000, reabierta.confirmadaHasta());
+            assertEquals(Long.valueOf(2001), reabierta.registrar(transferencia(2001)).block(Duration.ofSeconds(5)));
+            List<RegistroBitacora> registros = leerTodo(reabierta);
+            assertEquals(2001, registros.size());
+            assertTrue(Segmento.listar(directorio).size() > 2);
+            for (int i = 0; i < registros.size(); i++) {
+                assertEquals(i + 1, registros.get(i).secuencia());
+            }
+            assertEquals(2001, registros.stream().map(r -> r.transferencia().getCodigoReferencia()).distinct().count());
+        } finally {
+            reabierta.cerrar();
+        }
+    }
+
+    public void testRetiraSoloLosSegmentosProyectadosYAnterioresAlCorte() throws IOException {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        try {
+            Flux.range(1, 2000)
+                    .flatMap(i -> bitacora.registrar(transferencia(i)), 128)
+                    .blockLast(Duration.ofSeconds(30));
+            List<Path> segmentos = Segmento.listar(directorio);
+            assertTrue(segmentos.size() > 2);
+            long tercero = Segmento.primeraSecuencia(segmentos.get(2));
+
+            // Las transferencias son del 1 de marzo: con un corte anterior no se retira nada
+            assertEquals(0, bitacora.retirar(2000, LocalDateTime.of(2026, 3, 1, 0, 0)));
+            // Solo los dos primeros están proyectados enteros
+            assertEquals(2, bitacora.retirar(tercero - 1, LocalDateTime.of(2026, 3, 2, 0, 0)));
+            assertEquals(segmentos.subList(2, segmentos.size()), Segmento.listar(directorio));
+
+            // Leer desde el principio empieza en el primer segmento que queda
+            List<RegistroBitacora> registros = leerTodo(bitacora);
+            assertEquals(tercero, registros.get(0).secuencia());
+            assertEquals(2000, registros.get(registros.size() - 1).secuencia());
+        } finally {
+            bitacora.cerrar();
+        }
+    }
+
+    public void testDescartaUnRegistroIncompletoAlFinal() throws IOException {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        for (int i = 1; i <= 10; i++) {
+            bitacora.registrar(transferencia(i)).block(Duration.ofSeconds(5));
+        }
+        bitacora.cerrar();
+
+        // Simula una caída a mitad del último registro: su CRC deja de cuadrar
+        Path segmento = Segmento.listar(directorio).get(0);
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, canal.size());
+            int posicion = Segmento.CABECERA;
+            for (long secuencia = 1; secuencia < 10; secuencia++) {
+                posicion += FormatoRegistro.validar(mapa, posicion, secuencia);
+            }
+            mapa.put(posicion + FormatoRegistro.FIJO - 1, (byte) 0x55);
+        }
+
+        Bitacora reabierta = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        try {
+            assertEquals(9, reabierta.confirmadaHasta());
+            assertEquals(Long.valueOf(10), reabierta.registrar(transferencia(11)).block(Duration.ofSeconds(5)));
+            List<RegistroBitacora> registros = leerTodo(reabierta);
+            assertEquals(10, registros.size());
+            assertEquals("TRF11", registros.get(9).transferencia().getCodigoReferencia());
+        } finally {
+            reabierta.cerrar();
+        }
+    }
+
+    public void testLoDescartadoTrasUnFalloNoSeReproduceAlReabrir() throws IOException {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        for (int i = 1; i <= 5; i++) {
+            bitacora.registrar(transferencia(i)).block(Duration.ofSeconds(5));
+        }
+        bitacora.cerrar();
+
+        // Como el escritor ante un force fallido: los registros ya copiados se borran
+        try (Segmento segmento = Segmento.abrir(Segmento.listar(directorio).get(0))) {
+            int desde = segmento.posicion();
+            segmento.escribir(FormatoRegistro.codificar(transferencia(6)));
+            segmento.escribir(FormatoRegistro.codificar(transferencia(7)));
+            segmento.descartar(desde);
+        }
+
+        Bitacora reabierta = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        try {
+            assertEquals(5, reabierta.confirmadaHasta());
+            assertEquals(Long.valueOf(6), reabierta.registrar(transferencia(8)).block(Duration.ofSeconds(5)));
+            List<RegistroBitacora> registros = leerTodo(reabierta);
+            assertEquals(6, registros.size());
+            assertEquals("TRF8", registros.get(5).transferencia().getCodigoReferencia());
+        } finally {
+            reabierta.cerrar();
+        }
+    }
+
+    public void testSiFallaLaRotacionSeConfirmaLoQueYaEstabaEnDisco() throws Exception {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        int longitud = FormatoRegistro.codificar(transferencia(1000)).length;
+        // Se llena el segmento hasta que solo quepan dos registros más
+        int siguiente = 1000;
+        bitacora.registrar(transferencia(siguiente++)).block(Duration.ofSeconds(5));
+        while (((Segmento) leer(bitacora, "segmento")).cabe(3 * longitud)) {
+            bitacora.registrar(transferencia(siguiente++)).block(Duration.ofSeconds(5));
+        }
+        // Sin fichero preasignado la rotación falla después de forzar el segmento lleno
+        ((CompletableFuture<?>) leer(bitacora, "preasignado")).join();
+        Files.delete(directorio.resolve("siguiente.preasignado"));
+
+        // Detiene al escritor en la confirmación del primer registro para que los dos siguientes
+        // le lleguen en el mismo lote
+        CountDownLatch retenido = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+        bitacora.confirmaciones().skip(1).take(1).subscribe(s -> {
+            retenido.countDown();
+            try {
+                seguir.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long primero = bitacora.registrar(transferencia(siguiente++)).block(Duration.ofSeconds(5));
+        assertTrue(retenido.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Long> cabe = bitacora.registrar(transferencia(siguiente++)).toFuture();
+        CompletableFuture<Long> noCabe = bitacora.registrar(
+                List.of(transferencia(siguiente++), transferencia(siguiente++))).toFuture();
+        while (((BlockingQueue<?>) leer(bitacora, "cola")).size() < 2) {
+            Thread.sleep(1);
+        }
+        seguir.countDown();
+
+        assertEquals(Long.valueOf(primero + 1), cabe.get(5, TimeUnit.SECONDS));
+        try {
+            noCabe.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(primero + 1, bitacora.confirmadaHasta());
+        bitacora.cerrar();
+
+        Bitacora reabierta = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        try {
+            assertEquals(primero + 1, reabierta.confirmadaHasta());
+        } finally {
+            reabierta.cerrar();
+        }
+    }
+
+    public void testUnEscritorInterrumpidoFallaLoPendienteSinColgarse() throws Exception {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        assertEquals(Long.valueOf(1), bitacora.registrar(transferencia(1)).block(Duration.ofSeconds(5)));
+        Thread escritor = (Thread) leer(bitacora, "escritor");
+        escritor.interrupt();
+        escritor.join(5000);
+        assertFalse(escritor.isAlive());
+
+        try {
+            bitacora.registrar(transferencia(2)).block(Duration.ofSeconds(5));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("La bitácora no está disponible", e.getMessage());
+        }
+        bitacora.cerrar();
+        assertEquals(1, bitacora.confirmadaHasta());
+    }
+
+    private static List<RegistroBitacora> leerTodo(Bitacora bitacora) {
+        return bitacora.leer(1, bitacora.confirmadaHasta(), 100)
+                .flatMapIterable(lote -> lote)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
+    private static Transferencia transferencia(int i) {
+        LocalDateTime fecha = LocalDateTime.of(2026, 3, 1, 10, 15, 30, 123_456_789 + i);
+        return new Transferencia("ID" + i, "ACC" + (1000 + i % 7), "ACC" + (2000 + i % 5),
+                BigDecimal.valueOf(100 + i, 2), "USD", "EXITOSA", "Pago " + i,
+                fecha, fecha, "TRF" + i, null, null, null, null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.banco.cache;
+
+import com.banco.model.Cuenta;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class CacheCuentasTest extends TestCase {
+    private final Map<String, BigDecimal> saldos = new ConcurrentHashMap<>();
+    private final Map<String, Sinks.One<Cuenta>> lecturasPendientes = new ConcurrentHashMap<>();
+    private final AtomicInteger lecturasDeSaldo = new AtomicInteger();
+    private CacheCuentas cache;
+
+    @Override
+    protected void setUp() {
+        saldos.put("A", new BigDecimal("100.00"));
+        saldos.put("B", new BigDecimal("50.00"));
+        cache = new CacheCuentas();
+        inyectar(cache, "cuentaRepository", repositorio());
+        inyectar(cache, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(cache, "habilitada", true);
+        inyectar(cache, "maximo", 1000L);
+        inyectar(cache, "ttlPerfilSegundos", 600L);
+        inyectar(cache, "ttlSaldoSegundos", 600L);
+        cache.iniciar();
+    }
+
+    public void testInvalidarOtraCuentaNoImpideLaPrecarga() {
+        Mono<Cuenta> lectura = cache.buscarPorNumeroCuenta("A");
+        Sinks.One<Cuenta> perfil = pendiente("A", lectura);
+        cache.invalidarSaldo("B");
+        perfil.tryEmitValue(cuenta("A"));
+
+        assertEquals(new BigDecimal("100.00"), lectura.block(Duration.ofSeconds(5)).getSaldo());
+        assertEquals(0, lecturasDeSaldo.get());
+    }
+
+    public void testUnSaldoLeidoAntesDeInvalidarNoSePrecarga() {
+        Mono<Cuenta> lectura = cache.buscarPerfil("A");
+        Sinks.One<Cuenta> perfil = pendiente("A", lectura);
+        // El débito llega a Mongo mientras el perfil, con el saldo anterior, aún viaja
+        Cuenta leida = cuenta("A");
+        saldos.put("A", new BigDecimal("70.00"));
+        cache.invalidarSaldo("A");
+        perfil.tryEmitValue(leida);
+
+        assertEquals(new BigDecimal("70.00"), cache.buscarPorNumeroCuenta("A").block(Duration.ofSeconds(5)).getSaldo());
+        assertEquals(1, lecturasDeSaldo.get());
+    }
+
+    // Suscribe la lectura y devuelve el sink con el que responde el repositorio
+    private Sinks.One<Cuenta> pendiente(String numeroCuenta, Mono<Cuenta> lectura) {
+        lectura.subscribe();
+        Sinks.One<Cuenta> sink = lecturasPendientes.get(numeroCuenta);
+        assertNotNull(sink);
+        return sink;
+    }
+
+    private Cuenta cuenta(String numeroCuenta) {
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setSaldo(saldos.get(numeroCuenta));
+        cuenta.setMoneda("USD");
+        cuenta.setActiva(true);
+        return cuenta;
+    }
+
+    private CuentaRepository repositorio() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findByNumeroCuenta" -> lecturasPendientes
+                    .computeIfAbsent((String) args[0], k -> Sinks.one()).asMono();
+            case "buscarSaldo" -> Mono.fromCallable(() -> {
+                lecturasDeSaldo.incrementAndGet();
+                return saldos.get((String) args[0]);
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+}
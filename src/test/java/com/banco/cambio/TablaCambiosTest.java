@@ -0,0 +1,64 @@
+package com.banco.cambio;
+
+import com.banco.model.TipoCambio;
+import com.banco.model.Transferencia;
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+public class TablaCambiosTest extends TestCase {
+
+    private final TablaCambios tabla = TablaCambios.de(List.of(
+            new TipoCambio("USD/EUR", "USD", "EUR", new BigDecimal("0.9213"), null),
+            new TipoCambio("USD/JPY", "USD", "JPY", new BigDecimal("149.85"), null)), Instant.now());
+
+    public void testConvierteAlaMonedaDeLaCuentaDestino() {
+        Transferencia t = transferencia(null, "10.55");
+        assertNull(tabla.aplicar(t, "USD", "JPY"));
+        assertEquals("USD", t.getMoneda());
+        assertEquals("JPY", t.getMonedaDestino());
+        // 1580.9175 redondeado a yenes
+        assertEquals(new BigDecimal("1581"), t.getMontoDestino());
+        assertEquals(new BigDecimal("1581"), t.montoAcreditado());
+
+        Transferencia inversa = new Transferencia();
+        inversa.setMonto(new BigDecimal("100"));
+        assertNull(tabla.aplicar(inversa, "EUR", "USD"));
+        assertEquals(new BigDecimal("108.54"), inversa.getMontoDestino());
+
+        Transferencia misma = transferencia("USD", "5.00");
+        assertNull(tabla.aplicar(misma, "USD", "USD"));
+        assertNull(misma.getMontoDestino());
+        assertEquals(4, tabla.pares());
+    }
+
+    public void testRechazaMonedaOTasaQueNoCuadran() {
+        assertEquals("La transferencia debe ir en la moneda de la cuenta origen (USD)",
+                tabla.aplicar(transferencia("EUR", "1.00"), "USD", "EUR"));
+        assertEquals("No hay tipo de cambio de EUR a JPY", tabla.aplicar(transferencia("EUR", "1.00"), "EUR", "JPY"));
+        assertEquals("El monto convertido a JPY es cero", tabla.aplicar(transferencia("USD", "0.001"), "USD", "JPY"));
+        // Sin moneda en la solicitud el monto se comprueba con la escala de la cuenta origen
+        Transferencia sinMoneda = transferencia(null, "10.5");
+        assertEquals("El monto admite como mucho 0 decimales", tabla.aplicar(sinMoneda, "JPY", "USD"));
+        assertNull(sinMoneda.getMoneda());
+        assertEquals("No hay tipo de cambio de USD a EUR",
+                TablaCambios.VACIA.aplicar(transferencia("USD", "1.00"), "USD", "EUR"));
+
+        try {
+            TablaCambios.de(List.of(new TipoCambio("USD/EUR", "USD", "EUR", new BigDecimal("0.92130000000000000001"), null)),
+                    Instant.now());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no cabe en la bitácora
+        }
+    }
+
+    private static Transferencia transferencia(String moneda, String monto) {
+        Transferencia t = new Transferencia();
+        t.setMoneda(moneda);
+        t.setMonto(new BigDecimal(monto));
+        return t;
+    }
+}
@@ -0,0 +1,60 @@
+package com.banco.conciliacion;
+
+import com.banco.dto.DescuadreDTO;
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ParticionCuentasTest extends TestCase {
+
+    public void testDetectaSaldosQueNoCuadranConSusTransferencias() {
+        ParticionCuentas p = new ParticionCuentas(8);
+        p.agregar("ACC1", new BigDecimal("70.00"), new BigDecimal("100.00"), "USD");
+        p.agregar("ACC2", new BigDecimal("35.00"), new BigDecimal("0.00"), "USD");
+        p.agregar("ACC3", new BigDecimal("1500"), new BigDecimal("0"), "JPY");
+        p.agregar("ACC4", new BigDecimal("9.00"), null, "USD");
+
+        p.salida("ACC1", new BigDecimal("30.00"));
+        p.salida("ACC2", new BigDecimal("5.00"));
+        p.salida("ACC0", new BigDecimal("1.00"));
+        p.entrada("ACC2", new BigDecimal("30.00"));
+        p.entrada("ACC3", new BigDecimal("1510"));
+        p.entrada("ACC4", new BigDecimal("1.00"));
+
+        List<DescuadreDTO> candidatos = p.candidatos();
+        assertEquals(2, candidatos.size());
+        assertEquals("ACC2", candidatos.get(0).getNumeroCuenta());
+        assertEquals(new BigDecimal("25.00"), candidatos.get(0).getEsperado());
+        assertEquals(new BigDecimal("10.00"), candidatos.get(0).getDiferencia());
+        assertEquals(new BigDecimal("-10"), candidatos.get(1).getDiferencia());
+
+        assertEquals(1, p.sinBase());
+        assertEquals(1, p.huerfanas());
+        assertEquals(6, p.movimientos());
+        assertEquals("ACC1", p.primera());
+        assertEquals("ACC4", p.ultima());
+    }
+
+    public void testLoArchivadoCuentaComoParteDeLaBase() {
+        ParticionCuentas p = new ParticionCuentas(2);
+        p.agregar("ACC1", new BigDecimal("80.00"), new BigDecimal("100.00"), "USD");
+        p.agregar("ACC2", new BigDecimal("5.00"), null, "USD");
+        p.archivado("ACC1", new BigDecimal("-30.00"));
+        p.archivado("ACC2", new BigDecimal("5.00"));
+        p.entrada("ACC1", new BigDecimal("10.00"));
+
+        assertTrue(p.candidatos().isEmpty());
+        assertEquals(1, p.sinBase());
+    }
+
+    public void testUnImporteInexactoSeDejaParaLaReverificacion() {
+        ParticionCuentas p = new ParticionCuentas(2);
+        p.agregar("ACC1", new BigDecimal("10.00"), new BigDecimal("10.00"), "USD");
+        p.entrada("ACC1", new BigDecimal("0.005"));
+
+        DescuadreDTO candidato = p.candidatos().get(0);
+        assertEquals("ACC1", candidato.getNumeroCuenta());
+        assertNull(candidato.getDiferencia());
+    }
+}
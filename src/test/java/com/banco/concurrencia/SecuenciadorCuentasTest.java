@@ -0,0 +1,81 @@
+package com.banco.concurrencia;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class SecuenciadorCuentasTest extends TestCase {
+    private static final int CUENTAS = 10;
+
+    public void testNuncaHayDosOperacionesSimultaneasSobreLaMismaCuenta() {
+        SecuenciadorCuentas secuenciador = new SecuenciadorCuentas(new SimpleMeterRegistry(), 4);
+        AtomicIntegerArray enCurso = new AtomicIntegerArray(CUENTAS);
+        AtomicInteger violaciones = new AtomicInteger();
+
+        Flux.range(0, 20_000)
+                .flatMap(i -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int a = random.nextInt(CUENTAS);
+                    int b = (a + 1 + random.nextInt(CUENTAS - 1)) % CUENTAS;
+                    return secuenciador.ejecutar("ACC" + a, "ACC" + b, () -> Mono.fromRunnable(() -> {
+                                int enA = enCurso.incrementAndGet(a);
+                                int enB = enCurso.incrementAndGet(b);
+                                if (enA > 1 || enB > 1) {
+                                    violaciones.incrementAndGet();
+                                }
+                                Thread.onSpinWait();
+                                enCurso.decrementAndGet(a);
+                                enCurso.decrementAndGet(b);
+                            })
+                            .subscribeOn(Schedulers.parallel()));
+                }, 512)
+                .blockLast(Duration.ofSeconds(30));
+
+        assertEquals(0, violaciones.get());
+        // doFinally libera el carril justo después de propagar la finalización
+        for (int i = 0; i < 4; i++) {
+            int carril = i;
+            Mono.fromCallable(() -> secuenciador.profundidad(carril))
+                    .filter(p -> p == 0)
+                    .repeatWhenEmpty(r -> r.delayElements(Duration.ofMillis(5)))
+                    .block(Duration.ofSeconds(1));
+        }
+    }
+
+    public void testLiberaElCarrilCuandoSeCancelaLaEspera() {
+        SecuenciadorCuentas secuenciador = new SecuenciadorCuentas(new SimpleMeterRegistry(), 1);
+
+        secuenciador.ejecutar("A", "B", () -> Mono.delay(Duration.ofMillis(200)))
+                .subscribe();
+        secuenciador.ejecutar("A", "B", () -> Mono.just(1))
+                .timeout(Duration.ofMillis(10), Mono.just(0))
+                .block();
+
+        assertEquals(1, (int) secuenciador.ejecutar("A", "B", () -> Mono.just(1))
+                .block(Duration.ofSeconds(5)));
+    }
+
+    public void testUnCarrilLargoDeOperacionesSincronasNoDesbordaLaPila() throws InterruptedException {
+        SecuenciadorCuentas secuenciador = new SecuenciadorCuentas(new SimpleMeterRegistry(), 1);
+        Sinks.Empty<Void> primera = Sinks.empty();
+        secuenciador.ejecutar("A", "B", primera::asMono).subscribe();
+
+        CountDownLatch completadas = new CountDownLatch(50_000);
+        for (int i = 0; i < 50_000; i++) {
+            secuenciador.ejecutar("A", "B", () -> Mono.just(1)).subscribe(v -> completadas.countDown());
+        }
+        primera.tryEmitEmpty();
+
+        assertTrue(completadas.await(30, TimeUnit.SECONDS));
+    }
+}
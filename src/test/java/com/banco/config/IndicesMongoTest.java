@@ -0,0 +1,47 @@
+package com.banco.config;
+
+import com.banco.App;
+import junit.framework.TestCase;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Comprueba que cada método de búsqueda de los repositorios usa su índice.
+ * Requiere un MongoDB local en MONGODB_URI; sin él la prueba no hace nada.
+ */
+public class IndicesMongoTest extends TestCase {
+
+    public void testCadaBusquedaUsaSuIndice() {
+        String uri = System.getenv("MONGODB_URI");
+        if (uri == null) {
+            return;
+        }
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.uri=" + uri,
+                        "spring.data.mongodb.database=transferencias_test_" + System.nanoTime(),
+                        "banco.indices.al-iniciar=false")
+                .run();
+        try {
+            IndicesMongo indices = contexto.getBean(IndicesMongo.class);
+            indices.crearIndices().block();
+
+            Map<String, String> planes = indices.verificarPlanes().block();
+
+            assertEquals(7, planes.size());
+            planes.forEach((consulta, etapa) -> assertEquals(consulta, "IXSCAN", etapa));
+        } finally {
+            contexto.getBean(ReactiveMongoTemplate.class).getMongoDatabase()
+                    .flatMap(db -> Mono.from(db.drop()))
+                    .block();
+            contexto.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.banco.config;
+
+import junit.framework.TestCase;
+
+public class MetricasNettyTest extends TestCase {
+
+    public void testLosIdentificadoresSeAgrupanEnUnaRuta() {
+        assertEquals("/api/v1/cuentas/{id}", MetricasNetty.ruta("/api/v1/cuentas/ACC1234567890"));
+        assertEquals("/api/v1/cuentas/email/{id}", MetricasNetty.ruta("/api/v1/cuentas/email/ana@banco.com"));
+        assertEquals("/api/v1/transferencias/historial/{id}",
+                MetricasNetty.ruta("/api/v1/transferencias/historial/ACC1?limite=20&cursor=abc"));
+    }
+
+    public void testLaVersionYLosSegmentosFijosSeConservan() {
+        assertEquals("/api/v2/transferencias/estado/exitosas",
+                MetricasNetty.ruta("/api/v2/transferencias/estado/exitosas?fields=id"));
+        assertEquals("/actuator/prometheus", MetricasNetty.ruta("//actuator/prometheus/"));
+    }
+
+    public void testLaRaizYLaConsultaSola() {
+        assertEquals("/", MetricasNetty.ruta("/"));
+        assertEquals("/", MetricasNetty.ruta("?x=1"));
+        assertEquals("/", MetricasNetty.ruta(""));
+    }
+}
@@ -0,0 +1,132 @@
+package com.banco.controller;
+
+import com.banco.admision.ControlAdmision;
+import com.banco.conciliacion.Conciliador;
+import com.banco.dto.ConfiguracionAdmisionDTO;
+import com.banco.dto.ErrorResponse;
+import com.banco.model.Conciliacion;
+import com.banco.repository.ConciliacionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.invocar;
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class AdminControllerTest extends TestCase {
+    private final Map<String, Conciliacion> conciliaciones = new ConcurrentHashMap<>();
+    private ControlAdmision controlAdmision;
+    private AdminController controlador;
+
+    @Override
+    protected void setUp() {
+        controlAdmision = new ControlAdmision();
+        inyectar(controlAdmision, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(controlAdmision, "maximoClaves", 1000L);
+        inyectar(controlAdmision, "tasaCliente", 200.0);
+        inyectar(controlAdmision, "rafagaCliente", 400);
+        inyectar(controlAdmision, "tasaCuenta", 20.0);
+        inyectar(controlAdmision, "rafagaCuenta", 40);
+        inyectar(controlAdmision, "concurrenciaInicial", 64);
+        inyectar(controlAdmision, "concurrenciaMinima", 8);
+        inyectar(controlAdmision, "concurrenciaMaxima", 1024);
+        inyectar(controlAdmision, "latenciaObjetivoMs", 250L);
+        invocar(controlAdmision, "iniciar");
+
+        Conciliador conciliador = new Conciliador();
+        inyectar(conciliador, "conciliacionRepository", repositorio());
+
+        controlador = new AdminController();
+        inyectar(controlador, "controlAdmision", controlAdmision);
+        inyectar(controlador, "conciliador", conciliador);
+    }
+
+    public void testConfigurarAdmisionSoloCambiaLosCamposDados() {
+        ConfiguracionAdmisionDTO cambios = new ConfiguracionAdmisionDTO();
+        cambios.setTasaCuenta(5.0);
+        cambios.setHabilitada(false);
+
+        ConfiguracionAdmisionDTO nueva = controlador.configurarAdmision(cambios);
+
+        assertEquals(5.0, nueva.getTasaCuenta());
+        assertEquals(Integer.valueOf(40), nueva.getRafagaCuenta());
+        assertEquals(200.0, nueva.getTasaCliente());
+        assertFalse(nueva.getHabilitada());
+        assertEquals(nueva, controlador.configuracionAdmision());
+    }
+
+    public void testUnaConfiguracionInvalidaNoCambiaNadaYResponde400() {
+        ConfiguracionAdmisionDTO cambios = new ConfiguracionAdmisionDTO();
+        cambios.setTasaCliente(1.0);
+        cambios.setConcurrenciaMinima(10);
+        cambios.setConcurrenciaMaxima(5);
+
+        try {
+            controlador.configurarAdmision(cambios);
+            fail();
+        } catch (IllegalArgumentException e) {
+            ResponseEntity<ErrorResponse> respuesta = controlador.manejarArgumentoIlegal(e).block();
+            assertEquals(HttpStatus.BAD_REQUEST, respuesta.getStatusCode());
+            assertEquals("Solicitud inválida", respuesta.getBody().getTipo());
+            assertEquals(e.getMessage(), respuesta.getBody().getMensaje());
+        }
+        assertEquals(200.0, controlAdmision.configuracion().getTasaCliente());
+    }
+
+    public void testConsultarUnaConciliacionInexistenteDevuelve404() {
+        Conciliacion guardada = new Conciliacion();
+        guardada.setId("c1");
+        guardada.setEstado(Conciliacion.DETENIDA);
+        conciliaciones.put("c1", guardada);
+
+        ResponseEntity<Conciliacion> encontrada = controlador.consultarConciliacion("c1").block(Duration.ofSeconds(5));
+        assertEquals(HttpStatus.OK, encontrada.getStatusCode());
+        assertEquals(Conciliacion.DETENIDA, encontrada.getBody().getEstado());
+        assertEquals(HttpStatus.NOT_FOUND,
+                controlador.consultarConciliacion("c2").block(Duration.ofSeconds(5)).getStatusCode());
+    }
+
+    public void testReanudarUnaConciliacionCompletadaSeRechaza() {
+        Conciliacion completada = new Conciliacion();
+        completada.setId("c1");
+        completada.setEstado(Conciliacion.COMPLETADA);
+        conciliaciones.put("c1", completada);
+
+        try {
+            controlador.iniciarConciliacion("c1").block(Duration.ofSeconds(5));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("La conciliación ya está completada", e.getMessage());
+        }
+        // La reserva fallida no deja una conciliación en curso
+        assertFalse(controlador.detenerConciliacion().block());
+    }
+
+    public void testRitmoNegativoYEstadoIlegal() {
+        assertEquals(100, controlador.ritmoConciliacion(100));
+        try {
+            controlador.ritmoConciliacion(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("El ritmo no puede ser negativo", e.getMessage());
+        }
+        ResponseEntity<ErrorResponse> respuesta = controlador
+                .manejarEstadoIlegal(new IllegalStateException("Ya hay una conciliación en curso")).block();
+        assertEquals(HttpStatus.CONFLICT, respuesta.getStatusCode());
+        assertEquals("Operación no disponible", respuesta.getBody().getTipo());
+    }
+
+    private ConciliacionRepository repositorio() {
+        return enMemoria(ConciliacionRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findById" -> Mono.justOrEmpty(conciliaciones.get((String) args[0]));
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+}
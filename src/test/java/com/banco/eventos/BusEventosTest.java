@@ -0,0 +1,123 @@
+package com.banco.eventos;
+
+import com.banco.dto.EventoCuentaDTO;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class BusEventosTest extends TestCase {
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private BusEventos bus;
+
+    @Override
+    protected void setUp() {
+        bus = new BusEventos();
+        inyectar(bus, "meterRegistry", registro);
+        inyectar(bus, "bufferPorSuscriptor", 2);
+        inyectar(bus, "fuente", "local");
+        bus.iniciar();
+    }
+
+    public void testCadaCuentaRecibeSuLadoDeLaTransferencia() {
+        Suscriptor origen = new Suscriptor(Long.MAX_VALUE);
+        Suscriptor destino = new Suscriptor(Long.MAX_VALUE);
+        Suscriptor ajena = new Suscriptor(Long.MAX_VALUE);
+        bus.suscribir("A").subscribe(origen);
+        bus.suscribir("B").subscribe(destino);
+        bus.suscribir("C").subscribe(ajena);
+
+        bus.publicarTransferencia(transferencia("TRF1"), conSaldo("A", "90.00"), conSaldo("B", "10.00"));
+
+        assertEquals(1, origen.eventos.size());
+        EventoCuentaDTO saliente = origen.eventos.get(0);
+        assertEquals(EventoCuentaDTO.TRANSFERENCIA_SALIENTE, saliente.getTipo());
+        assertEquals(new BigDecimal("90.00"), saliente.getSaldo());
+        assertEquals("B", saliente.getContraparte());
+        assertEquals(EventoCuentaDTO.TRANSFERENCIA_ENTRANTE, destino.eventos.get(0).getTipo());
+        assertEquals(new BigDecimal("10.00"), destino.eventos.get(0).getSaldo());
+        assertTrue(ajena.eventos.isEmpty());
+        assertEquals(3.0, registro.get("banco.eventos.suscriptores").gauge().value());
+    }
+
+    public void testUnSuscriptorLentoPierdeLosMasAntiguosSinFrenarAlQuePublica() {
+        Suscriptor lento = new Suscriptor(0);
+        Suscriptor rapido = new Suscriptor(Long.MAX_VALUE);
+        bus.suscribir("A").subscribe(lento);
+        bus.suscribir("A").subscribe(rapido);
+
+        for (int i = 1; i <= 5; i++) {
+            bus.publicarTransferencia(transferencia("TRF" + i), null, null);
+        }
+        assertEquals(5, rapido.eventos.size());
+        assertTrue(lento.eventos.isEmpty());
+
+        lento.pedir(10);
+        assertEquals(List.of("TRF4", "TRF5"), lento.eventos.stream().map(EventoCuentaDTO::getCodigoReferencia).toList());
+        assertEquals(3.0, registro.get("banco.eventos.descartados").counter().count());
+    }
+
+    public void testElCanalDesapareceConSuUltimoSuscriptor() {
+        Suscriptor suscriptor = new Suscriptor(Long.MAX_VALUE);
+        bus.suscribir("A").subscribe(suscriptor);
+        suscriptor.dispose();
+
+        bus.publicarTransferencia(transferencia("TRF1"), null, null);
+
+        assertTrue(suscriptor.eventos.isEmpty());
+        assertEquals(0.0, registro.get("banco.eventos.suscriptores").gauge().value());
+    }
+
+    private static Transferencia transferencia(String codigoReferencia) {
+        Transferencia t = new Transferencia();
+        t.setCodigoReferencia(codigoReferencia);
+        t.setCuentaOrigen("A");
+        t.setCuentaDestino("B");
+        t.setMonto(new BigDecimal("10.00"));
+        t.setMoneda("USD");
+        t.setFechaTransferencia(LocalDateTime.now());
+        return t;
+    }
+
+    private static Cuenta conSaldo(String numeroCuenta, String saldo) {
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setSaldo(new BigDecimal(saldo));
+        return cuenta;
+    }
+
+
+    private static final class Suscriptor extends BaseSubscriber<EventoCuentaDTO> {
+        private final List<EventoCuentaDTO> eventos = new CopyOnWriteArrayList<>();
+        private final long demandaInicial;
+
+        Suscriptor(long demandaInicial) {
+            this.demandaInicial = demandaInicial;
+        }
+
+        void pedir(long n) {
+            request(n);
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (demandaInicial > 0) {
+                subscription.request(demandaInicial);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(EventoCuentaDTO evento) {
+            eventos.add(evento);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.banco.id;
+
+import junit.framework.TestCase;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdentificadoresTest extends TestCase {
+    private static final int HILOS = 8;
+    private static final int POR_HILO = 200_000;
+
+    public void testIdsUnicosYCrecientesPorHiloBajoConcurrencia() throws Exception {
+        Snowflake generador = new Snowflake(7);
+        Set<Long> vistos = ConcurrentHashMap.newKeySet(HILOS * POR_HILO);
+        AtomicInteger desordenados = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        for (int h = 0; h < HILOS; h++) {
+            hilos.execute(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long anterior = -1;
+                for (int i = 0; i < POR_HILO; i++) {
+                    long id = generador.siguiente();
+                    if (id <= anterior) {
+                        desordenados.incrementAndGet();
+                    }
+                    anterior = id;
+                    vistos.add(id);
+                }
+            });
+        }
+        salida.countDown();
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(HILOS * POR_HILO, vistos.size());
+        assertEquals(0, desordenados.get());
+        assertEquals(7, Snowflake.nodo(vistos.iterator().next()));
+    }
+
+    public void testElRelojQueRetrocedeNoRepiteIds() {
+        AtomicLong reloj = new AtomicLong(Snowflake.EPOCA + 10_000);
+        Snowflake generador = new Snowflake(1, reloj::get);
+        long primero = generador.siguiente();
+        reloj.addAndGet(-5_000);
+        assertTrue(generador.siguiente() > primero);
+    }
+
+    public void testNumeroCuentaConDigitoDeControlYFechaRecuperable() {
+        Instant creacion = Instant.parse("2026-03-15T10:20:30.456Z");
+        Identificadores identificadores = new Identificadores(new Snowflake(3, creacion::toEpochMilli));
+
+        String numero = identificadores.nuevoNumeroCuenta();
+        assertTrue(numero.startsWith(Identificadores.PREFIJO_CUENTA));
+        assertTrue(Identificadores.numeroCuentaValido(numero));
+        assertEquals(creacion, identificadores.fechaCreacion(numero).orElseThrow());
+
+        // Cualquier dígito alterado invalida el número
+        char[] c = numero.toCharArray();
+        c[10] = c[10] == '9' ? '0' : (char) (c[10] + 1);
+        assertFalse(Identificadores.numeroCuentaValido(new String(c)));
+        assertTrue(identificadores.fechaCreacion(new String(c)).isEmpty());
+
+        assertEquals(creacion, identificadores.fechaCreacion(identificadores.nuevoCodigoReferencia()).orElseThrow());
+        assertEquals(creacion, identificadores.fechaCreacion(identificadores.nuevoId()).orElseThrow());
+        assertTrue(identificadores.fechaCreacion("ACC17000000000001234").isEmpty());
+    }
+
+    public void testLosIdsTextualesSeOrdenanComoSeCrearon() {
+        Identificadores identificadores = new Identificadores(new Snowflake(0));
+        String anterior = identificadores.nuevoId();
+        for (int i = 0; i < 10_000; i++) {
+            String id = identificadores.nuevoId();
+            assertTrue(id.compareTo(anterior) > 0);
+            anterior = id;
+        }
+    }
+
+    public void testLosBloquesSiguenLaSecuenciaYDesbordanAlMilisegundoSiguiente() {
+        AtomicLong reloj = new AtomicLong(Snowflake.EPOCA + 10_000);
+        Snowflake generador = new Snowflake(2, reloj::get);
+        long antes = generador.siguiente();
+        long[] bloque = generador.siguientes(5000);
+        long despues = generador.siguiente();
+
+        long anterior = antes;
+        for (long id : bloque) {
+            assertTrue(id > anterior);
+            assertEquals(2, Snowflake.nodo(id));
+            anterior = id;
+        }
+        assertTrue(despues > anterior);
+        // 4096 por milisegundo: el bloque toma prestado el siguiente
+        assertEquals(Snowflake.EPOCA + 10_001, generador.instante(bloque[bloque.length - 1]).toEpochMilli());
+
+        Identificadores identificadores = new Identificadores(generador);
+        String[] numeros = identificadores.nuevosNumerosCuenta(3);
+        assertTrue(Identificadores.numeroCuentaValido(numeros[2]));
+        assertTrue(numeros[0].compareTo(numeros[1]) < 0 && numeros[1].compareTo(numeros[2]) < 0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.banco.metricas;
+
+import com.banco.exception.CuentaNoEncontradaException;
+import com.banco.exception.SaldoInsuficienteException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class MetricasEtapasTest extends TestCase {
+    private static final String METRICA = "banco.prueba.etapa";
+
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private MetricasEtapas metricas;
+    private MetricasEtapas.Etapa etapa;
+
+    @Override
+    protected void setUp() {
+        metricas = new MetricasEtapas();
+        inyectar(metricas, "meterRegistry", registro);
+        inyectar(metricas, "habilitadas", true);
+        inyectar(metricas, "muestreo", 0.0);
+        etapa = metricas.etapa(METRICA, "etapa", "prueba");
+    }
+
+    public void testUnMonoCuentaComoExitoAlDarSuValor() {
+        assertEquals(Integer.valueOf(1), etapa.medir(Mono.just(1)).block());
+
+        assertEquals(1, veces(MetricasEtapas.EXITO));
+        assertEquals(0, veces(MetricasEtapas.CANCELADO));
+    }
+
+    public void testLosErroresSeClasificanPorTipo() {
+        medirError(new SaldoInsuficienteException("sin saldo"));
+        medirError(new CuentaNoEncontradaException("no existe"));
+        medirError(new IllegalStateException("otro"));
+
+        assertEquals(1, veces(MetricasEtapas.SALDO_INSUFICIENTE));
+        assertEquals(1, veces(MetricasEtapas.CUENTA_NO_ENCONTRADA));
+        assertEquals(1, veces(MetricasEtapas.OTRO));
+        assertEquals(0, veces(MetricasEtapas.EXITO));
+    }
+
+    public void testUnFluxCuentaUnaVezAlCompletarse() {
+        assertEquals(List.of(1, 2, 3), etapa.medir(Flux.just(1, 2, 3)).collectList().block());
+
+        assertEquals(1, veces(MetricasEtapas.EXITO));
+    }
+
+    public void testLaCancelacionSeRegistraUnaSolaVez() {
+        Sinks.One<Integer> pendiente = Sinks.one();
+        etapa.medir(pendiente.asMono()).subscribe().dispose();
+        // El valor tardío no llega a registrarse como éxito
+        pendiente.tryEmitValue(1);
+        assertEquals(Integer.valueOf(1), etapa.medir(Flux.range(1, 10)).take(1).blockFirst(Duration.ofSeconds(5)));
+
+        assertEquals(2, veces(MetricasEtapas.CANCELADO));
+        assertEquals(0, veces(MetricasEtapas.EXITO));
+    }
+
+    public void testSinMuestreoNiMetricasNoSeEnvuelve() {
+        Mono<Integer> mono = Mono.just(1);
+        assertSame(mono, metricas.etapaMuestreada(METRICA, "etapa", "muestreada").medir(mono));
+
+        inyectar(metricas, "habilitadas", false);
+        assertSame(mono, etapa.medir(mono));
+    }
+
+    private void medirError(RuntimeException error) {
+        try {
+            etapa.medir(Mono.error(error)).block();
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(error, e);
+        }
+    }
+
+    private long veces(String resultado) {
+        return registro.get(METRICA).tag("etapa", "prueba").tag("resultado", resultado).timer().count();
+    }
+}
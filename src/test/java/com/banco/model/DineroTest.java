@@ -0,0 +1,44 @@
+package com.banco.model;
+
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class DineroTest extends TestCase {
+
+    public void testUsaLaEscalaDeLaMoneda() {
+        assertEquals(1050, Dinero.de(new BigDecimal("10.50"), "USD").unidades());
+        assertEquals(1050, Dinero.de(new BigDecimal("10.500"), "USD").unidades());
+        assertEquals(1050, Dinero.de(new BigDecimal("1050"), "JPY").unidades());
+        assertEquals(10_500, Dinero.de(new BigDecimal("10.5"), "KWD").unidades());
+        assertEquals(2, Dinero.escala("XYZ"));
+        assertEquals("10.50", Dinero.de(new BigDecimal("10.5"), null).toString());
+
+        try {
+            Dinero.de(new BigDecimal("10.5"), "JPY");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("El monto admite como mucho 0 decimales", e.getMessage());
+        }
+    }
+
+    public void testFallaEnVezDeDesbordar() {
+        Dinero maximo = Dinero.de(Dinero.SALDO_MAXIMO.setScale(2, RoundingMode.DOWN), "USD");
+        assertEquals(Dinero.saldoMaximo(2), maximo.unidades());
+        try {
+            Dinero.de(new BigDecimal("1e17"), "USD");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("El monto supera el máximo representable", e.getMessage());
+        }
+        Dinero enorme = Dinero.de(new BigDecimal("5000000000000000000"), "JPY");
+        try {
+            enorme.sumar(enorme);
+            fail();
+        } catch (ArithmeticException e) {
+            // esperado
+        }
+        assertTrue(Dinero.de(BigDecimal.ONE, "USD").compareTo(Dinero.de(new BigDecimal("0.99"), "USD")) > 0);
+    }
+}
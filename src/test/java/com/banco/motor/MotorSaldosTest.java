@@ -0,0 +1,156 @@
+package com.banco.motor;
+
+import com.banco.bitacora.Bitacora;
+import com.banco.cambio.TiposCambio;
+import com.banco.model.Cuenta;
+import com.banco.model.SaldoCuenta;
+import com.banco.model.Transferencia;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.inyectar;
+
+/**
+ * El motor sobre una bitácora real en un directorio temporal y un repositorio de cuentas en
+ * memoria que hace de Mongo.
+ */
+public class MotorSaldosTest extends TestCase {
+    private static final int TAMANO_SEGMENTO = 1024 * 1024;
+
+    private Path directorio;
+    private final Map<String, SaldoCuenta> mongo = new ConcurrentHashMap<>();
+
+    @Override
+    protected void setUp() throws IOException {
+        directorio = Files.createTempDirectory("motor-test");
+        mongo.put("A", new SaldoCuenta("A", new BigDecimal("100.00"), "USD", true, null));
+        mongo.put("B", new SaldoCuenta("B", new BigDecimal("0.00"), "USD", true, null));
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(r -> r.toFile().delete());
+        }
+    }
+
+    public void testReaplicaLaBitacoraQueNoLlegoAMongo() throws Exception {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        // Sin volcados periódicos: al no cerrarlo es como si se hubiera caído antes de volcar
+        MotorSaldos caido = motor(bitacora, 3_600_000);
+        List<ResultadoMotor> resultados = caido.transferir(List.of(
+                        transferencia("A", "B", "30.00"),
+                        transferencia("A", "B", "30.00"),
+                        transferencia("A", "B", "50.00"),
+                        transferencia("A", "X", "1.00")))
+                .block(Duration.ofSeconds(5));
+        assertTrue(resultados.get(0).aplicada());
+        assertEquals(new BigDecimal("40.00"), resultados.get(1).saldoOrigen());
+        assertEquals("Saldo insuficiente. Disponible: 40.00", resultados.get(2).error().getMessage());
+        assertEquals("Cuenta destino no existe", resultados.get(3).error().getMessage());
+        assertEquals(2, bitacora.confirmadaHasta());
+        bitacora.cerrar();
+        assertEquals(new BigDecimal("100.00"), mongo.get("A").getSaldo());
+
+        bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        MotorSaldos reiniciado = motor(bitacora, 200);
+        assertEquals(Map.of("A", new BigDecimal("40.00"), "B", new BigDecimal("60.00")),
+                reiniciado.saldos(List.of("A", "B")).block(Duration.ofSeconds(5)));
+        reiniciado.cerrar();
+        bitacora.cerrar();
+        assertEquals(new BigDecimal("40.00"), mongo.get("A").getSaldo());
+        assertEquals(Long.valueOf(2), mongo.get("A").getSecuenciaMotor());
+
+        // Con los saldos ya volcados no se vuelve a aplicar nada
+        bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        MotorSaldos otraVez = motor(bitacora, 200);
+        assertEquals(Map.of("A", new BigDecimal("40.00"), "B", new BigDecimal("60.00")),
+                otraVez.saldos(List.of("A", "B")).block(Duration.ofSeconds(5)));
+        otraVez.cerrar();
+        bitacora.cerrar();
+    }
+
+    public void testCargaLasCuentasCreadasTrasArrancar() throws Exception {
+        Bitacora bitacora = new Bitacora(new SimpleMeterRegistry(), directorio, TAMANO_SEGMENTO, 256);
+        MotorSaldos motor = motor(bitacora, 200);
+        try {
+            mongo.put("C", new SaldoCuenta("C", new BigDecimal("5.00"), "USD", true, null));
+            ResultadoMotor resultado = motor.transferir(transferencia("A", "C", "10.50")).block(Duration.ofSeconds(5));
+            assertTrue(resultado.aplicada());
+            assertEquals(new BigDecimal("15.50"), resultado.saldoDestino());
+
+            motor.actualizarEstado("C", false).block(Duration.ofSeconds(5));
+            RuntimeException error = motor.transferir(transferencia("C", "A", "1.00"))
+                    .block(Duration.ofSeconds(5)).error();
+            assertEquals("La cuenta origen está inactiva", error.getMessage());
+            assertEquals("El monto admite como mucho 2 decimales", motor.validarMonto(new BigDecimal("0.001")));
+        } finally {
+            motor.cerrar();
+            bitacora.cerrar();
+        }
+    }
+
+    private MotorSaldos motor(Bitacora bitacora, long volcadoMs) throws Exception {
+        MotorSaldos motor = new MotorSaldos();
+        inyectar(motor, "bitacora", bitacora);
+        inyectar(motor, "cuentaRepository", repositorio());
+        inyectar(motor, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(motor, "tiposCambio", new TiposCambio());
+        inyectar(motor, "habilitado", true);
+        inyectar(motor, "decimales", 2);
+        inyectar(motor, "loteMaximo", 4096);
+        inyectar(motor, "pendientesMaximos", 65536);
+        inyectar(motor, "intervaloVolcadoMs", volcadoMs);
+        inyectar(motor, "tamanoLoteCursor", 500);
+        motor.iniciar();
+        return motor;
+    }
+
+    private CuentaRepository repositorio() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "listarSaldos" -> Flux.fromIterable(mongo.values());
+            case "guardarSaldos" -> Mono.fromRunnable(() -> ((Map<?, ?>) args[0]).forEach((numero, saldo) ->
+                    mongo.computeIfPresent((String) numero, (k, c) -> new SaldoCuenta(k, (BigDecimal) saldo,
+                            c.getMoneda(), c.getActiva(), (Long) args[1]))));
+            case "findByNumeroCuenta" -> Mono.justOrEmpty(mongo.get((String) args[0])).map(c -> {
+                Cuenta cuenta = new Cuenta();
+                cuenta.setNumeroCuenta(c.getNumeroCuenta());
+                cuenta.setSaldo(c.getSaldo());
+                cuenta.setMoneda(c.getMoneda());
+                cuenta.setActiva(c.getActiva());
+                return cuenta;
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private static Transferencia transferencia(String origen, String destino, String monto) {
+        Transferencia t = new Transferencia();
+        t.setId(origen + destino + monto + System.nanoTime());
+        t.setCodigoReferencia(t.getId());
+        t.setCuentaOrigen(origen);
+        t.setCuentaDestino(destino);
+        t.setMonto(new BigDecimal(monto));
+        t.setMoneda("USD");
+        t.setEstado("EXITOSA");
+        t.setFechaTransferencia(LocalDateTime.now());
+        t.setFechaActualizacion(t.getFechaTransferencia());
+        return t;
+    }
+}
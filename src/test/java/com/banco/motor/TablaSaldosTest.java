@@ -0,0 +1,59 @@
+package com.banco.motor;
+
+import junit.framework.TestCase;
+
+public class TablaSaldosTest extends TestCase {
+
+    public void testAplicaLasMismasCondicionesQueMongo() {
+        TablaSaldos tabla = new TablaSaldos(4);
+        int a = tabla.agregar("ACC1", 10_000, "USD", true, 0);
+        int b = tabla.agregar("ACC2", 0, "USD", true, 0);
+        int inactiva = tabla.agregar("ACC3", 5_000, "USD", false, 0);
+
+        assertEquals(TablaSaldos.APLICADA, tabla.transferir(a, b, 2_550, 2_550));
+        assertEquals(7_450, tabla.saldo(a));
+        assertEquals(2_550, tabla.saldo(b));
+        assertEquals(TablaSaldos.SALDO_INSUFICIENTE, tabla.transferir(a, b, 7_451, 7_451));
+        assertEquals(TablaSaldos.ORIGEN_INACTIVA, tabla.transferir(inactiva, b, 1, 1));
+        assertEquals(TablaSaldos.DESTINO_INACTIVA, tabla.transferir(a, inactiva, 1, 1));
+        assertEquals(7_450, tabla.saldo(a));
+
+        tabla.agregar("ACC4", Long.MAX_VALUE - 10, "USD", true, 0);
+        assertEquals(TablaSaldos.SALDO_EXCEDIDO, tabla.transferir(a, tabla.buscar("ACC4"), 11, 11));
+    }
+
+    public void testEncuentraTodasLasCuentasAlCrecer() {
+        TablaSaldos tabla = new TablaSaldos(16);
+        for (int i = 0; i < 50_000; i++) {
+            tabla.agregar("ACC" + i, i, "USD", true, 0);
+        }
+        assertEquals(50_000, tabla.tamano());
+        for (int i = 0; i < 50_000; i++) {
+            int ranura = tabla.buscar("ACC" + i);
+            assertEquals("ACC" + i, tabla.numero(ranura));
+            assertEquals(i, tabla.saldo(ranura));
+        }
+        assertEquals(-1, tabla.buscar("ACC50000"));
+
+        tabla.eliminar(tabla.buscar("ACC7"));
+        assertEquals(-1, tabla.buscar("ACC7"));
+        assertEquals(7, tabla.saldo(tabla.agregar("ACC7", 7, "USD", true, 0)));
+        assertEquals(50_000, tabla.tamano());
+    }
+
+    public void testReaplicaSoloLoQueElSaldoGuardadoNoIncluye() {
+        TablaSaldos tabla = new TablaSaldos(4);
+        int a = tabla.agregar("ACC1", 1_000, "USD", true, 5);
+        tabla.tomarSucias();
+
+        tabla.reaplicar(a, -100, 5);
+        assertEquals(1_000, tabla.saldo(a));
+        assertEquals(0, tabla.tomarSucias().length);
+
+        tabla.reaplicar(a, -100, 6);
+        tabla.reaplicar(a, 30, 7);
+        assertEquals(930, tabla.saldo(a));
+        assertEquals(1, tabla.tomarSucias().length);
+        assertEquals(0, tabla.tomarSucias().length);
+    }
+}
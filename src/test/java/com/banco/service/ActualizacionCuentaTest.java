@@ -0,0 +1,120 @@
+package com.banco.service;
+
+import com.banco.cache.CacheCuentas;
+import com.banco.dto.CuentaDTO;
+import com.banco.eventos.BusEventos;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.model.Cuenta;
+import com.banco.motor.MotorSaldos;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.invocar;
+import static com.banco.soporte.Pruebas.inyectar;
+
+/**
+ * La actualización de una cuenta escribe solo los campos pedidos sobre el documento vigente:
+ * un crédito que entra entre la lectura y la escritura no se pierde ni descuadra la base.
+ */
+public class ActualizacionCuentaTest extends TestCase {
+    private Cuenta almacenada;
+    private final AtomicInteger escrituras = new AtomicInteger();
+    // Crédito que llega justo antes de la primera escritura
+    private BigDecimal creditoConcurrente;
+    private CuentaService servicio;
+
+    @Override
+    protected void setUp() {
+        almacenada = new Cuenta();
+        almacenada.setId("id1");
+        almacenada.setNumeroCuenta("ACC1");
+        almacenada.setNombreTitular("Titular");
+        almacenada.setEmail("titular@banco.com");
+        almacenada.setSaldo(new BigDecimal("100.00"));
+        almacenada.setSaldoBase(new BigDecimal("100.00"));
+        almacenada.setMoneda("USD");
+        almacenada.setActiva(true);
+
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        MetricasEtapas metricas = new MetricasEtapas();
+        inyectar(metricas, "meterRegistry", registro);
+        CacheCuentas cache = new CacheCuentas();
+        inyectar(cache, "meterRegistry", registro);
+        invocar(cache, "iniciar");
+
+        servicio = new CuentaService();
+        inyectar(servicio, "cuentaRepository", repositorio());
+        inyectar(servicio, "cacheCuentas", cache);
+        inyectar(servicio, "busEventos", new BusEventos());
+        inyectar(servicio, "metricas", metricas);
+        inyectar(servicio, "motor", new MotorSaldos());
+        servicio.iniciarMetricas();
+    }
+
+    public void testSoloCambiaLosCamposQueVienenEnLaSolicitud() {
+        Cuenta cambios = new Cuenta();
+        cambios.setNombreTitular("Otro Titular");
+
+        CuentaDTO dto = servicio.actualizarCuenta("ACC1", cambios).block(Duration.ofSeconds(5));
+
+        assertEquals("Otro Titular", dto.getNombreTitular());
+        assertEquals("titular@banco.com", dto.getEmail());
+        assertEquals(new BigDecimal("100.00"), almacenada.getSaldo());
+        assertEquals(1, escrituras.get());
+    }
+
+    public void testUnAjusteDeSaldoSeRepiteSobreElSaldoQueDejoUnCreditoConcurrente() {
+        creditoConcurrente = new BigDecimal("30.00");
+        Cuenta cambios = new Cuenta();
+        cambios.setSaldo(new BigDecimal("150.00"));
+
+        CuentaDTO dto = servicio.actualizarCuenta("ACC1", cambios).block(Duration.ofSeconds(5));
+
+        assertEquals(new BigDecimal("150.00"), dto.getSaldo());
+        assertEquals(2, escrituras.get());
+        // El crédito sigue fuera de la base: saldo - base es justo lo que entró por transferencias
+        assertEquals(new BigDecimal("30.00"), almacenada.getSaldo().subtract(almacenada.getSaldoBase()));
+    }
+
+    // Mismo filtro que el findAndModify de CuentaRepositoryCustomImpl.actualizarPerfil
+    private CuentaRepository repositorio() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findByNumeroCuenta" -> Mono.fromCallable(() -> copia(almacenada));
+            case "actualizarPerfil" -> Mono.fromCallable(() -> {
+                escrituras.incrementAndGet();
+                if (creditoConcurrente != null) {
+                    almacenada.setSaldo(almacenada.getSaldo().add(creditoConcurrente));
+                    creditoConcurrente = null;
+                }
+                Cuenta cambios = (Cuenta) args[1];
+                Cuenta anterior = (Cuenta) args[2];
+                if (cambios.getSaldo() != null) {
+                    if (almacenada.getSaldo().compareTo(anterior.getSaldo()) != 0) {
+                        return null;
+                    }
+                    BigDecimal delta = cambios.getSaldo().subtract(anterior.getSaldo());
+                    almacenada.setSaldo(almacenada.getSaldo().add(delta));
+                    almacenada.setSaldoBase(almacenada.getSaldoBase().add(delta));
+                }
+                if (cambios.getNombreTitular() != null) {
+                    almacenada.setNombreTitular(cambios.getNombreTitular());
+                }
+                return copia(almacenada);
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName() + Arrays.toString(args));
+        });
+    }
+
+    private static Cuenta copia(Cuenta c) {
+        return new Cuenta(c.getId(), c.getNumeroCuenta(), c.getNombreTitular(), c.getEmail(), c.getSaldo(),
+                c.getMoneda(), c.getFechaCreacion(), c.getUltimaActualizacion(), c.getActiva(), c.getSaldoBase());
+    }
+}
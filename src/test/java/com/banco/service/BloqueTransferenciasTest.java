@@ -0,0 +1,89 @@
+package com.banco.service;
+
+import com.banco.cambio.TablaCambios;
+import com.banco.dto.ResultadoTransferenciaDTO;
+import com.banco.model.Cuenta;
+import com.banco.model.Dinero;
+import com.banco.model.Transferencia;
+import junit.framework.TestCase;
+import reactor.util.function.Tuples;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BloqueTransferenciasTest extends TestCase {
+
+    public void testDescuentaLoComprometidoAntesDentroDelBloque() {
+        BloqueTransferencias bloque = new BloqueTransferencias(List.of(
+                Tuples.of(0L, transferencia("A", "B", "60")),
+                Tuples.of(1L, transferencia("A", "C", "60")),
+                Tuples.of(2L, transferencia("B", "X", "10")),
+                Tuples.of(3L, transferencia("B", "C", "30"))));
+
+        bloque.planificar(Map.of(
+                "A", cuenta("A", "100"),
+                "B", cuenta("B", "50"),
+                "C", cuenta("C", "0")), TablaCambios.VACIA);
+
+        List<ResultadoTransferenciaDTO> resultados = bloque.resultados(t -> null);
+        assertNull(resultados.get(0).getError());
+        assertEquals(BloqueTransferencias.SALDO_INSUFICIENTE, resultados.get(1).getError());
+        assertEquals(BloqueTransferencias.CUENTA_NO_ENCONTRADA, resultados.get(2).getError());
+        assertNull(resultados.get(3).getError());
+        assertEquals(new BigDecimal("60"), bloque.debitos().get("A"));
+        assertEquals(new BigDecimal("30"), bloque.debitos().get("B"));
+        assertEquals(new BigDecimal("60"), bloque.creditos().get("B"));
+        assertEquals(new BigDecimal("30"), bloque.creditos().get("C"));
+    }
+
+    public void testRechazaLoQueSaliaDeUnaCuentaCuyoDebitoFallo() {
+        BloqueTransferencias bloque = new BloqueTransferencias(List.of(
+                Tuples.of(0L, transferencia("A", "B", "10")),
+                Tuples.of(1L, transferencia("B", "A", "5"))));
+        bloque.planificar(Map.of("A", cuenta("A", "100"), "B", cuenta("B", "100")), TablaCambios.VACIA);
+
+        bloque.rechazarOrigenes(Set.of("A"));
+
+        assertEquals(1, bloque.aceptadas().size());
+        assertFalse(bloque.creditos().containsKey("B"));
+        assertEquals(new BigDecimal("5"), bloque.creditos().get("A"));
+    }
+
+    public void testTrabajaEnUnidadesMinimasDeCadaMoneda() {
+        Cuenta yenes = cuenta("Y", "1000");
+        yenes.setMoneda("JPY");
+        Cuenta llena = cuenta("L", BigDecimal.valueOf(Dinero.saldoMaximo(2) - 500, 2).toPlainString());
+        BloqueTransferencias bloque = new BloqueTransferencias(List.of(
+                Tuples.of(0L, transferencia("A", "Y", "0.50")),
+                Tuples.of(1L, transferencia("A", "L", "3")),
+                Tuples.of(2L, transferencia("A", "L", "3")),
+                Tuples.of(3L, transferencia("A", "B", "96.999"))));
+        bloque.planificar(Map.of("A", cuenta("A", "100"), "B", cuenta("B", "0"), "Y", yenes, "L", llena),
+                TablaCambios.VACIA);
+
+        List<ResultadoTransferenciaDTO> resultados = bloque.resultados(t -> null);
+        assertEquals("El monto admite como mucho 0 decimales", resultados.get(0).getMensaje());
+        assertNull(resultados.get(1).getError());
+        assertEquals("El saldo de la cuenta destino superaría el máximo", resultados.get(2).getMensaje());
+        assertEquals("El monto admite como mucho 2 decimales", resultados.get(3).getMensaje());
+        assertEquals(new BigDecimal("3"), bloque.debitos().get("A"));
+    }
+
+    private static Transferencia transferencia(String origen, String destino, String monto) {
+        Transferencia t = new Transferencia();
+        t.setCuentaOrigen(origen);
+        t.setCuentaDestino(destino);
+        t.setMonto(new BigDecimal(monto));
+        return t;
+    }
+
+    private static Cuenta cuenta(String numero, String saldo) {
+        Cuenta c = new Cuenta();
+        c.setNumeroCuenta(numero);
+        c.setSaldo(new BigDecimal(saldo));
+        c.setActiva(true);
+        return c;
+    }
+}
@@ -0,0 +1,171 @@
+package com.banco.service;
+
+import com.banco.admision.ControlAdmision;
+import com.banco.bitacora.Bitacora;
+import com.banco.cache.CacheCuentas;
+import com.banco.cambio.TiposCambio;
+import com.banco.concurrencia.SecuenciadorCuentas;
+import com.banco.eventos.BusEventos;
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import com.banco.metricas.MetricasEtapas;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.motor.MotorSaldos;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.CuentaRepository;
+import com.banco.repository.TransferenciaRepository;
+import com.banco.velocidad.ControlVelocidad;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.invocar;
+import static com.banco.soporte.Pruebas.inyectar;
+
+/**
+ * Una transferencia sin motor ni bitácora cuyo crédito falla o cuyo cliente se va a mitad:
+ * el débito de la cuenta origen nunca queda aplicado sin su crédito o su compensación.
+ */
+public class CompensacionTransferenciaTest extends TestCase {
+    private final Map<String, BigDecimal> saldos = new ConcurrentHashMap<>();
+    private final Map<String, Transferencia> guardadas = new ConcurrentHashMap<>();
+    private final CountDownLatch debitada = new CountDownLatch(1);
+
+    // Respuesta del crédito que elige cada test
+    private Mono<Cuenta> credito;
+
+    @Override
+    protected void setUp() {
+        saldos.put("A", new BigDecimal("100.00"));
+        saldos.put("C", new BigDecimal("0.00"));
+    }
+
+    public void testUnCreditoQueFallaDevuelveElDebito() throws Exception {
+        credito = Mono.error(new IllegalStateException("tiempo de espera agotado"));
+
+        try {
+            servicio().realizarTransferencia(transferencia("10.00")).block(Duration.ofSeconds(5));
+            fail("Se esperaba el error del crédito");
+        } catch (IllegalStateException e) {
+            assertEquals("tiempo de espera agotado", e.getMessage());
+        }
+        assertEquals(new BigDecimal("100.00"), saldos.get("A"));
+        assertEquals(new BigDecimal("0.00"), saldos.get("C"));
+        assertTrue(guardadas.isEmpty());
+    }
+
+    public void testSiElClienteSeVaTrasElDebitoLaTransferenciaTermina() throws Exception {
+        credito = Mono.delay(Duration.ofMillis(200)).map(n -> ajustar("C", new BigDecimal("10.00")));
+
+        Disposable peticion = servicio().realizarTransferencia(transferencia("10.00")).subscribe(t -> { }, e -> { });
+        assertTrue(debitada.await(5, TimeUnit.SECONDS));
+        peticion.dispose();
+
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (guardadas.isEmpty() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, guardadas.size());
+        assertEquals(new BigDecimal("90.00"), saldos.get("A"));
+        assertEquals(new BigDecimal("10.00"), saldos.get("C"));
+    }
+
+    private TransferenciaService servicio() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        CuentaRepository cuentas = cuentas();
+        CacheCuentas cache = new CacheCuentas();
+        inyectar(cache, "meterRegistry", registro);
+        inyectar(cache, "cuentaRepository", cuentas);
+        invocar(cache, "iniciar");
+        MetricasEtapas metricas = new MetricasEtapas();
+        inyectar(metricas, "meterRegistry", registro);
+
+        TransferenciaService servicio = new TransferenciaService();
+        inyectar(servicio, "cuentaRepository", cuentas);
+        inyectar(servicio, "transferenciaRepository", transferencias());
+        inyectar(servicio, "agregadoDiarioRepository", agregados());
+        inyectar(servicio, "secuenciador", new SecuenciadorCuentas(registro, 4));
+        inyectar(servicio, "cacheCuentas", cache);
+        inyectar(servicio, "busEventos", new BusEventos());
+        inyectar(servicio, "identificadores", new Identificadores(new Snowflake(1)));
+        inyectar(servicio, "metricas", metricas);
+        // Todos deshabilitados, como los deja un componente recién construido
+        inyectar(servicio, "bitacora", new Bitacora());
+        inyectar(servicio, "motor", new MotorSaldos());
+        inyectar(servicio, "tiposCambio", new TiposCambio());
+        inyectar(servicio, "controlAdmision", new ControlAdmision());
+        inyectar(servicio, "controlVelocidad", new ControlVelocidad());
+        inyectar(servicio, "compensaciones", new CompensacionesPendientes());
+        servicio.iniciarMetricas();
+        return servicio;
+    }
+
+    private CuentaRepository cuentas() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findByNumeroCuenta" -> Mono.fromCallable(() -> saldos.containsKey(args[0]) ? cuenta((String) args[0]) : null);
+            case "debitar" -> Mono.fromCallable(() -> {
+                Cuenta cuenta = ajustar((String) args[0], ((BigDecimal) args[1]).negate());
+                debitada.countDown();
+                return cuenta;
+            });
+            case "acreditar" -> credito;
+            case "compensar" -> Mono.fromCallable(() -> ajustar((String) args[0], (BigDecimal) args[1]));
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private TransferenciaRepository transferencias() {
+        return enMemoria(TransferenciaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "insert" -> Mono.fromCallable(() -> {
+                Transferencia t = (Transferencia) args[0];
+                guardadas.put(t.getId(), t);
+                return t;
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private AgregadoDiarioRepository agregados() {
+        return enMemoria(AgregadoDiarioRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "acumular" -> Mono.empty();
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private Cuenta ajustar(String numeroCuenta, BigDecimal delta) {
+        BigDecimal saldo = saldos.merge(numeroCuenta, delta, BigDecimal::add);
+        if (saldo.signum() < 0) {
+            saldos.merge(numeroCuenta, delta.negate(), BigDecimal::add);
+            return null;
+        }
+        return cuenta(numeroCuenta);
+    }
+
+    private Cuenta cuenta(String numeroCuenta) {
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setSaldo(saldos.get(numeroCuenta));
+        cuenta.setMoneda("USD");
+        cuenta.setActiva(true);
+        return cuenta;
+    }
+
+    private static Transferencia transferencia(String monto) {
+        Transferencia t = new Transferencia();
+        t.setCuentaOrigen("A");
+        t.setCuentaDestino("C");
+        t.setMonto(new BigDecimal(monto));
+        t.setMoneda("USD");
+        return t;
+    }
+}
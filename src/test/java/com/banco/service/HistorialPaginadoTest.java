@@ -0,0 +1,144 @@
+package com.banco.service;
+
+import com.banco.archivo.ArchivoTransferencias;
+import com.banco.dto.PaginaDTO;
+import com.banco.dto.TransferenciaDTO;
+import com.banco.model.Transferencia;
+import com.banco.repository.TransferenciaRepository;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.inyectar;
+
+/**
+ * Paginación por cursor del historial sobre un repositorio en memoria con la misma semántica
+ * que la consulta de Mongo: más recientes primero y, en el mismo instante, mayor _id primero.
+ */
+public class HistorialPaginadoTest extends TestCase {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 10, 0);
+    private static final Comparator<Transferencia> MAS_RECIENTES_PRIMERO = Comparator
+            .comparing(Transferencia::getFechaTransferencia).thenComparing(Transferencia::getId).reversed();
+
+    private final List<Transferencia> transferencias = new ArrayList<>();
+    private TransferenciaService servicio;
+
+    @Override
+    protected void setUp() {
+        // Tres transferencias en el mismo instante, a caballo entre dos páginas de dos
+        transferencias.add(transferencia("T1", "A", "B", T0));
+        transferencias.add(transferencia("T2", "B", "A", T0.plusSeconds(1)));
+        transferencias.add(transferencia("T3", "A", "C", T0.plusSeconds(1)));
+        transferencias.add(transferencia("T4", "C", "A", T0.plusSeconds(1)));
+        transferencias.add(transferencia("T5", "A", "B", T0.plusSeconds(2)));
+        transferencias.add(transferencia("T6", "B", "C", T0.plusSeconds(3)));
+
+        servicio = new TransferenciaService();
+        inyectar(servicio, "transferenciaRepository", repositorio());
+        inyectar(servicio, "archivo", new ArchivoTransferencias());
+        inyectar(servicio, "limiteMaximoHistorial", 500);
+    }
+
+    public void testRecorreTodoElHistorialEnOrdenSinRepetirNiSaltar() {
+        List<String> ids = new ArrayList<>();
+        List<String> cursores = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaDTO<TransferenciaDTO> pagina = pagina(cursor, 2, null, null);
+            assertTrue(pagina.getElementos().size() <= 2);
+            pagina.getElementos().forEach(t -> ids.add(t.getId()));
+            cursor = pagina.getSiguienteCursor();
+            cursores.add(cursor);
+        } while (cursor != null);
+
+        assertEquals(List.of("T5", "T4", "T3", "T2", "T1"), ids);
+        assertEquals(3, cursores.size());
+    }
+
+    public void testUnaPaginaExactaNoDejaCursorSiNoHayMas() {
+        PaginaDTO<TransferenciaDTO> primera = pagina(null, 3, null, null);
+        assertEquals(List.of("T5", "T4", "T3"), ids(primera));
+        assertNotNull(primera.getSiguienteCursor());
+
+        PaginaDTO<TransferenciaDTO> ultima = pagina(primera.getSiguienteCursor(), 2, null, null);
+        assertEquals(List.of("T2", "T1"), ids(ultima));
+        assertNull(ultima.getSiguienteCursor());
+    }
+
+    public void testElCursorRespetaElRangoDeFechas() {
+        PaginaDTO<TransferenciaDTO> primera = pagina(null, 1, T0.plusSeconds(1), T0.plusSeconds(1));
+        assertEquals(List.of("T4"), ids(primera));
+        PaginaDTO<TransferenciaDTO> resto = pagina(primera.getSiguienteCursor(), 10,
+                T0.plusSeconds(1), T0.plusSeconds(1));
+        assertEquals(List.of("T3", "T2"), ids(resto));
+        assertNull(resto.getSiguienteCursor());
+    }
+
+    public void testRechazaCursoresYLimitesInvalidos() {
+        try {
+            pagina("no-es-un-cursor", 10, null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Cursor de historial inválido", e.getMessage());
+        }
+        try {
+            pagina(null, 0, null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("El límite debe estar entre 1 y"));
+        }
+    }
+
+    private PaginaDTO<TransferenciaDTO> pagina(String cursor, int limite, LocalDateTime desde, LocalDateTime hasta) {
+        return servicio.obtenerHistorial("A", cursor, limite, desde, hasta).block(Duration.ofSeconds(5));
+    }
+
+    private static List<String> ids(PaginaDTO<TransferenciaDTO> pagina) {
+        return pagina.getElementos().stream().map(TransferenciaDTO::getId).toList();
+    }
+
+    // Contrato de TransferenciaRepositoryCustom.buscarHistorial
+    private TransferenciaRepository repositorio() {
+        return enMemoria(TransferenciaRepository.class, (p, metodo, args) -> {
+            if (!metodo.getName().equals("buscarHistorial")) {
+                throw new UnsupportedOperationException(metodo.getName());
+            }
+            String cuenta = (String) args[0];
+            LocalDateTime antesDeFecha = (LocalDateTime) args[1];
+            String antesDeId = (String) args[2];
+            LocalDateTime desde = (LocalDateTime) args[3];
+            LocalDateTime hasta = (LocalDateTime) args[4];
+            int limite = (Integer) args[5];
+            Stream<Transferencia> filas = transferencias.stream()
+                    .filter(t -> cuenta.equals(t.getCuentaOrigen()) || cuenta.equals(t.getCuentaDestino()))
+                    .filter(t -> desde == null || !t.getFechaTransferencia().isBefore(desde))
+                    .filter(t -> hasta == null || !t.getFechaTransferencia().isAfter(hasta))
+                    .filter(t -> antesDeFecha == null || t.getFechaTransferencia().isBefore(antesDeFecha)
+                            || t.getFechaTransferencia().equals(antesDeFecha)
+                            && t.getId().compareTo(antesDeId) < 0)
+                    .sorted(MAS_RECIENTES_PRIMERO);
+            return Flux.fromStream(limite > 0 ? filas.limit(limite) : filas);
+        });
+    }
+
+    private static Transferencia transferencia(String id, String origen, String destino, LocalDateTime fecha) {
+        Transferencia t = new Transferencia();
+        t.setId(id);
+        t.setCodigoReferencia("REF" + id);
+        t.setCuentaOrigen(origen);
+        t.setCuentaDestino(destino);
+        t.setMonto(BigDecimal.TEN);
+        t.setMoneda("USD");
+        t.setEstado("EXITOSA");
+        t.setFechaTransferencia(fecha);
+        return t;
+    }
+}
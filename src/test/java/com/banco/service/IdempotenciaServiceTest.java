@@ -0,0 +1,149 @@
+package com.banco.service;
+
+import com.banco.dto.TransferenciaDTO;
+import com.banco.model.RegistroIdempotencia;
+import com.banco.model.Transferencia;
+import com.banco.repository.IdempotenciaRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import junit.framework.TestCase;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class IdempotenciaServiceTest extends TestCase {
+    private static final TransferenciaDTO RESULTADO = TransferenciaDTO.builder().codigoReferencia("TRF1").build();
+
+    private final Map<String, RegistroIdempotencia> registros = new ConcurrentHashMap<>();
+    private final AtomicInteger fallosGuardado = new AtomicInteger();
+    private final AtomicInteger fallosBorrado = new AtomicInteger();
+    private IdempotenciaService servicio;
+
+    @Override
+    protected void setUp() {
+        servicio = nuevoServicio();
+    }
+
+    public void testElResultadoQueNoSePudoGuardarSeGuardaDespues() throws Exception {
+        // Más que los reintentos en línea: el resultado se devuelve y se guarda en segundo plano
+        fallosGuardado.set(5);
+
+        assertEquals(RESULTADO, servicio.ejecutar("k1", "h", () -> Mono.just(RESULTADO)).block(Duration.ofSeconds(5)));
+
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!RegistroIdempotencia.COMPLETADA.equals(registros.get("k1").getEstado())
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertEquals(RESULTADO, registros.get("k1").getResultado());
+        // Otra instancia, sin caché local, ve la transferencia completada
+        assertEquals(RESULTADO, nuevoServicio().ejecutar("k1", "h", () -> Mono.error(new AssertionError()))
+                .block(Duration.ofSeconds(5)));
+    }
+
+    public void testUnFalloLiberaLaClaveAunqueElPrimerBorradoFalle() {
+        fallosBorrado.set(1);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        try {
+            servicio.ejecutar("k2", "h", () -> Mono.error(new IllegalArgumentException("saldo"))).block();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("saldo", e.getMessage());
+        }
+        assertFalse(registros.containsKey("k2"));
+        assertEquals(RESULTADO, servicio.ejecutar("k2", "h", () -> {
+            ejecuciones.incrementAndGet();
+            return Mono.just(RESULTADO);
+        }).block(Duration.ofSeconds(5)));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    public void testSiElClienteSeVaElReintentoRecibeElResultado() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        Disposable peticion = servicio.ejecutar("k3", "h", () -> {
+            ejecuciones.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(200)).thenReturn(RESULTADO);
+        }).subscribe(r -> { }, e -> { });
+        assertTrue(registros.containsKey("k3"));
+        peticion.dispose();
+
+        // El reintento no vuelve a ejecutar la transferencia ni encuentra la clave bloqueada EN_CURSO
+        assertEquals(RESULTADO, servicio.ejecutar("k3", "h", () -> {
+            ejecuciones.incrementAndGet();
+            return Mono.just(RESULTADO);
+        }).block(Duration.ofSeconds(5)));
+        assertEquals(1, ejecuciones.get());
+        assertEquals(RegistroIdempotencia.COMPLETADA, registros.get("k3").getEstado());
+        assertEquals(RESULTADO, nuevoServicio().ejecutar("k3", "h", () -> Mono.error(new AssertionError()))
+                .block(Duration.ofSeconds(5)));
+    }
+
+    public void testLaHuellaDistingueElConcepto() {
+        Transferencia alquiler = new Transferencia();
+        alquiler.setCuentaOrigen("A");
+        alquiler.setCuentaDestino("B");
+        alquiler.setMonto(new BigDecimal("10.0"));
+        alquiler.setMoneda("USD");
+        alquiler.setConcepto("Alquiler");
+        Transferencia luz = new Transferencia();
+        luz.setCuentaOrigen("A");
+        luz.setCuentaDestino("B");
+        luz.setMonto(new BigDecimal("10.00"));
+        luz.setMoneda("USD");
+        luz.setConcepto("Luz");
+
+        assertFalse(TransferenciaService.huella(alquiler).equals(TransferenciaService.huella(luz)));
+        luz.setConcepto("Alquiler");
+        assertEquals(TransferenciaService.huella(alquiler), TransferenciaService.huella(luz));
+    }
+
+    private IdempotenciaService nuevoServicio() {
+        IdempotenciaService nuevo = new IdempotenciaService();
+        inyectar(nuevo, "idempotenciaRepository", repositorio());
+        inyectar(nuevo, "recientes", Caffeine.newBuilder().build());
+        inyectar(nuevo, "reintentosGuardado", 5L);
+        return nuevo;
+    }
+
+    private IdempotenciaRepository repositorio() {
+        return enMemoria(IdempotenciaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "insert" -> Mono.defer(() -> {
+                RegistroIdempotencia r = (RegistroIdempotencia) args[0];
+                return registros.putIfAbsent(r.getClave(), copia(r)) == null
+                        ? Mono.just(r)
+                        : Mono.error(new DuplicateKeyException(r.getClave()));
+            });
+            case "save" -> Mono.defer(() -> {
+                RegistroIdempotencia r = (RegistroIdempotencia) args[0];
+                if (fallosGuardado.getAndDecrement() > 0) {
+                    return Mono.error(new IllegalStateException("sin conexión"));
+                }
+                registros.put(r.getClave(), copia(r));
+                return Mono.just(r);
+            });
+            case "deleteById" -> Mono.defer(() -> {
+                if (fallosBorrado.getAndDecrement() > 0) {
+                    return Mono.error(new IllegalStateException("sin conexión"));
+                }
+                registros.remove((String) args[0]);
+                return Mono.empty();
+            });
+            case "findById" -> Mono.justOrEmpty(registros.get((String) args[0]));
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private static RegistroIdempotencia copia(RegistroIdempotencia r) {
+        return new RegistroIdempotencia(r.getClave(), r.getHuella(), r.getEstado(), r.getResultado(), r.getCreadoEn());
+    }
+}
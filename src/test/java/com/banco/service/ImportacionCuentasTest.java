@@ -0,0 +1,75 @@
+package com.banco.service;
+
+import com.banco.dto.CuentaDTO;
+import com.banco.dto.ResultadoCuentaDTO;
+import com.banco.model.Cuenta;
+import junit.framework.TestCase;
+import reactor.util.function.Tuples;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ImportacionCuentasTest extends TestCase {
+
+    public void testLoExportadoSeVuelveAImportar() {
+        CuentaDTO original = CuentaDTO.builder()
+                .numeroCuenta("ACC00000000000000000017")
+                .nombreTitular("Pérez, \"Juan\"")
+                .email("juan@test.com")
+                .saldo(new BigDecimal("1250.50"))
+                .moneda("USD")
+                .activa(true)
+                .build();
+        String linea = CsvCuentas.linea(original);
+        assertEquals("ACC00000000000000000017,\"Pérez, \"\"Juan\"\"\",juan@test.com,1250.50,USD,true\n", linea);
+
+        CsvCuentas csv = CsvCuentas.desdeCabecera("\uFEFF" + CsvCuentas.CABECERA.trim());
+        Cuenta leida = csv.leer(linea.trim());
+        assertEquals("Pérez, \"Juan\"", leida.getNombreTitular());
+        assertEquals("juan@test.com", leida.getEmail());
+        assertEquals(new BigDecimal("1250.50"), leida.getSaldo());
+        assertEquals("USD", leida.getMoneda());
+        assertNull(leida.getNumeroCuenta());
+    }
+
+    public void testColumnasPorNombreYErroresPorLinea() {
+        CsvCuentas csv = CsvCuentas.desdeCabecera("moneda, email ,nombreTitular");
+        Cuenta cuenta = csv.leer("EUR,ana@test.com,Ana");
+        assertEquals("Ana", cuenta.getNombreTitular());
+        assertNull(cuenta.getSaldo());
+
+        try {
+            CsvCuentas.desdeCabecera("nombreTitular,moneda");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("email"));
+        }
+        try {
+            CsvCuentas.desdeCabecera("nombreTitular,email,saldo,moneda").leer("Ana,ana@test.com,mucho,EUR");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("mucho"));
+        }
+    }
+
+    public void testSoloLasNoInsertadasSeRechazanPorEmailDuplicado() {
+        BloqueCuentas bloque = new BloqueCuentas(List.of(
+                Tuples.of(10L, "a"), Tuples.of(11L, "b"), Tuples.of(12L, "c")));
+        for (int i = 0; i < bloque.tamano(); i++) {
+            Cuenta cuenta = new Cuenta();
+            cuenta.setEmail(bloque.linea(i) + "@test.com");
+            bloque.leida(i, cuenta);
+        }
+        bloque.rechazar(0, BloqueCuentas.SOLICITUD_INVALIDA, "email: no válido");
+
+        List<Cuenta> aceptadas = bloque.aceptadas();
+        assertEquals(2, aceptadas.size());
+        bloque.rechazarNoInsertadas(List.of(aceptadas.get(1)));
+
+        List<ResultadoCuentaDTO> resultados = bloque.resultados(c -> CuentaDTO.builder().email(c.getEmail()).build());
+        assertEquals(BloqueCuentas.SOLICITUD_INVALIDA, resultados.get(0).getError());
+        assertEquals(BloqueCuentas.EMAIL_DUPLICADO, resultados.get(1).getError());
+        assertEquals(Long.valueOf(11), resultados.get(1).getPosicion());
+        assertEquals("c@test.com", resultados.get(2).getCuenta().getEmail());
+    }
+}
@@ -0,0 +1,97 @@
+package com.banco.service;
+
+import com.banco.metricas.MetricasEtapas;
+import com.banco.model.Cuenta;
+import com.banco.motor.MotorSaldos;
+import com.banco.repository.CuentaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class ListadoCuentasTest extends TestCase {
+    private final List<Cuenta> cuentas = new ArrayList<>();
+    private CuentaService servicio;
+
+    @Override
+    protected void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Cuenta cuenta = new Cuenta();
+            cuenta.setId("id" + i);
+            cuenta.setNumeroCuenta("ACC" + i);
+            cuenta.setNombreTitular("Titular " + i);
+            cuenta.setSaldo(new BigDecimal("10.00"));
+            cuenta.setActiva(true);
+            cuentas.add(cuenta);
+        }
+        MetricasEtapas metricas = new MetricasEtapas();
+        inyectar(metricas, "meterRegistry", new SimpleMeterRegistry());
+        servicio = new CuentaService();
+        inyectar(servicio, "cuentaRepository", repositorio());
+        inyectar(servicio, "metricas", metricas);
+        inyectar(servicio, "motor", new MotorSaldos());
+        inyectar(servicio, "limiteListados", 3);
+        inyectar(servicio, "prefetchListados", 256);
+        inyectar(servicio, "tamanoLoteCursor", 500);
+        servicio.iniciarMetricas();
+    }
+
+    public void testLaProyeccionDevuelveSoloLosCamposPedidosAunqueSeanNulos() {
+        List<?> listado = servicio.obtenerTodas("saldo,moneda,numeroCuenta").collectList().block(Duration.ofSeconds(5));
+
+        Map<String, Object> esperada = new LinkedHashMap<>();
+        esperada.put("saldo", new BigDecimal("10.00"));
+        esperada.put("moneda", null);
+        esperada.put("numeroCuenta", "ACC0");
+        assertEquals(3, listado.size());
+        assertEquals(esperada, listado.get(0));
+        assertEquals(List.copyOf(esperada.keySet()), List.copyOf(((Map<?, ?>) listado.get(0)).keySet()));
+    }
+
+    public void testMasCuentasQueElTopeSeRechazanEnVezDeCortarse() {
+        assertEquals(3, servicio.obtenerTodas((String) null).collectList().block(Duration.ofSeconds(5)).size());
+
+        Cuenta otra = new Cuenta();
+        otra.setNumeroCuenta("ACC3");
+        cuentas.add(otra);
+        try {
+            servicio.obtenerTodas().collectList().block(Duration.ofSeconds(5));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("/cuentas/exportacion"));
+        }
+    }
+
+    private CuentaRepository repositorio() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "contarEstimado" -> Mono.just((long) cuentas.size());
+            case "listar" -> {
+                Set<?> campos = (Set<?>) args[0];
+                int limite = (Integer) args[1];
+                yield Flux.fromIterable(cuentas).take(limite).map(c -> campos.isEmpty() ? c : proyectar(c, campos));
+            }
+            default -> throw new UnsupportedOperationException(metodo.getName() + Arrays.toString(args));
+        });
+    }
+
+    // Como la proyección de Mongo: lo no pedido llega nulo
+    private static Cuenta proyectar(Cuenta c, Set<?> campos) {
+        Cuenta proyectada = new Cuenta();
+        proyectada.setNumeroCuenta(campos.contains("numeroCuenta") ? c.getNumeroCuenta() : null);
+        proyectada.setSaldo(campos.contains("saldo") ? c.getSaldo() : null);
+        proyectada.setMoneda(campos.contains("moneda") ? c.getMoneda() : null);
+        return proyectada;
+    }
+}
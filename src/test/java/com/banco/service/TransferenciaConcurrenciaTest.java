@@ -0,0 +1,102 @@
+package com.banco.service;
+
+import com.banco.App;
+import com.banco.exception.LimiteVelocidadException;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.repository.CuentaRepository;
+import junit.framework.TestCase;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispara miles de transferencias concurrentes y comprueba que el dinero total se conserva.
+ * Requiere un MongoDB local en MONGODB_URI; sin él la prueba no hace nada.
+ */
+public class TransferenciaConcurrenciaTest extends TestCase {
+    private static final int CUENTAS = 20;
+    private static final int TRANSFERENCIAS = 5000;
+    private static final BigDecimal SALDO_INICIAL = new BigDecimal("1000.00");
+
+    public void testConservaElSaldoTotalBajoConcurrencia() {
+        String uri = System.getenv("MONGODB_URI");
+        if (uri == null) {
+            return;
+        }
+
+        // devtools reinicia el contexto en el hilo principal del proceso de pruebas
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.uri=" + uri,
+                        "spring.data.mongodb.database=transferencias_test_" + System.nanoTime(),
+                        "banco.bitacora.directorio=" + System.getProperty("java.io.tmpdir")
+                                + "/bitacora_test_" + System.nanoTime(),
+                        // Las 5000 salen de 20 cuentas: con límites de velocidad se rechazarían casi todas
+                        "banco.velocidad.habilitada=false")
+                .run();
+        try {
+            CuentaService cuentaService = contexto.getBean(CuentaService.class);
+            TransferenciaService transferenciaService = contexto.getBean(TransferenciaService.class);
+            CuentaRepository cuentaRepository = contexto.getBean(CuentaRepository.class);
+
+            List<String> cuentas = Flux.range(0, CUENTAS)
+                    .concatMap(i -> {
+                        Cuenta cuenta = new Cuenta();
+                        cuenta.setNombreTitular("Titular " + i);
+                        cuenta.setEmail("titular" + i + "@test.com");
+                        cuenta.setSaldo(SALDO_INICIAL);
+                        cuenta.setMoneda("USD");
+                        return cuentaService.crearCuenta(cuenta);
+                    })
+                    .map(c -> c.getNumeroCuenta())
+                    .collectList()
+                    .block();
+
+            AtomicInteger rechazosVelocidad = new AtomicInteger();
+            Flux.range(0, TRANSFERENCIAS)
+                    .flatMap(i -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int origen = random.nextInt(CUENTAS);
+                        int destino = (origen + 1 + random.nextInt(CUENTAS - 1)) % CUENTAS;
+                        Transferencia t = new Transferencia();
+                        t.setCuentaOrigen(cuentas.get(origen));
+                        t.setCuentaDestino(cuentas.get(destino));
+                        t.setMonto(BigDecimal.valueOf(1 + random.nextInt(300)));
+                        t.setMoneda("USD");
+                        // Saldo insuficiente es un rechazo esperado; uno por velocidad no
+                        return transferenciaService.realizarTransferencia(t)
+                                .onErrorResume(e -> {
+                                    if (e instanceof LimiteVelocidadException) {
+                                        rechazosVelocidad.incrementAndGet();
+                                    }
+                                    return Mono.empty();
+                                });
+                    }, 256)
+                    .blockLast();
+
+            assertEquals(0, rechazosVelocidad.get());
+            List<Cuenta> finales = cuentaRepository.findAll().collectList().block();
+            BigDecimal total = finales.stream()
+                    .map(Cuenta::getSaldo)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            assertEquals(0, SALDO_INICIAL.multiply(BigDecimal.valueOf(CUENTAS)).compareTo(total));
+            finales.forEach(c -> assertTrue(c.getSaldo().signum() >= 0));
+        } finally {
+            contexto.getBean(ReactiveMongoTemplate.class).getMongoDatabase()
+                    .flatMap(db -> Mono.from(db.drop()))
+                    .block();
+            contexto.close();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.banco.service;
+
+import com.banco.admision.ControlAdmision;
+import com.banco.bitacora.Bitacora;
+import com.banco.cache.CacheCuentas;
+import com.banco.cambio.TiposCambio;
+import com.banco.dto.ResultadoTransferenciaDTO;
+import com.banco.eventos.BusEventos;
+import com.banco.exception.InsercionParcialException;
+import com.banco.id.Identificadores;
+import com.banco.id.Snowflake;
+import com.banco.model.Cuenta;
+import com.banco.model.Transferencia;
+import com.banco.motor.MotorSaldos;
+import com.banco.repository.AgregadoDiarioRepository;
+import com.banco.repository.CuentaRepository;
+import com.banco.repository.TransferenciaRepository;
+import com.banco.velocidad.ControlVelocidad;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import junit.framework.TestCase;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static com.banco.soporte.Pruebas.enMemoria;
+import static com.banco.soporte.Pruebas.invocar;
+import static com.banco.soporte.Pruebas.inyectar;
+
+/**
+ * El lote sin motor ni bitácora sobre repositorios en memoria que fallan a propósito: pase lo
+ * que pase, la suma de los saldos no cambia y solo quedan aplicadas las transferencias aceptadas.
+ */
+public class TransferenciaLoteTest extends TestCase {
+    private final Map<String, BigDecimal> saldos = new ConcurrentHashMap<>();
+    private final Map<String, Transferencia> guardadas = new ConcurrentHashMap<>();
+    private final List<Transferencia> acumuladas = new ArrayList<>();
+
+    // Fallos que inyecta cada test
+    private String debitoQueFalla;
+    private String creditoQueFalla;
+    private String desactivadaTrasLeer;
+    private Function<List<Transferencia>, Mono<List<Transferencia>>> insercion;
+    private ControlAdmision controlAdmision = new ControlAdmision();
+
+    @Override
+    protected void setUp() {
+        saldos.put("A", new BigDecimal("100.00"));
+        saldos.put("B", new BigDecimal("100.00"));
+        saldos.put("C", new BigDecimal("0.00"));
+        saldos.put("D", new BigDecimal("0.00"));
+        insercion = transferencias -> Mono.fromCallable(() -> guardar(transferencias));
+    }
+
+    public void testUnDebitoQueFallaSoloRechazaSuCuentaOrigen() throws Exception {
+        debitoQueFalla = "B";
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("B", "D", "20.00"));
+
+        assertNull(resultados.get(0).getError());
+        assertEquals(BloqueTransferencias.ERROR_INTERNO, resultados.get(1).getError());
+        assertSaldos("90.00", "100.00", "10.00", "0.00");
+        assertEquals(1, guardadas.size());
+    }
+
+    public void testSoloSeReintegraElDebitoDeLosCreditosQueNoSeAplicaron() throws Exception {
+        creditoQueFalla = "D";
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("B", "D", "20.00"), transferencia("B", "C", "5.00"));
+
+        assertNull(resultados.get(0).getError());
+        assertEquals("No se pudo acreditar la cuenta destino", resultados.get(1).getMensaje());
+        assertNull(resultados.get(2).getError());
+        assertSaldos("90.00", "95.00", "15.00", "0.00");
+        assertEquals(2, guardadas.size());
+    }
+
+    public void testUnDestinoDesactivadoTrasLaLecturaDevuelveElDebito() throws Exception {
+        desactivadaTrasLeer = "C";
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("B", "D", "20.00"));
+
+        assertEquals("No se pudo acreditar la cuenta destino", resultados.get(0).getMensaje());
+        assertNull(resultados.get(1).getError());
+        assertSaldos("100.00", "80.00", "0.00", "20.00");
+        assertEquals(1, guardadas.size());
+    }
+
+    public void testElCuboDeLaCuentaOrigenSeCobraUnaVezPorBloque() throws Exception {
+        // Un solo token por cuenta y casi sin reposición
+        controlAdmision = new ControlAdmision();
+        inyectar(controlAdmision, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(controlAdmision, "habilitada", true);
+        inyectar(controlAdmision, "maximoClaves", 1000L);
+        inyectar(controlAdmision, "tasaCliente", 200.0);
+        inyectar(controlAdmision, "rafagaCliente", 400);
+        inyectar(controlAdmision, "tasaCuenta", 0.001);
+        inyectar(controlAdmision, "rafagaCuenta", 1);
+        inyectar(controlAdmision, "concurrenciaInicial", 64);
+        inyectar(controlAdmision, "concurrenciaMinima", 8);
+        inyectar(controlAdmision, "concurrenciaMaxima", 1024);
+        inyectar(controlAdmision, "latenciaObjetivoMs", 250L);
+        invocar(controlAdmision, "iniciar");
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("A", "D", "10.00"), transferencia("A", "C", "10.00"));
+
+        resultados.forEach(r -> assertNull(r.getError()));
+        assertSaldos("70.00", "100.00", "20.00", "10.00");
+    }
+
+    public void testUnaInsercionParcialSoloDeshaceLasQueNoSeGuardaron() throws Exception {
+        insercion = transferencias -> Mono.error(new InsercionParcialException(
+                guardar(transferencias.subList(0, 1)), new IllegalStateException("disco lleno")));
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("B", "D", "20.00"));
+
+        assertNull(resultados.get(0).getError());
+        assertEquals("No se pudo registrar la transferencia", resultados.get(1).getMensaje());
+        assertSaldos("90.00", "100.00", "10.00", "0.00");
+        assertEquals(List.copyOf(guardadas.values()), acumuladas);
+    }
+
+    public void testSinDetalleDelErrorSeCompruebaQueQuedoGuardado() throws Exception {
+        insercion = transferencias -> Mono.defer(() -> {
+            guardar(transferencias.subList(1, 2));
+            return Mono.error(new IllegalStateException("se perdió la conexión"));
+        });
+
+        List<ResultadoTransferenciaDTO> resultados = lote(transferencia("A", "C", "10.00"),
+                transferencia("B", "D", "20.00"));
+
+        assertEquals(BloqueTransferencias.ERROR_INTERNO, resultados.get(0).getError());
+        assertNull(resultados.get(1).getError());
+        assertSaldos("100.00", "80.00", "0.00", "20.00");
+    }
+
+    private List<ResultadoTransferenciaDTO> lote(Transferencia... transferencias) {
+        List<ResultadoTransferenciaDTO> resultados = servicio().realizarLote(Flux.just(transferencias))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertEquals(new BigDecimal("200.00"), saldos.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+        return resultados;
+    }
+
+    private void assertSaldos(String a, String b, String c, String d) {
+        assertEquals(Map.of("A", new BigDecimal(a), "B", new BigDecimal(b), "C", new BigDecimal(c),
+                "D", new BigDecimal(d)), saldos);
+    }
+
+    private TransferenciaService servicio() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        CuentaRepository cuentas = cuentas();
+        CacheCuentas cache = new CacheCuentas();
+        inyectar(cache, "meterRegistry", registro);
+        inyectar(cache, "cuentaRepository", cuentas);
+        invocar(cache, "iniciar");
+
+        TransferenciaService servicio = new TransferenciaService();
+        inyectar(servicio, "cuentaRepository", cuentas);
+        inyectar(servicio, "transferenciaRepository", transferencias());
+        inyectar(servicio, "agregadoDiarioRepository", agregados());
+        inyectar(servicio, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        inyectar(servicio, "cacheCuentas", cache);
+        inyectar(servicio, "busEventos", new BusEventos());
+        inyectar(servicio, "identificadores", new Identificadores(new Snowflake(1)));
+        // Todos deshabilitados, como los deja un componente recién construido
+        inyectar(servicio, "bitacora", new Bitacora());
+        inyectar(servicio, "motor", new MotorSaldos());
+        inyectar(servicio, "tiposCambio", new TiposCambio());
+        inyectar(servicio, "controlAdmision", controlAdmision);
+        inyectar(servicio, "controlVelocidad", new ControlVelocidad());
+        inyectar(servicio, "compensaciones", new CompensacionesPendientes());
+        inyectar(servicio, "tamanoLote", 500);
+        inyectar(servicio, "esperaMaximaLoteMs", 100L);
+        return servicio;
+    }
+
+    private CuentaRepository cuentas() {
+        return enMemoria(CuentaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "findByNumeroCuentaIn" -> Flux.fromIterable((Collection<?>) args[0])
+                    .filter(saldos::containsKey)
+                    .map(numero -> cuenta((String) numero));
+            case "debitar" -> args[0].equals(debitoQueFalla)
+                    ? Mono.error(new IllegalStateException("sin conexión"))
+                    : Mono.fromCallable(() -> ajustar((String) args[0], ((BigDecimal) args[1]).negate()));
+            case "compensar" -> Mono.fromCallable(() -> ajustar((String) args[0], (BigDecimal) args[1]));
+            // Como el bulkWrite sin orden: aplica todas menos la que falla o ya no está activa y las devuelve
+            case "acreditarEnBloque" -> Mono.fromCallable(() -> {
+                Map<?, ?> creditos = (Map<?, ?>) args[0];
+                Set<String> noAcreditadas = new HashSet<>();
+                creditos.forEach((numero, monto) -> {
+                    if (numero.equals(creditoQueFalla) || numero.equals(desactivadaTrasLeer)) {
+                        noAcreditadas.add((String) numero);
+                    } else {
+                        ajustar((String) numero, (BigDecimal) monto);
+                    }
+                });
+                return noAcreditadas;
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private TransferenciaRepository transferencias() {
+        return enMemoria(TransferenciaRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "insertarNuevas" -> insercion.apply(copia((List<?>) args[0]));
+            case "findAllById" -> Flux.fromIterable((Iterable<?>) args[0])
+                    .filter(guardadas::containsKey)
+                    .map(guardadas::get);
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private AgregadoDiarioRepository agregados() {
+        return enMemoria(AgregadoDiarioRepository.class, (p, metodo, args) -> switch (metodo.getName()) {
+            case "acumular" -> Mono.fromRunnable(() -> {
+                for (Object t : (Collection<?>) args[0]) {
+                    acumuladas.add((Transferencia) t);
+                }
+            });
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        });
+    }
+
+    private Cuenta ajustar(String numeroCuenta, BigDecimal delta) {
+        BigDecimal saldo = saldos.merge(numeroCuenta, delta, BigDecimal::add);
+        if (saldo.signum() < 0) {
+            saldos.merge(numeroCuenta, delta.negate(), BigDecimal::add);
+            return null;
+        }
+        return cuenta(numeroCuenta);
+    }
+
+    private List<Transferencia> guardar(List<Transferencia> transferencias) {
+        transferencias.forEach(t -> guardadas.put(t.getId(), t));
+        return transferencias;
+    }
+
+    private Cuenta cuenta(String numeroCuenta) {
+        Cuenta cuenta = new Cuenta();
+        cuenta.setNumeroCuenta(numeroCuenta);
+        cuenta.setSaldo(saldos.get(numeroCuenta));
+        cuenta.setMoneda("USD");
+        cuenta.setActiva(true);
+        return cuenta;
+    }
+
+    private static List<Transferencia> copia(List<?> transferencias) {
+        List<Transferencia> copia = new ArrayList<>(transferencias.size());
+        transferencias.forEach(t -> copia.add((Transferencia) t));
+        return copia;
+    }
+
+    private static Transferencia transferencia(String origen, String destino, String monto) {
+        Transferencia t = new Transferencia();
+        t.setCuentaOrigen(origen);
+        t.setCuentaDestino(destino);
+        t.setMonto(new BigDecimal(monto));
+        t.setMoneda("USD");
+        t.setFechaTransferencia(LocalDateTime.now());
+        return t;
+    }
+}
@@ -0,0 +1,79 @@
+package com.banco.soporte;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Lo que comparten las pruebas para montar componentes sin el contexto de Spring: rellenar sus
+ * campos {@code @Autowired} y {@code @Value}, invocar su {@code @PostConstruct} y sustituir
+ * repositorios por implementaciones en memoria.
+ */
+public final class Pruebas {
+    private Pruebas() {
+    }
+
+    /** Asigna el campo como lo haría Spring, aunque sea privado o esté en una superclase. */
+    public static void inyectar(Object destino, String nombre, Object valor) {
+        try {
+            Field campo = campo(destino.getClass(), nombre);
+            campo.setAccessible(true);
+            campo.set(destino, valor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo inyectar " + nombre, e);
+        }
+    }
+
+    /** Valor de un campo, aunque sea privado, para comprobar el estado interno. */
+    public static Object leer(Object origen, String nombre) {
+        try {
+            Field campo = campo(origen.getClass(), nombre);
+            campo.setAccessible(true);
+            return campo.get(origen);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo leer " + nombre, e);
+        }
+    }
+
+    /** Invoca un método sin argumentos aunque sea privado, normalmente el {@code @PostConstruct}. */
+    public static void invocar(Object destino, String nombre) {
+        try {
+            Method metodo = destino.getClass().getDeclaredMethod(nombre);
+            metodo.setAccessible(true);
+            metodo.invoke(destino);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo invocar " + nombre, e);
+        }
+    }
+
+    /**
+     * Implementa la interfaz con el manejador dado, que solo ve los métodos propios de ella y
+     * debe lanzar {@link UnsupportedOperationException} con los que la prueba no espera; los de
+     * Object (toString, hashCode, equals) se resuelven aquí.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T enMemoria(Class<T> tipo, InvocationHandler manejador) {
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (proxy, metodo, args) -> {
+            if (metodo.getDeclaringClass() != Object.class) {
+                return manejador.invoke(proxy, metodo, args);
+            }
+            return switch (metodo.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> tipo.getSimpleName() + " en memoria";
+            };
+        });
+    }
+
+    private static Field campo(Class<?> tipo, String nombre) throws NoSuchFieldException {
+        for (Class<?> actual = tipo; actual != null; actual = actual.getSuperclass()) {
+            try {
+                return actual.getDeclaredField(nombre);
+            } catch (NoSuchFieldException e) {
+                // Sigue por la superclase
+            }
+        }
+        throw new NoSuchFieldException(tipo.getName() + "." + nombre);
+    }
+}
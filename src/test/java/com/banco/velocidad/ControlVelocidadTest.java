@@ -0,0 +1,106 @@
+package com.banco.velocidad;
+
+import com.banco.model.Transferencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+
+import static com.banco.soporte.Pruebas.inyectar;
+
+public class ControlVelocidadTest extends TestCase {
+    private static final long MINUTO = 60_000;
+
+    public void testRechazaAlExcederUnaReglaYOlvidaLoQueSaleDeLaVentana() {
+        ControlVelocidad control = control("cantidad:10m:3,importe:10m:100:USD");
+        long t0 = 1_000 * MINUTO;
+        assertNull(exceso(control, transferencia("A", "B", "60.00"), t0));
+        assertNull(exceso(control, transferencia("A", "B", "30.00"), t0 + MINUTO));
+        assertEquals("Importe transferido desde la cuenta origen por encima del límite (importe:10m:100:USD)",
+                exceso(control, transferencia("A", "B", "10.01"), t0 + MINUTO));
+        assertNull(exceso(control, transferencia("A", "B", "10.00"), t0 + 2 * MINUTO));
+        assertEquals("Demasiadas transferencias desde la cuenta origen (cantidad:10m:3)",
+                exceso(control, transferencia("A", "B", "0.01"), t0 + 2 * MINUTO));
+        // Otra cuenta origen lleva sus propios contadores
+        assertNull(exceso(control, transferencia("C", "B", "100.00"), t0 + 2 * MINUTO));
+
+        // A los 10 minutos ya no cuenta la primera
+        assertNull(exceso(control, transferencia("A", "B", "60.00"), t0 + 10 * MINUTO + 10_000));
+    }
+
+    public void testCuentaSoloLosDestinosNuevos() {
+        ControlVelocidad control = control("destinos:1h:2");
+        long t0 = 1_000 * MINUTO;
+        assertNull(exceso(control, transferencia("A", "B", "1.00"), t0));
+        assertNull(exceso(control, transferencia("A", "C", "1.00"), t0));
+        assertNull(exceso(control, transferencia("A", "B", "1.00"), t0));
+        assertEquals("Demasiados destinos nuevos desde la cuenta origen (destinos:1h:2)",
+                exceso(control, transferencia("A", "D", "1.00"), t0));
+        assertNull(exceso(control, transferencia("A", "D", "1.00"), t0 + 61 * MINUTO));
+    }
+
+    public void testUnaTransferenciaAnuladaDejaDeContar() {
+        ControlVelocidad control = control("destinos:1h:2,cantidad:10m:3,importe:10m:100:USD");
+        long t0 = 1_000 * MINUTO;
+        assertNull(exceso(control, transferencia("A", "B", "60.00"), t0));
+        AnotacionVelocidad fallida = control.registrar(transferencia("A", "C", "40.00"), "USD", t0 + MINUTO);
+        assertNull(fallida.exceso());
+        assertEquals("Importe transferido desde la cuenta origen por encima del límite (importe:10m:100:USD)",
+                exceso(control, transferencia("A", "B", "1.00"), t0 + MINUTO));
+
+        control.anular(fallida);
+        // Libera la cantidad, el importe y el destino nuevo que había anotado
+        assertNull(exceso(control, transferencia("A", "D", "40.00"), t0 + 2 * MINUTO));
+        assertEquals("Demasiados destinos nuevos desde la cuenta origen (destinos:1h:2)",
+                exceso(control, transferencia("A", "C", "0.01"), t0 + 2 * MINUTO));
+    }
+
+    public void testElImporteSoloSumaEnLasReglasDeSuMoneda() {
+        ControlVelocidad control = control("importe:10m:100:USD,importe:10m:10000:JPY");
+        long t0 = 1_000 * MINUTO;
+        assertNull(exceso(control, transferencia("A", "B", "100.00"), "USD", t0));
+        // Los yenes no cuentan para el límite en dólares, ni al revés
+        assertNull(exceso(control, transferencia("A", "B", "10000"), "JPY", t0));
+        assertEquals("Importe transferido desde la cuenta origen por encima del límite (importe:10m:10000:JPY)",
+                exceso(control, transferencia("A", "B", "1"), "JPY", t0));
+        assertEquals("Importe transferido desde la cuenta origen por encima del límite (importe:10m:100:USD)",
+                exceso(control, transferencia("A", "B", "0.01"), "USD", t0));
+    }
+
+    public void testUnaReglaDeImporteSinMonedaNoSeAcepta() {
+        try {
+            ReglaVelocidad.leer("importe:10m:100");
+            fail("Se esperaba una regla inválida");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Regla de velocidad inválida, se espera importe:ventana:límite:moneda: importe:10m:100",
+                    e.getMessage());
+        }
+    }
+
+    private static ControlVelocidad control(String reglas) {
+        ControlVelocidad control = new ControlVelocidad();
+        inyectar(control, "meterRegistry", new SimpleMeterRegistry());
+        inyectar(control, "habilitada", true);
+        inyectar(control, "textoReglas", reglas);
+        inyectar(control, "maximoCuentas", 1000L);
+        inyectar(control, "destinosRecordados", 64);
+        control.iniciar();
+        return control;
+    }
+
+    private static String exceso(ControlVelocidad control, Transferencia t, long ahora) {
+        return exceso(control, t, "USD", ahora);
+    }
+
+    private static String exceso(ControlVelocidad control, Transferencia t, String moneda, long ahora) {
+        return control.registrar(t, moneda, ahora).exceso();
+    }
+
+    private static Transferencia transferencia(String origen, String destino, String monto) {
+        Transferencia t = new Transferencia();
+        t.setCuentaOrigen(origen);
+        t.setCuentaDestino(destino);
+        t.setMonto(new BigDecimal(monto));
+        return t;
+    }
+}